@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.marklogic.client.document.DocumentWriteOperation;
+import com.marklogic.client.document.DocumentWriteOperation.OperationType;
+import com.marklogic.client.impl.DocumentWriteOperationImpl;
+import com.marklogic.client.io.StringHandle;
+
+/**
+ * Compares assembling the documents passed to WriteBatcher.add into batches with StripedWriteBuffer against the
+ * LinkedBlockingQueue it replaced, where every producer added to one queue and the add that completed a batch
+ * polled the batch back out of it.  All the benchmark threads add to the same buffer or queue, as the threads
+ * calling WriteBatcher.add do, and neither side writes the batches.
+ *
+ * Run with: ./gradlew :marklogic-client-api:jmh -PjmhIncludes=StripedWriteBufferBenchmark
+ * and change the number of producer threads through jmh.threads to see how each side scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class StripedWriteBufferBenchmark {
+  @Param({"100"})
+  public int batchSize;
+
+  private DocumentWriteOperation writeOperation;
+  private StripedWriteBuffer buffer;
+  private LinkedBlockingQueue<DocumentWriteOperation> queue;
+  private AtomicLong batchCounter;
+  private LongAdder batchCount;
+  private Consumer<List<DocumentWriteOperation>> batchConsumer;
+
+  @Setup
+  public void setup() {
+    writeOperation = new DocumentWriteOperationImpl(OperationType.DOCUMENT_WRITE, "/benchmark.json", null,
+      new StringHandle("{\"benchmark\":true}"));
+    buffer       = new StripedWriteBuffer(batchSize, 0);
+    queue        = new LinkedBlockingQueue<>();
+    batchCounter = new AtomicLong();
+    batchCount   = new LongAdder();
+    // counting the batches keeps them from being optimized away without adding work to either side
+    batchConsumer = batch -> batchCount.add(batch.size());
+  }
+
+  @Benchmark
+  public void stripedBuffer() {
+    buffer.add(writeOperation, 0, batchConsumer);
+  }
+
+  // the batching WriteBatcherImpl.add did before StripedWriteBuffer
+  @Benchmark
+  public void sharedQueue() {
+    queue.add(writeOperation);
+    long recordNum = batchCounter.incrementAndGet();
+    if ( (recordNum % batchSize) == 0 ) {
+      List<DocumentWriteOperation> batch = new ArrayList<>(batchSize);
+      for (int i=0; i < batchSize; i++ ) {
+        DocumentWriteOperation doc = queue.poll();
+        if ( doc == null ) break;
+        batch.add(doc);
+      }
+      batchConsumer.accept(batch);
+    }
+  }
+}
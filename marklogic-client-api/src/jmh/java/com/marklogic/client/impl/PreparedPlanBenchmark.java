@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.expression.PlanBuilder.Plan;
+import com.marklogic.client.io.OutputStreamSender;
+import com.marklogic.client.io.marker.AbstractWriteHandle;
+import com.marklogic.client.row.RowManager;
+
+/**
+ * Compares the client-side work of one parameterized row request with a plan built and exported per request
+ * against a prepared plan from RowManager.newPreparedPlan, which only binds the parameter values.  Each request
+ * produces the body bytes and request parameters that RowManagerImpl hands to the transport.
+ *
+ * Run with: ./gradlew :marklogic-client-api:jmh -PjmhIncludes=PreparedPlanBenchmark
+ * and add -prof gc through jmh.profilers to compare gc.alloc.rate.norm, the bytes allocated per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreparedPlanBenchmark {
+  private RowManager rowMgr;
+  private Plan       prepared;
+  private int        request = 0;
+
+  @Setup
+  public void setup() {
+    rowMgr   = new RowManagerImpl(null);
+    prepared = rowMgr.newPreparedPlan(buildPlan(rowMgr.newPlanBuilder()));
+  }
+
+  private static PlanBuilder.ModifyPlan buildPlan(PlanBuilder op) {
+    return op.fromView("opticUnitTest", "musician")
+      .joinInner(
+        op.fromView("opticUnitTest", "album"),
+        op.on(op.viewCol("musician", "name"), op.viewCol("album", "musician"))
+      )
+      .where(op.and(
+        op.eq(op.viewCol("musician", "lastName"), op.param("lastName")),
+        op.ge(op.viewCol("album", "year"), op.param("minYear"))
+      ))
+      .select(
+        op.viewCol("musician", "lastName"), op.viewCol("musician", "firstName"),
+        op.viewCol("album", "name"), op.viewCol("album", "year")
+      )
+      .orderBy(op.desc(op.viewCol("album", "year")))
+      .offset(op.param("offset"))
+      .limit(50);
+  }
+
+  @Benchmark
+  public void buildPerRequest(Blackhole blackhole) throws IOException {
+    int n = request++;
+    Plan plan = buildPlan(rowMgr.newPlanBuilder())
+      .bindParam("lastName", "Lastname"+(n % 100))
+      .bindParam("minYear", 1950 + n % 70)
+      .bindParam("offset", n % 10);
+    consumeRequest(plan, blackhole);
+  }
+
+  @Benchmark
+  public void preparedPlan(Blackhole blackhole) throws IOException {
+    int n = request++;
+    Plan plan = prepared
+      .bindParam("lastName", "Lastname"+(n % 100))
+      .bindParam("minYear", 1950 + n % 70)
+      .bindParam("offset", n % 10);
+    consumeRequest(plan, blackhole);
+  }
+
+  // what submitPlan() produces for the transport: the request parameters and the body bytes
+  private static void consumeRequest(Plan plan, Blackhole blackhole) throws IOException {
+    PlanBuilderBaseImpl.RequestPlan requestPlan = (PlanBuilderBaseImpl.RequestPlan) plan;
+    blackhole.consume(new RowsParamsBuilder(requestPlan).withRowFormat("json").getRequestParameters());
+    blackhole.consume(bodyBytes(requestPlan.getHandle()));
+  }
+  private static byte[] bodyBytes(AbstractWriteHandle handle) throws IOException {
+    Object content = HandleAccessor.sendContent(handle);
+    if (content instanceof byte[]) {
+      return (byte[]) content;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((OutputStreamSender) content).write(out);
+    return out.toByteArray();
+  }
+}
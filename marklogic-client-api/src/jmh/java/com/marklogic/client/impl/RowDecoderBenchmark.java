@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marklogic.client.row.RowManager.RowSetPart;
+import com.marklogic.client.row.RowManager.RowStructure;
+import com.marklogic.client.row.RowRecord;
+
+/**
+ * Compares decoding the row parts of RowManager.resultRows with RowDecoder against the tree-based decoding it
+ * replaced, which built a JsonNode tree with a new ObjectMapper and HashMaps for the values, datatypes, and kinds
+ * of every row.  The rows use the default datatype and row structure styles.
+ *
+ * Run with: ./gradlew :marklogic-client-api:jmh -PjmhIncludes=RowDecoderBenchmark
+ * and add -prof gc through jmh.profilers to compare the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowDecoderBenchmark {
+  private static final String[] COLUMNS = {
+    "opticUnitTest.musician.lastName", "opticUnitTest.musician.firstName", "opticUnitTest.musician.dob",
+    "opticUnitTest.album.name", "opticUnitTest.album.year", "opticUnitTest.album.rating",
+    "opticUnitTest.album.isLive", "opticUnitTest.album.trackCount"
+  };
+
+  @Param({"1000"})
+  public int rowCount;
+
+  private byte[][] rows;
+
+  @Setup
+  public void setup() {
+    rows = new byte[rowCount][];
+    for (int i=0; i < rowCount; i++) {
+      String row = "{" +
+        binding(COLUMNS[0], "xs:string", "\"Lastname"+i+"\"") + "," +
+        binding(COLUMNS[1], "xs:string", "\"Firstname"+i+"\"") + "," +
+        binding(COLUMNS[2], "xs:date",   "\"19"+(10 + i % 90)+"-08-04\"") + "," +
+        binding(COLUMNS[3], "xs:string", "\"Album number "+i+"\"") + "," +
+        binding(COLUMNS[4], "xs:int",    Integer.toString(1950 + i % 70)) + "," +
+        binding(COLUMNS[5], "xs:double", Double.toString((i % 50) / 10.0)) + "," +
+        binding(COLUMNS[6], "xs:boolean", (i % 2 == 0) ? "true" : "false") + "," +
+        binding(COLUMNS[7], "xs:long",   Long.toString(10L + i)) +
+        "}";
+      rows[i] = row.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String binding(String column, String type, String value) {
+    return "\""+column+"\":{\"type\":\""+type+"\",\"value\":"+value+"}";
+  }
+
+  @Benchmark
+  public void streamingDecoder(Blackhole blackhole) throws IOException {
+    RowDecoder decoder = new RowDecoder(RowSetPart.ROWS, RowStructure.OBJECT, COLUMNS, null);
+    for (byte[] row: rows) {
+      RowDecoder.DecodedRow decoded = decoder.decode(new ByteArrayInputStream(row));
+      blackhole.consume(decoded.getValues());
+      blackhole.consume(decoded.getKinds());
+      blackhole.consume(decoded.getDatatypes());
+    }
+  }
+
+  // the decoding RowSetRecord.next() did before RowDecoder
+  @Benchmark
+  public void treePerRow(Blackhole blackhole) throws IOException {
+    for (byte[] row: rows) {
+      Map<String, String>               datatypes = new HashMap<>();
+      Map<String, RowRecord.ColumnKind> kinds     = new HashMap<>();
+      Map<String, Object>               values    = new HashMap<>();
+
+      ObjectMapper rowMapper = new ObjectMapper();
+      JsonNode rowNode = rowMapper.readTree(new ByteArrayInputStream(row));
+
+      Iterator<Map.Entry<String,JsonNode>> fields = rowNode.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String,JsonNode> field = fields.next();
+        JsonNode binding  = field.getValue();
+        String   datatype = binding.get("type").asText();
+        datatypes.put(field.getKey(), datatype);
+        RowRecord.ColumnKind columnKind = RowDecoder.getColumnKind(datatype, null);
+        kinds.put(field.getKey(), columnKind);
+        JsonNode value = binding.get("value");
+        values.put(field.getKey(), (columnKind == RowRecord.ColumnKind.NULL || value.isNull()) ? null : value);
+      }
+      blackhole.consume(values);
+      blackhole.consume(kinds);
+      blackhole.consume(datatypes);
+    }
+  }
+}
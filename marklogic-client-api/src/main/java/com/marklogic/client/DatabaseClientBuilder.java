@@ -214,6 +214,16 @@ public class DatabaseClientBuilder {
 		return this;
 	}
 
+	/**
+	 * @param balanceHosts whether the client spreads its requests over the hosts of the cluster, as discovered from
+	 *                     the forest configuration, instead of sending them all to the configured host
+	 * @return
+	 */
+	public DatabaseClientBuilder withBalanceHosts(boolean balanceHosts) {
+		props.put(PREFIX + "balanceHosts", balanceHosts);
+		return this;
+	}
+
 	public DatabaseClientBuilder withCloudApiKey(String cloudApiKey) {
 		props.put(PREFIX + "cloud.apiKey", cloudApiKey);
 		return this;
@@ -1286,6 +1286,9 @@ public class DatabaseClientFactory {
 	 *     <li>marklogic.client.basePath = must be a String</li>
 	 *     <li>marklogic.client.database = must be a String</li>
 	 *     <li>marklogic.client.connectionType = must be a String or instance of {@code ConnectionType}</li>
+	 *     <li>marklogic.client.balanceHosts = can be a String or Boolean; if "true" or true, the client discovers
+	 *     the hosts of the cluster from the forest configuration and spreads its requests over them, skipping hosts
+	 *     that can't be reached; requires a connection type of DIRECT.</li>
 	 *     <li>marklogic.client.disableGzippedResponses = can be a String or Boolean; if "true" or true, the client
 	 *     will not send an "Accept-Encoding" request header with a value of "gzip" on each request; supported
 	 *     since 6.3.0.</li>
@@ -1673,6 +1676,7 @@ public class DatabaseClientFactory {
     private           Authentication        authentication;
     private           String                externalName;
     private           DatabaseClient.ConnectionType connectionType;
+    private           boolean               balanceHosts;
 
     transient private SecurityContext       securityContext;
     transient private HandleFactoryRegistry handleRegistry =
@@ -1930,6 +1934,25 @@ public class DatabaseClientFactory {
     public void setConnectionType(DatabaseClient.ConnectionType connectionType) {
       this.connectionType = connectionType;
     }
+    /**
+     * Identifies whether the client spreads its requests over the hosts
+     * of the cluster instead of sending them all to the configured host.
+     * @return	whether requests are balanced over the hosts
+     */
+    public boolean isBalanceHosts() {
+      return balanceHosts;
+    }
+    /**
+     * Specify whether the client spreads its requests over the hosts of the
+     * cluster, which are discovered from the forest configuration of the
+     * database. Each request goes to a less busy healthy host, and a host that
+     * can't be reached is skipped for a while. Requests in a multi-statement
+     * transaction still go to the configured host. Requires a direct connection.
+     * @param balanceHosts	whether to balance requests over the hosts
+     */
+    public void setBalanceHosts(boolean balanceHosts) {
+      this.balanceHosts = balanceHosts;
+    }
 
     /**
      * Returns the registry for associating
@@ -1969,6 +1992,9 @@ public class DatabaseClientFactory {
             (securityContext != null ? securityContext : makeSecurityContext(user, password, authentication, context, verifier)),
             connectionType);
         client.setHandleRegistry(getHandleRegistry().copy());
+        if (balanceHosts) {
+          client.balanceHosts();
+        }
         return client;
     }
   }
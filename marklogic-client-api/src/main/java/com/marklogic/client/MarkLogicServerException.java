@@ -60,10 +60,10 @@ public abstract class MarkLogicServerException extends RuntimeException {
 
   /**
    * Gets the HTTP status code (if any) associated with the error on the server.
-   * @return  the status code
+   * @return  the status code, or 0 if the error has no status code
    */
   public int getServerStatusCode() {
-    return (failedRequest == null) ? null : failedRequest.getStatusCode();
+    return (failedRequest == null) ? 0 : failedRequest.getStatusCode();
   }
   /**
    * Gets the HTTP status message (if any) associated with the error on the server.
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.net.SocketTimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.marklogic.client.MarkLogicServerException;
+
+/**
+ * A {@link ConcurrencyController} that uses additive increase and
+ * multiplicative decrease, the scheme TCP uses to find the capacity of a
+ * network path.
+ *
+ * <p>The controller looks at requests in windows of as many completed
+ * requests as the current limit, so each change has taken effect before the
+ * next one is made. At the end of each window it</p>
+ * <ul>
+ *   <li>multiplies the limit by the backoff ratio if any request failed
+ *   because the server was overloaded (a 502, 503 or 504 status, which the
+ *   client only reports after its own retries are exhausted, or a socket
+ *   timeout)</li>
+ *   <li>otherwise lowers the limit by 10% if the recent latency exceeds the
+ *   baseline latency by more than the latency tolerance, since requests that
+ *   wait longer without failing mean the server is queueing them, which is
+ *   also where the client's retries of 503 responses show up</li>
+ *   <li>otherwise raises the limit by one thread</li>
+ * </ul>
+ *
+ * <p>The baseline is the lowest latency seen, drifting slowly toward the
+ * recent latency so that a change in the workload, such as larger documents,
+ * isn't mistaken for overload for the rest of the job.</p>
+ *
+ * <p>Failures other than overload say nothing about the server's capacity
+ * and don't affect the limit.</p>
+ */
+public class AimdConcurrencyController implements ConcurrencyController {
+  private static Logger logger = LoggerFactory.getLogger(AimdConcurrencyController.class);
+  private static final double RECENT_LATENCY_WEIGHT = 0.2;
+  private static final double BASELINE_DRIFT = 0.05;
+  private static final double LATENCY_BACKOFF_RATIO = 0.9;
+
+  private int minLimit = 1;
+  private int maxLimit = -1;
+  private double backoffRatio = 0.5;
+  private double latencyTolerance = 2.0;
+
+  private volatile int limit = 1;
+  private int effectiveMaxLimit = Integer.MAX_VALUE;
+  private double recentLatency = -1;
+  private double baselineLatency = -1;
+  private int windowCompletions = 0;
+  private boolean windowOverloaded = false;
+
+  /**
+   * @param minLimit the fewest threads to use -- must be 1 or greater; the default is 1
+   * @return this instance (for method chaining)
+   */
+  public AimdConcurrencyController withMinLimit(int minLimit) {
+    if ( minLimit <= 0 ) throw new IllegalArgumentException("minLimit must be 1 or greater");
+    this.minLimit = minLimit;
+    return this;
+  }
+
+  /**
+   * @return the fewest threads to use
+   */
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  /**
+   * @param maxLimit the most threads to use; a value of 0 or less, the
+   *   default, means four times the batcher's configured thread count
+   * @return this instance (for method chaining)
+   */
+  public AimdConcurrencyController withMaxLimit(int maxLimit) {
+    this.maxLimit = maxLimit;
+    return this;
+  }
+
+  /**
+   * @return the most threads to use, or a value of 0 or less for four times
+   *   the batcher's configured thread count
+   */
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  /**
+   * @param backoffRatio the factor the limit is multiplied by when the server
+   *   reports overload -- must be greater than 0 and less than 1; the default
+   *   is 0.5
+   * @return this instance (for method chaining)
+   */
+  public AimdConcurrencyController withBackoffRatio(double backoffRatio) {
+    if ( backoffRatio <= 0 || backoffRatio >= 1 ) {
+      throw new IllegalArgumentException("backoffRatio must be greater than 0 and less than 1");
+    }
+    this.backoffRatio = backoffRatio;
+    return this;
+  }
+
+  /**
+   * @return the factor the limit is multiplied by when the server reports overload
+   */
+  public double getBackoffRatio() {
+    return backoffRatio;
+  }
+
+  /**
+   * @param latencyTolerance how many times the baseline latency the recent
+   *   latency may reach before the limit is lowered -- must be greater than
+   *   1; the default is 2
+   * @return this instance (for method chaining)
+   */
+  public AimdConcurrencyController withLatencyTolerance(double latencyTolerance) {
+    if ( latencyTolerance <= 1 ) throw new IllegalArgumentException("latencyTolerance must be greater than 1");
+    this.latencyTolerance = latencyTolerance;
+    return this;
+  }
+
+  /**
+   * @return how many times the baseline latency the recent latency may reach
+   *   before the limit is lowered
+   */
+  public double getLatencyTolerance() {
+    return latencyTolerance;
+  }
+
+  @Override
+  public synchronized void initialize(int threadCount) {
+    effectiveMaxLimit = (maxLimit > 0) ? Math.max(maxLimit, minLimit) : Math.max(threadCount * 4, minLimit);
+    limit = Math.min(Math.max(threadCount, minLimit), effectiveMaxLimit);
+    recentLatency = -1;
+    baselineLatency = -1;
+    windowCompletions = 0;
+    windowOverloaded = false;
+  }
+
+  @Override
+  public synchronized void onRequestComplete(String host, long latencyMillis, Throwable failure) {
+    if ( failure != null ) {
+      if ( !isOverloaded(failure) ) return;
+      windowOverloaded = true;
+    } else {
+      double latency = Math.max(1, latencyMillis);
+      recentLatency = (recentLatency < 0) ? latency :
+        recentLatency + RECENT_LATENCY_WEIGHT * (latency - recentLatency);
+      baselineLatency = (baselineLatency < 0) ? latency : Math.min(baselineLatency, latency);
+    }
+    if ( ++windowCompletions < limit ) return;
+
+    int newLimit;
+    if ( windowOverloaded ) {
+      newLimit = (int) (limit * backoffRatio);
+    } else if ( recentLatency > baselineLatency * latencyTolerance ) {
+      newLimit = (int) (limit * LATENCY_BACKOFF_RATIO);
+    } else {
+      newLimit = limit + 1;
+    }
+    newLimit = Math.min(Math.max(newLimit, minLimit), effectiveMaxLimit);
+    if ( newLimit != limit ) {
+      logger.debug("changing limit from {} to {}, overloaded={}, recent latency={}ms, baseline latency={}ms",
+        limit, newLimit, windowOverloaded, (long) recentLatency, (long) baselineLatency);
+      limit = newLimit;
+    }
+    if ( baselineLatency > 0 ) baselineLatency += BASELINE_DRIFT * (recentLatency - baselineLatency);
+    windowCompletions = 0;
+    windowOverloaded = false;
+  }
+
+  @Override
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Whether the failure, or one of its causes, shows the server couldn't keep up.
+   */
+  static boolean isOverloaded(Throwable failure) {
+    for ( Throwable t = failure; t != null; t = (t.getCause() == t) ? null : t.getCause() ) {
+      if ( t instanceof SocketTimeoutException ) return true;
+      if ( t instanceof MarkLogicServerException ) {
+        int status = ((MarkLogicServerException) t).getServerStatusCode();
+        if ( status == 502 || status == 503 || status == 504 ) return true;
+      }
+    }
+    return false;
+  }
+}
@@ -87,6 +87,27 @@ public interface Batcher {
    */
   int getThreadCount();
 
+  /**
+   * <p>Sets a controller that raises or lowers the thread count while the job
+   * runs, based on the latency of the job's requests and on the server
+   * reporting overload. The thread count set with {@link #withThreadCount} is
+   * the starting point, and {@link #getThreadCount} returns the current
+   * count. Without a controller, the default, the thread count only changes
+   * when withThreadCount is called.</p>
+   *
+   * <p>This method cannot be called after the job has started.</p>
+   *
+   * @param controller the controller, such as an {@link AimdConcurrencyController},
+   *   or null to keep the thread count fixed
+   * @return this instance (for method chaining)
+   */
+  Batcher withConcurrencyController(ConcurrencyController controller);
+
+  /**
+   * @return the concurrency controller, or null if the thread count is fixed
+   */
+  ConcurrencyController getConcurrencyController();
+
   /**
    * @return the forest configuration in use by this job
    */
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Persists the checkpoint of a job so a job that stops before it finishes
+ * can be restarted where it left off rather than from the beginning.  A
+ * batcher saves its checkpoint periodically while the job runs and once more
+ * when the job is stopped, always overwriting the previous one, and loads it
+ * when a new job with the same store is started.  When the job completes
+ * without leaving any work undone, the batcher clears the checkpoint so the
+ * next job with the store starts from the beginning.
+ *
+ * <p>The checkpoint is an opaque JSON string produced by the batcher, so an
+ * implementation only needs to store and return it unchanged, for example in
+ * a file ({@link FileCheckpointStore}), a database row, or a document.  Saves
+ * are made from the batcher's threads, one at a time.</p>
+ *
+ * @see QueryBatcher#withCheckpointStore(CheckpointStore)
+ */
+public interface CheckpointStore {
+  /**
+   * Replaces the stored checkpoint.
+   *
+   * @param checkpoint the checkpoint as JSON
+   */
+  void save(String checkpoint);
+
+  /**
+   * @return the last checkpoint saved, or null if there is none
+   */
+  String load();
+
+  /**
+   * Removes the stored checkpoint, after which {@link #load()} returns null.
+   */
+  void clear();
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Decides how many threads a {@link Batcher} should use while its job runs.
+ * The batcher reports the outcome of each request it sends to the server,
+ * then resizes its thread pool to {@link #getLimit()} whenever the limit
+ * changes, so a long job can settle on the concurrency the cluster actually
+ * sustains instead of a thread count tuned by hand for each environment.
+ *
+ * <p>Requests are reported from the batcher's threads concurrently, so
+ * implementations must be thread-safe. {@link AimdConcurrencyController} is
+ * the ready-made implementation.</p>
+ *
+ * @see Batcher#withConcurrencyController(ConcurrencyController)
+ */
+public interface ConcurrencyController {
+  /**
+   * Called once as the job starts.
+   *
+   * @param threadCount the thread count the batcher was configured with,
+   *   which is the starting limit
+   */
+  void initialize(int threadCount);
+
+  /**
+   * Called after each request the batcher sends to the server completes,
+   * including the time spent in any retries by the client, but not the time
+   * spent in success or failure listeners.
+   *
+   * @param host the host the request was sent to
+   * @param latencyMillis the time the request took, in milliseconds
+   * @param failure the error the request failed with, or null if it succeeded
+   */
+  void onRequestComplete(String host, long latencyMillis, Throwable failure);
+
+  /**
+   * @return the number of threads the batcher should use now, 1 or greater
+   */
+  int getLimit();
+}
@@ -18,8 +18,13 @@ package com.marklogic.client.datamovement;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.query.*;
+import com.marklogic.client.row.RowColumnBatch;
+import com.marklogic.client.row.RowManager;
+import com.marklogic.client.row.RowRecord;
+import com.marklogic.client.row.RowSet;
 
 import java.util.Iterator;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * <p>DataMovementManager is the starting point for getting new instances of
@@ -218,6 +223,36 @@ public interface DataMovementManager {
    */
   <T> RowBatcher<T> newRowBatcher(ContentHandle<T> rowsHandle);
 
+  /**
+   * Create a new RowBatcher instance to export all of the rows
+   * from a view in batches, with each batch streamed as a single body
+   * in the specified format and passed to the success listeners as a
+   * RowSet that decodes each row as it is iterated.
+   *
+   * <p>The RowSet is closed after the success listeners return, so
+   * listeners must consume the rows before returning.  The datatype and
+   * row structure styles of the RowManager for the batcher apply.</p>
+   *
+   * @param format the format for transporting each batch of rows
+   * @return the new RowBatcher instance
+   */
+  RowBatcher<RowSet<RowRecord>> newRowBatcher(RowManager.RowStreamFormat format);
+
+  /**
+   * Create a new RowBatcher instance to export all of the rows
+   * from a view in batches, with each batch streamed as a single body
+   * and passed to the success listeners as a RowSet of
+   * {@link RowColumnBatch} in columnar form.
+   *
+   * <p>A RowColumnBatch holds at most the batch size of the RowBatcher
+   * in rows, so a batch is usually a single RowColumnBatch.  The RowSet
+   * is closed after the success listeners return, but the column batches
+   * remain usable.</p>
+   *
+   * @return the new RowBatcher instance
+   */
+  RowBatcher<RowSet<RowColumnBatch>> newRowColumnBatcher();
+
   /**
    * Update the ForestConfiguration with the latest from the server.
    *
@@ -232,4 +267,24 @@ public interface DataMovementManager {
    * @return the connection type
    */
   public DatabaseClient.ConnectionType getConnectionType();
+
+  /**
+   * Sets the factory for the threads of the jobs started after this call.
+   * Batches spend most of their time waiting on the server, so on Java 21
+   * and later a factory from {@link com.marklogic.client.util.VirtualThreads}
+   * lets a job run with a thread count in the thousands without an operating
+   * system thread for each. Each job still uses a pool of its thread count,
+   * so the factory only changes what kind of threads fill the pool. The
+   * default, null, uses the platform threads of
+   * {@link java.util.concurrent.Executors#defaultThreadFactory()}.
+   *
+   * @param threadFactory the thread factory, or null for the default
+   * @return this instance (for method chaining)
+   */
+  DataMovementManager withThreadFactory(ThreadFactory threadFactory);
+
+  /**
+   * @return the thread factory for new jobs, or null for the default
+   */
+  ThreadFactory getThreadFactory();
 }
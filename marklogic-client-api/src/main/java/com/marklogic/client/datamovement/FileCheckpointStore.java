@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import com.marklogic.client.MarkLogicIOException;
+
+/**
+ * A {@link CheckpointStore} that keeps the checkpoint in a local file.  Each
+ * save writes a temporary file next to the checkpoint file and then renames
+ * it over the checkpoint file, so a process that dies during a save leaves
+ * the previous checkpoint intact.
+ *
+ * <pre>{@code
+ *     QueryBatcher qb = moveMgr.newQueryBatcher(query)
+ *       .withCheckpointStore(new FileCheckpointStore(Paths.get("export.checkpoint")))
+ *       .onUrisReady(new ExportListener().onDocumentReady(...));
+ * }</pre>
+ */
+public class FileCheckpointStore implements CheckpointStore {
+  private final Path file;
+
+  /**
+   * @param file the checkpoint file, which doesn't need to exist yet; its
+   *   directory must exist
+   */
+  public FileCheckpointStore(Path file) {
+    if ( file == null ) throw new IllegalArgumentException("file must not be null");
+    this.file = file.toAbsolutePath();
+  }
+
+  /**
+   * @return the checkpoint file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  @Override
+  public synchronized void save(String checkpoint) {
+    if ( checkpoint == null ) throw new IllegalArgumentException("checkpoint must not be null");
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      Files.write(temp, checkpoint.getBytes(StandardCharsets.UTF_8));
+      try {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      throw new MarkLogicIOException("Unable to save checkpoint to " + file, e);
+    }
+  }
+
+  @Override
+  public synchronized String load() {
+    if ( !Files.exists(file) ) return null;
+    try {
+      return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new MarkLogicIOException("Unable to load checkpoint from " + file, e);
+    }
+  }
+
+  @Override
+  public synchronized void clear() {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      throw new MarkLogicIOException("Unable to clear checkpoint " + file, e);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Predicts the forest the server will assign a new document to, so that
+ * {@link WriteBatcher} can group documents by the host of that forest and
+ * send each batch straight to it instead of having the receiving host forward
+ * documents to the hosts that own them.
+ *
+ * <p>The policy must mirror the assignment policy configured for the
+ * database. Predictions only affect which host a batch is sent to; the
+ * server still decides where each document is stored, so a wrong prediction
+ * costs an extra hop but never misplaces a document.</p>
+ *
+ * <p>No implementation of the server's bucket or legacy assignment policy is
+ * provided. Both hash the document uri in a way the server doesn't document,
+ * so a client-side copy could silently disagree with the server. Implement
+ * this interface when the application knows where its documents go, for
+ * example when each uri prefix is loaded into forests on one host.</p>
+ *
+ * <p>Only the documents that share a batch with others for the same host
+ * benefit, so routing works best with a batchSize small enough that each
+ * host's batches still fill quickly.</p>
+ *
+ * @see WriteBatcher#withForestAssignment(ForestAssignmentPolicy)
+ */
+@FunctionalInterface
+public interface ForestAssignmentPolicy {
+  /**
+   * Returns the forest the server is expected to assign the document to.
+   *
+   * @param uri the uri of the document being written
+   * @param forests the updateable forests of the database, in the order
+   *   returned by the {@link ForestConfiguration}
+   * @return one of forests, or null if the forest can't be predicted, in
+   *   which case the document is batched for the next host in the rotation
+   */
+  Forest assignForest(String uri, Forest[] forests);
+}
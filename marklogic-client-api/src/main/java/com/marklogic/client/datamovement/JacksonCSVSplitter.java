@@ -19,6 +19,8 @@ package com.marklogic.client.datamovement;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Spliterator;
 import java.util.Spliterators;
@@ -27,6 +29,7 @@ import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -34,6 +37,7 @@ import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvParser;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.datamovement.impl.MappedFileChunks;
 import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.impl.DocumentWriteOperationImpl;
 import com.marklogic.client.io.JacksonHandle;
@@ -47,6 +51,7 @@ public class JacksonCSVSplitter implements Splitter<JacksonHandle> {
     private CsvMapper csvMapper;
     private long count = 0;
     private ArrayNode headers = null;
+    private long chunkSize = MappedFileChunks.DEFAULT_CHUNK_SIZE;
     
     /**
      * The CsvMapper configured for the current instance.
@@ -76,6 +81,28 @@ public class JacksonCSVSplitter implements Splitter<JacksonHandle> {
         return this;
     }
     
+    /**
+     * Used to set the target size in bytes of the ranges into which a file is cut when splitting a Path.
+     * Each range ends at the end of a record, so ranges can be somewhat larger.
+     * @param chunkSize the chunk size, which must be positive and less than 2 GB.
+     * @return an instance of JacksonCSVSplitter with the chunk size set to the parameter.
+     */
+    public JacksonCSVSplitter withChunkSize(long chunkSize) {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be positive and less than 2 GB.");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * The target size in bytes of the ranges into which a file is cut when splitting a Path.
+     * @return the chunk size for the current instance. The default is 8 MB.
+     */
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
     /**
      * The CsvSchema configured for the current instance.
      * @return the CsvSchema for the current instance.
@@ -130,6 +157,76 @@ public class JacksonCSVSplitter implements Splitter<JacksonHandle> {
     }
 
 
+    /**
+     * Takes the path of an uncompressed CSV file in UTF-8 and converts it into a parallel stream of JacksonHandle.
+     * The file is memory-mapped and cut into ranges of about the chunk size that end at a record boundary,
+     * so a newline inside a quoted value never splits a record, and a parallel stream parses the ranges on all
+     * cores. The records keep their order in the file. When the schema uses a header, the header is read
+     * first and applies to every range. Close the stream to close the file.
+     * @param path the path of the file.
+     * @return a parallel stream of JacksonHandle.
+     * @throws IOException if the file cannot be read
+     */
+    public Stream<JacksonHandle> split(Path path) throws IOException {
+        return splitRecords(path, (number, node) -> new JacksonHandle(node));
+    }
+
+    private <R> Stream<R> splitRecords(Path path, MappedFileChunks.NumberedRecordMapper<JsonNode, R> mapper)
+            throws IOException {
+        ObjectReader objectReader = configureObjReader();
+        CsvSchema schema = configureFirstLineSchema();
+
+        MappedFileChunks chunks = MappedFileChunks.open(path);
+        try {
+            long[] boundaries = chunks.csvBoundaries(
+                    getChunkSize(), schema.getQuoteChar(), schema.getEscapeChar(), schema.usesHeader());
+            if (schema.usesHeader()) {
+                schema = readHeader(objectReader, chunks, boundaries).withoutHeader();
+                boundaries = Arrays.copyOfRange(boundaries, 1, boundaries.length);
+            }
+            ObjectReader rangeReader = objectReader.with(schema);
+            return chunks.streamNumbered(boundaries, input -> readRange(rangeReader, input), mapper, this::addCount);
+        } catch (IOException | RuntimeException e) {
+            chunks.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the path of an uncompressed CSV file in UTF-8 and the name of the file, then converts it into a
+     * parallel stream of DocumentWriteOperation as {@link #split(Path)} does. Each record is numbered by the byte
+     * offset of its range plus its position in the range, so the numbers are unique and the same on every run
+     * with the same chunk size, whichever thread parses the range, but they are not consecutive. A user-defined
+     * UriMaker is called from the threads of the stream, so it must be thread-safe. Close the stream to close
+     * the file.
+     * @param path the path of the file.
+     * @param splitFilename the name of the file, including name and extension. It is used to generate URLs for
+     *                  split files.The splitFilename could either be provided here or in user-defined UriMaker.
+     * @return a parallel stream of DocumentWriteOperation.
+     * @throws IOException if the file cannot be read
+     */
+    public Stream<DocumentWriteOperation> splitWriteOperations(Path path, String splitFilename) throws IOException {
+        if (getUriMaker() == null) {
+            JacksonCSVSplitter.UriMakerImpl uriMaker = new UriMakerImpl();
+            setUriMaker(uriMaker);
+        }
+
+        if (splitFilename != null) {
+            getUriMaker().setSplitFilename(splitFilename);
+        }
+
+        JacksonCSVSplitter.UriMaker pathUriMaker = getUriMaker();
+        return splitRecords(path, (number, node) -> {
+            JacksonHandle handle = new JacksonHandle(node);
+            return new DocumentWriteOperationImpl(
+                    DocumentWriteOperation.OperationType.DOCUMENT_WRITE,
+                    pathUriMaker.makeUri(number, handle),
+                    null,
+                    handle
+            );
+        });
+    }
+
     /**
      * Takes the input stream and converts it into a stream of DocumentWriteOperation by setting the schema
      * and wrapping the JsonNode into DocumentWriteOperation.
@@ -234,16 +331,51 @@ public class JacksonCSVSplitter implements Splitter<JacksonHandle> {
     private void incrementCount() {
         this.count++;
     }
+
+    private synchronized void addCount(long records) {
+        this.count += records;
+    }
+
+    // the schema of the header record, including the columns that it names
+    private CsvSchema readHeader(ObjectReader objectReader, MappedFileChunks chunks, long[] boundaries) throws IOException {
+        if (boundaries.length < 2) {
+            throw new MarkLogicIOException("No header found.");
+        }
+        try (MappingIterator<JsonNode> headerItr =
+                 objectReader.readValues(chunks.openRange(boundaries[0], boundaries[1]))) {
+            headerItr.hasNext();
+            CsvSchema headerSchema = (CsvSchema) headerItr.getParser().getSchema();
+            if (getCsvSchema() == null) {
+                this.headers = new ObjectMapper().createArrayNode();
+                for (CsvSchema.Column column : headerSchema) {
+                    headers.add(column.getName());
+                }
+            }
+            return headerSchema;
+        }
+    }
+
+    private Iterator<JsonNode> readRange(ObjectReader rangeReader, InputStream input) {
+        try {
+            return rangeReader.readValues(input);
+        } catch (IOException e) {
+            throw new MarkLogicIOException(e);
+        }
+    }
     
     private ObjectReader configureObjReader() {
         this.count=0;
-        CsvSchema firstLineSchema = getCsvSchema()!=null? getCsvSchema():CsvSchema.emptySchema().withHeader();
+        CsvSchema firstLineSchema = configureFirstLineSchema();
         CsvMapper csvMapper = getCsvMapper()!=null ? getCsvMapper() : configureCsvMapper();
         ObjectReader objectReader = csvMapper.readerFor(JsonNode.class);
         
         return objectReader.with(firstLineSchema);
     }
     
+    private CsvSchema configureFirstLineSchema() {
+        return getCsvSchema()!=null? getCsvSchema():CsvSchema.emptySchema().withHeader();
+    }
+
     private JacksonHandle wrapJacksonHandle(JsonNode content) {
         incrementCount();
         return new JacksonHandle(content);
@@ -54,6 +54,13 @@ public interface JobReport {
    */
   long getFailureBatchesCount();
 
+  /**
+   * {@link WriteBatcher} : gets the number of documents added but not yet written or failed<br>
+   * {@link QueryBatcher} : always 0
+   * @return the number of events waiting to be processed
+   */
+  long getBufferedEventsCount();
+
   //boolean isJobComplete();
 
   /**
@@ -16,13 +16,16 @@
 
 package com.marklogic.client.datamovement;
 
+import com.marklogic.client.datamovement.impl.MappedFileChunks;
 import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.impl.DocumentWriteOperationImpl;
+import com.marklogic.client.io.ByteBufferHandle;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.StringHandle;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.stream.Stream;
 
 /**
@@ -32,6 +35,7 @@ import java.util.stream.Stream;
 public class LineSplitter implements Splitter<StringHandle> {
     private Format format = Format.JSON;
     private long count = 0;
+    private long chunkSize = MappedFileChunks.DEFAULT_CHUNK_SIZE;
 
     /**
      * Returns the document format set to splitter.
@@ -54,6 +58,27 @@ public class LineSplitter implements Splitter<StringHandle> {
         this.format = format;
     }
 
+    /**
+     * Returns the target size in bytes of the ranges into which a file is cut when splitting a Path.
+     * @return the chunk size. The default is 8 MB.
+     */
+    public long getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Used to set the target size in bytes of the ranges into which a file is cut when splitting a Path.
+     * Each range ends at the end of a line, so ranges can be somewhat larger.
+     * @param chunkSize the chunk size, which must be positive and less than 2 GB.
+     */
+    public void setChunkSize(long chunkSize) {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be positive and less than 2 GB.");
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
     /**
      * Used to return the number of objects in the stream.
      * @return the number of objects in the stream.
@@ -106,20 +131,7 @@ public class LineSplitter implements Splitter<StringHandle> {
         }
 
         count = 0;
-        String extension = getFormat().getDefaultExtension();
-        if (getUriMaker() == null) {
-            LineSplitter.UriMakerImpl uriMaker = new LineSplitter.UriMakerImpl();
-            uriMaker.setSplitFilename(splitFilename);
-            uriMaker.setExtension(extension);
-            setUriMaker(uriMaker);
-        } else {
-            if (splitFilename != null) {
-                getUriMaker().setSplitFilename(splitFilename);
-            }
-            if (getUriMaker() instanceof LineSplitter.UriMakerImpl) {
-                ((LineSplitter.UriMakerImpl)getUriMaker()).setExtension(extension);
-            }
-        }
+        configureUriMaker(splitFilename);
 
         return new BufferedReader(new InputStreamReader(input))
                 .lines()
@@ -177,6 +189,133 @@ public class LineSplitter implements Splitter<StringHandle> {
                 });
     }
 
+    /**
+     * Takes the path of an uncompressed line-delimited file and converts it into a parallel stream of StringHandle.
+     * The file is memory-mapped and cut into ranges of about the chunk size that end at a line break, and a parallel
+     * stream parses the ranges on all cores. The lines keep their order in the file. Close the stream to close the
+     * file.
+     * @param path is the path of the file.
+     * @return a parallel stream of StringHandle.
+     * @throws IOException if the file cannot be read
+     */
+    public Stream<StringHandle> split(Path path) throws IOException {
+        return split(path, null);
+    }
+
+    /**
+     * Takes the path of an uncompressed line-delimited file and converts it into a parallel stream of StringHandle.
+     * The file is memory-mapped and cut into ranges of about the chunk size that end at a line break, and a parallel
+     * stream parses the ranges on all cores. The lines keep their order in the file. Close the stream to close the
+     * file.
+     * @param path is the path of the file.
+     * @param charset is the encoding scheme the document uses, which must encode a line break as the same
+     *                single byte as ASCII does, as UTF-8 does.
+     * @return a parallel stream of StringHandle.
+     * @throws IOException if the file cannot be read
+     */
+    public Stream<StringHandle> split(Path path, Charset charset) throws IOException {
+        return splitLines(path, charset, (number, line) -> new StringHandle(line).withFormat(getFormat()));
+    }
+
+    private <R> Stream<R> splitLines(Path path, Charset charset, MappedFileChunks.NumberedRecordMapper<String, R> mapper)
+        throws IOException {
+        Charset encoding = (charset == null) ? Charset.defaultCharset() : charset;
+        MappedFileChunks.checkAsciiCompatible(encoding);
+
+        MappedFileChunks chunks = MappedFileChunks.open(path);
+        long[] boundaries;
+        try {
+            boundaries = chunks.lineBoundaries(0, getChunkSize());
+        } catch (IOException e) {
+            chunks.close();
+            throw e;
+        }
+
+        count = 0;
+        return chunks.streamNumbered(
+                    boundaries,
+                    input -> new BufferedReader(new InputStreamReader(input, encoding))
+                            .lines()
+                            .filter(line -> line.length() != 0)
+                            .iterator(),
+                    mapper,
+                    this::addCount
+                );
+    }
+
+    /**
+     * Takes the path of an uncompressed line-delimited file and converts it into a parallel stream of
+     * ByteBufferHandle, each of which is a slice of the memory-mapped file rather than a copy of the line.
+     * The bytes of each line are written to the request body as they are, so the file must be encoded in UTF-8.
+     * A line ends at a line feed, with a preceding carriage return removed. The lines keep their order in the file.
+     * Close the stream to close the file.
+     * @param path is the path of the file.
+     * @return a parallel stream of ByteBufferHandle.
+     * @throws IOException if the file cannot be read
+     */
+    public Stream<ByteBufferHandle> splitBuffers(Path path) throws IOException {
+        MappedFileChunks chunks = MappedFileChunks.open(path);
+        long[] boundaries;
+        try {
+            boundaries = chunks.lineBoundaries(0, getChunkSize());
+        } catch (IOException e) {
+            chunks.close();
+            throw e;
+        }
+
+        count = 0;
+        return chunks.streamBuffers(boundaries, MappedFileChunks::lineSlices, this::addCount)
+                .map(line -> new ByteBufferHandle(line).withFormat(getFormat()));
+    }
+
+    /**
+     * Takes the path of an uncompressed line-delimited file and the name of the file, then converts it into a
+     * parallel stream of DocumentWriteOperation as {@link #split(Path)} does. Each line is numbered by the byte
+     * offset of its range plus its position in the range, so the numbers are unique and the same on every run
+     * with the same chunk size, whichever thread parses the range, but they are not consecutive. A user-defined
+     * UriMaker is called from the threads of the stream, so it must be thread-safe. Close the stream to close
+     * the file.
+     * @param path is the path of the file.
+     * @param splitFilename is the name of the input file, including name and extension. It is used to generate URLs for
+     *                  split files. The splitFilename could either be provided here or in user-defined UriMaker.
+     * @return a parallel stream of DocumentWriteOperation.
+     * @throws IOException if the file cannot be read
+     */
+    public Stream<DocumentWriteOperation> splitWriteOperations(Path path, String splitFilename) throws IOException {
+        configureUriMaker(splitFilename);
+        LineSplitter.UriMaker pathUriMaker = getUriMaker();
+        return splitLines(path, null, (number, line) -> {
+            StringHandle handle = new StringHandle(line).withFormat(getFormat());
+            return new DocumentWriteOperationImpl(
+                    DocumentWriteOperation.OperationType.DOCUMENT_WRITE,
+                    pathUriMaker.makeUri(number, handle),
+                    null,
+                    handle
+            );
+        });
+    }
+
+    private void configureUriMaker(String splitFilename) {
+        String extension = getFormat().getDefaultExtension();
+        if (getUriMaker() == null) {
+            LineSplitter.UriMakerImpl uriMaker = new LineSplitter.UriMakerImpl();
+            uriMaker.setSplitFilename(splitFilename);
+            uriMaker.setExtension(extension);
+            setUriMaker(uriMaker);
+        } else {
+            if (splitFilename != null) {
+                getUriMaker().setSplitFilename(splitFilename);
+            }
+            if (getUriMaker() instanceof LineSplitter.UriMakerImpl) {
+                ((LineSplitter.UriMakerImpl)getUriMaker()).setExtension(extension);
+            }
+        }
+    }
+
+    private synchronized void addCount(long lines) {
+        count = count + lines;
+    }
+
     private LineSplitter.UriMaker uriMaker;
 
     /**
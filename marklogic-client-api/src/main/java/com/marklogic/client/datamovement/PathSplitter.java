@@ -18,14 +18,28 @@ package com.marklogic.client.datamovement;
 
 import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.io.marker.AbstractWriteHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -34,16 +48,23 @@ import java.util.zip.ZipInputStream;
 
 /**
  * The PathSplitter utility class splits the Stream of paths into a Stream of AbstractWriteHandles or
- * DocumentWriteOperations suitable for writing in batches.
+ * DocumentWriteOperations suitable for writing in batches. It can also walk a directory and split its files
+ * in parallel into a WriteBatcher with {@link #ingest(Path, WriteBatcher) ingest()}.
  */
 public class PathSplitter {
+    private static Logger logger = LoggerFactory.getLogger(PathSplitter.class);
+
     /**
      * The default splitter key in splitterMap
      */
     public final static String DEFAULT_SPLITTER_KEY = "default";
 
     private Map<String, Splitter<? extends AbstractWriteHandle>> splitterMap;
+    private Map<String, Supplier<? extends Splitter<? extends AbstractWriteHandle>>> splitterSuppliers = new HashMap<>();
+    private Map<String, Splitter<? extends AbstractWriteHandle>> suppliedSplitters = new HashMap<>();
     private Path documentUriAfter;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private Consumer<IngestionProgress> progressListener;
     private final Pattern extensionRegex = Pattern.compile("\\.([^.]+)$");
 
     /**
@@ -57,20 +78,79 @@ public class PathSplitter {
      */
     public PathSplitter() {
         splitterMap = new HashMap<>();
-        splitterMap.put("csv", new JacksonCSVSplitter());
-        splitterMap.put("jsonl", new LineSplitter());
-        splitterMap.put("zip", new ZipSplitter());
-        splitterMap.put("default", new UnarySplitter());
+        withSplitterSupplier("csv", JacksonCSVSplitter::new);
+        withSplitterSupplier("jsonl", LineSplitter::new);
+        withSplitterSupplier("zip", ZipSplitter::new);
+        withSplitterSupplier("default", UnarySplitter::new);
     }
 
     /**
-     * Get the splitterMap of the PathSplitter
+     * Get the splitterMap of the PathSplitter. A splitter put directly into the map is shared by all files
+     * with its extension, so {@link #ingest(Path, WriteBatcher) ingest()} splits those files one at a time.
      * @return the splitterMap of extensions and splitters
      */
     public Map<String, Splitter<? extends AbstractWriteHandle>> getSplitters() {
         return this.splitterMap;
     }
 
+    /**
+     * Registers a supplier of new splitters for an extension and puts one of its splitters into the splitterMap.
+     * As a splitter is not thread-safe, {@link #ingest(Path, WriteBatcher) ingest()} gets a new splitter from
+     * the supplier for each file so the files with the extension are split concurrently. The supplier should
+     * configure the splitters it returns, as changes to the splitter in the splitterMap do not reach them. The
+     * supplier is only used as long as the splitter it put into the splitterMap has not been replaced.
+     * @param extension the file extension, or DEFAULT_SPLITTER_KEY
+     * @param supplier the supplier of new splitters for the extension
+     * @return the PathSplitter with the supplier registered
+     */
+    public PathSplitter withSplitterSupplier(String extension,
+                                             Supplier<? extends Splitter<? extends AbstractWriteHandle>> supplier) {
+        if (extension == null) {
+            throw new IllegalArgumentException("extension must not be null");
+        }
+        if (supplier == null) {
+            throw new IllegalArgumentException("supplier must not be null");
+        }
+        Splitter<? extends AbstractWriteHandle> splitter = supplier.get();
+        splitterSuppliers.put(extension, supplier);
+        suppliedSplitters.put(extension, splitter);
+        splitterMap.put(extension, splitter);
+        return this;
+    }
+
+    /**
+     * Get the number of threads that split files during {@link #ingest(Path, WriteBatcher) ingest()}
+     * @return the parallelism of the PathSplitter
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Sets the number of threads that split files during {@link #ingest(Path, WriteBatcher) ingest()}.
+     * By default, it is the number of available processors.
+     * @param parallelism the number of threads, which must be positive
+     * @return the PathSplitter with the parallelism set
+     */
+    public PathSplitter withParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets a listener that receives the progress of {@link #ingest(Path, WriteBatcher) ingest()} after each file.
+     * The listener is called from the splitting threads, so it should be quick and thread-safe.
+     * @param listener the listener, or null for none
+     * @return the PathSplitter with the listener set
+     */
+    public PathSplitter onIngestionProgress(Consumer<IngestionProgress> listener) {
+        this.progressListener = listener;
+        return this;
+    }
+
     /**
      * Get documentUriAfter, which is the path of the directory to process
      * @return documentUriAfter of the PathSplitter
@@ -147,6 +227,265 @@ public class PathSplitter {
 
     }
 
+    /**
+     * Walks a directory and its subdirectories in parallel, splits each file with the splitter for its
+     * extension and adds the documents to the WriteBatcher. Directories and files are tasks of a
+     * fork-join pool of {@link #getParallelism() parallelism} threads, so idle threads steal work from busy
+     * ones. An uncompressed "jsonl" or "csv" file larger than the chunk size of a LineSplitter or
+     * JacksonCSVSplitter from a supplier is itself split into ranges that are parsed in parallel by the same
+     * pool, and the entries of a "zip" file split by a ZipSplitter from a supplier are inflated in parallel.
+     * The WriteBatcher bounds the pipeline as adding a document waits for space in its buffer. Symbolic
+     * links to directories are not followed. A file that cannot be split is logged and reported in
+     * {@link IngestionProgress#getFailedPaths()}, and the other files are still ingested. After all files
+     * are split, the method flushes the WriteBatcher and waits for the batches to be written.
+     * @param directory the directory to ingest
+     * @param batcher the WriteBatcher that writes the documents
+     * @return the progress of the completed ingestion
+     * @throws IOException if the directory cannot be read
+     */
+    public IngestionProgress ingest(Path directory, WriteBatcher batcher) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory must not be null");
+        }
+        if (batcher == null) {
+            throw new IllegalArgumentException("batcher must not be null");
+        }
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Not a directory: " + directory);
+        }
+
+        IngestionCounters counters = new IngestionCounters();
+        ForkJoinPool pool = new ForkJoinPool(getParallelism());
+        try {
+            pool.invoke(new DirectoryTask(directory, batcher, counters));
+        } finally {
+            pool.shutdown();
+        }
+        batcher.flushAndWait();
+        return counters.snapshot();
+    }
+
+    private void ingestFile(Path path, WriteBatcher batcher, IngestionCounters counters) {
+        try {
+            String extension = getExtension(path);
+            String key = (extension != null && splitterMap.containsKey(extension)) ? extension : DEFAULT_SPLITTER_KEY;
+            Splitter<? extends AbstractWriteHandle> splitter = splitterMap.get(key);
+            if (splitter == null) {
+                return;
+            }
+            long size = Files.size(path);
+            String filename = getFileName(path).toString();
+            long documents;
+            if (splitter == suppliedSplitters.get(key)) {
+                documents = addDocuments(splitterSuppliers.get(key).get(), path, extension, size, filename, batcher);
+            } else {
+                // a shared splitter is not thread-safe, and splitting a range in parallel could reenter it
+                synchronized (splitter) {
+                    documents = addDocuments(splitter, path, extension, -1, filename, batcher);
+                }
+            }
+            counters.add(size, documents);
+        } catch (Exception e) {
+            logger.error("Failed to ingest {}", path, e);
+            counters.fail(path);
+        }
+        if (progressListener != null) {
+            progressListener.accept(counters.snapshot());
+        }
+    }
+
+    // a size of -1 keeps the file from being split in parallel
+    private long addDocuments(Splitter<? extends AbstractWriteHandle> splitter, Path path, String extension,
+                              long size, String filename, WriteBatcher batcher) throws Exception {
+        Stream<DocumentWriteOperation> operations = null;
+        InputStream inputStream = null;
+        if ("jsonl".equals(extension) && splitter instanceof LineSplitter &&
+                size > ((LineSplitter) splitter).getChunkSize()) {
+            operations = ((LineSplitter) splitter).splitWriteOperations(path, filename);
+        } else if ("csv".equals(extension) && splitter instanceof JacksonCSVSplitter &&
+                size > ((JacksonCSVSplitter) splitter).getChunkSize()) {
+            operations = ((JacksonCSVSplitter) splitter).splitWriteOperations(path, filename);
+        } else if ("zip".equals(extension) && splitter instanceof ZipSplitter && size >= 0) {
+            operations = ((ZipSplitter) splitter).splitWriteOperations(path, filename);
+        } else {
+            inputStream = openInputStream(path, extension);
+            operations = splitter.splitWriteOperations(inputStream, filename);
+        }
+
+        LongAdder documents = new LongAdder();
+        try {
+            operations.forEach(operation -> {
+                batcher.add(operation);
+                documents.increment();
+            });
+        } finally {
+            operations.close();
+            // the handles of a UnarySplitter read the stream when the batch is written
+            if (inputStream != null && !(splitter instanceof UnarySplitter)) {
+                inputStream.close();
+            }
+        }
+        return documents.sum();
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+        private final WriteBatcher batcher;
+        private final IngestionCounters counters;
+
+        DirectoryTask(Path directory, WriteBatcher batcher, IngestionCounters counters) {
+            this.directory = directory;
+            this.batcher = batcher;
+            this.counters = counters;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        tasks.add(new DirectoryTask(entry, batcher, counters));
+                    } else if (Files.isRegularFile(entry)) {
+                        tasks.add(new FileTask(entry, batcher, counters));
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Failed to list {}", directory, e);
+                counters.fail(directory);
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private class FileTask extends RecursiveAction {
+        private final Path path;
+        private final WriteBatcher batcher;
+        private final IngestionCounters counters;
+
+        FileTask(Path path, WriteBatcher batcher, IngestionCounters counters) {
+            this.path = path;
+            this.batcher = batcher;
+            this.counters = counters;
+        }
+
+        @Override
+        protected void compute() {
+            ingestFile(path, batcher, counters);
+        }
+    }
+
+    private static class IngestionCounters {
+        private final long startTime = System.nanoTime();
+        private final LongAdder files = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder documents = new LongAdder();
+        private final ConcurrentLinkedQueue<Path> failedPaths = new ConcurrentLinkedQueue<>();
+
+        void add(long fileBytes, long fileDocuments) {
+            bytes.add(fileBytes);
+            documents.add(fileDocuments);
+            files.increment();
+        }
+
+        void fail(Path path) {
+            failedPaths.add(path);
+        }
+
+        IngestionProgress snapshot() {
+            return new IngestionProgress(files.sum(), bytes.sum(), documents.sum(), new ArrayList<>(failedPaths),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+    }
+
+    /**
+     * The progress of {@link #ingest(Path, WriteBatcher) ingest()}, with the rates at which files, bytes and
+     * documents have been processed since the ingestion started.
+     */
+    public static class IngestionProgress {
+        private final long fileCount;
+        private final long byteCount;
+        private final long documentCount;
+        private final List<Path> failedPaths;
+        private final long elapsedMillis;
+
+        IngestionProgress(long fileCount, long byteCount, long documentCount, List<Path> failedPaths,
+                          long elapsedMillis) {
+            this.fileCount = fileCount;
+            this.byteCount = byteCount;
+            this.documentCount = documentCount;
+            this.failedPaths = Collections.unmodifiableList(failedPaths);
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * @return the number of files that have been split
+         */
+        public long getFileCount() {
+            return fileCount;
+        }
+
+        /**
+         * @return the number of bytes in the files that have been split
+         */
+        public long getByteCount() {
+            return byteCount;
+        }
+
+        /**
+         * @return the number of documents added to the WriteBatcher
+         */
+        public long getDocumentCount() {
+            return documentCount;
+        }
+
+        /**
+         * @return the files and directories that could not be read or split
+         */
+        public List<Path> getFailedPaths() {
+            return failedPaths;
+        }
+
+        /**
+         * @return the milliseconds since the ingestion started
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return the number of files split per second
+         */
+        public double getFilesPerSecond() {
+            return perSecond(fileCount);
+        }
+
+        /**
+         * @return the number of bytes split per second
+         */
+        public double getBytesPerSecond() {
+            return perSecond(byteCount);
+        }
+
+        /**
+         * @return the number of documents added per second
+         */
+        public double getDocumentsPerSecond() {
+            return perSecond(documentCount);
+        }
+
+        private double perSecond(long count) {
+            return (elapsedMillis == 0) ? 0 : count * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("files: %d (%.1f/s); bytes: %d (%.1f/s); documents: %d (%.1f/s); failed: %d; elapsed: %d ms",
+                fileCount, getFilesPerSecond(), byteCount, getBytesPerSecond(),
+                documentCount, getDocumentsPerSecond(), failedPaths.size(), elapsedMillis);
+        }
+    }
+
     private Path getFileName(Path path) {
         if (this.documentUriAfter == null) {
             return path;
@@ -159,8 +498,7 @@ public class PathSplitter {
     private String getExtension(Path path) {
         Path fileName = getFileName(path);
         Matcher matcher = extensionRegex.matcher(fileName.toString());
-        matcher.find();
-        return matcher.group(1);
+        return matcher.find() ? matcher.group(1) : null;
     }
 
     private Splitter<? extends AbstractWriteHandle> lookupSplitter(String extension) {
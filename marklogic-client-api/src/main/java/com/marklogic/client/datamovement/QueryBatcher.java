@@ -344,6 +344,114 @@ public interface QueryBatcher extends Batcher {
   @Override
   public QueryBatcher withThreadCount(int threadCount);
 
+  @Override
+  QueryBatcher withConcurrencyController(ConcurrencyController controller);
+
+  /**
+   * Pipelines retrieving uris with processing them for jobs created from a
+   * query.  By default a thread that retrieves a page of uris from a forest
+   * processes the first batch of that page before the next page is
+   * requested, so the next uris query waits for the listeners registered
+   * with onUrisReady.  With prefetch enabled every batch is handed to a
+   * separate pool of listener threads (see {@link #withListenerThreadCount
+   * withListenerThreadCount}) and the query for the next page is sent right
+   * away, as long as no more than the given number of pages per forest are
+   * waiting behind the page whose batches are being processed.  This keeps
+   * listeners such as ExportListener busy reading documents while the uris
+   * for later batches are retrieved, and bounds the uris held in memory to
+   * roughly (pages + 1) * batchSize * docToUriBatchRatio per forest.
+   * Prefetch has no effect for jobs created from an Iterator.
+   *
+   * @param pages the number of uri pages per forest to retrieve ahead of
+   *   processing, or 0 (the default) to disable pipelining
+   * @return this instance for method chaining
+   */
+  QueryBatcher withPrefetch(int pages);
+
+  /**
+   * @return the number of uri pages per forest retrieved ahead of processing,
+   *   or 0 if pipelining is disabled
+   */
+  int getPrefetch();
+
+  /**
+   * Sets the number of threads that run the listeners registered with
+   * onUrisReady when {@link #withPrefetch prefetch} is enabled.  The thread
+   * count set by {@link #withThreadCount withThreadCount} then only applies
+   * to the threads retrieving uris, so the two stages can be sized
+   * separately, for example a thread per forest to retrieve uris and many
+   * more threads to read documents.  If not set, the listener threads
+   * default to the thread count.
+   *
+   * @param listenerThreadCount the number of threads running onUrisReady
+   *   listeners
+   * @return this instance for method chaining
+   */
+  QueryBatcher withListenerThreadCount(int listenerThreadCount);
+
+  /**
+   * @return the number of threads running onUrisReady listeners when
+   *   prefetch is enabled
+   */
+  int getListenerThreadCount();
+
+  /**
+   * Makes a job created from a query resumable.  While the job runs, its
+   * {@link QueryCheckpoint checkpoint} is saved to the store every
+   * {@link #withCheckpointInterval checkpoint interval}, and once more when
+   * the job is stopped.  When every forest of the job is done, the job
+   * clears the checkpoint from the store instead, so the next job with the
+   * store starts from the beginning.  When the job starts, a checkpoint
+   * already in the store (left by an earlier run of the job that died or was
+   * stopped) is loaded and the job resumes from it, skipping the uris that
+   * run already processed, unless {@link #withResumeFrom withResumeFrom}
+   * provides the checkpoint to resume from.  A loaded checkpoint in which
+   * every forest is done is ignored.  Checkpoints are not supported for jobs
+   * created from an Iterator.
+   *
+   * @param store where to save and load the job's checkpoint
+   * @return this instance for method chaining
+   */
+  QueryBatcher withCheckpointStore(CheckpointStore store);
+
+  /**
+   * @return the store the job's checkpoint is saved to, or null
+   */
+  CheckpointStore getCheckpointStore();
+
+  /**
+   * Sets how often the checkpoint is saved to the {@link
+   * #withCheckpointStore checkpoint store} while the job runs.  Defaults to
+   * 30 seconds.  An interval of 0 saves the checkpoint after every batch.
+   *
+   * @param interval the time between saves
+   * @param unit the unit of the interval
+   * @return this instance for method chaining
+   */
+  QueryBatcher withCheckpointInterval(long interval, TimeUnit unit);
+
+  /**
+   * Starts the job from the given checkpoint instead of the beginning.  For
+   * each forest the job skips the uris up to the forest's cursor, and skips
+   * the forests the checkpoint records as done.  If the checkpoint holds a
+   * server timestamp, the job runs with a consistent snapshot at that
+   * timestamp.  The query must be the one the checkpoint was taken from.
+   *
+   * @param checkpoint the checkpoint to resume from, typically loaded with
+   *   {@link QueryCheckpoint#fromJson QueryCheckpoint.fromJson}
+   * @return this instance for method chaining
+   */
+  QueryBatcher withResumeFrom(QueryCheckpoint checkpoint);
+
+  /**
+   * Returns the progress of a job created from a query, which can be saved
+   * and passed to {@link #withResumeFrom withResumeFrom} for a later job.
+   *
+   * @return the current checkpoint, or null if the job hasn't started or was
+   *   created from an Iterator
+   */
+  QueryCheckpoint getCheckpoint();
+
   /**
    * Blocks until the job is complete.
    *
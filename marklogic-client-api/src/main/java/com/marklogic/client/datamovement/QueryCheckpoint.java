@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The progress of a {@link QueryBatcher} job, from which a later job with the
+ * same query can resume.  For each forest the checkpoint holds a cursor: the
+ * last uri up to which every batch from that forest has been processed by
+ * the onUrisReady listeners, and how many uris that covers.  Batches finish
+ * out of order when the job has more than one thread, so a batch that
+ * finished after the cursor isn't part of the checkpoint until all batches
+ * before it finish too, and a resumed job may process up to a page of uris
+ * per forest a second time.  Listeners should therefore be idempotent, as
+ * they already need to be for retries.
+ *
+ * <p>When the job ran with {@link QueryBatcher#withConsistentSnapshot()
+ * consistent snapshot}, the checkpoint also holds the server timestamp, and
+ * a resumed job queries at that same timestamp so the uris line up with the
+ * first run.  The database must still retain fragments for that timestamp
+ * (see the merge timestamp setting) when the job resumes.</p>
+ *
+ * @see QueryBatcher#withCheckpointStore(CheckpointStore)
+ * @see QueryBatcher#withResumeFrom(QueryCheckpoint)
+ */
+public class QueryCheckpoint {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final Long serverTimestamp;
+  private final Map<String,ForestCursor> forests = new LinkedHashMap<>();
+
+  /**
+   * @param serverTimestamp the consistent snapshot timestamp, or null
+   * @param forests the cursor of each forest with progress
+   */
+  public QueryCheckpoint(Long serverTimestamp, Collection<ForestCursor> forests) {
+    this.serverTimestamp = serverTimestamp;
+    if ( forests != null ) {
+      for ( ForestCursor cursor : forests ) {
+        this.forests.put(cursor.getForestName(), cursor);
+      }
+    }
+  }
+
+  /**
+   * @return the consistent snapshot timestamp of the job, or null if the job
+   *   didn't use a consistent snapshot
+   */
+  public Long getServerTimestamp() {
+    return serverTimestamp;
+  }
+
+  /**
+   * @param forestName the name of a forest
+   * @return the cursor of the forest, or null if no batch from the forest
+   *   was processed
+   */
+  public ForestCursor getForest(String forestName) {
+    return forests.get(forestName);
+  }
+
+  /**
+   * @return the cursor of each forest with progress
+   */
+  public Collection<ForestCursor> getForests() {
+    return Collections.unmodifiableCollection(forests.values());
+  }
+
+  /**
+   * @return the checkpoint as the JSON saved to a {@link CheckpointStore}
+   */
+  public String toJson() {
+    ObjectNode root = mapper.createObjectNode();
+    if ( serverTimestamp != null ) root.put("serverTimestamp", serverTimestamp);
+    ArrayNode forestArray = root.putArray("forests");
+    for ( ForestCursor cursor : forests.values() ) {
+      ObjectNode forest = forestArray.addObject();
+      forest.put("forestName", cursor.getForestName());
+      if ( cursor.getAfterUri() != null ) forest.put("afterUri", cursor.getAfterUri());
+      forest.put("urisProcessed", cursor.getUrisProcessed());
+      forest.put("done", cursor.isDone());
+    }
+    try {
+      return mapper.writeValueAsString(root);
+    } catch (JsonProcessingException e) {
+      throw new DataMovementException("Unable to serialize checkpoint", e);
+    }
+  }
+
+  /**
+   * @param json a checkpoint produced by {@link #toJson()}
+   * @return the checkpoint
+   */
+  public static QueryCheckpoint fromJson(String json) {
+    if ( json == null ) throw new IllegalArgumentException("json must not be null");
+    JsonNode root;
+    try {
+      root = mapper.readTree(json);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Invalid checkpoint: " + e.getMessage(), e);
+    }
+    if ( root == null || !root.isObject() || !root.path("forests").isArray() ) {
+      throw new IllegalArgumentException("Invalid checkpoint: expected an object with a forests array");
+    }
+    Long serverTimestamp = root.hasNonNull("serverTimestamp") ? root.get("serverTimestamp").asLong() : null;
+    Collection<ForestCursor> forests = new ArrayList<>();
+    for ( JsonNode forest : root.get("forests") ) {
+      String forestName = forest.path("forestName").asText(null);
+      if ( forestName == null ) throw new IllegalArgumentException("Invalid checkpoint: forest without forestName");
+      forests.add(new ForestCursor(forestName, forest.path("afterUri").asText(null),
+        forest.path("urisProcessed").asLong(0), forest.path("done").asBoolean(false)));
+    }
+    return new QueryCheckpoint(serverTimestamp, forests);
+  }
+
+  /**
+   * The progress of the job in one forest.
+   */
+  public static class ForestCursor {
+    private final String forestName;
+    private final String afterUri;
+    private final long urisProcessed;
+    private final boolean done;
+
+    /**
+     * @param forestName the name of the forest
+     * @param afterUri the last uri up to which every batch was processed
+     * @param urisProcessed the number of uris up to and including afterUri
+     * @param done whether every uri matching the query in the forest was
+     *   processed
+     */
+    public ForestCursor(String forestName, String afterUri, long urisProcessed, boolean done) {
+      if ( forestName == null ) throw new IllegalArgumentException("forestName must not be null");
+      this.forestName = forestName;
+      this.afterUri = afterUri;
+      this.urisProcessed = urisProcessed;
+      this.done = done;
+    }
+
+    public String getForestName() {
+      return forestName;
+    }
+
+    /**
+     * @return the last uri up to which every batch was processed, or null if
+     *   none was
+     */
+    public String getAfterUri() {
+      return afterUri;
+    }
+
+    /**
+     * @return the number of uris up to and including {@link #getAfterUri()}
+     */
+    public long getUrisProcessed() {
+      return urisProcessed;
+    }
+
+    /**
+     * @return true if every uri matching the query in the forest was
+     *   processed, so a resumed job skips the forest
+     */
+    public boolean isDone() {
+      return done;
+    }
+  }
+}
@@ -152,6 +152,51 @@ public interface RowBatcher<T> extends Batcher {
      */
     RowBatcher<T> withConsistentSnapshot();
 
+    /**
+     * Makes the job resumable. While the job runs, its
+     * {@link RowBatcherCheckpoint checkpoint} of completed batches is saved
+     * to the store every {@link #withCheckpointInterval checkpoint interval},
+     * and once more when the job finishes or is stopped. If every batch
+     * completed, the job clears the checkpoint from the store instead, so the
+     * next job with the store reads every batch. When the job starts, a
+     * checkpoint already in the store is loaded and the job only requests
+     * the batches that didn't complete, unless
+     * {@link #withResumeFrom withResumeFrom} provides the checkpoint. A
+     * loaded checkpoint in which every batch completed is ignored.
+     * @param store where to save and load the job's checkpoint
+     * @return the RowBatcher for chaining other initializations
+     */
+    RowBatcher<T> withCheckpointStore(CheckpointStore store);
+
+    /**
+     * Sets how often the checkpoint is saved to the
+     * {@link #withCheckpointStore checkpoint store} while the job runs.
+     * Defaults to 30 seconds. An interval of 0 saves the checkpoint after
+     * every batch.
+     * @param interval the time between saves
+     * @param unit the unit of the interval
+     * @return the RowBatcher for chaining other initializations
+     */
+    RowBatcher<T> withCheckpointInterval(long interval, TimeUnit unit);
+
+    /**
+     * Starts the job from the given checkpoint, splitting the rows into the
+     * checkpoint's batch count and skipping the batches that completed. If
+     * the checkpoint holds a server timestamp, the job reads the rows at that
+     * timestamp as with {@link #withConsistentSnapshot()}. The plan must be
+     * the one the checkpoint was taken from.
+     * @param checkpoint the checkpoint to resume from
+     * @return the RowBatcher for chaining other initializations
+     */
+    RowBatcher<T> withResumeFrom(RowBatcherCheckpoint checkpoint);
+
+    /**
+     * Returns the batches the job has completed so far, which can be saved
+     * and passed to {@link #withResumeFrom withResumeFrom} for a later job.
+     * @return the current checkpoint, or null if the job hasn't started
+     */
+    RowBatcherCheckpoint getCheckpoint();
+
     /**
      * Supplies a callback function (typically, a lambda) for
      * processing the batch of rows. The callback receives a
@@ -214,6 +259,14 @@ public interface RowBatcher<T> extends Batcher {
      */
     @Override
     RowBatcher<T> withThreadCount(int threadCount);
+    /**
+     * Specifies a controller that adjusts how many batches of rows
+     * are retrieved concurrently while the job runs.
+     * @param controller the concurrency controller, or null to keep the thread count fixed
+     * @return the RowBatcher for chaining other initializations
+     */
+    @Override
+    RowBatcher<T> withConcurrencyController(ConcurrencyController controller);
 
     /**
      * Gets the callback functions for successfully retrieved rows.
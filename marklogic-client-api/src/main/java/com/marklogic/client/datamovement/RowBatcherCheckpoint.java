@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The progress of a {@link RowBatcher} job, from which a later job with the
+ * same plan can resume.  A RowBatcher splits the rowid space into a fixed
+ * number of batches, so the checkpoint holds that batch count together with
+ * the batches that completed: every batch up to {@link #getCompletedThrough()}
+ * plus the ranges of batches that completed out of order after it.  A
+ * resumed job uses the same batch count, regardless of its current row
+ * estimate, so each batch covers the same rowid range as before, and only
+ * requests the batches that didn't complete.  Batches that failed and were
+ * skipped by a failure listener are not completed, so a resumed job requests
+ * them again.
+ *
+ * <p>When the job ran with {@link RowBatcher#withConsistentSnapshot()
+ * consistent snapshot}, the checkpoint also holds the server timestamp, and
+ * a resumed job reads the rows at that same timestamp.  The database must
+ * still retain fragments for that timestamp when the job resumes.</p>
+ *
+ * @see RowBatcher#withCheckpointStore(CheckpointStore)
+ * @see RowBatcher#withResumeFrom(RowBatcherCheckpoint)
+ */
+public class RowBatcherCheckpoint {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final long batchCount;
+  private final Long serverTimestamp;
+  private final long completedThrough;
+  private final List<long[]> completedRanges;
+
+  /**
+   * @param batchCount the number of batches the rowid space was split into
+   * @param serverTimestamp the consistent snapshot timestamp, or null
+   * @param completedThrough the last batch number up to which every batch
+   *   completed, or 0
+   * @param completedRanges the inclusive ranges of batch numbers, each an
+   *   array of the first and last batch number, that completed after
+   *   completedThrough
+   */
+  public RowBatcherCheckpoint(long batchCount, Long serverTimestamp, long completedThrough, List<long[]> completedRanges) {
+    if ( batchCount < 1 ) throw new IllegalArgumentException("batchCount must be 1 or greater");
+    if ( completedThrough < 0 || completedThrough > batchCount ) {
+      throw new IllegalArgumentException("completedThrough must be between 0 and batchCount");
+    }
+    List<long[]> ranges = new ArrayList<>();
+    if ( completedRanges != null ) {
+      for ( long[] range : completedRanges ) {
+        if ( range == null || range.length != 2 || range[0] > range[1] || range[0] <= completedThrough ||
+             range[1] > batchCount ) {
+          throw new IllegalArgumentException("completed ranges must be [first, last] pairs after completedThrough");
+        }
+        ranges.add(range.clone());
+      }
+    }
+    this.batchCount = batchCount;
+    this.serverTimestamp = serverTimestamp;
+    this.completedThrough = completedThrough;
+    this.completedRanges = Collections.unmodifiableList(ranges);
+  }
+
+  /**
+   * @return the number of batches the rowid space was split into
+   */
+  public long getBatchCount() {
+    return batchCount;
+  }
+
+  /**
+   * @return the consistent snapshot timestamp of the job, or null if the job
+   *   didn't use a consistent snapshot
+   */
+  public Long getServerTimestamp() {
+    return serverTimestamp;
+  }
+
+  /**
+   * @return the last batch number up to which every batch completed, or 0
+   */
+  public long getCompletedThrough() {
+    return completedThrough;
+  }
+
+  /**
+   * @return the inclusive ranges of batch numbers that completed after
+   *   {@link #getCompletedThrough()}, in order
+   */
+  public List<long[]> getCompletedRanges() {
+    return completedRanges;
+  }
+
+  /**
+   * @param batchNumber a batch number from 1 through the batch count
+   * @return whether the batch completed
+   */
+  public boolean isCompleted(long batchNumber) {
+    if ( batchNumber <= completedThrough ) return true;
+    for ( long[] range : completedRanges ) {
+      if ( batchNumber < range[0] ) return false;
+      if ( batchNumber <= range[1] ) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return true if every batch completed
+   */
+  public boolean isDone() {
+    return completedThrough == batchCount;
+  }
+
+  /**
+   * @return the checkpoint as the JSON saved to a {@link CheckpointStore}
+   */
+  public String toJson() {
+    ObjectNode root = mapper.createObjectNode();
+    root.put("batchCount", batchCount);
+    if ( serverTimestamp != null ) root.put("serverTimestamp", serverTimestamp);
+    root.put("completedThrough", completedThrough);
+    ArrayNode rangeArray = root.putArray("completedRanges");
+    for ( long[] range : completedRanges ) {
+      rangeArray.addArray().add(range[0]).add(range[1]);
+    }
+    try {
+      return mapper.writeValueAsString(root);
+    } catch (JsonProcessingException e) {
+      throw new DataMovementException("Unable to serialize checkpoint", e);
+    }
+  }
+
+  /**
+   * @param json a checkpoint produced by {@link #toJson()}
+   * @return the checkpoint
+   */
+  public static RowBatcherCheckpoint fromJson(String json) {
+    if ( json == null ) throw new IllegalArgumentException("json must not be null");
+    JsonNode root;
+    try {
+      root = mapper.readTree(json);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Invalid checkpoint: " + e.getMessage(), e);
+    }
+    if ( root == null || !root.isObject() || !root.path("batchCount").canConvertToLong() ) {
+      throw new IllegalArgumentException("Invalid checkpoint: expected an object with a batchCount");
+    }
+    Long serverTimestamp = root.hasNonNull("serverTimestamp") ? root.get("serverTimestamp").asLong() : null;
+    List<long[]> ranges = new ArrayList<>();
+    for ( JsonNode range : root.path("completedRanges") ) {
+      ranges.add(new long[]{range.path(0).asLong(), range.path(1).asLong()});
+    }
+    return new RowBatcherCheckpoint(root.get("batchCount").asLong(), serverTimestamp,
+      root.path("completedThrough").asLong(0), ranges);
+  }
+}
@@ -322,6 +322,119 @@ public interface WriteBatcher extends Batcher {
   @Override
   WriteBatcher withThreadCount(int threadCount);
 
+  @Override
+  WriteBatcher withConcurrencyController(ConcurrencyController controller);
+
+  /**
+   * Sets the maximum summed content length, in bytes, of the documents in a
+   * batch. A batch is written as soon as it reaches either batchSize documents
+   * or this many bytes, which evens out request sizes when small and large
+   * documents are mixed. A single document larger than the limit is written
+   * in a batch of its own. When a handle can't report its length, the
+   * document is counted as the limit divided by batchSize. A value of 0 or
+   * less means batches are limited by document count only, which is the
+   * default.
+   *
+   * @param batchByteLimit the maximum number of content bytes per batch
+   * @return this instance for method chaining
+   */
+  WriteBatcher withBatchByteLimit(long batchByteLimit);
+
+  /**
+   * Returns the byte limit set with {@link #withBatchByteLimit}, or a value
+   * of 0 or less if batches are limited by document count only.
+   *
+   * @return the maximum number of content bytes per batch
+   */
+  long getBatchByteLimit();
+
+  /**
+   * Sets the most documents that may be buffered, meaning added but not yet
+   * written or failed, including the documents in batches waiting for or
+   * being written by a thread. Once the limit is reached, add and addAs wait
+   * for batches to finish, for up to the {@link #withBufferFullTimeout buffer
+   * full timeout}, which gives a fast producer such as a splitter stream a
+   * predictable heap ceiling. A value of 0 or less, the default, means no
+   * limit. Values below batchSize work, but every batch is written partial.
+   *
+   * @param maxBufferedDocuments the most documents to buffer
+   * @return this instance for method chaining
+   */
+  WriteBatcher withMaxBufferedDocuments(long maxBufferedDocuments);
+
+  /**
+   * @return the most documents to buffer, or a value of 0 or less for no limit
+   */
+  long getMaxBufferedDocuments();
+
+  /**
+   * Sets the most content bytes that may be buffered, counted as for
+   * {@link #withBatchByteLimit}, and otherwise working like
+   * {@link #withMaxBufferedDocuments}. A document whose handle can't report
+   * its length counts as the batch byte limit divided by batchSize, or as
+   * nothing when there's no batch byte limit. A single document larger than
+   * the limit is accepted once nothing else is buffered. A value of 0 or
+   * less, the default, means no limit.
+   *
+   * @param maxBufferedBytes the most content bytes to buffer
+   * @return this instance for method chaining
+   */
+  WriteBatcher withMaxBufferedBytes(long maxBufferedBytes);
+
+  /**
+   * @return the most content bytes to buffer, or a value of 0 or less for no limit
+   */
+  long getMaxBufferedBytes();
+
+  /**
+   * Sets how long add and addAs wait for space once a buffer maximum has been
+   * reached before throwing a {@link DataMovementException}. A timeout of 0
+   * rejects documents as soon as the buffer is full, and a negative timeout,
+   * the default, waits as long as it takes.
+   *
+   * @param timeout how long to wait
+   * @param unit the unit of the timeout
+   * @return this instance for method chaining
+   */
+  WriteBatcher withBufferFullTimeout(long timeout, TimeUnit unit);
+
+  /**
+   * @param unit the unit to return the timeout in
+   * @return how long add and addAs wait for space, or -1 to wait as long as it takes
+   */
+  long getBufferFullTimeout(TimeUnit unit);
+
+  /**
+   * Returns the number of documents added but not yet written or failed.
+   *
+   * @return the number of buffered documents
+   */
+  long getBufferedDocumentCount();
+
+  /**
+   * Routes each document to the host of the forest the policy predicts the
+   * server will assign it to. Documents for the same host are batched
+   * together and written directly to that host, avoiding the forwarding
+   * between hosts that happens when a batch lands on a host that doesn't own
+   * the target forests. Documents the policy can't place, and all documents
+   * when no policy is set (the default), are batched and sent to hosts in
+   * round-robin order. The policy is supplied by the application; see
+   * {@link ForestAssignmentPolicy} for why none mirrors the server's
+   * assignment policies.
+   *
+   * @param policy the forest assignment policy, or null for round-robin
+   * @return this instance for method chaining
+   */
+  WriteBatcher withForestAssignment(ForestAssignmentPolicy policy);
+
+  /**
+   * Returns the policy set with {@link #withForestAssignment}, or null if
+   * batches are sent to hosts in round-robin order.
+   *
+   * @return the forest assignment policy
+   */
+  ForestAssignmentPolicy getForestAssignment();
+
   /** Create a batch from any unbatched documents and write that batch
    * asynchronously.
    */
@@ -16,8 +16,11 @@
 
 package com.marklogic.client.datamovement;
 
+import com.marklogic.client.datamovement.impl.MappedFileChunks;
+import com.marklogic.client.datamovement.impl.XMLRecordScanner;
 import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.impl.DocumentWriteOperationImpl;
+import com.marklogic.client.io.ByteBufferHandle;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.io.marker.XMLWriteHandle;
@@ -36,9 +39,12 @@ import javax.xml.transform.stream.StreamResult;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -188,6 +194,85 @@ public class XMLSplitter<T extends XMLWriteHandle> implements Splitter<T> {
         return StreamSupport.stream(documentWriteOperationSpliterator, true);
     }
 
+    /**
+     * Takes the path of an XML file in UTF-8 and splits it into a stream of ByteBufferHandle that hold the original
+     * bytes of each element the visitor processes. The file is memory-mapped and scanned for markup instead of
+     * being parsed into events, so the elements are not serialized again and splitting is bound by I/O rather
+     * than by the CPU. The namespace declarations of the ancestors of an element are injected into its start
+     * tag. The visitor chooses the elements with the StartElementReader as usual, but makeBufferedHandle() is
+     * not called. The document is not validated, and an element can only refer to the predefined entities.
+     * The file must be smaller than 2 GB.
+     * @param path the path of the XML file
+     * @return a stream of handles to write to database
+     * @throws IOException if the file cannot be read
+     */
+    public Stream<ByteBufferHandle> splitBuffers(Path path) throws IOException {
+        return splitBuffers(mapFile(path));
+    }
+
+    /**
+     * Takes the remaining bytes of a buffer with an XML document in UTF-8 and splits it into a stream of
+     * ByteBufferHandle as {@link #splitBuffers(Path)} does. An element without namespace declarations to
+     * inject is a slice of the buffer rather than a copy.
+     * @param input the buffer of the XML document
+     * @return a stream of handles to write to database
+     */
+    public Stream<ByteBufferHandle> splitBuffers(ByteBuffer input) {
+        if (input == null) {
+            throw new IllegalArgumentException("Input cannot be null");
+        }
+        count = 0;
+
+        return StreamSupport.stream(new XMLSplitter.BufferSpliterator<>(this, input, handle -> handle), true);
+    }
+
+    /**
+     * Takes the path of an XML file in UTF-8 and the input file name, and splits the file into a stream of
+     * DocumentWriteOperation with the original bytes of each element as {@link #splitBuffers(Path)} does.
+     * @param path the path of the XML file
+     * @param splitFilename is the name of the input file, including name and extension. It is used to generate URLs for
+     *                  split files.The splitFilename could either be provided here or in user-defined UriMaker.
+     * @return a stream of DocumentWriteOperation to write to database
+     * @throws IOException if the file cannot be read
+     */
+    public Stream<DocumentWriteOperation> splitBufferWriteOperations(Path path, String splitFilename) throws IOException {
+        ByteBuffer input = mapFile(path);
+        count = 0;
+
+        this.splitFilename = splitFilename;
+        configureUriMaker();
+        return StreamSupport.stream(new XMLSplitter.BufferSpliterator<>(this, input, handle ->
+                new DocumentWriteOperationImpl(
+                        DocumentWriteOperation.OperationType.DOCUMENT_WRITE,
+                        getUriMaker().makeUri(getCount(), handle),
+                        null,
+                        handle
+                )), true);
+    }
+
+    // the mapping stays valid after the file is closed
+    private ByteBuffer mapFile(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        try (MappedFileChunks chunks = MappedFileChunks.open(path)) {
+            return chunks.mapRange(0, chunks.size());
+        }
+    }
+
+    private void configureUriMaker() {
+        if (getUriMaker() == null) {
+            XMLSplitter.UriMakerImpl uriMaker = new XMLSplitter.UriMakerImpl();
+            uriMaker.setSplitFilename(splitFilename);
+            uriMaker.setExtension("xml");
+            setUriMaker(uriMaker);
+        } else {
+            if (splitFilename != null) {
+                getUriMaker().setSplitFilename(splitFilename);
+            }
+        }
+    }
+
     /**
      * The StartElementReader is used in visitor to check if the current element is the one to split. It supports some
      * of the XMLStreamReader methods that inspect the start element state without changing the stream state.
@@ -503,16 +588,7 @@ public class XMLSplitter<T extends XMLWriteHandle> implements Splitter<T> {
             }
 
             XMLSplitter splitter = getSplitter();
-            if (splitter.getUriMaker() == null) {
-                XMLSplitter.UriMakerImpl uriMaker = new XMLSplitter.UriMakerImpl();
-                uriMaker.setSplitFilename(splitter.splitFilename);
-                uriMaker.setExtension("xml");
-                splitter.setUriMaker(uriMaker);
-            } else {
-                if (splitter.splitFilename != null) {
-                    splitter.getUriMaker().setSplitFilename(splitter.splitFilename);
-                }
-            }
+            splitter.configureUriMaker();
 
             splitter.count = splitter.getCount() + 1;
             DocumentWriteOperation documentWriteOperation = splitter.getVisitor().makeDocumentWriteOperation(
@@ -526,6 +602,32 @@ public class XMLSplitter<T extends XMLWriteHandle> implements Splitter<T> {
         }
     }
 
+    private static class BufferSpliterator<U> extends Spliterators.AbstractSpliterator<U> {
+        private final XMLSplitter<?> splitter;
+        private final XMLRecordScanner scanner;
+        private final Function<ByteBufferHandle, U> wrapper;
+
+        BufferSpliterator(XMLSplitter<?> splitter, ByteBuffer input, Function<ByteBufferHandle, U> wrapper) {
+            super(Long.MAX_VALUE, Spliterator.NONNULL + Spliterator.IMMUTABLE);
+            this.splitter = splitter;
+            this.scanner = new XMLRecordScanner(input, splitter.getVisitor());
+            this.wrapper = wrapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super U> action) {
+            ByteBuffer record = scanner.nextRecord();
+            if (record == null) {
+                return false;
+            }
+
+            splitter.count = splitter.getCount() + 1;
+            action.accept(wrapper.apply(new ByteBufferHandle(record).withFormat(Format.XML)));
+
+            return true;
+        }
+    }
+
     private static class XMLBranchStreamReader extends StreamReaderDelegate {
         private int depth = 1;
 
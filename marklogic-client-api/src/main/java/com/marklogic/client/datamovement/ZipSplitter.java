@@ -20,19 +20,25 @@ import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.impl.DocumentWriteOperationImpl;
 import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.Format;
+import com.marklogic.client.io.OutputStreamHandle;
+import com.marklogic.client.io.marker.AbstractWriteHandle;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -45,6 +51,7 @@ public class ZipSplitter implements Splitter<BytesHandle> {
     private Function<String, String> uriTransformer;
     private String splitFilename;
     private long count = 0;
+    private long entryStreamingThreshold = 16 * 1024 * 1024;
     private static Pattern extensionRegex = Pattern.compile("^(.+)\\.([^.]+)$");
 
     /**
@@ -95,6 +102,27 @@ public class ZipSplitter implements Splitter<BytesHandle> {
         this.uriTransformer = uriTransformer;
     }
 
+    /**
+     * Returns the size in bytes above which an entry of a ZIP file split from a Path is streamed when it is
+     * written instead of being read into a BytesHandle.
+     * @return the entry streaming threshold
+     */
+    public long getEntryStreamingThreshold() {
+        return this.entryStreamingThreshold;
+    }
+
+    /**
+     * Used to set the size in bytes above which an entry of a ZIP file split from a Path is streamed when it is
+     * written instead of being read into a BytesHandle. The default is 16 MB.
+     * @param entryStreamingThreshold the threshold, which must not be negative and must be less than 2 GB
+     */
+    public void setEntryStreamingThreshold(long entryStreamingThreshold) {
+        if (entryStreamingThreshold < 0 || entryStreamingThreshold > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Entry streaming threshold must be between 0 and 2 GB: "+entryStreamingThreshold);
+        }
+        this.entryStreamingThreshold = entryStreamingThreshold;
+    }
+
     /**
      * Create a new ZIP splitter.
      */
@@ -230,6 +258,162 @@ public class ZipSplitter implements Splitter<BytesHandle> {
         return StreamSupport.stream(documentWriteOperationSpliterator, true);
     }
 
+    /**
+     * Takes the path of a ZIP file and converts it into a parallel stream of handles. The entries are listed from
+     * the central directory of the file, and a parallel stream inflates them on all cores. The entryFilter and
+     * extensionFormats apply as they do to a ZipInputStream. An entry of up to the entry streaming threshold is
+     * read into a BytesHandle. A larger entry becomes a resendable OutputStreamHandle that opens the file and
+     * streams the entry whenever the handle is written. Close the stream to close the file.
+     * @param path the path of the ZIP file
+     * @return a parallel stream of BytesHandle and OutputStreamHandle
+     * @throws IOException if the file cannot be opened as a ZIP file
+     */
+    public Stream<AbstractWriteHandle> split(Path path) throws IOException {
+        return splitEntries(path, (num, name, handle) -> handle);
+    }
+
+    /**
+     * Takes the path and name of a ZIP file and converts it into a parallel stream of DocumentWriteOperation
+     * as {@link #split(Path)} does. Each entry is numbered by its position among the entries that are split,
+     * and the UriMaker receives a null handle for an entry that is streamed. The UriMaker or uriTransformer
+     * is called from many threads, so it must be thread-safe. Close the stream to close the file.
+     * @param path the path of the ZIP file
+     * @param splitFilename is the input file name, including name and extension. It is used to generate URLs for split
+     *                  files.The splitFilename could either be provided here or in user-defined UriMaker.
+     * @return a parallel stream of DocumentWriteOperation
+     * @throws IOException if the file cannot be opened as a ZIP file
+     */
+    public Stream<DocumentWriteOperation> splitWriteOperations(Path path, String splitFilename) throws IOException {
+        this.splitFilename = splitFilename;
+        configureUriMaker();
+        ZipSplitter.UriMaker pathUriMaker = getUriMaker();
+        Function<String, String> pathUriTransformer = getUriTransformer();
+
+        return splitEntries(path, (num, name, handle) -> {
+            String uri = (pathUriMaker != null) ?
+                    pathUriMaker.makeUri(num, name, (handle instanceof BytesHandle) ? (BytesHandle) handle : null) :
+                    pathUriTransformer.apply(name);
+            return new DocumentWriteOperationImpl(
+                    DocumentWriteOperation.OperationType.DOCUMENT_WRITE,
+                    uri,
+                    null,
+                    handle
+            );
+        });
+    }
+
+    private <T> Stream<T> splitEntries(Path path, EntryWrapper<T> wrapper) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        count = 0;
+
+        ZipFile zipFile = new ZipFile(path.toFile());
+        List<FormatEntry> entries;
+        try {
+            entries = zipFile.stream()
+                    .filter(entry -> !entry.isDirectory())
+                    .filter(entry -> entryFilter == null || entryFilter.test(entry))
+                    .map(entry -> makeFormatEntry(entry, extensionFormats))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        } catch (RuntimeException e) {
+            zipFile.close();
+            throw e;
+        }
+
+        long threshold = getEntryStreamingThreshold();
+        return IntStream.range(0, entries.size())
+                .parallel()
+                .mapToObj(i -> {
+                    FormatEntry entry = entries.get(i);
+                    AbstractWriteHandle handle = readEntry(zipFile, path, entry, threshold);
+                    incrementCount();
+                    return wrapper.wrap(i + 1, entry.getZipEntry().getName(), handle);
+                })
+                .onClose(() -> {
+                    try {
+                        zipFile.close();
+                    } catch (IOException e) {
+                        throw new RuntimeException("Could not close ZipFile", e);
+                    }
+                });
+    }
+
+    private synchronized void incrementCount() {
+        count = count + 1;
+    }
+
+    private static AbstractWriteHandle readEntry(ZipFile zipFile, Path path, FormatEntry entry, long threshold) {
+        ZipEntry zipEntry = entry.getZipEntry();
+        String name = zipEntry.getName();
+        long entrySize = zipEntry.getSize();
+        if (entrySize < 0 || entrySize > threshold) {
+            // the file is opened again so the handle can be written after the stream is closed
+            return new OutputStreamHandle(out -> {
+                try (ZipFile entryFile = new ZipFile(path.toFile());
+                     InputStream input = entryFile.getInputStream(entryFile.getEntry(name))) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int readSize;
+                    while ((readSize = input.read(buffer)) != -1) {
+                        out.write(buffer, 0, readSize);
+                    }
+                }
+            }).withFormat(entry.getFormat()).withResendable(true);
+        }
+
+        byte[] content = new byte[(int) entrySize];
+        try (InputStream input = zipFile.getInputStream(zipEntry)) {
+            int offset = 0;
+            while (offset < content.length) {
+                int readSize = input.read(content, offset, content.length - offset);
+                if (readSize == -1) {
+                    throw new ZipException(
+                        "read "+name+" expecting length of "+content.length+" instead of "+offset);
+                }
+                offset += readSize;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read ZipEntry", e);
+        }
+        return new BytesHandle(content).withFormat(entry.getFormat());
+    }
+
+    private static FormatEntry makeFormatEntry(ZipEntry zipEntry, Map<String, Format> extensionFormats) {
+        Matcher matcher = extensionRegex.matcher(zipEntry.getName());
+        Format format = matcher.find() ? extensionFormats.get(matcher.group(2)) : null;
+
+        if (format == null) {
+            format = extensionFormats.get("");
+        }
+
+        if (format == null || format == Format.UNKNOWN) {
+            return null;
+        }
+
+        FormatEntry newEntry = new FormatEntry();
+        newEntry.setFormat(format);
+        newEntry.setZipEntry(zipEntry);
+
+        return newEntry;
+    }
+
+    private void configureUriMaker() {
+        if (getUriTransformer() == null && getUriMaker() == null) {
+            ZipSplitter.UriMakerImpl uriMaker = new ZipSplitter.UriMakerImpl();
+            uriMaker.setSplitFilename(splitFilename);
+            setUriMaker(uriMaker);
+        }
+
+        if (getUriMaker() != null && splitFilename != null) {
+            getUriMaker().setSplitFilename(splitFilename);
+        }
+    }
+
+    private interface EntryWrapper<T> {
+        T wrap(long num, String entryName, AbstractWriteHandle handle);
+    }
+
     private static class FormatEntry {
         private ZipEntry zipEntry;
         private Format   format;
@@ -308,23 +492,11 @@ public class ZipSplitter implements Splitter<BytesHandle> {
                     continue;
                 }
 
-                String name = candidateEntry.getName();
-                Matcher matcher = extensionRegex.matcher(name);
-                matcher.find();
-                Format format = getExtensionFormats().get(matcher.group(2));
-
-                if (format == null) {
-                    format = getExtensionFormats().get("");
-                }
-
-                if (format == null || format == Format.UNKNOWN) {
+                FormatEntry newEntry = makeFormatEntry(candidateEntry, getExtensionFormats());
+                if (newEntry == null) {
                     continue;
                 }
 
-                FormatEntry newEntry = new FormatEntry();
-                newEntry.setFormat(format);
-                newEntry.setZipEntry(candidateEntry);
-
                 return newEntry;
             }
 
@@ -403,16 +575,9 @@ public class ZipSplitter implements Splitter<BytesHandle> {
                 String name = nextEntry.getZipEntry().getName();
                 String uri = name;
 
-                if (splitter.getUriTransformer() == null && splitter.getUriMaker() == null) {
-                    ZipSplitter.UriMakerImpl uriMaker = new ZipSplitter.UriMakerImpl();
-                    uriMaker.setSplitFilename(splitter.splitFilename);
-                    splitter.setUriMaker(uriMaker);
-                }
+                splitter.configureUriMaker();
 
                 if (splitter.getUriMaker() != null) {
-                    if (splitter.splitFilename != null) {
-                        splitter.getUriMaker().setSplitFilename(splitter.splitFilename);
-                    }
                     uri = splitter.getUriMaker().makeUri(splitter.getCount(), name, nextBytesHandle);
                 } else {
                     uri = splitter.uriTransformer.apply(name);
@@ -465,7 +630,7 @@ public class ZipSplitter implements Splitter<BytesHandle> {
          * @param num the count of each split
          * @param entryName the name of each entry in the zip file
          * @param handle the handle which contains the content of each split. It could be utilized to make a meaningful
-         *               document URI.
+         *               document URI. It is null for an entry that is streamed when split from a Path.
          * @return the generated URI of current split
          */
         String makeUri(long num, String entryName, BytesHandle handle);
@@ -29,6 +29,8 @@ public class BatchWriteSet {
   private DocumentWriteSet writeSet;
   private long batchNumber;
   private long itemsSoFar;
+  private long bufferedDocuments;
+  private long bufferedBytes;
   private DatabaseClient client;
   private ServerTransform transform;
   private String temporalCollection;
@@ -66,6 +68,23 @@ public class BatchWriteSet {
     this.itemsSoFar = itemsSoFar;
   }
 
+  public long getBufferedDocuments() {
+    return bufferedDocuments;
+  }
+
+  public long getBufferedBytes() {
+    return bufferedBytes;
+  }
+
+  /**
+   * Records how many documents, and bytes, this batch holds in the WriteBatcher's buffer count, so they can be
+   * released once the batch is done. Batches created for retries hold nothing.
+   */
+  public void setBuffered(long bufferedDocuments, long bufferedBytes) {
+    this.bufferedDocuments = bufferedDocuments;
+    this.bufferedBytes = bufferedBytes;
+  }
+
   public DatabaseClient getClient() {
     return client;
   }
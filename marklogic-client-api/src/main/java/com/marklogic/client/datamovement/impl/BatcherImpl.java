@@ -19,13 +19,16 @@ import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.datamovement.*;
 
 import java.util.*;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class BatcherImpl implements Batcher {
   private String jobName = "unnamed";
   private String jobId = null;
   private int batchSize = 100;
-  private int threadCount = 1;
+  private volatile int threadCount = 1;
+  private ConcurrencyController concurrencyController;
   private ForestConfiguration forestConfig;
   private DataMovementManagerImpl moveMgr;
   private JobTicket jobTicket;
@@ -90,6 +93,70 @@ public abstract class BatcherImpl implements Batcher {
     return threadCount;
   }
 
+  @Override
+  public Batcher withConcurrencyController(ConcurrencyController controller) {
+    if ( started.get() ) {
+      throw new IllegalStateException("The concurrency controller cannot be changed after the job has started");
+    }
+    this.concurrencyController = controller;
+    return this;
+  }
+
+  @Override
+  public ConcurrencyController getConcurrencyController() {
+    return concurrencyController;
+  }
+
+  /**
+   * Starts the concurrency controller, if any, at the thread count the job starts with.
+   */
+  void initializeConcurrencyController() {
+    if ( concurrencyController != null ) concurrencyController.initialize(threadCount);
+  }
+
+  /**
+   * Reports a completed request to the concurrency controller, if any, and when the controller's limit
+   * differs from the thread count, records the new thread count and passes it to applyThreadCount.
+   * @param host the host the request was sent to
+   * @param startNanos the System.nanoTime() when the request was sent
+   * @param failure the error the request failed with, or null if it succeeded
+   */
+  void reportRequest(String host, long startNanos, Throwable failure) {
+    ConcurrencyController controller = concurrencyController;
+    if ( controller == null ) return;
+    controller.onRequestComplete(host, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), failure);
+    int limit = controller.getLimit();
+    if ( limit <= 0 || limit == threadCount ) return;
+    // the controller lock orders concurrent changes so the last limit read is the last one applied
+    synchronized ( controller ) {
+      limit = controller.getLimit();
+      if ( limit <= 0 || limit == threadCount || stopped.get() ) return;
+      threadCount = limit;
+      applyThreadCount(limit);
+    }
+  }
+
+  /**
+   * Resizes the job's thread pool to a thread count chosen by the concurrency controller while the job runs.
+   * Only called by reportRequest, so subclasses that never report requests don't need to override it.
+   * @param threadCount the new thread count
+   */
+  void applyThreadCount(int threadCount) {
+  }
+
+  /**
+   * Sets both the core and maximum pool size, in the order the executor accepts for growing or shrinking.
+   */
+  static void resizeThreadPool(ThreadPoolExecutor threadPool, int threadCount) {
+    if ( threadCount > threadPool.getMaximumPoolSize() ) {
+      threadPool.setMaximumPoolSize(threadCount);
+      threadPool.setCorePoolSize(threadCount);
+    } else {
+      threadPool.setCorePoolSize(threadCount);
+      threadPool.setMaximumPoolSize(threadCount);
+    }
+  }
+
   @Override
   public ForestConfiguration getForestConfig() {
     return forestConfig;
@@ -22,6 +22,10 @@ import com.marklogic.client.datamovement.*;
 import com.marklogic.client.impl.DatabaseClientImpl;
 import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.query.*;
+import com.marklogic.client.row.RowColumnBatch;
+import com.marklogic.client.row.RowManager;
+import com.marklogic.client.row.RowRecord;
+import com.marklogic.client.row.RowSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +34,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 public class DataMovementManagerImpl implements DataMovementManager {
   private static final Logger logger = LoggerFactory.getLogger(DataMovementManager.class);
@@ -39,6 +45,7 @@ public class DataMovementManagerImpl implements DataMovementManager {
   private DatabaseClient primaryClient;
   // clientMap key is the hostname_database
   private final Map<String,DatabaseClient> clientMap = new HashMap<>();
+  private volatile ThreadFactory threadFactory;
 
   public DataMovementManagerImpl(DatabaseClient client) {
     setPrimaryClient(client);
@@ -213,11 +220,42 @@ public class DataMovementManagerImpl implements DataMovementManager {
     return primaryClient.getConnectionType();
   }
 
+  @Override
+  public DataMovementManager withThreadFactory(ThreadFactory threadFactory) {
+    this.threadFactory = threadFactory;
+    return this;
+  }
+
+  @Override
+  public ThreadFactory getThreadFactory() {
+    return threadFactory;
+  }
+
+  /**
+   * Returns the thread factory for a job's thread pool, falling back to the one ThreadPoolExecutor uses by default.
+   */
+  ThreadFactory getJobThreadFactory() {
+    ThreadFactory factory = threadFactory;
+    return (factory != null) ? factory : Executors.defaultThreadFactory();
+  }
+
   @Override
   public <T> RowBatcher<T> newRowBatcher(ContentHandle<T> rowsHandle) {
     return new RowBatcherImpl<>(this, rowsHandle);
   }
 
+  @Override
+  public RowBatcher<RowSet<RowRecord>> newRowBatcher(RowManager.RowStreamFormat format) {
+    if (format == null)
+      throw new IllegalArgumentException("format must not be null");
+    return new RowBatcherImpl<>(this, format);
+  }
+
+  @Override
+  public RowBatcher<RowSet<RowColumnBatch>> newRowColumnBatcher() {
+    return new RowBatcherImpl<>(this);
+  }
+
   @Override
   public JobTicket startJob(RowBatcher<?> batcher) {
     if (batcher == null)
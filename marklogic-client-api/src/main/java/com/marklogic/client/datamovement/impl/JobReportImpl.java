@@ -25,6 +25,7 @@ public class JobReportImpl implements JobReport {
   private long failureEventsCount = 0;
   private long successBatchesCount = 0;
   private long failureBatchesCount = 0;
+  private long bufferedEventsCount = 0;
   private boolean isJobComplete;
   private Calendar jobStartTime;
   private Calendar jobEndTime;
@@ -75,6 +76,7 @@ public class JobReportImpl implements JobReport {
     failureBatchesCount = writeJobSuccessListener.getFailureBatchesCount();
     successEventsCount = writeJobSuccessListener.getSuccessEventsCount();
     failureEventsCount = writeJobSuccessListener.getFailureEventsCount();
+    bufferedEventsCount = batcher.getBufferedDocumentCount();
     isJobComplete = batcher.isStopped();
     reportTimestamp = Calendar.getInstance();
     jobStartTime = batcher.getJobStartTime();
@@ -136,6 +138,11 @@ public class JobReportImpl implements JobReport {
     return failureBatchesCount;
   }
 
+  @Override
+  public long getBufferedEventsCount() {
+    return bufferedEventsCount;
+  }
+
   public boolean isJobComplete() {
     return isJobComplete;
   }
@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.MarkLogicIOException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Splits a file into byte ranges that start and end on record boundaries so the splitters can parse
+ * the ranges of a large file in parallel. Each range is memory-mapped when it is parsed.
+ *
+ * Design:
+ * <ul>
+ *   <li>For line-delimited records, a boundary is found by reading forward from each target offset to the next
+ *   newline, so finding the ranges reads only a few bytes per range.</li>
+ *   <li>For CSV, a newline inside a quoted value is not a boundary, and whether a byte is quoted depends on all of
+ *   the bytes before it, so finding the ranges scans the file once for quotes and newlines. The scan is much
+ *   cheaper than parsing.</li>
+ *   <li>Boundaries are searched for at the byte level, so the encoding must represent newline and quote as the
+ *   same single bytes as ASCII does.</li>
+ * </ul>
+ */
+public class MappedFileChunks implements AutoCloseable {
+    public final static long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final static int SCAN_WINDOW_SIZE = 64 * 1024 * 1024;
+    private final static int SEARCH_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedFileChunks(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    public static MappedFileChunks open(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null.");
+        }
+        return new MappedFileChunks(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Checks that newlines and quotes can be found at the byte level for the charset.
+     * @param charset the encoding of the file
+     */
+    public static void checkAsciiCompatible(Charset charset) {
+        if (charset != null && !Arrays.equals(new byte[]{'\n', '"'}, "\n\"".getBytes(charset))) {
+            throw new IllegalArgumentException(
+                "Cannot split a file in parallel with an encoding that is not ASCII-compatible: " + charset.name());
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Cuts the file after a newline at or past every multiple of the chunk size.
+     * @param start the offset of the first record
+     * @param chunkSize the target size of each range
+     * @return the boundaries, where range i runs from boundary i to boundary i + 1
+     * @throws IOException if the file cannot be read
+     */
+    public long[] lineBoundaries(long start, long chunkSize) throws IOException {
+        checkChunkSize(chunkSize);
+        BoundaryList boundaries = new BoundaryList(start);
+        ByteBuffer buffer = ByteBuffer.allocate(SEARCH_BUFFER_SIZE);
+        long next = start;
+        while (next < size) {
+            long target = next + chunkSize;
+            next = (target >= size) ? size : findLineEnd(buffer, target);
+            boundaries.add(next);
+        }
+        return boundaries.toArray();
+    }
+
+    /**
+     * Cuts the file after an unquoted newline at or past every multiple of the chunk size.
+     * @param chunkSize the target size of each range
+     * @param quoteChar the quote character, or -1 if values are not quoted
+     * @param escapeChar the escape character, or -1 if there is none
+     * @param skipFirstRecord whether the first record is a header, which is then the whole of the first range
+     * @return the boundaries, where range i runs from boundary i to boundary i + 1
+     * @throws IOException if the file cannot be read
+     */
+    public long[] csvBoundaries(long chunkSize, int quoteChar, int escapeChar, boolean skipFirstRecord)
+        throws IOException {
+        checkChunkSize(chunkSize);
+        if (escapeChar == quoteChar) {
+            // a doubled quote toggles twice, so it needs no special handling
+            escapeChar = -1;
+        }
+        BoundaryList boundaries = new BoundaryList(0);
+        boolean isQuoted = false;
+        boolean isEscaped = false;
+        boolean needsFirstRecord = skipFirstRecord;
+        long target = chunkSize;
+        for (long windowStart = 0; windowStart < size; windowStart += SCAN_WINDOW_SIZE) {
+            int windowSize = (int) Math.min(SCAN_WINDOW_SIZE, size - windowStart);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+            for (int i = 0; i < windowSize; i++) {
+                int b = window.get(i) & 0xFF;
+                if (isEscaped) {
+                    isEscaped = false;
+                } else if (b == escapeChar) {
+                    isEscaped = true;
+                } else if (b == quoteChar) {
+                    isQuoted = !isQuoted;
+                } else if (b == '\n' && !isQuoted) {
+                    long recordEnd = windowStart + i + 1;
+                    if (needsFirstRecord) {
+                        needsFirstRecord = false;
+                        boundaries.add(recordEnd);
+                        target = recordEnd + chunkSize;
+                    } else if (recordEnd >= target && recordEnd < size) {
+                        boundaries.add(recordEnd);
+                        target = recordEnd + chunkSize;
+                    }
+                }
+            }
+        }
+        if (boundaries.last() < size) {
+            boundaries.add(size);
+        }
+        return boundaries.toArray();
+    }
+
+    /**
+     * Streams the records of the ranges between the boundaries with a spliterator that splits
+     * between ranges, so that a parallel stream parses the ranges concurrently. Closing the stream
+     * closes the file.
+     * @param boundaries the boundaries of the ranges
+     * @param parser parses the records of a range
+     * @param onRangeParsed receives the number of records in each range after it has been parsed
+     * @param <T> the type of the records
+     * @return the parallel stream of records
+     */
+    public <T> Stream<T> stream(long[] boundaries, Function<InputStream, Iterator<T>> parser,
+                                LongConsumer onRangeParsed) {
+        return streamBuffers(boundaries, buffer -> parser.apply(new ByteBufferInputStream(buffer)), onRangeParsed);
+    }
+
+    /**
+     * Streams the records of the ranges between the boundaries, as with {@link #stream stream()},
+     * but gives the parser the mapped buffer of each range so the records can be slices of it.
+     * @param boundaries the boundaries of the ranges
+     * @param parser parses the records of a mapped range
+     * @param onRangeParsed receives the number of records in each range after it has been parsed
+     * @param <T> the type of the records
+     * @return the parallel stream of records
+     */
+    public <T> Stream<T> streamBuffers(long[] boundaries, Function<ByteBuffer, Iterator<T>> parser,
+                                       LongConsumer onRangeParsed) {
+        return streamRanges(boundaries, (buffer, start) -> parser.apply(buffer), onRangeParsed);
+    }
+
+    /**
+     * Streams the records of the ranges between the boundaries, as with {@link #stream stream()}, and
+     * numbers each record by the offset of its range plus its position in the range, counting from 1.
+     * Every record takes at least one byte, so a range never has more records than bytes and the numbers
+     * are unique. The numbers increase in file order and depend only on the file and the boundaries,
+     * not on the order in which a parallel stream parses the ranges.
+     * @param boundaries the boundaries of the ranges
+     * @param parser parses the records of a range
+     * @param mapper maps each record and its number to the element of the stream
+     * @param onRangeParsed receives the number of records in each range after it has been parsed
+     * @param <T> the type of the records
+     * @param <R> the type of the elements of the stream
+     * @return the parallel stream of numbered records
+     */
+    public <T, R> Stream<R> streamNumbered(long[] boundaries, Function<InputStream, Iterator<T>> parser,
+                                           NumberedRecordMapper<T, R> mapper, LongConsumer onRangeParsed) {
+        return streamRanges(boundaries,
+            (buffer, start) -> new NumberedIterator<>(parser.apply(new ByteBufferInputStream(buffer)), start, mapper),
+            onRangeParsed);
+    }
+
+    /**
+     * Maps a record and its number in the file.
+     * @param <T> the type of the records
+     * @param <R> the type of the result
+     */
+    @FunctionalInterface
+    public interface NumberedRecordMapper<T, R> {
+        R map(long number, T record);
+    }
+
+    /**
+     * Maps a range of the file and returns a stream over its bytes.
+     * @param start the offset of the first byte
+     * @param end the offset after the last byte
+     * @return the stream of bytes
+     */
+    public InputStream openRange(long start, long end) {
+        return new ByteBufferInputStream(mapRange(start, end));
+    }
+
+    /**
+     * Maps a range of the file read-only.
+     * @param start the offset of the first byte
+     * @param end the offset after the last byte
+     * @return the mapped bytes
+     */
+    public MappedByteBuffer mapRange(long start, long end) {
+        long length = end - start;
+        if (length > Integer.MAX_VALUE) {
+            throw new MarkLogicIOException("Cannot map a record range of " + length + " bytes");
+        }
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } catch (IOException e) {
+            throw new MarkLogicIOException(e);
+        }
+    }
+
+    /**
+     * Iterates over the lines of a buffer as slices that share its bytes. A line ends at a
+     * newline, with a preceding carriage return removed, and empty lines are skipped.
+     * @param buffer the buffer of lines
+     * @return the iterator over the slices
+     */
+    public static Iterator<ByteBuffer> lineSlices(ByteBuffer buffer) {
+        return new LineSliceIterator(buffer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private <T> Stream<T> streamRanges(long[] boundaries, RangeParser<T> parser, LongConsumer onRangeParsed) {
+        return StreamSupport.stream(new RangeSpliterator<>(boundaries, 0, boundaries.length - 1, parser, onRangeParsed), true)
+            .onClose(this::closeQuietly);
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long findLineEnd(ByteBuffer buffer, long from) throws IOException {
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static void checkChunkSize(long chunkSize) {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be positive and less than 2 GB: " + chunkSize);
+        }
+    }
+
+    private static class BoundaryList {
+        private long[] values = new long[16];
+        private int count = 0;
+
+        BoundaryList(long first) {
+            add(first);
+        }
+
+        void add(long value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+
+        long last() {
+            return values[count - 1];
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    // parses a mapped range given the offset of the range in the file
+    private interface RangeParser<T> {
+        Iterator<T> parse(ByteBuffer buffer, long start);
+    }
+
+    private class RangeSpliterator<T> implements Spliterator<T> {
+        private final long[] boundaries;
+        private final RangeParser<T> parser;
+        private final LongConsumer onRangeParsed;
+        private int range;
+        private final int endRange;
+        private Iterator<T> records;
+        private long recordCount;
+
+        RangeSpliterator(long[] boundaries, int range, int endRange, RangeParser<T> parser,
+                         LongConsumer onRangeParsed) {
+            this.boundaries = boundaries;
+            this.range = range;
+            this.endRange = endRange;
+            this.parser = parser;
+            this.onRangeParsed = onRangeParsed;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (true) {
+                if (records == null) {
+                    if (range >= endRange) return false;
+                    records = parser.parse(mapRange(boundaries[range], boundaries[range + 1]), boundaries[range]);
+                    recordCount = 0;
+                }
+                if (records.hasNext()) {
+                    recordCount++;
+                    action.accept(records.next());
+                    return true;
+                }
+                records = null;
+                range++;
+                if (onRangeParsed != null) onRangeParsed.accept(recordCount);
+            }
+        }
+
+        // splits only between ranges that haven't been started
+        @Override
+        public Spliterator<T> trySplit() {
+            int firstUnstarted = (records == null) ? range : range + 1;
+            int remaining = endRange - firstUnstarted;
+            if (remaining < 2) return null;
+            int middle = firstUnstarted + remaining / 2;
+            RangeSpliterator<T> prefix = new RangeSpliterator<>(boundaries, range, middle, parser, onRangeParsed);
+            prefix.records = records;
+            prefix.recordCount = recordCount;
+            records = null;
+            range = middle;
+            return prefix;
+        }
+
+        // the remaining bytes, as the number of records isn't known until the ranges are parsed
+        @Override
+        public long estimateSize() {
+            return (range >= endRange) ? 0 : boundaries[endRange] - boundaries[range];
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+
+    private static class NumberedIterator<T, R> implements Iterator<R> {
+        private final Iterator<T> records;
+        private final NumberedRecordMapper<T, R> mapper;
+        private long number;
+
+        NumberedIterator(Iterator<T> records, long start, NumberedRecordMapper<T, R> mapper) {
+            this.records = records;
+            this.number = start;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return records.hasNext();
+        }
+
+        @Override
+        public R next() {
+            T record = records.next();
+            return mapper.map(++number, record);
+        }
+    }
+
+    private static class LineSliceIterator implements Iterator<ByteBuffer> {
+        private final ByteBuffer buffer;
+        private int position;
+        private ByteBuffer next;
+
+        LineSliceIterator(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.position = buffer.position();
+        }
+
+        @Override
+        public boolean hasNext() {
+            int limit = buffer.limit();
+            while (next == null && position < limit) {
+                int start = position;
+                int end = start;
+                while (end < limit && buffer.get(end) != '\n') {
+                    end++;
+                }
+                position = end + 1;
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+                if (end > start) {
+                    ByteBuffer slice = buffer.duplicate();
+                    slice.limit(end).position(start);
+                    next = slice.slice();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public ByteBuffer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ByteBuffer slice = next;
+            next = null;
+            return slice;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
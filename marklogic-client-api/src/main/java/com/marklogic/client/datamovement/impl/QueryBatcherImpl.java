@@ -17,6 +17,8 @@ package com.marklogic.client.datamovement.impl;
 
 import com.marklogic.client.datamovement.QueryBatch;
 import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.CheckpointStore;
+import com.marklogic.client.datamovement.ConcurrencyController;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.DataMovementException;
 import com.marklogic.client.datamovement.QueryFailureListener;
@@ -27,6 +29,7 @@ import com.marklogic.client.datamovement.QueryBatcher;
 import com.marklogic.client.datamovement.QueryBatchException;
 import com.marklogic.client.datamovement.QueryEvent;
 import com.marklogic.client.datamovement.QueryBatcherListener;
+import com.marklogic.client.datamovement.QueryCheckpoint;
 import com.marklogic.client.impl.*;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.StringHandle;
@@ -40,9 +43,11 @@ import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.ResourceNotFoundException;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -83,6 +88,17 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
   private int docToUriBatchRatio;
   private int defaultDocBatchSize;
   private int maxUriBatchSize;
+  private int prefetchPages = 0;
+  private int listenerThreadCount = -1;
+  private ThreadPoolExecutor listenerPool;
+  private final AtomicLong pendingListenerBatches = new AtomicLong(0);
+  private final Map<Forest,PrefetchWindow> prefetchWindows = new ConcurrentHashMap<>();
+  private CheckpointStore checkpointStore;
+  private long checkpointIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+  private QueryCheckpoint resumeFrom;
+  private QueryCheckpointTracker checkpointTracker;
+  private final AtomicLong nextCheckpointSave = new AtomicLong(0);
+  private final Object checkpointLock = new Object();
 
   QueryBatcherImpl(
           SearchQueryDefinition originalQuery, DataMovementManager moveMgr, ForestConfiguration forestConfig,
@@ -369,8 +385,7 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     }
 	if (threadPool != null) {
 		logger.info("Adjusting thread pool size from {} to {}", getThreadCount(), threadCount);
-		threadPool.setCorePoolSize(threadCount);
-		threadPool.setMaximumPoolSize(threadCount);
+		resizeThreadPool(threadPool, threadCount);
 	} else {
 		threadCountSet = true;
 	}
@@ -378,6 +393,109 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     return this;
   }
 
+  @Override
+  public QueryBatcher withPrefetch(int pages) {
+    requireNotStarted();
+    if ( pages < 0 ) {
+      throw new IllegalArgumentException("pages must be 0 or greater");
+    }
+    this.prefetchPages = pages;
+    return this;
+  }
+
+  @Override
+  public int getPrefetch() {
+    return prefetchPages;
+  }
+
+  @Override
+  public QueryBatcher withListenerThreadCount(int listenerThreadCount) {
+    requireNotStarted();
+    if ( listenerThreadCount <= 0 ) {
+      throw new IllegalArgumentException("listenerThreadCount must be 1 or greater");
+    }
+    this.listenerThreadCount = listenerThreadCount;
+    return this;
+  }
+
+  @Override
+  public int getListenerThreadCount() {
+    return listenerThreadCount > 0 ? listenerThreadCount : getThreadCount();
+  }
+
+  @Override
+  public QueryBatcher withCheckpointStore(CheckpointStore store) {
+    requireNotStarted();
+    this.checkpointStore = store;
+    return this;
+  }
+
+  @Override
+  public CheckpointStore getCheckpointStore() {
+    return checkpointStore;
+  }
+
+  @Override
+  public QueryBatcher withCheckpointInterval(long interval, TimeUnit unit) {
+    requireNotStarted();
+    if ( unit == null ) throw new IllegalArgumentException("unit must not be null");
+    if ( interval < 0 ) throw new IllegalArgumentException("interval must be 0 or greater");
+    this.checkpointIntervalMillis = unit.toMillis(interval);
+    return this;
+  }
+
+  @Override
+  public QueryBatcher withResumeFrom(QueryCheckpoint checkpoint) {
+    requireNotStarted();
+    this.resumeFrom = checkpoint;
+    return this;
+  }
+
+  @Override
+  public QueryCheckpoint getCheckpoint() {
+    QueryCheckpointTracker tracker = checkpointTracker;
+    return tracker == null ? null : tracker.toCheckpoint(getServerTimestamp());
+  }
+
+  private void saveCheckpointIfDue() {
+    if ( checkpointStore == null ) return;
+    long now = System.currentTimeMillis();
+    long due = nextCheckpointSave.get();
+    // only the thread that moves the due time forward saves
+    if ( now < due || !nextCheckpointSave.compareAndSet(due, now + checkpointIntervalMillis) ) return;
+    saveCheckpoint();
+  }
+
+  private void saveCheckpoint() {
+    if ( checkpointStore == null || checkpointTracker == null ) return;
+    // the checkpoint is taken under the lock too, so an older checkpoint never overwrites a newer one
+    synchronized ( checkpointLock ) {
+      try {
+        QueryCheckpoint checkpoint = getCheckpoint();
+        // resuming from a checkpoint with every forest done would skip the whole query
+        if ( isComplete(checkpoint) ) {
+          checkpointStore.clear();
+        } else {
+          checkpointStore.save(checkpoint.toJson());
+        }
+      } catch (Throwable t) {
+        logger.error("Unable to save checkpoint for QueryBatcher instance \"" + getJobName() + "\"", t);
+      }
+    }
+  }
+
+  private boolean isComplete(QueryCheckpoint checkpoint) {
+    return isComplete(checkpoint, getForestConfig().listForests());
+  }
+
+  static boolean isComplete(QueryCheckpoint checkpoint, Forest[] forests) {
+    for ( Forest forest : forests ) {
+      QueryCheckpoint.ForestCursor cursor = checkpoint.getForest(forest.getForestName());
+      if ( cursor == null || !cursor.isDone() ) return false;
+    }
+    return true;
+  }
+
   @Override
   public QueryBatcher withConsistentSnapshot() {
     requireNotStarted();
@@ -394,7 +512,13 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
   @Override
   public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
     requireJobStarted();
-    return threadPool.awaitTermination(timeout, unit);
+    boolean terminated = threadPool.awaitTermination(timeout, unit);
+    if ( terminated && listenerPool != null ) {
+      // the listener pool is shut down just before the query pool once no batches are pending, so this only
+      // waits for the listener threads to exit
+      terminated = listenerPool.awaitTermination(timeout, unit);
+    }
+    return terminated;
   }
 
   @Override
@@ -408,7 +532,8 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
 
   @Override
   public boolean isStopped() {
-    return threadPool != null && threadPool.isTerminated();
+    return threadPool != null && threadPool.isTerminated() &&
+      (listenerPool == null || listenerPool.isTerminated());
   }
 
   @Override
@@ -423,6 +548,22 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     }
   }
 
+  @Override
+  public QueryBatcher withConcurrencyController(ConcurrencyController controller) {
+    requireNotStarted();
+    super.withConcurrencyController(controller);
+    return this;
+  }
+
+  @Override
+  void applyThreadCount(int threadCount) {
+    // a single-threaded job queues and runs its tasks on one thread, and a pool shrunk to one thread can
+    // stall, so the pool of a multi-threaded job never goes below two threads
+    if ( isSingleThreaded ) return;
+    logger.debug("adjusting thread pool size to {}", threadCount);
+    resizeThreadPool(threadPool, Math.max(2, threadCount));
+  }
+
   private void requireNotStarted() {
     if ( threadPool != null ) {
       throw new IllegalStateException("Configuration cannot be changed after startJob has been called");
@@ -439,6 +580,9 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       withBatchSize(1);
       logger.warn("docBatchSize should be 1 or greater--setting docBatchSize to 1");
     }
+    if ( query == null && (checkpointStore != null || resumeFrom != null) ) {
+      throw new IllegalStateException("Checkpoints are only supported for jobs created from a query");
+    }
     super.setJobTicket(ticket);
     initialize();
     for (QueryBatchListener urisReadyListener : urisReadyListeners) {
@@ -482,7 +626,41 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
                     "threadCount={}, onUrisReady listeners={}, failure listeners={}",
             forests.length, getBatchSize(), getDocToUriBatchRatio(), getThreadCount(),
             urisReadyListeners.size(), failureListeners.size());
-    threadPool = new QueryThreadPoolExecutor(getThreadCount(), forests.length, getDocToUriBatchRatio(), this);
+    threadPool = new QueryThreadPoolExecutor(getThreadCount(), forests.length, getDocToUriBatchRatio(), this,
+      getMoveMgr().getJobThreadFactory());
+    if ( query != null ) {
+      if ( resumeFrom == null && checkpointStore != null ) {
+        String saved = checkpointStore.load();
+        if ( saved != null ) {
+          QueryCheckpoint checkpoint = QueryCheckpoint.fromJson(saved);
+          if ( isComplete(checkpoint) ) {
+            logger.info("Ignoring the stored checkpoint, which records every forest as done");
+          } else {
+            resumeFrom = checkpoint;
+          }
+        }
+      }
+      if ( resumeFrom != null ) {
+        logger.info("Resuming from checkpoint with {} forests, serverTimestamp={}",
+          resumeFrom.getForests().size(), resumeFrom.getServerTimestamp());
+        if ( resumeFrom.getServerTimestamp() != null ) {
+          consistentSnapshot = true;
+          serverTimestamp.set(resumeFrom.getServerTimestamp());
+        }
+      }
+      checkpointTracker = new QueryCheckpointTracker(resumeFrom);
+      nextCheckpointSave.set(System.currentTimeMillis() + checkpointIntervalMillis);
+    }
+    if ( query != null && prefetchPages > 0 ) {
+      logger.info("Pipelining uris retrieval with prefetch={} pages per forest, listenerThreadCount={}",
+        prefetchPages, getListenerThreadCount());
+      // the queue is bounded in practice by the prefetch window, at most
+      // (prefetchPages + 1) * docToUriBatchRatio batches per forest
+      listenerPool = new ThreadPoolExecutor(getListenerThreadCount(), getListenerThreadCount(),
+        0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), getMoveMgr().getJobThreadFactory(),
+        new ThreadPoolExecutor.DiscardPolicy());
+    }
+    initializeConcurrencyController();
   }
 
   /* When withForestConfig is called before the job starts, it just provides
@@ -651,11 +829,19 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
    */
   private synchronized void startQuerying() {
     Forest[] forests = getForestConfig().listForests();
-    boolean runInApplicationThread = (consistentSnapshot && forests.length > 1);
+    boolean runInApplicationThread = (consistentSnapshot && forests.length > 1 && serverTimestamp.get() == -1);
     for (Forest forest:  forests) {
-      QueryTask runnable = new QueryTask(
-              getMoveMgr(), this, forest, queryMethod, query, filtered, 1, 1, null
-      );
+      QueryCheckpoint.ForestCursor cursor = (resumeFrom == null) ? null : resumeFrom.getForest(forest.getForestName());
+      if ( cursor != null && cursor.isDone() ) {
+        logger.info("Skipping forest {}, which the checkpoint records as done", forest.getForestName());
+        forestIsDone.get(forest).set(true);
+        continue;
+      }
+      // resume after the last uri the checkpoint covers; start is only used by servers that don't support after
+      QueryTask runnable = (cursor == null) ?
+        new QueryTask(getMoveMgr(), this, forest, queryMethod, query, filtered, 1, 1, null) :
+        new QueryTask(getMoveMgr(), this, forest, queryMethod, query, filtered, 1, cursor.getUrisProcessed() + 1,
+          null, cursor.getAfterUri());
       if ( runInApplicationThread) {
         // let's run this first time in-line so we'll have the serverTimestamp set
         // before we launch all the parallel threads
@@ -665,6 +851,7 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
         threadPool.execute(runnable);
       }
     }
+    shutdownIfAllForestsAreDone();
   }
 
   private class QueryTask implements Runnable {
@@ -744,6 +931,7 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
         QueryManagerImpl queryMgr = (QueryManagerImpl) client.newQueryManager();
         queryMgr.setPageLength(getBatchSize() * getDocToUriBatchRatio());
         UrisHandle handle = new UrisHandle();
+        long requestStart = System.nanoTime();
 
         if (consistentSnapshot == true && serverTimestamp.get() > -1) {
           handle.setPointInTimeQueryTimestamp(serverTimestamp.get());
@@ -766,6 +954,7 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
             uris.get(batchNum).add(uri);
             totalProcessedCount++;
           }
+          reportRequest(client.getHost(), requestStart, null);
 
           if (totalProcessedCount == 0) {
             isDone.set(true);
@@ -781,6 +970,8 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
           // we're done if we get a 404 NOT FOUND which throws ResourceNotFoundException
           // this should only happen if the last query retrieved a full batch so it thought
           // there would be more and queued this task which retrieved 0 results
+          reportRequest(client.getHost(), requestStart, e);
+          checkpointTracker.forestExhausted(forest.getForestName());
           isDone.set(true);
           shutdownIfAllForestsAreDone();
           return;
@@ -788,12 +979,27 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
 			// The above catch on a ResourceNotFoundException seems to be an expected error that doesn't need to be
 			// logged. But if the query fails for any other reason, such as an invalid index, the error should be
 			// logged and the job stopped.
+			reportRequest(client.getHost(), requestStart, t);
 			logger.error("Query for URIs failed, stopping job; cause: " + t.getMessage(), t);
 			isDone.set(true);
 			shutdownIfAllForestsAreDone();
 			return;
 		}
 
+        for (List<String> batchUris : uris) {
+          if (batchUris.size() > 0) {
+            checkpointTracker.batchRetrieved(forest.getForestName(), batchUris.get(batchUris.size() - 1), batchUris.size());
+          }
+        }
+        if (totalProcessedCount != getBatchSize() * getDocToUriBatchRatio()) {
+          checkpointTracker.forestExhausted(forest.getForestName());
+        }
+
+        if (listenerPool != null) {
+          pipelinePage(client, queryStart, uris, hasLastBatch, lastBatchNum);
+          return;
+        }
+
         batch = batch
                 .withItems(uris.get(0).toArray(new String[uris.get(0).size()]))
                 .withServerTimestamp(serverTimestamp.get())
@@ -852,6 +1058,63 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       }
     }
 
+    /* With prefetch, every batch of the page goes to listenerPool and the
+     * query for the next page is handed to the forest's PrefetchWindow right
+     * away rather than after this thread processes the first batch.  The
+     * batches are counted in pendingListenerBatches before the forest can be
+     * marked done, so shutdownIfAllForestsAreDone never sees a done forest
+     * whose batches haven't been processed.
+     */
+    private void pipelinePage(DatabaseClient client, Calendar queryStart, List<List<String>> uris,
+                              boolean hasLastBatch, int lastBatchNum) {
+      AtomicBoolean isDone = forestIsDone.get(forest);
+      PrefetchWindow window = prefetchWindows.computeIfAbsent(forest, f -> new PrefetchWindow());
+      List<QueryTask> listenerTasks = new ArrayList<>();
+      for (int i = 0; i < getDocToUriBatchRatio(); i++) {
+        if (uris.get(i).size() == 0) {
+          continue;
+        }
+        QueryBatchImpl docBatch = new QueryBatchImpl()
+                .withBatcher(batcher)
+                .withClient(client)
+                .withTimestamp(queryStart)
+                .withJobTicket(getJobTicket())
+                .withForestBatchNumber(forestBatchNum + i)
+                .withForest(forest)
+                .withItems(uris.get(i).toArray(new String[uris.get(i).size()]))
+                .withServerTimestamp(serverTimestamp.get())
+                .withJobResultsSoFar(resultsSoFar.addAndGet(uris.get(i).size()))
+                .withForestResultsSoFar(forestResults.get(forest).addAndGet(uris.get(i).size()));
+        if (hasLastBatch && lastBatchNum == i) {
+          docBatch.withIsLastBatch(true);
+        }
+        listenerTasks.add(new QueryTask(moveMgr, batcher, forest, QueryBatcherImpl.this.queryMethod, query, filtered,
+                forestBatchNum + i, start, docBatch, null));
+      }
+
+      if (listenerTasks.size() > 0) {
+        window.pageFetched();
+        pendingListenerBatches.addAndGet(listenerTasks.size());
+        AtomicInteger pageRemaining = new AtomicInteger(listenerTasks.size());
+        for (QueryTask task : listenerTasks) {
+          listenerPool.execute(new ListenerTask(task, window, pageRemaining));
+        }
+      }
+
+      if (totalProcessedCount != getBatchSize() * getDocToUriBatchRatio() || maxUris <= resultsSoFar.longValue()) {
+        isDone.set(true);
+      }
+      if (isDone.get() || batcher.getStopped().get()) {
+        shutdownIfAllForestsAreDone();
+        return;
+      }
+      nextAfterUri = uris.get(getDocToUriBatchRatio() - 1).get(getBatchSize() - 1);
+      long nextStart = start + getBatchSize() * getDocToUriBatchRatio();
+      window.queueNextPage(new QueryTask(
+          moveMgr, batcher, forest, QueryBatcherImpl.this.queryMethod, query, filtered, forestBatchNum + getBatchSize(), nextStart, null, nextAfterUri
+      ));
+    }
+
     private void processDocs(QueryBatchImpl batch) {
       AtomicBoolean isDone = forestIsDone.get(forest);
 
@@ -872,6 +1135,8 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
             logger.error("Exception thrown by an onUrisReady listener", t);
           }
         }
+        checkpointTracker.batchProcessed(forest.getForestName(), batch.getItems()[batch.getItems().length - 1]);
+        saveCheckpointIfDue();
         if (batch.getItems().length != getBatchSize()) {
           // we're done if we get a partial batch (always the last)
           isDone.set(true);
@@ -928,12 +1193,83 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       // if even one isn't done, short-circuit out of this method and don't shutdown
       if ( isDone.get() == false ) return;
     }
+    // with prefetch a forest is done once its last page is retrieved, which can be before its batches are processed
+    if ( listenerPool != null && pendingListenerBatches.get() > 0 ) return;
     // if we made it this far, all forests are done. let's run the Job
     // completion listeners and shutdown.
-    if(runJobCompletionListeners.compareAndSet(false, true)) runJobCompletionListeners();
+    if(runJobCompletionListeners.compareAndSet(false, true)) {
+      saveCheckpoint();
+      runJobCompletionListeners();
+    }
+    if ( listenerPool != null ) listenerPool.shutdown();
     threadPool.shutdown();
   }
 
+  /* Limits how far the retrieval of uris gets ahead of the listeners for one
+   * forest.  A page is in flight from the time it's retrieved until the last
+   * of its batches is processed, and the query for the next page is only
+   * queued while no more than prefetchPages pages are in flight.  Otherwise
+   * that query is parked until a page completes.
+   */
+  private class PrefetchWindow {
+    private int pagesInFlight = 0;
+    private QueryTask parkedQuery;
+
+    synchronized void pageFetched() {
+      pagesInFlight++;
+    }
+
+    void queueNextPage(QueryTask nextQuery) {
+      synchronized ( this ) {
+        if ( pagesInFlight > prefetchPages ) {
+          parkedQuery = nextQuery;
+          return;
+        }
+      }
+      threadPool.execute(nextQuery);
+    }
+
+    void pageCompleted() {
+      QueryTask nextQuery = null;
+      synchronized ( this ) {
+        pagesInFlight--;
+        if ( parkedQuery != null && pagesInFlight <= prefetchPages ) {
+          nextQuery = parkedQuery;
+          parkedQuery = null;
+        }
+      }
+      if ( nextQuery != null && getStopped().get() == false && forestIsDone.get(nextQuery.forest).get() == false ) {
+        threadPool.execute(nextQuery);
+      }
+    }
+  }
+
+  /* Runs one batch of a prefetched page on listenerPool, then releases the
+   * page from its PrefetchWindow once all of the page's batches are done.
+   */
+  private class ListenerTask implements Runnable {
+    private final QueryTask task;
+    private final PrefetchWindow window;
+    private final AtomicInteger pageRemaining;
+
+    ListenerTask(QueryTask task, PrefetchWindow window, AtomicInteger pageRemaining) {
+      this.task = task;
+      this.window = window;
+      this.pageRemaining = pageRemaining;
+    }
+
+    @Override
+    public void run() {
+      try {
+        task.run();
+      } finally {
+        if ( pageRemaining.decrementAndGet() == 0 ) window.pageCompleted();
+        pendingListenerBatches.decrementAndGet();
+        shutdownIfAllForestsAreDone();
+      }
+    }
+  }
+
   private void runJobCompletionListeners() {
     for (QueryBatcherListener listener : jobCompletionListeners) {
       try {
@@ -1060,7 +1396,9 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
   @Override
   public void stop() {
     super.getStopped().set(true);
+    if ( listenerPool != null ) listenerPool.shutdownNow();
     if ( threadPool != null ) threadPool.shutdownNow();
+    saveCheckpoint();
     super.setJobEndTime();
     if ( query != null ) {
       for ( AtomicBoolean isDone : forestIsDone.values() ) {
@@ -1140,10 +1478,11 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
   private class QueryThreadPoolExecutor extends ThreadPoolExecutor {
     private Object objectToNotifyFrom;
 
-    QueryThreadPoolExecutor(int threadCount, int forestsLength, int docToUriBatchRatio, Object objectToNotifyFrom) {
+    QueryThreadPoolExecutor(int threadCount, int forestsLength, int docToUriBatchRatio, Object objectToNotifyFrom,
+                            ThreadFactory threadFactory) {
       super(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
         new LinkedBlockingQueue<>((forestsLength * docToUriBatchRatio * 2) +  threadCount),
-        new BlockingRunsPolicy());
+        threadFactory, new BlockingRunsPolicy());
       this.objectToNotifyFrom = objectToNotifyFrom;
     }
 
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.marklogic.client.datamovement.QueryCheckpoint;
+
+/**
+ * Tracks which batches of a QueryBatcher job have been processed, per forest, to produce a QueryCheckpoint.
+ *
+ * Design
+ *   - each batch is registered with its last uri when its page of uris is retrieved, before it's handed to
+ *     any thread, and the server returns a forest's uris in order, so a forest's outstanding batches sorted
+ *     by last uri are in the order they were retrieved
+ *   - when a batch is processed it's only marked; the forest's cursor then advances over the leading run of
+ *     processed batches, so a batch that finishes early doesn't move the cursor past one still running
+ *   - a batch retrieved again by a retry whose last uri is at or before the cursor is ignored, so the cursor
+ *     never moves backwards
+ *   - a forest is done once its last page was retrieved and every outstanding batch has been processed
+ */
+class QueryCheckpointTracker {
+  private final Map<String,ForestProgress> forests = new ConcurrentHashMap<>();
+
+  QueryCheckpointTracker(QueryCheckpoint resumeFrom) {
+    if ( resumeFrom != null ) {
+      for ( QueryCheckpoint.ForestCursor cursor : resumeFrom.getForests() ) {
+        ForestProgress progress = new ForestProgress();
+        progress.afterUri = cursor.getAfterUri();
+        progress.urisProcessed = cursor.getUrisProcessed();
+        progress.exhausted = cursor.isDone();
+        forests.put(cursor.getForestName(), progress);
+      }
+    }
+  }
+
+  void batchRetrieved(String forestName, String lastUri, int size) {
+    ForestProgress progress = progress(forestName);
+    synchronized (progress) {
+      if ( progress.afterUri != null && lastUri.compareTo(progress.afterUri) <= 0 ) return;
+      if ( !progress.outstanding.containsKey(lastUri) ) progress.outstanding.put(lastUri, new OutstandingBatch(size));
+    }
+  }
+
+  void batchProcessed(String forestName, String lastUri) {
+    ForestProgress progress = progress(forestName);
+    synchronized (progress) {
+      OutstandingBatch batch = progress.outstanding.get(lastUri);
+      if ( batch == null ) return;
+      batch.processed = true;
+      while ( !progress.outstanding.isEmpty() ) {
+        Map.Entry<String,OutstandingBatch> first = progress.outstanding.firstEntry();
+        if ( !first.getValue().processed ) break;
+        progress.afterUri = first.getKey();
+        progress.urisProcessed += first.getValue().size;
+        progress.outstanding.pollFirstEntry();
+      }
+    }
+  }
+
+  void forestExhausted(String forestName) {
+    ForestProgress progress = progress(forestName);
+    synchronized (progress) {
+      progress.exhausted = true;
+    }
+  }
+
+  QueryCheckpoint toCheckpoint(Long serverTimestamp) {
+    List<QueryCheckpoint.ForestCursor> cursors = new ArrayList<>();
+    for ( Map.Entry<String,ForestProgress> entry : forests.entrySet() ) {
+      ForestProgress progress = entry.getValue();
+      synchronized (progress) {
+        if ( progress.afterUri == null && !progress.exhausted ) continue;
+        cursors.add(new QueryCheckpoint.ForestCursor(entry.getKey(), progress.afterUri, progress.urisProcessed,
+          progress.exhausted && progress.outstanding.isEmpty()));
+      }
+    }
+    cursors.sort((a, b) -> a.getForestName().compareTo(b.getForestName()));
+    return new QueryCheckpoint(serverTimestamp, cursors);
+  }
+
+  private ForestProgress progress(String forestName) {
+    return forests.computeIfAbsent(forestName, name -> new ForestProgress());
+  }
+
+  private static class ForestProgress {
+    private String afterUri;
+    private long urisProcessed;
+    private boolean exhausted;
+    private final TreeMap<String,OutstandingBatch> outstanding = new TreeMap<>();
+  }
+
+  private static class OutstandingBatch {
+    private final int size;
+    private boolean processed;
+
+    private OutstandingBatch(int size) {
+      this.size = size;
+    }
+  }
+}
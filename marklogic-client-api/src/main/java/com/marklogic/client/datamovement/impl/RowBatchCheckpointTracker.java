@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.marklogic.client.datamovement.RowBatcherCheckpoint;
+
+/**
+ * Tracks which batches of a RowBatcher job completed, to produce a RowBatcherCheckpoint.
+ *
+ * Design
+ *   - batches complete out of order across threads, so the tracker keeps the highest batch number up to
+ *     which every batch completed plus the set of batch numbers that completed beyond it
+ *   - a completion that fills the gap after completedThrough advances it over the following completed
+ *     batches, so the set only holds batches completed ahead of a batch still running (about one per thread)
+ *     or of a failed batch that was skipped
+ *   - the batches of a resumed checkpoint start out completed, so readRows can skip them
+ */
+class RowBatchCheckpointTracker {
+  private final long batchCount;
+  private long completedThrough;
+  private final TreeSet<Long> completedAhead = new TreeSet<>();
+
+  RowBatchCheckpointTracker(long batchCount, RowBatcherCheckpoint resumeFrom) {
+    this.batchCount = batchCount;
+    if ( resumeFrom != null ) {
+      this.completedThrough = resumeFrom.getCompletedThrough();
+      for ( long[] range : resumeFrom.getCompletedRanges() ) {
+        for ( long batch = range[0]; batch <= range[1]; batch++ ) {
+          completedAhead.add(batch);
+        }
+      }
+    }
+  }
+
+  synchronized boolean isCompleted(long batchNumber) {
+    return batchNumber <= completedThrough || completedAhead.contains(batchNumber);
+  }
+
+  synchronized void completed(long batchNumber) {
+    if ( batchNumber <= completedThrough ) return;
+    if ( batchNumber != completedThrough + 1 ) {
+      completedAhead.add(batchNumber);
+      return;
+    }
+    completedThrough = batchNumber;
+    while ( !completedAhead.isEmpty() && completedAhead.first() == completedThrough + 1 ) {
+      completedThrough = completedAhead.pollFirst();
+    }
+  }
+
+  synchronized RowBatcherCheckpoint toCheckpoint(Long serverTimestamp) {
+    List<long[]> ranges = new ArrayList<>();
+    long[] range = null;
+    for ( long batch : completedAhead ) {
+      if ( range != null && batch == range[1] + 1 ) {
+        range[1] = batch;
+      } else {
+        range = new long[]{batch, batch};
+        ranges.add(range);
+      }
+    }
+    return new RowBatcherCheckpoint(batchCount, serverTimestamp, completedThrough, ranges);
+  }
+}
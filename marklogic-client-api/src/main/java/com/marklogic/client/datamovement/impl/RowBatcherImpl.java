@@ -15,16 +15,17 @@
  */
 package com.marklogic.client.datamovement.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.client.MarkLogicInternalException;
 import com.marklogic.client.datamovement.*;
 import com.marklogic.client.expression.PlanBuilder;
 import com.marklogic.client.impl.DatabaseClientImpl;
+import com.marklogic.client.impl.RowManagerImpl;
+import com.marklogic.client.impl.RowPartitionPlan;
 import com.marklogic.client.io.BaseHandle;
 import com.marklogic.client.io.Format;
-import com.marklogic.client.io.JacksonHandle;
+import com.marklogic.client.io.InputStreamHandle;
 import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.io.marker.AbstractWriteHandle;
 import com.marklogic.client.io.marker.ContentHandle;
@@ -32,9 +33,11 @@ import com.marklogic.client.io.marker.StructureReadHandle;
 import com.marklogic.client.row.RawPlanDefinition;
 import com.marklogic.client.row.RawQueryDSLPlan;
 import com.marklogic.client.row.RowManager;
+import com.marklogic.client.row.RowSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -42,12 +45,9 @@ import java.util.concurrent.atomic.AtomicLong;
 
 class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
     final static private int DEFAULT_BATCH_SIZE = 1000;
-    final static private long MAX_UNSIGNED_LONG = -1;
 
     private static Logger logger = LoggerFactory.getLogger(RowBatcherImpl.class);
 
-    final private static String LOWER_BOUND = "ML_LOWER_BOUND";
-    final private static String UPPER_BOUND = "ML_UPPER_BOUND";
 
     private long batchSize = 0;
     private long batchCount = 0;
@@ -58,21 +58,51 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
     private RowBatchFailureListener[] failureListeners;
     private RowBatchSuccessListener[] successListeners;
 
-    private RawPlanDefinition pagedPlan;
-    private long rowCount = 0;
+    private RowPartitionPlan partitionPlan;
 
     private HostInfo[] hostInfos;
 
     private boolean consistentSnapshot = false;
     private final AtomicLong serverTimestamp = new AtomicLong(-1);
 
+    private CheckpointStore checkpointStore;
+    private long checkpointIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+    private RowBatcherCheckpoint resumeFrom;
+    private RowBatchCheckpointTracker checkpointTracker;
+    private final AtomicLong nextCheckpointSave = new AtomicLong(0);
+    private final Object checkpointLock = new Object();
+
 	private final ContentHandle<T> rowsHandle;
+	// when set, each batch is streamed into a RowSet and the handles are InputStreamHandles for the body
+	private final RowStreamRequest rowStreamRequest;
 	private final RowManager defaultRowManager;
 
 	RowBatcherImpl(DataMovementManagerImpl moveMgr, ContentHandle<T> rowsHandle) {
+		this(moveMgr, validateRowsHandle(rowsHandle), null);
+	}
+
+	RowBatcherImpl(DataMovementManagerImpl moveMgr, RowManager.RowStreamFormat rowStreamFormat) {
+		this(moveMgr, (rowMgr, plan, bodyHandle, rowsPerBatch) ->
+			rowMgr.resultRowsStream(plan, rowStreamFormat, bodyHandle, null));
+	}
+
+	// each batch is a single column batch unless a rowid range has more rows than the batch size
+	RowBatcherImpl(DataMovementManagerImpl moveMgr) {
+		this(moveMgr, (rowMgr, plan, bodyHandle, rowsPerBatch) ->
+			rowMgr.resultColumnBatches(plan, rowsPerBatch, bodyHandle, null));
+	}
+
+	@SuppressWarnings("unchecked")
+	private RowBatcherImpl(DataMovementManagerImpl moveMgr, RowStreamRequest rowStreamRequest) {
+		this(moveMgr, (ContentHandle<T>) (ContentHandle<?>) new InputStreamHandle(), rowStreamRequest);
+	}
+
+	private RowBatcherImpl(
+		DataMovementManagerImpl moveMgr, ContentHandle<T> rowsHandle, RowStreamRequest rowStreamRequest
+	) {
         super(moveMgr);
-		validateRowsHandle(rowsHandle);
         this.rowsHandle = rowsHandle;
+        this.rowStreamRequest = rowStreamRequest;
 
 		defaultRowManager = getPrimaryClient().newRowManager();
         super.withBatchSize(DEFAULT_BATCH_SIZE);
@@ -81,7 +111,7 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
         }
     }
 
-	private void validateRowsHandle(ContentHandle<T> rowsHandle) {
+	private static <T> ContentHandle<T> validateRowsHandle(ContentHandle<T> rowsHandle) {
 		if (rowsHandle == null) {
 			throw new IllegalArgumentException("Cannot create RowBatcher with null rows manager");
 		}
@@ -101,6 +131,7 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
 		} else if (!DatabaseClientFactory.getHandleRegistry().isRegistered(rowsClass)) {
 			throw new IllegalArgumentException("Rows handle must be registered with DatabaseClientFactory.HandleFactoryRegistry");
 		}
+		return rowsHandle;
 	}
 
     @Override
@@ -142,18 +173,10 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
         requireNotStarted("Must specify batch view before starting job");
 
         DatabaseClientImpl client = (DatabaseClientImpl) getPrimaryClient();
-        JsonNode viewInfo = client.getServices().postResource(
-           null, "internal/viewinfo", null, null, userPlan, new JacksonHandle()
-           ).get();
-
-        this.rowCount   = viewInfo.get("rowCount").asLong(0);
-        this.pagedPlan  = getRowManager().newRawPlanDefinition(new JacksonHandle(viewInfo.get("modifiedPlan")));
+        this.partitionPlan = RowPartitionPlan.analyze(client.getServices(), getRowManager(), userPlan);
 
-		JsonNode schemaNode = viewInfo.get("schemaName");
         logger.info("plan analysis schema name: {}, view name: {}, row estimate: {}",
-			(schemaNode != null) ? schemaNode.asText(null) : null,
-			viewInfo.get("viewName").asText(null),
-			this.rowCount
+			partitionPlan.getSchemaName(), partitionPlan.getViewName(), partitionPlan.getRowCount()
 		);
     }
 
@@ -170,6 +193,13 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
         return this;
     }
 
+    @Override
+    public RowBatcher<T> withConcurrencyController(ConcurrencyController controller) {
+        requireNotStarted("Must set concurrency controller before starting job");
+        super.withConcurrencyController(controller);
+        return this;
+    }
+
     @Override
     public RowBatcher<T> onSuccess(RowBatchSuccessListener listener) {
         requireNotStarted("Must set success listener before starting job");
@@ -220,6 +250,57 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
         return this;
     }
 
+    @Override
+    public RowBatcher<T> withCheckpointStore(CheckpointStore store) {
+        requireNotStarted("Must set checkpoint store before starting job");
+        this.checkpointStore = store;
+        return this;
+    }
+    @Override
+    public RowBatcher<T> withCheckpointInterval(long interval, TimeUnit unit) {
+        requireNotStarted("Must set checkpoint interval before starting job");
+        if (unit == null) throw new IllegalArgumentException("unit must not be null");
+        if (interval < 0) throw new IllegalArgumentException("interval must be 0 or greater");
+        this.checkpointIntervalMillis = unit.toMillis(interval);
+        return this;
+    }
+    @Override
+    public RowBatcher<T> withResumeFrom(RowBatcherCheckpoint checkpoint) {
+        requireNotStarted("Must set checkpoint to resume from before starting job");
+        this.resumeFrom = checkpoint;
+        return this;
+    }
+    @Override
+    public RowBatcherCheckpoint getCheckpoint() {
+        RowBatchCheckpointTracker tracker = this.checkpointTracker;
+        return (tracker == null) ? null : tracker.toCheckpoint(getServerTimestamp());
+    }
+    private void saveCheckpointIfDue() {
+        if (checkpointStore == null) return;
+        long now = System.currentTimeMillis();
+        long due = nextCheckpointSave.get();
+        // only the thread that moves the due time forward saves
+        if (now < due || !nextCheckpointSave.compareAndSet(due, now + checkpointIntervalMillis)) return;
+        saveCheckpoint();
+    }
+    private void saveCheckpoint() {
+        if (checkpointStore == null || checkpointTracker == null) return;
+        // the checkpoint is taken under the lock too, so an older checkpoint never overwrites a newer one
+        synchronized (checkpointLock) {
+            try {
+                RowBatcherCheckpoint checkpoint = getCheckpoint();
+                // resuming from a checkpoint with every batch completed would skip every rowid range
+                if (checkpoint.isDone()) {
+                    checkpointStore.clear();
+                } else {
+                    checkpointStore.save(checkpoint.toJson());
+                }
+            } catch (Throwable e) {
+                logger.error("Unable to save checkpoint for RowBatcher instance \""+getJobName()+"\"", e);
+            }
+        }
+    }
+
     @Override
     public RowBatchSuccessListener[] getSuccessListeners() {
         return successListeners;
@@ -312,10 +393,10 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
 
     @Override
     public long getRowEstimate() {
-        if (this.pagedPlan == null) {
+        if (this.partitionPlan == null) {
             throw new IllegalStateException("Must supply plan before getting the row estimate");
         }
-        return this.rowCount;
+        return this.partitionPlan.getRowCount();
     }
     @Override
     public long getBatchCount() {
@@ -366,7 +447,7 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
     public synchronized void start(JobTicket ticket) {
         requireNotStarted("Job already started");
 
-        if (this.pagedPlan == null)
+        if (this.partitionPlan == null)
             throw new IllegalStateException("Plan must be supplied before starting the job");
 
         if (successListeners == null || successListeners.length == 0)
@@ -384,8 +465,33 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
             super.withBatchSize(DEFAULT_BATCH_SIZE);
         }
 
-        this.batchCount = (getRowEstimate() / super.getBatchSize()) + 1;
-        this.batchSize = Long.divideUnsigned(MAX_UNSIGNED_LONG, this.batchCount);
+        if (resumeFrom == null && checkpointStore != null) {
+            String saved = checkpointStore.load();
+            if (saved != null) {
+                RowBatcherCheckpoint checkpoint = RowBatcherCheckpoint.fromJson(saved);
+                if (checkpoint.isDone()) {
+                    logger.info("Ignoring the stored checkpoint, which records every batch as completed");
+                } else {
+                    resumeFrom = checkpoint;
+                }
+            }
+        }
+
+        if (resumeFrom != null) {
+            // the same batch count gives each batch the same rowid range as in the checkpointed job
+            this.batchCount = resumeFrom.getBatchCount();
+            logger.info("resuming from checkpoint of {} batches, completed through batch {}",
+                    batchCount, resumeFrom.getCompletedThrough());
+            if (resumeFrom.getServerTimestamp() != null) {
+                consistentSnapshot = true;
+                serverTimestamp.set(resumeFrom.getServerTimestamp());
+            }
+        } else {
+            this.batchCount = (getRowEstimate() / super.getBatchSize()) + 1;
+        }
+        this.batchSize = RowPartitionPlan.getRangeSize(this.batchCount);
+        this.checkpointTracker = new RowBatchCheckpointTracker(this.batchCount, resumeFrom);
+        this.nextCheckpointSave.set(System.currentTimeMillis() + checkpointIntervalMillis);
 		// It is not expected that batch size will be meaningful to a user. It is more likely to be confusing since it's
 		// not the same value that a user would have provided via withBatchSize. And we don't want to log it when it's
 		// -1, which will be the case for a single batch.
@@ -404,8 +510,9 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
             }
         }
 
-        this.threadPool = new BatchThreadPoolExecutor(super.getThreadCount());
+        this.threadPool = new BatchThreadPoolExecutor(super.getThreadCount(), getMoveMgr().getJobThreadFactory());
         this.runningThreads.set(super.getThreadCount());
+        initializeConcurrencyController();
 
         super.setJobTicket(ticket);
         super.setJobStartTime();
@@ -414,7 +521,7 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
         for (int i=0; i<super.getThreadCount(); i++) {
             ContentHandle<T> threadHandle = rowsHandle.newHandle();
             RowBatchCallable<T> threadCallable = new RowBatchCallable<T>(this, threadHandle);
-            if (i == 0 && consistentSnapshot) {
+            if (i == 0 && consistentSnapshot && serverTimestamp.get() == -1) {
                 // make the first call synchronously to establish the timestamp
                 readRows(threadCallable);
             }
@@ -425,22 +532,21 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
     private boolean readRows(RowBatchCallable<T> callable) {
         // assumes a batch size of at least 2 to avoid unsigned overflow
         long currentBatch = this.batchNum.incrementAndGet();
+        // skip the batches a resumed checkpoint recorded as completed
+        while (currentBatch <= this.batchCount && this.checkpointTracker.isCompleted(currentBatch)) {
+            currentBatch = this.batchNum.incrementAndGet();
+        }
         // submitted before reaching last batch
         if (currentBatch > this.batchCount) {
             endThread();
             return false;
         }
 
-        long lowerBound = (currentBatch - 1) * this.batchSize;
-        String lowerBoundStr = Long.toUnsignedString(lowerBound);
-        String upperBoundStr = Long.toUnsignedString(
-                (currentBatch == this.batchCount) ? MAX_UNSIGNED_LONG : (lowerBound + (this.batchSize - 1))
-        );
+        String lowerBoundStr = RowPartitionPlan.getLowerBound(currentBatch, this.batchCount);
+        String upperBoundStr = RowPartitionPlan.getUpperBound(currentBatch, this.batchCount);
         logger.debug("current batch: {}, lower bound: {}, upper bound: {}", currentBatch, lowerBoundStr, upperBoundStr);
 
-        PlanBuilder.Plan plan = this.pagedPlan
-                .bindParam(LOWER_BOUND, lowerBoundStr)
-                .bindParam(UPPER_BOUND, upperBoundStr);
+        PlanBuilder.Plan plan = this.partitionPlan.bindRange(lowerBoundStr, upperBoundStr);
         ContentHandle<T> threadHandle = callable.getHandle();
 
         boolean isDirect =
@@ -448,13 +554,15 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
 
         RowBatchFailureEventImpl requestEvent = null;
         for (int batchRetries = 0; shouldRequestBatch(requestEvent, batchRetries); batchRetries++) {
-            RowManager requestRowMgr = isDirect ?
+            HostInfo requestHost = isDirect ?
                     // batches round-robin over the direct hosts as do retries
-                    this.hostInfos[(int) ((currentBatch + batchRetries) % hostInfos.length)].rowMgr :
-                    this.getRowManager();
+                    this.hostInfos[(int) ((currentBatch + batchRetries) % hostInfos.length)] :
+                    null;
+            RowManager requestRowMgr = isDirect ? requestHost.rowMgr : this.getRowManager();
 
             Throwable throwable = null;
             T rowsDoc = null;
+            long requestStart = System.nanoTime();
             try {
                 BaseHandle baseThreadHandle = (BaseHandle) threadHandle;
                 if (consistentSnapshot && baseThreadHandle.getPointInTimeQueryTimestamp() == -1) {
@@ -464,7 +572,9 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
                     baseThreadHandle.setPointInTimeQueryTimestamp(snapshotTimestamp);
                   }
                 }
-                if (requestRowMgr.resultDoc(plan, (StructureReadHandle) threadHandle) != null) {
+                if (rowStreamRequest != null) {
+                    rowsDoc = readRowStream(requestRowMgr, plan, baseThreadHandle);
+                } else if (requestRowMgr.resultDoc(plan, (StructureReadHandle) threadHandle) != null) {
                     rowsDoc = threadHandle.get();
                 }
                 if (consistentSnapshot && serverTimestamp.get() == -1) {
@@ -480,6 +590,7 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
             } catch(Throwable e) {
                 throwable = e;
             }
+            reportRequest(isDirect ? requestHost.hostName : getPrimaryClient().getHost(), requestStart, throwable);
 
             if (throwable != null) {
                 logger.debug("failed for batch: {}, retry: {}", currentBatch, batchRetries);
@@ -501,6 +612,9 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
                 );
                 initRequestEvent(responseEvent);
                 notifySuccess(responseEvent);
+                if (rowStreamRequest != null) {
+                    closeRowStream((RowSet<?>) rowsDoc);
+                }
                 if (requestEvent != null)
                     requestEvent = null;
                 break;
@@ -508,6 +622,9 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
         }
         if (requestEvent != null) {
             this.failedBatches.incrementAndGet();
+        } else {
+            this.checkpointTracker.completed(currentBatch);
+            saveCheckpointIfDue();
         }
 
         if (requestEvent != null && requestEvent.getDisposition() == RowBatchFailureListener.BatchFailureDisposition.STOP) {
@@ -518,6 +635,8 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
             if (this.batchNum.get() >= this.batchCount) {
                 logger.debug("finished thread after batch: {}", currentBatch);
                 endThread();
+            } else if (retireThread()) {
+                logger.debug("retired thread after batch: {}", currentBatch);
             } else {
                 this.submit(callable);
             }
@@ -525,6 +644,25 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
 
         return (requestEvent == null);
     }
+    @SuppressWarnings("unchecked")
+    T readRowStream(RowManager requestRowMgr, PlanBuilder.Plan plan, BaseHandle threadHandle) {
+        RowSet<?> rows = rowStreamRequest.request(
+                (RowManagerImpl) requestRowMgr, plan, (InputStreamHandle) threadHandle, super.getBatchSize()
+        );
+        // as with a rows document, an empty batch isn't passed to the listeners
+        if (!rows.iterator().hasNext()) {
+            closeRowStream(rows);
+            return null;
+        }
+        return (T) rows;
+    }
+    private void closeRowStream(RowSet<?> rows) {
+        try {
+            rows.close();
+        } catch (IOException e) {
+            logger.warn("could not close row stream: {}", e.toString());
+        }
+    }
     private boolean shouldRequestBatch(RowBatchFailureEventImpl requestEvent, int batchRetries) {
         if (batchRetries == 0)        return true;  // first request
         if (requestEvent == null)     return false; // request succeeded
@@ -533,6 +671,30 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
         return (requestEvent.getDisposition() == RowBatchFailureListener.BatchFailureDisposition.RETRY &&
                 batchRetries < requestEvent.getMaxRetries());
     }
+    // ends the calling thread's chain of batches if the concurrency controller
+    // has lowered the thread count below the number of running threads
+    private boolean retireThread() {
+        for (int running = this.runningThreads.get(); running > getThreadCount();
+             running = this.runningThreads.get()) {
+            if (this.runningThreads.compareAndSet(running, running - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    @Override
+    void applyThreadCount(int threadCount) {
+        logger.debug("adjusting thread count to {}", threadCount);
+        resizeThreadPool(this.threadPool, threadCount);
+        // the pool has grown first, so each new thread's first batch runs on a new pool thread
+        for (int running = this.runningThreads.get();
+             running > 0 && running < threadCount && this.batchNum.get() < this.batchCount;
+             running = this.runningThreads.get()) {
+            if (this.runningThreads.compareAndSet(running, running + 1)) {
+                submit(new RowBatchCallable<T>(this, rowsHandle.newHandle()));
+            }
+        }
+    }
     private void endThread() {
         int stillRunning = this.runningThreads.decrementAndGet();
         if (stillRunning == 0) {
@@ -554,6 +716,11 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
         threadPool.execute(task);
     }
 
+    @FunctionalInterface
+    private interface RowStreamRequest {
+        RowSet<?> request(RowManagerImpl rowMgr, PlanBuilder.Plan plan, InputStreamHandle bodyHandle, int rowsPerBatch);
+    }
+
     static private class RowBatchCallable<T> implements Callable<Boolean> {
         private RowBatcherImpl rowBatcher;
         private ContentHandle<T> handle;
@@ -654,9 +821,17 @@ class RowBatcherImpl<T>  extends BatcherImpl implements RowBatcher<T> {
     }
 
     private class BatchThreadPoolExecutor extends ThreadPoolExecutor {
-        BatchThreadPoolExecutor(int threadCount) {
+        BatchThreadPoolExecutor(int threadCount, ThreadFactory threadFactory) {
             super(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<Runnable>(threadCount), new ThreadPoolExecutor.CallerRunsPolicy());
+                    new LinkedBlockingQueue<Runnable>(threadCount), threadFactory,
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        @Override
+        protected void terminated() {
+            super.terminated();
+            // every batch that will complete has completed, whether the job finished or was stopped
+            saveCheckpoint();
         }
     }
 
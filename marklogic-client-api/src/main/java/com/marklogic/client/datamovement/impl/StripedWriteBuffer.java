@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+import com.marklogic.client.document.DocumentWriteOperation;
+
+/**
+ * Assembles the documents passed to WriteBatcher.add into batches without a lock that's shared by all the
+ * producer threads.
+ *
+ * Design
+ *   - the buffer is split into a power-of-two number of stripes, and each producer thread is pinned to a stripe
+ *     by its thread id, so with no more producers than stripes each thread effectively owns its stripe
+ *   - a stripe is a plain array of documents and one of their lengths, each sized to one batch and guarded by
+ *     the stripe's own monitor, which is uncontended in the common case
+ *   - the thread whose add closes a stripe takes its arrays as the batch and leaves the stripe to allocate new
+ *     ones, so each document costs two array stores and a batch costs two array allocations
+ *   - documents added by a single thread keep their order within the stripe, matching the ordering the
+ *     queue used to give a single producer
+ *   - drain() empties every stripe, so flushAsync/flushAndWait still write everything added before the call
+ *   - with a byte limit, a stripe also closes once the summed length of its documents reaches the limit,
+ *     and a document that wouldn't fit closes the stripe before it's added, so only a single document
+ *     larger than the limit ever produces a batch over it
+ *   - each document keeps the length it was added with, so a batch releases exactly what its documents
+ *     reserved even when the length of a streamed document's handle has changed since
+ */
+class StripedWriteBuffer {
+  private final Stripe[] stripes;
+  private final int stripeMask;
+  private final int batchSize;
+  private final long byteLimit;
+
+  StripedWriteBuffer(int batchSize, long byteLimit) {
+    this(batchSize, byteLimit, Runtime.getRuntime().availableProcessors());
+  }
+
+  StripedWriteBuffer(int batchSize, long byteLimit, int minStripeCount) {
+    if ( batchSize <= 0 ) throw new IllegalArgumentException("batchSize must be 1 or greater");
+    int stripeCount = 1;
+    while ( stripeCount < minStripeCount ) stripeCount <<= 1;
+    this.batchSize = batchSize;
+    this.byteLimit = byteLimit;
+    this.stripeMask = stripeCount - 1;
+    this.stripes = new Stripe[stripeCount];
+    for ( int i = 0; i < stripeCount; i++ ) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  int getBatchSize() {
+    return batchSize;
+  }
+
+  long getByteLimit() {
+    return byteLimit;
+  }
+
+  int getStripeCount() {
+    return stripes.length;
+  }
+
+  /**
+   * Buffers the document in the calling thread's stripe and passes any batch that closes as a result to
+   * batchConsumer, outside of the stripe's lock.
+   * @param writeOperation the document to buffer
+   * @param byteLength the document's length, or an estimate, which the batch keeps for the document
+   * @param batchConsumer receives each completed batch
+   */
+  void add(DocumentWriteOperation writeOperation, long byteLength, Consumer<? super Batch> batchConsumer) {
+    Stripe stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+    Batch previousBatch = null;
+    Batch fullBatch = null;
+    synchronized (stripe) {
+      if ( byteLimit > 0 && stripe.count > 0 && stripe.bytes + byteLength > byteLimit ) {
+        previousBatch = stripe.take();
+      }
+      // allocated on first use, so stripes that no thread maps to cost nothing
+      if ( stripe.items == null ) {
+        stripe.items = new DocumentWriteOperation[batchSize];
+        stripe.byteLengths = new long[batchSize];
+      }
+      stripe.byteLengths[stripe.count] = byteLength;
+      stripe.items[stripe.count++] = writeOperation;
+      stripe.bytes += byteLength;
+      if ( stripe.count >= batchSize || (byteLimit > 0 && stripe.bytes >= byteLimit) ) {
+        fullBatch = stripe.take();
+      }
+    }
+    // both batches have left the stripe, so the second is passed on even if the first fails
+    try {
+      if ( previousBatch != null ) batchConsumer.accept(previousBatch);
+    } finally {
+      if ( fullBatch != null ) batchConsumer.accept(fullBatch);
+    }
+  }
+
+  /**
+   * Removes and returns every buffered document, stripe by stripe.
+   */
+  Batch drain() {
+    DocumentWriteOperation[] items = new DocumentWriteOperation[0];
+    long[] byteLengths = new long[0];
+    int count = 0;
+    long bytes = 0;
+    for ( Stripe stripe : stripes ) {
+      synchronized (stripe) {
+        if ( stripe.count == 0 ) continue;
+        items = Arrays.copyOf(items, count + stripe.count);
+        byteLengths = Arrays.copyOf(byteLengths, count + stripe.count);
+        System.arraycopy(stripe.items, 0, items, count, stripe.count);
+        System.arraycopy(stripe.byteLengths, 0, byteLengths, count, stripe.count);
+        Arrays.fill(stripe.items, 0, stripe.count, null);
+        count += stripe.count;
+        bytes += stripe.bytes;
+        stripe.count = 0;
+        stripe.bytes = 0;
+      }
+    }
+    return new Batch(items, byteLengths, count, bytes);
+  }
+
+  /**
+   * The documents of a batch with the length each was added with.
+   */
+  static final class Batch extends AbstractList<DocumentWriteOperation> implements RandomAccess {
+    private final DocumentWriteOperation[] items;
+    private final long[] byteLengths;
+    private final int count;
+    private final long bytes;
+
+    private Batch(DocumentWriteOperation[] items, long[] byteLengths, int count, long bytes) {
+      this.items = items;
+      this.byteLengths = byteLengths;
+      this.count = count;
+      this.bytes = bytes;
+    }
+
+    @Override
+    public DocumentWriteOperation get(int index) {
+      if ( index < 0 || index >= count ) throw new IndexOutOfBoundsException("index: " + index + ", size: " + count);
+      return items[index];
+    }
+
+    @Override
+    public int size() {
+      return count;
+    }
+
+    /**
+     * @return the length the document at the index was added with
+     */
+    long getByteLength(int index) {
+      if ( index < 0 || index >= count ) throw new IndexOutOfBoundsException("index: " + index + ", size: " + count);
+      return byteLengths[index];
+    }
+
+    /**
+     * @return the summed length of the documents
+     */
+    long getBytes() {
+      return bytes;
+    }
+  }
+
+  private static class Stripe {
+    private DocumentWriteOperation[] items;
+    private long[] byteLengths;
+    private int count;
+    private long bytes;
+
+    // the batch takes over the arrays, so the stripe allocates new ones for its next document
+    private Batch take() {
+      Batch batch = new Batch(items, byteLengths, count, bytes);
+      items = null;
+      byteLengths = null;
+      count = 0;
+      bytes = 0;
+      return batch;
+    }
+  }
+}
@@ -16,11 +16,14 @@
 package com.marklogic.client.datamovement.impl;
 
 import java.io.Closeable;
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -32,21 +35,27 @@ import org.slf4j.LoggerFactory;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.document.ContentDescriptor;
 import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.document.XMLDocumentManager;
 import com.marklogic.client.document.DocumentWriteOperation.OperationType;
+import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.DocumentMetadataHandle;
+import com.marklogic.client.io.FileHandle;
 import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.impl.DocumentWriteOperationImpl;
 import com.marklogic.client.impl.Utilities;
 import com.marklogic.client.io.marker.AbstractWriteHandle;
 import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.io.marker.DocumentMetadataWriteHandle;
 
+import com.marklogic.client.datamovement.ConcurrencyController;
 import com.marklogic.client.datamovement.DataMovementException;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.datamovement.ForestAssignmentPolicy;
 import com.marklogic.client.datamovement.ForestConfiguration;
 import com.marklogic.client.datamovement.JobTicket;
 import com.marklogic.client.datamovement.WriteBatch;
@@ -63,11 +72,15 @@ import com.marklogic.client.datamovement.WriteBatcher;
  *     - no synchronization or unnecessary delays while queueing
  *     - won't launch extra threads until a batch is ready to write
  *     - (warning) we don't proactively read streams, so don't leave them in the queue too long
+ *     - optionally block or reject add/addAs once too many docs or bytes are buffered
  *   - topology-aware by calling /v1/forestinfo
  *     - get list of hosts which have writeable forests
  *     - each write hits the next writeable host for round-robin network calls
+ *     - or, with an optional ForestAssignmentPolicy, the host of the forest each doc is
+ *       expected to land in
  *   - manage an internal threadPool of size threadCount for network calls
- *   - when batchSize reached, writes a batch
+ *     - resized while the job runs when a ConcurrencyController is set
+ *   - when batchSize reached, or the optional batchByteLimit, writes a batch
  *     - using a thread from threadPool
  *     - no synchronization or unnecessary delays while emptying queue
  *     - and calls each successListener
@@ -89,14 +102,10 @@ import com.marklogic.client.datamovement.WriteBatcher;
  *         see the same state yet only one of the threads will perform the processing
  *         - do this by using AtomicLong.incrementAndGet() so each thread gets a different
  *           number, then trigger the logic with the thread that gets the correct number
- *         - for example, we decide to write a batch by
- *           timeToWriteBatch = (recordNum % getBatchSize()) == 0;
- *           - in other words, when we reach a recordNum which is a multiple of getBatchSize
- *           - only one thread will get the correct number and that thread will have
- *             timeToWriteBatch == true
- *           - we don't reset recordNum at each batch as that would introduce a race condition
- *           - however, when flush is called we want subsequent batches to start over, so
- *             in that case we reset recordNum to 0
+ *         - for example, we choose the host for a batch by
+ *           hostToUse = batchNum % hostInfos.length;
+ *         - deciding when to write a batch works the same way: only the thread whose add
+ *           fills a stripe of the StripedWriteBuffer gets that batch back
  *     - use classes from java.util.concurrent and java.util.concurrent.atomic
  *       - so external threads don't block when calling add/addAs
  *       - so internal state doesn't get confused by race conditions
@@ -105,9 +114,9 @@ import com.marklogic.client.datamovement.WriteBatcher;
  *       - use non-blocking queues where possible
  *       - we use a blocking queue for the thread pool since that's required and it makes sense
  *         for threads to block while awaiting more tasks
- *       - we use a blocking queue for the DocumentWriteOperation main queue just so we can have
- *         the atomic drainTo method used by flush.  But LinkedBlockingQueue is unbounded so
- *         nothing should block on put() and we use poll() to get things so we don't block there either.
+ *       - added documents go into a StripedWriteBuffer rather than one shared queue, so producer
+ *         threads don't contend on a single lock for every add; the thread that completes a batch
+ *         hands it to the thread pool
  *       - we only use one synchronized block inside initialize() to ensure it only runs once
  *         - after the first call is complete, calls to initialize() won't hit the synchronized block
  *   - try to do what's expected
@@ -117,14 +126,20 @@ import com.marklogic.client.datamovement.WriteBatcher;
  *           thread B might still complete first
  *     - try to match batch sizes to batchSize
  *       - except when flush is called, then immediately write all queued docs
+ *       - each producer thread fills its own stripe, so up to one partial batch per stripe waits
+ *         for more docs or for flush
  *     - when awaitCompletion is called, block until existing tasks are complete but ignore any
  *       tasks added after awaitCompletion is called
  *       - for more on the design of awaitCompletion, see comments above CompletableThreadPoolExecutor
  *         and CompletableRejectedExecutionHandler
  *   - track
- *     - one queue of DocumentWriteOperation
- *     - batchCounter to decide if it's time to write a batch
- *       - flush resets this so after flush batch sizes will be normal
+ *     - the number of docs, and bytes, added but not yet written or failed, in a WriteBufferLimit
+ *       - each batch records what it holds so it can release it after its listeners run
+ *       - a producer over the limit waits in short slices, and writes the partial batches if no
+ *         batch is being written, since otherwise nothing would ever free space
+ *     - one striped buffer of DocumentWriteOperation, which decides when a batch is full
+ *       - plus one striped buffer per host when a ForestAssignmentPolicy routes docs, so each
+ *         batch only holds docs for one host
  *     - batchNumber to decide which host to use next (round-robin)
  *     - initialized to ensure configuration doesn't change after add/addAs are called
  *     - threadPool of threadCount size for most calls to the server
@@ -148,11 +163,18 @@ public class WriteBatcherImpl
   private String temporalCollection;
   private ServerTransform transform;
   private ForestConfiguration forestConfig;
-  private LinkedBlockingQueue<DocumentWriteOperation> queue = new LinkedBlockingQueue<>();
+  private StripedWriteBuffer buffer;
+  private long batchByteLimit = -1;
+  private ForestAssignmentPolicy forestAssignment;
+  private long maxBufferedDocuments = -1;
+  private long maxBufferedBytes = -1;
+  private long bufferFullTimeoutMillis = -1;
+  private WriteBufferLimit bufferLimit;
+  private volatile Forest[] assignableForests;
+  private final Map<String,StripedWriteBuffer> hostBuffers = new ConcurrentHashMap<>();
   private List<WriteBatchListener> successListeners = new ArrayList<>();
   private List<WriteFailureListener> failureListeners = new ArrayList<>();
   private AtomicLong batchNumber = new AtomicLong(0);
-  private AtomicLong batchCounter = new AtomicLong(0);
   private AtomicLong itemsSoFar = new AtomicLong(0);
   private HostInfo[] hostInfos;
   private boolean initialized = false;
@@ -180,8 +202,15 @@ public class WriteBatcherImpl
       // create a thread pool where threads are kept alive for up to one minute of inactivity,
       // max queue size is threadCount * 3, and callers run tasks past the max queue size
       threadPool = new CompletableThreadPoolExecutor(getThreadCount(), getThreadCount(), 1, TimeUnit.MINUTES,
-        new LinkedBlockingQueue<Runnable>(getThreadCount() * 3));
+        new LinkedBlockingQueue<Runnable>(getThreadCount() * 3), getMoveMgr().getJobThreadFactory());
       threadPool.allowCoreThreadTimeOut(true);
+      buffer = new StripedWriteBuffer(getBatchSize(), batchByteLimit);
+      bufferLimit = new WriteBufferLimit(maxBufferedDocuments, maxBufferedBytes);
+      if ( maxBufferedDocuments > 0 && maxBufferedDocuments < getBatchSize() ) {
+        logger.warn("maxBufferedDocuments ({}) is less than batchSize ({}), so no batch will be full",
+          maxBufferedDocuments, getBatchSize());
+      }
+      initializeConcurrencyController();
 
       initialized = true;
 
@@ -212,31 +241,113 @@ public class WriteBatcherImpl
 	  // v1/documents endpoint supports writing a 'naked' properties fragment with no content.
     initialize();
     requireNotStopped();
-    queue.add(writeOperation);
     logger.trace("add uri={}", writeOperation.getUri());
-    // if we have queued batchSize, it's time to flush a batch
-    long recordNum = batchCounter.incrementAndGet();
-    boolean timeToWriteBatch = (recordNum % getBatchSize()) == 0;
-    if ( timeToWriteBatch ) {
-      BatchWriteSet writeSet = newBatchWriteSet();
-      int minBatchSize = 0;
+    long byteLength = estimateByteLength(writeOperation);
+    reserveBuffer(byteLength);
+    final String hostName;
+    final StripedWriteBuffer hostBuffer;
+    try {
+      hostName = assignHost(writeOperation);
+      hostBuffer = (hostName == null) ? buffer :
+        hostBuffers.computeIfAbsent(hostName, host -> new StripedWriteBuffer(getBatchSize(), batchByteLimit));
+    } catch (Throwable t) {
+      // the doc never reached a buffer, so no batch would ever release what it reserved
+      bufferLimit.release(1, byteLength);
+      throw t;
+    }
+    // only the thread whose doc completes a batch gets it back, and it's the one to write it;
+    // once buffered, the doc's reservation goes with its batch, which releases it if it can't be written
+    hostBuffer.add(writeOperation, byteLength, docs -> writeFullBatch(docs, hostName));
+    return this;
+  }
+
+  /**
+   * Counts the doc as buffered, first waiting for space if a buffer maximum has been reached.
+   */
+  private void reserveBuffer(long byteLength) {
+    if ( bufferLimit.tryAcquire(byteLength) ) return;
+    long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(bufferFullTimeoutMillis);
+    long startNanos = System.nanoTime();
+    do {
+      requireNotStopped();
+      long remainingNanos = (bufferFullTimeoutMillis < 0) ? Long.MAX_VALUE : timeoutNanos - (System.nanoTime() - startNanos);
+      if ( remainingNanos <= 0 ) {
+        throw new DataMovementException("The buffer is full with " + bufferLimit.getDocuments() +
+          " documents and " + bufferLimit.getBytes() + " bytes waiting to be written", null);
+      }
+      // docs in partial batches are only written by a flush, so when no batch is being written
+      // write them rather than wait for space that would never be released
+      if ( threadPool.getActiveCount() == 0 && threadPool.getQueue().isEmpty() ) {
+        flush(false);
+      }
+      try {
+        bufferLimit.awaitRelease(Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(100)), TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DataMovementException("Interrupted while waiting for space in the buffer", e);
+      }
+    } while ( !bufferLimit.tryAcquire(byteLength) );
+  }
+
+  private void releaseBuffer(BatchWriteSet writeSet) {
+    if ( bufferLimit != null ) bufferLimit.release(writeSet.getBufferedDocuments(), writeSet.getBufferedBytes());
+  }
+
+  /**
+   * Returns the preferred host of the forest the ForestAssignmentPolicy expects the doc to be assigned to,
+   * or null to use the next host in the rotation.
+   */
+  private String assignHost(DocumentWriteOperation writeOperation) {
+    if ( forestAssignment == null || writeOperation.getOperationType() != OperationType.DOCUMENT_WRITE ) return null;
+    Forest[] forests = assignableForests;
+    if ( forests == null || forests.length == 0 ) return null;
+    Forest forest = forestAssignment.assignForest(writeOperation.getUri(), forests);
+    return forest == null ? null : forest.getPreferredHost();
+  }
+
+  private void writeFullBatch(StripedWriteBuffer.Batch docs, String hostName) {
+    try {
+      BatchWriteSet writeSet = newBatchWriteSet(hostName);
       if(defaultMetadata != null) {
         writeSet.getWriteSet().add(new DocumentWriteOperationImpl(OperationType.METADATA_DEFAULT, null, defaultMetadata, null));
-        minBatchSize = 1;
       }
-      for (int i=0; i < getBatchSize(); i++ ) {
-        DocumentWriteOperation doc = queue.poll();
-        if ( doc == null ) {
-          // strange, there should have been a full batch of docs in the queue...
-          break;
-        }
+      for ( DocumentWriteOperation doc : docs ) {
         writeSet.getWriteSet().add(doc);
       }
-      if ( writeSet.getWriteSet().size() > minBatchSize ) {
-        threadPool.submit( new BatchWriter(writeSet) );
-      }
+      writeSet.setBuffered(docs.size(), docs.getBytes());
+      threadPool.submit( new BatchWriter(writeSet) );
+    } catch (Throwable t) {
+      // a submitted batch releases its docs once written or failed, but this one was never submitted
+      bufferLimit.release(docs.size(), docs.getBytes());
+      throw t;
     }
-    return this;
+  }
+
+  /**
+   * Returns the content length when the handle can report it cheaply, otherwise an estimate of an equal share
+   * of the byte limit so that documents of unknown size still batch by count.
+   */
+  long estimateByteLength(DocumentWriteOperation writeOperation) {
+    if ( batchByteLimit <= 0 && maxBufferedBytes <= 0 ) return 0;
+    AbstractWriteHandle content = writeOperation.getContent();
+    if ( content == null ) return 0;
+    if ( content instanceof BytesHandle ) {
+      byte[] bytes = ((BytesHandle) content).get();
+      if ( bytes != null ) return bytes.length;
+    } else if ( content instanceof StringHandle ) {
+      // chars rather than encoded bytes, which is close enough for batching
+      String string = ((StringHandle) content).get();
+      if ( string != null ) return string.length();
+    } else if ( content instanceof FileHandle ) {
+      File file = ((FileHandle) content).get();
+      if ( file != null ) return file.length();
+    }
+    if ( content instanceof ContentDescriptor ) {
+      long length = ((ContentDescriptor) content).getByteLength();
+      if ( length != ContentDescriptor.UNKNOWN_LENGTH ) return length;
+    }
+    // without a batch byte limit there's nothing to base an estimate on, so only maxBufferedDocuments bounds these
+    return (batchByteLimit > 0) ? Math.max(1, batchByteLimit / getBatchSize()) : 0;
   }
 
   @Override
@@ -286,23 +397,44 @@ public class WriteBatcherImpl
     if ( isStopped() == true ) throw new IllegalStateException("This instance has been stopped");
   }
 
-  private BatchWriteSet newBatchWriteSet() {
+  private BatchWriteSet newBatchWriteSet(String hostName) {
     long batchNum = batchNumber.incrementAndGet();
-    return newBatchWriteSet(batchNum);
+    return newBatchWriteSet(batchNum, hostName);
   }
 
   private BatchWriteSet newBatchWriteSet(long batchNum) {
-    int hostToUse = (int) (batchNum % hostInfos.length);
-    HostInfo host = hostInfos[hostToUse];
+    return newBatchWriteSet(batchNum, null);
+  }
+
+  private BatchWriteSet newBatchWriteSet(long batchNum, String hostName) {
+    HostInfo[] hostInfos = this.hostInfos;
+    HostInfo host = null;
+    if ( hostName != null ) {
+      for ( HostInfo hostInfo : hostInfos ) {
+        if ( hostName.equals(hostInfo.hostName) ) {
+          host = hostInfo;
+          break;
+        }
+      }
+    }
+    // without a routed host, or if that host has left the rotation after a failover, use round-robin
+    if ( host == null ) host = hostInfos[(int) (batchNum % hostInfos.length)];
     DatabaseClient hostClient = host.client;
     BatchWriteSet batchWriteSet = new BatchWriteSet(this, hostClient.newDocumentManager().newWriteSet(),
       hostClient, getTransform(), getTemporalCollection());
     batchWriteSet.setBatchNumber(batchNum);
+    // timed for the ConcurrencyController, if any, before the listeners run
+    AtomicLong writeStart = new AtomicLong();
+    batchWriteSet.onBeforeWrite( () -> writeStart.set(System.nanoTime()) );
     batchWriteSet.onSuccess( () -> {
+      reportRequest(hostClient.getHost(), writeStart.get(), null);
       sendSuccessToListeners(batchWriteSet);
+      releaseBuffer(batchWriteSet);
     });
     batchWriteSet.onFailure( (throwable) -> {
+      reportRequest(hostClient.getHost(), writeStart.get(), throwable);
       sendThrowableToListeners(throwable, "Error writing batch: {}", batchWriteSet);
+      releaseBuffer(batchWriteSet);
     });
     return batchWriteSet;
   }
@@ -396,33 +528,48 @@ public class WriteBatcherImpl
   private void flush(boolean waitForCompletion) {
     requireInitialized();
     requireNotStopped();
-    // drain any docs left in the queue
-    List<DocumentWriteOperation> docs = new ArrayList<>();
-    batchCounter.set(0);
-    queue.drainTo(docs);
+    // drain any docs left in the buffers
+    boolean flushed = flushDocs(buffer.drain(), null);
+    for ( Map.Entry<String,StripedWriteBuffer> hostBuffer : hostBuffers.entrySet() ) {
+      if ( flushed == false ) break;
+      flushed = flushDocs(hostBuffer.getValue().drain(), hostBuffer.getKey());
+    }
+
+    if ( waitForCompletion == true ) awaitCompletion();
+  }
+
+  /**
+   * Writes the drained docs in batches of up to batchSize docs and batchByteLimit bytes.
+   * @return false if the job was stopped before all the docs were submitted
+   */
+  private boolean flushDocs(StripedWriteBuffer.Batch docs, String hostName) {
 	if (logger.isTraceEnabled()) {
 		logger.trace("flushing {} queued docs", docs.size());
 	}
-    Iterator<DocumentWriteOperation> iter = docs.iterator();
-    for ( int i=0; iter.hasNext(); i++ ) {
+    int next = 0;
+    while ( next < docs.size() ) {
       if ( isStopped() == true ) {
-        logger.warn("Job is now stopped, preventing the flush of {} queued docs", docs.size() - i);
-        if ( waitForCompletion == true ) awaitCompletion();
-        return;
+        logger.warn("Job is now stopped, preventing the flush of {} queued docs", docs.size() - next);
+        return false;
       }
-      BatchWriteSet writeSet = newBatchWriteSet();
+      BatchWriteSet writeSet = newBatchWriteSet(hostName);
       if(defaultMetadata != null) {
           writeSet.getWriteSet().add(new DocumentWriteOperationImpl(OperationType.METADATA_DEFAULT, null, defaultMetadata, null));
         }
-      int j=0;
-      for ( ; j < getBatchSize() && iter.hasNext(); j++ ) {
-        DocumentWriteOperation doc = iter.next();
+      long batchBytes = 0;
+      int j = 0;
+      for ( ; j < getBatchSize() && next < docs.size(); j++ ) {
+        DocumentWriteOperation doc = docs.get(next);
+        long byteLength = docs.getByteLength(next);
+        if ( j > 0 && batchByteLimit > 0 && batchBytes + byteLength > batchByteLimit ) break;
         writeSet.getWriteSet().add(doc);
+        batchBytes += byteLength;
+        next++;
       }
+      writeSet.setBuffered(j, batchBytes);
       threadPool.submit( new BatchWriter(writeSet) );
     }
-
-    if ( waitForCompletion == true ) awaitCompletion();
+    return true;
   }
 
   private void sendSuccessToListeners(BatchWriteSet batchWriteSet) {
@@ -461,6 +608,8 @@ public class WriteBatcherImpl
     super.setJobEndTime();
     super.getStopped().set(true);
     if ( threadPool != null ) threadPool.shutdownNow();
+    // producers waiting for space see the job is stopped and give up
+    if ( bufferLimit != null ) bufferLimit.wakeWaiters();
     closeAllListeners();
   }
 
@@ -552,6 +701,74 @@ public class WriteBatcherImpl
     return this;
   }
 
+  @Override
+  public WriteBatcher withConcurrencyController(ConcurrencyController controller) {
+    requireNotInitialized();
+    super.withConcurrencyController(controller);
+    return this;
+  }
+
+  @Override
+  void applyThreadCount(int threadCount) {
+    logger.debug("adjusting thread pool size to {}", threadCount);
+    resizeThreadPool(threadPool, threadCount);
+  }
+
+  @Override
+  public WriteBatcher withMaxBufferedDocuments(long maxBufferedDocuments) {
+    requireNotInitialized();
+    this.maxBufferedDocuments = maxBufferedDocuments;
+    return this;
+  }
+
+  @Override
+  public long getMaxBufferedDocuments() {
+    return maxBufferedDocuments;
+  }
+
+  @Override
+  public WriteBatcher withMaxBufferedBytes(long maxBufferedBytes) {
+    requireNotInitialized();
+    this.maxBufferedBytes = maxBufferedBytes;
+    return this;
+  }
+
+  @Override
+  public long getMaxBufferedBytes() {
+    return maxBufferedBytes;
+  }
+
+  @Override
+  public WriteBatcher withBufferFullTimeout(long timeout, TimeUnit unit) {
+    requireNotInitialized();
+    if ( unit == null ) throw new IllegalArgumentException("unit must not be null");
+    this.bufferFullTimeoutMillis = (timeout < 0) ? -1 : unit.toMillis(timeout);
+    return this;
+  }
+
+  @Override
+  public long getBufferFullTimeout(TimeUnit unit) {
+    if ( unit == null ) throw new IllegalArgumentException("unit must not be null");
+    return (bufferFullTimeoutMillis < 0) ? -1 : unit.convert(bufferFullTimeoutMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public long getBufferedDocumentCount() {
+    return (bufferLimit == null) ? 0 : bufferLimit.getDocuments();
+  }
+
+  @Override
+  public WriteBatcher withBatchByteLimit(long batchByteLimit) {
+    requireNotInitialized();
+    this.batchByteLimit = batchByteLimit;
+    return this;
+  }
+
+  @Override
+  public long getBatchByteLimit() {
+    return batchByteLimit;
+  }
+
   @Override
   public WriteBatcher withTemporalCollection(String collection) {
     requireNotInitialized();
@@ -612,6 +829,7 @@ public class WriteBatcherImpl
     }
     this.forestConfig = forestConfig;
     this.hostInfos = newHostInfos;
+    this.assignableForests = Arrays.stream(forests).filter(Forest::isUpdateable).toArray(Forest[]::new);
 
     if ( removedHostInfos.size() > 0 ) {
       DataMovementManagerImpl moveMgrImpl = getMoveMgr();
@@ -637,6 +855,8 @@ public class WriteBatcherImpl
             for ( WriteEvent doc : writerTask.writeSet.getBatchOfWriteEvents().getItems() ) {
               writeSet.getWriteSet().add(doc.getTargetUri(), doc.getMetadata(), doc.getContent());
             }
+            // the replacement batch releases the buffer space the dropped one held
+            writeSet.setBuffered(writerTask.writeSet.getBufferedDocuments(), writerTask.writeSet.getBufferedBytes());
             BatchWriter retryWriterTask = new BatchWriter(writeSet);
             Runnable fretryWriterTask = (Runnable) threadPool.submit(retryWriterTask);
             threadPool.replaceTask(writerTask, fretryWriterTask);
@@ -657,6 +877,18 @@ public class WriteBatcherImpl
     return forestConfig;
   }
 
+  @Override
+  public WriteBatcher withForestAssignment(ForestAssignmentPolicy policy) {
+    requireNotInitialized();
+    this.forestAssignment = policy;
+    return this;
+  }
+
+  @Override
+  public ForestAssignmentPolicy getForestAssignment() {
+    return forestAssignment;
+  }
+
   public static class HostInfo {
     public String hostName;
     public DatabaseClient client;
@@ -799,7 +1031,14 @@ public class WriteBatcherImpl
     public CompletableThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime,
                                          TimeUnit unit, BlockingQueue<Runnable> queue)
     {
-      super(corePoolSize, maximumPoolSize, keepAliveTime, unit, queue, new CompletableRejectedExecutionHandler());
+      this(corePoolSize, maximumPoolSize, keepAliveTime, unit, queue, Executors.defaultThreadFactory());
+    }
+
+    public CompletableThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime,
+                                         TimeUnit unit, BlockingQueue<Runnable> queue, ThreadFactory threadFactory)
+    {
+      super(corePoolSize, maximumPoolSize, keepAliveTime, unit, queue, threadFactory,
+        new CompletableRejectedExecutionHandler());
       // now that super() has been called we can reference "this" to add it to
       // the RejectedExecutionHandler
       ((CompletableRejectedExecutionHandler) getRejectedExecutionHandler()).setThreadPool(this);
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the documents, and their bytes, that have been added to a WriteBatcher but not yet written or failed,
+ * and refuses new documents past the configured maximums so that a producer faster than the cluster can't fill
+ * the heap.
+ *
+ * Design
+ *   - the counts are atomics, so the common case of a document that fits costs two atomic adds and no lock
+ *   - a document that doesn't fit is taken back out of the counts and the caller waits for a release, which
+ *     only takes the monitor when some thread is waiting
+ *   - a document larger than the byte maximum is let in when nothing else is buffered, so it can't wait forever
+ */
+class WriteBufferLimit {
+  private final long maxDocuments;
+  private final long maxBytes;
+  private final AtomicLong documents = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  /**
+   * @param maxDocuments the most documents to buffer, or 0 or less for no limit
+   * @param maxBytes the most bytes to buffer, or 0 or less for no limit
+   */
+  WriteBufferLimit(long maxDocuments, long maxBytes) {
+    this.maxDocuments = maxDocuments;
+    this.maxBytes = maxBytes;
+  }
+
+  long getDocuments() {
+    return documents.get();
+  }
+
+  long getBytes() {
+    return bytes.get();
+  }
+
+  /**
+   * Counts the document if it fits under the maximums.
+   * @return false, leaving the counts unchanged, if the document doesn't fit
+   */
+  boolean tryAcquire(long byteLength) {
+    long docCount = documents.incrementAndGet();
+    long byteCount = bytes.addAndGet(byteLength);
+    if ( (maxDocuments > 0 && docCount > maxDocuments) || (maxBytes > 0 && byteCount > maxBytes && docCount > 1) ) {
+      documents.decrementAndGet();
+      bytes.addAndGet(-byteLength);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Uncounts documents once they've been written or failed, and wakes any threads waiting for space.
+   */
+  void release(long docCount, long byteLength) {
+    if ( docCount == 0 && byteLength == 0 ) return;
+    documents.addAndGet(-docCount);
+    bytes.addAndGet(-byteLength);
+    wakeWaiters();
+  }
+
+  void wakeWaiters() {
+    if ( waiters.get() == 0 ) return;
+    synchronized ( this ) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Waits until documents are released or the timeout passes. A release between a failed tryAcquire and
+   * this call is only noticed when the timeout passes, so callers should wait in short slices.
+   */
+  void awaitRelease(long timeout, TimeUnit unit) throws InterruptedException {
+    waiters.incrementAndGet();
+    try {
+      synchronized ( this ) {
+        unit.timedWait(this, timeout);
+      }
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,696 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.datamovement.NodeOperation;
+import com.marklogic.client.datamovement.XMLSplitter;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the records of an XML document in UTF-8 by scanning its bytes for markup, so that each record can be
+ * emitted as the original bytes of the element instead of being parsed into events and serialized again.
+ *
+ * Design:
+ * <ul>
+ *   <li>Only the start tags of the elements outside the records are decoded, so the visitor can choose the
+ *   records. Inside a record, the scan only tracks the nesting of tags, skipping comments, processing
+ *   instructions, CDATA sections and quoted attribute values.</li>
+ *   <li>A record is a slice of the buffer unless ancestors of the element declare namespaces. Those declarations
+ *   are then injected into the start tag of the record as they were written in the source, so the record is a
+ *   copy of its bytes with the declarations inserted.</li>
+ *   <li>The scan does not validate the document, and entity references are passed through, so a record can
+ *   only refer to the predefined entities.</li>
+ * </ul>
+ */
+public class XMLRecordScanner {
+    private static final byte[] XMLNS = "xmlns".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer buffer;
+    private final XMLSplitter.Visitor<?> visitor;
+    private final int limit;
+    private int position;
+    private StartTag top;
+
+    /**
+     * Creates a scanner of the remaining bytes of the buffer.
+     * @param buffer the bytes of the document, which must be encoded in UTF-8
+     * @param visitor chooses the elements that are records
+     */
+    public XMLRecordScanner(ByteBuffer buffer, XMLSplitter.Visitor<?> visitor) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer must not be null");
+        }
+        if (visitor == null) {
+            throw new IllegalArgumentException("visitor must not be null");
+        }
+        this.buffer = buffer.duplicate();
+        this.visitor = visitor;
+        this.limit = buffer.limit();
+        this.position = skipByteOrderMark(buffer.position());
+        checkEncoding();
+    }
+
+    /**
+     * Returns the bytes of the next record, with the namespace declarations in scope at the record.
+     * @return the bytes of the record, or null after the last record
+     */
+    public ByteBuffer nextRecord() {
+        while (true) {
+            int start = indexOf('<', position);
+            if (start < 0) {
+                if (top != null) {
+                    throw new MarkLogicIOException("Unclosed element: " + top.qname());
+                }
+                position = limit;
+                return null;
+            }
+            position = start;
+            if (startsWith(start, "<?")) {
+                position = indexAfter("?>", start);
+            } else if (startsWith(start, "<!--")) {
+                position = indexAfter("-->", start);
+            } else if (startsWith(start, "<![CDATA[")) {
+                position = indexAfter("]]>", start);
+            } else if (startsWith(start, "<!")) {
+                position = skipDeclaration(start);
+            } else if (startsWith(start, "</")) {
+                endElement(start);
+            } else {
+                StartTag tag = parseStartTag(start);
+                NodeOperation nodeOperation = visitor.startElement(new StartTagReader(tag));
+                if (nodeOperation == null) {
+                    throw new IllegalStateException("No NodeOperation returned.");
+                }
+                switch (nodeOperation) {
+                    case DESCEND:
+                        position = tag.end;
+                        if (tag.empty) {
+                            visitor.endElement(tag.namespaceURI(), tag.localName);
+                        } else {
+                            top = tag;
+                        }
+                        break;
+                    case SKIP:
+                        position = tag.empty ? tag.end : skipContent(tag.end);
+                        break;
+                    case PROCESS:
+                        position = tag.empty ? tag.end : skipContent(tag.end);
+                        return makeRecord(tag, position);
+                    default:
+                        throw new IllegalStateException("Unknown state");
+                }
+            }
+        }
+    }
+
+    private void endElement(int start) {
+        int nameEnd = nameEnd(start + 2);
+        String qname = string(start + 2, nameEnd);
+        if (top == null || !top.qname().equals(qname)) {
+            throw new MarkLogicIOException("Unexpected end tag: " + qname);
+        }
+        position = indexAfter(">", nameEnd);
+        visitor.endElement(top.namespaceURI(), top.localName);
+        top = top.parent;
+    }
+
+    private ByteBuffer makeRecord(StartTag tag, int end) {
+        List<Declaration> injected = new ArrayList<>();
+        Set<String> prefixes = new HashSet<>();
+        for (Declaration declaration : tag.declarations) {
+            prefixes.add(declaration.prefix);
+        }
+        for (StartTag ancestor = tag.parent; ancestor != null; ancestor = ancestor.parent) {
+            for (Declaration declaration : ancestor.declarations) {
+                if (prefixes.add(declaration.prefix) &&
+                        !(declaration.prefix.isEmpty() && declaration.uri.isEmpty())) {
+                    injected.add(declaration);
+                }
+            }
+        }
+
+        if (injected.isEmpty()) {
+            ByteBuffer record = buffer.duplicate();
+            record.limit(end).position(tag.start);
+            return record.slice();
+        }
+
+        int length = end - tag.start;
+        for (Declaration declaration : injected) {
+            length += declaration.length();
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        copy(record, tag.start, tag.nameEnd);
+        for (Declaration declaration : injected) {
+            record.put((byte) ' ').put(XMLNS);
+            if (!declaration.prefix.isEmpty()) {
+                record.put((byte) ':').put(declaration.prefix.getBytes(StandardCharsets.UTF_8));
+            }
+            record.put((byte) '=').put(declaration.quote);
+            copy(record, declaration.valueStart, declaration.valueEnd);
+            record.put(declaration.quote);
+        }
+        copy(record, tag.nameEnd, end);
+        record.flip();
+        return record;
+    }
+
+    // the offset after the end tag that closes the element whose content starts at the offset
+    private int skipContent(int offset) {
+        int depth = 1;
+        int current = offset;
+        while (true) {
+            int start = indexOf('<', current);
+            if (start < 0) {
+                throw new MarkLogicIOException("Unclosed element at byte " + offset);
+            }
+            if (startsWith(start, "<?")) {
+                current = indexAfter("?>", start);
+            } else if (startsWith(start, "<!--")) {
+                current = indexAfter("-->", start);
+            } else if (startsWith(start, "<![CDATA[")) {
+                current = indexAfter("]]>", start);
+            } else if (startsWith(start, "</")) {
+                current = indexAfter(">", start);
+                if (--depth == 0) {
+                    return current;
+                }
+            } else {
+                current = tagEnd(start + 1);
+                if (buffer.get(current - 2) != '/') {
+                    depth++;
+                }
+            }
+        }
+    }
+
+    private StartTag parseStartTag(int start) {
+        StartTag tag = new StartTag(start, top);
+        tag.nameEnd = nameEnd(start + 1);
+        tag.setName(string(start + 1, tag.nameEnd));
+
+        int current = tag.nameEnd;
+        while (true) {
+            current = skipWhitespace(current);
+            byte next = byteAt(current);
+            if (next == '>') {
+                tag.end = current + 1;
+                break;
+            }
+            if (next == '/' && byteAt(current + 1) == '>') {
+                tag.empty = true;
+                tag.end = current + 2;
+                break;
+            }
+            int attributeNameEnd = nameEnd(current);
+            if (attributeNameEnd == current) {
+                throw new MarkLogicIOException("Malformed start tag at byte " + start);
+            }
+            String attributeName = string(current, attributeNameEnd);
+            current = skipWhitespace(attributeNameEnd);
+            if (byteAt(current) != '=') {
+                throw new MarkLogicIOException("Missing value of attribute " + attributeName + " at byte " + start);
+            }
+            current = skipWhitespace(current + 1);
+            byte quote = byteAt(current);
+            if (quote != '"' && quote != '\'') {
+                throw new MarkLogicIOException("Unquoted value of attribute " + attributeName + " at byte " + start);
+            }
+            int valueStart = current + 1;
+            int valueEnd = indexOf(quote, valueStart);
+            if (valueEnd < 0) {
+                throw new MarkLogicIOException("Unclosed value of attribute " + attributeName + " at byte " + start);
+            }
+            current = valueEnd + 1;
+
+            String value = decodeAttributeValue(string(valueStart, valueEnd));
+            if (attributeName.equals("xmlns")) {
+                tag.declarations.add(new Declaration("", value, quote, valueStart, valueEnd));
+            } else if (attributeName.startsWith("xmlns:")) {
+                tag.declarations.add(new Declaration(attributeName.substring(6), value, quote, valueStart, valueEnd));
+            } else {
+                tag.attributeNames.add(attributeName);
+                tag.attributeValues.add(value);
+            }
+        }
+        // resolve the prefixes now so an unbound prefix fails at the tag that uses it
+        tag.namespaceURI();
+        for (int i = 0; i < tag.attributeNames.size(); i++) {
+            tag.attributeNamespace(i);
+        }
+        return tag;
+    }
+
+    // the offset after the '>' that ends the tag, skipping quoted attribute values
+    private int tagEnd(int offset) {
+        int current = offset;
+        while (current < limit) {
+            byte next = buffer.get(current);
+            if (next == '"' || next == '\'') {
+                int close = indexOf(next, current + 1);
+                if (close < 0) {
+                    break;
+                }
+                current = close + 1;
+            } else if (next == '>') {
+                return current + 1;
+            } else {
+                current++;
+            }
+        }
+        throw new MarkLogicIOException("Unclosed tag at byte " + (offset - 1));
+    }
+
+    // skips a document type declaration, including an internal subset in square brackets
+    private int skipDeclaration(int offset) {
+        int current = offset + 2;
+        int brackets = 0;
+        while (current < limit) {
+            byte next = buffer.get(current);
+            if (next == '"' || next == '\'') {
+                int close = indexOf(next, current + 1);
+                if (close < 0) {
+                    break;
+                }
+                current = close;
+            } else if (next == '[') {
+                brackets++;
+            } else if (next == ']') {
+                brackets--;
+            } else if (next == '>' && brackets == 0) {
+                return current + 1;
+            } else if (next == '<' && startsWith(current, "<!--")) {
+                current = indexAfter("-->", current) - 1;
+            }
+            current++;
+        }
+        throw new MarkLogicIOException("Unclosed declaration at byte " + offset);
+    }
+
+    private int skipByteOrderMark(int offset) {
+        if (limit - offset >= 2) {
+            int first = buffer.get(offset) & 0xFF;
+            int second = buffer.get(offset + 1) & 0xFF;
+            if ((first == 0xFE && second == 0xFF) || (first == 0xFF && second == 0xFE)) {
+                throw new IllegalArgumentException("The document must be encoded in UTF-8 rather than UTF-16");
+            }
+            if (first == 0xEF && second == 0xBB && limit - offset >= 3 && (buffer.get(offset + 2) & 0xFF) == 0xBF) {
+                return offset + 3;
+            }
+        }
+        return offset;
+    }
+
+    private void checkEncoding() {
+        if (!startsWith(position, "<?xml")) {
+            return;
+        }
+        String declaration = string(position, indexAfter("?>", position));
+        int encodingAt = declaration.indexOf("encoding");
+        if (encodingAt < 0) {
+            return;
+        }
+        int valueStart = encodingAt + 8;
+        while (valueStart < declaration.length() && declaration.charAt(valueStart) != '"' &&
+                declaration.charAt(valueStart) != '\'') {
+            valueStart++;
+        }
+        if (valueStart == declaration.length()) {
+            return;
+        }
+        int valueEnd = declaration.indexOf(declaration.charAt(valueStart), valueStart + 1);
+        if (valueEnd < 0) {
+            return;
+        }
+        String encoding = declaration.substring(valueStart + 1, valueEnd).toUpperCase(Locale.ROOT);
+        if (!encoding.equals("UTF-8") && !encoding.equals("UTF8") && !encoding.equals("US-ASCII")) {
+            throw new IllegalArgumentException("The document must be encoded in UTF-8 rather than " + encoding);
+        }
+    }
+
+    private static String decodeAttributeValue(String raw) {
+        StringBuilder value = null;
+        for (int i = 0; i < raw.length(); i++) {
+            char next = raw.charAt(i);
+            if (next == '&' || next == '\t' || next == '\n' || next == '\r') {
+                if (value == null) {
+                    value = new StringBuilder(raw.length()).append(raw, 0, i);
+                }
+                if (next != '&') {
+                    value.append(' ');
+                    continue;
+                }
+                int semicolon = raw.indexOf(';', i);
+                if (semicolon < 0) {
+                    throw new MarkLogicIOException("Unterminated reference in attribute value: " + raw);
+                }
+                String reference = raw.substring(i + 1, semicolon);
+                switch (reference) {
+                    case "lt":   value.append('<');  break;
+                    case "gt":   value.append('>');  break;
+                    case "amp":  value.append('&');  break;
+                    case "quot": value.append('"');  break;
+                    case "apos": value.append('\''); break;
+                    default:
+                        if (reference.startsWith("#x")) {
+                            value.appendCodePoint(Integer.parseInt(reference.substring(2), 16));
+                        } else if (reference.startsWith("#")) {
+                            value.appendCodePoint(Integer.parseInt(reference.substring(1)));
+                        } else {
+                            throw new MarkLogicIOException("Undeclared entity in attribute value: " + reference);
+                        }
+                }
+                i = semicolon;
+            } else if (value != null) {
+                value.append(next);
+            }
+        }
+        return (value == null) ? raw : value.toString();
+    }
+
+    private void copy(ByteBuffer target, int start, int end) {
+        ByteBuffer source = buffer.duplicate();
+        source.limit(end).position(start);
+        target.put(source);
+    }
+
+    private byte byteAt(int offset) {
+        if (offset >= limit) {
+            throw new MarkLogicIOException("Unexpected end of document");
+        }
+        return buffer.get(offset);
+    }
+
+    private int nameEnd(int offset) {
+        int current = offset;
+        while (current < limit) {
+            byte next = buffer.get(current);
+            if (next == ' ' || next == '\t' || next == '\n' || next == '\r' ||
+                    next == '>' || next == '/' || next == '=') {
+                break;
+            }
+            current++;
+        }
+        return current;
+    }
+
+    private int skipWhitespace(int offset) {
+        int current = offset;
+        while (current < limit) {
+            byte next = buffer.get(current);
+            if (next != ' ' && next != '\t' && next != '\n' && next != '\r') {
+                break;
+            }
+            current++;
+        }
+        return current;
+    }
+
+    private int indexOf(int value, int offset) {
+        for (int i = offset; i < limit; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexAfter(String markup, int offset) {
+        int current = offset;
+        while (true) {
+            current = indexOf(markup.charAt(0), current);
+            if (current < 0) {
+                throw new MarkLogicIOException("Missing " + markup + " after byte " + offset);
+            }
+            if (startsWith(current, markup)) {
+                return current + markup.length();
+            }
+            current++;
+        }
+    }
+
+    private boolean startsWith(int offset, String markup) {
+        if (limit - offset < markup.length()) {
+            return false;
+        }
+        for (int i = 0; i < markup.length(); i++) {
+            if (buffer.get(offset + i) != markup.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        ByteBuffer source = buffer.duplicate();
+        source.position(start);
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Declaration {
+        final String prefix;
+        final String uri;
+        final byte quote;
+        final int valueStart;
+        final int valueEnd;
+
+        Declaration(String prefix, String uri, byte quote, int valueStart, int valueEnd) {
+            this.prefix = prefix;
+            this.uri = uri;
+            this.quote = quote;
+            this.valueStart = valueStart;
+            this.valueEnd = valueEnd;
+        }
+
+        // the length of the declaration as it is injected
+        int length() {
+            int prefixLength = prefix.isEmpty() ? 0 : prefix.getBytes(StandardCharsets.UTF_8).length + 1;
+            return 1 + XMLNS.length + prefixLength + 1 + (valueEnd - valueStart) + 2;
+        }
+    }
+
+    private static class StartTag {
+        final int start;
+        final StartTag parent;
+        final List<Declaration> declarations = new ArrayList<>();
+        final List<String> attributeNames = new ArrayList<>();
+        final List<String> attributeValues = new ArrayList<>();
+        String prefix;
+        String localName;
+        int nameEnd;
+        int end;
+        boolean empty;
+
+        StartTag(int start, StartTag parent) {
+            this.start = start;
+            this.parent = parent;
+        }
+
+        void setName(String qname) {
+            int colon = qname.indexOf(':');
+            prefix = (colon < 0) ? "" : qname.substring(0, colon);
+            localName = qname.substring(colon + 1);
+        }
+
+        String qname() {
+            return prefix.isEmpty() ? localName : prefix + ":" + localName;
+        }
+
+        // the namespace URI bound to the prefix, or null if the prefix is not bound
+        String lookup(String prefix) {
+            if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+                return XMLConstants.XML_NS_URI;
+            }
+            if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+                return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            }
+            for (StartTag tag = this; tag != null; tag = tag.parent) {
+                for (Declaration declaration : tag.declarations) {
+                    if (declaration.prefix.equals(prefix)) {
+                        return declaration.uri;
+                    }
+                }
+            }
+            return prefix.isEmpty() ? "" : null;
+        }
+
+        String resolve(String prefix) {
+            String uri = lookup(prefix);
+            if (uri == null) {
+                throw new MarkLogicIOException("Unbound namespace prefix: " + prefix);
+            }
+            return uri;
+        }
+
+        // null for no namespace, as from XMLStreamReader
+        String namespaceURI() {
+            String uri = resolve(prefix);
+            return uri.isEmpty() ? null : uri;
+        }
+
+        String attributePrefix(int index) {
+            String name = attributeNames.get(index);
+            int colon = name.indexOf(':');
+            return (colon < 0) ? "" : name.substring(0, colon);
+        }
+
+        String attributeLocalName(int index) {
+            String name = attributeNames.get(index);
+            return name.substring(name.indexOf(':') + 1);
+        }
+
+        // an unprefixed attribute is in no namespace
+        String attributeNamespace(int index) {
+            String prefix = attributePrefix(index);
+            return prefix.isEmpty() ? null : resolve(prefix);
+        }
+    }
+
+    private static class StartTagReader implements XMLSplitter.StartElementReader, NamespaceContext {
+        private final StartTag tag;
+
+        StartTagReader(StartTag tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public int getAttributeCount() {
+            return tag.attributeNames.size();
+        }
+        @Override
+        public String getAttributeLocalName(int index) {
+            return tag.attributeLocalName(index);
+        }
+        @Override
+        public QName getAttributeName(int index) {
+            String namespace = tag.attributeNamespace(index);
+            return new QName((namespace == null) ? XMLConstants.NULL_NS_URI : namespace,
+                tag.attributeLocalName(index), tag.attributePrefix(index));
+        }
+        @Override
+        public String getAttributeNamespace(int index) {
+            return tag.attributeNamespace(index);
+        }
+        @Override
+        public String getAttributePrefix(int index) {
+            return tag.attributePrefix(index);
+        }
+        @Override
+        public String getAttributeType(int index) {
+            return "CDATA";
+        }
+        @Override
+        public String getAttributeValue(int index) {
+            return tag.attributeValues.get(index);
+        }
+        @Override
+        public String getAttributeValue(String namespaceURI, String localName) {
+            for (int i = 0; i < getAttributeCount(); i++) {
+                String namespace = tag.attributeNamespace(i);
+                if (tag.attributeLocalName(i).equals(localName) && (namespaceURI == null ||
+                        namespaceURI.equals((namespace == null) ? XMLConstants.NULL_NS_URI : namespace))) {
+                    return tag.attributeValues.get(i);
+                }
+            }
+            return null;
+        }
+        @Override
+        public String getLocalName() {
+            return tag.localName;
+        }
+        @Override
+        public QName getName() {
+            String namespace = tag.namespaceURI();
+            return new QName((namespace == null) ? XMLConstants.NULL_NS_URI : namespace, tag.localName, tag.prefix);
+        }
+        @Override
+        public NamespaceContext getNamespaceContext() {
+            return this;
+        }
+        @Override
+        public int getNamespaceCount() {
+            return tag.declarations.size();
+        }
+        @Override
+        public String getNamespacePrefix(int index) {
+            String prefix = tag.declarations.get(index).prefix;
+            return prefix.isEmpty() ? null : prefix;
+        }
+        @Override
+        public String getNamespaceURI() {
+            return tag.namespaceURI();
+        }
+        @Override
+        public String getNamespaceURI(int index) {
+            return tag.declarations.get(index).uri;
+        }
+        @Override
+        public String getNamespaceURI(String prefix) {
+            if (prefix == null) {
+                throw new IllegalArgumentException("prefix must not be null");
+            }
+            String uri = tag.lookup(prefix);
+            return (uri == null || uri.isEmpty()) ? null : uri;
+        }
+        @Override
+        public String getPrefix() {
+            return tag.prefix;
+        }
+        @Override
+        public boolean isAttributeSpecified(int index) {
+            return true;
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            Iterator<String> prefixes = getPrefixes(namespaceURI);
+            return prefixes.hasNext() ? prefixes.next() : null;
+        }
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            if (namespaceURI == null) {
+                throw new IllegalArgumentException("namespaceURI must not be null");
+            }
+            List<String> prefixes = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (StartTag scope = tag; scope != null; scope = scope.parent) {
+                for (Declaration declaration : scope.declarations) {
+                    if (seen.add(declaration.prefix) && declaration.uri.equals(namespaceURI)) {
+                        prefixes.add(declaration.prefix);
+                    }
+                }
+            }
+            if (XMLConstants.XML_NS_URI.equals(namespaceURI)) {
+                prefixes.add(XMLConstants.XML_NS_PREFIX);
+            }
+            return prefixes.iterator();
+        }
+    }
+}
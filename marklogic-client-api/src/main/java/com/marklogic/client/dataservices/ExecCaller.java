@@ -19,6 +19,8 @@ import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.dataservices.impl.ExecEndpointImpl;
 import com.marklogic.client.io.marker.JSONWriteHandle;
 
+import java.util.concurrent.ThreadFactory;
+
 /**
  * Provides an interface for calling an endpoint that doesn't take
  * input data structures or return output data structures.
@@ -75,6 +77,17 @@ public interface ExecCaller extends IOEndpoint {
      * @return  the bulk caller for the endpoint
      */
     BulkExecCaller bulkCaller(CallContext[] callContexts, int threadCount);
+    /**
+     * Constructs an instance of a bulk caller, which completes
+     * a unit of work by repeated calls to the endpoint. The calls occur in worker threads
+     * created by the thread factory, such as one from
+     * {@link com.marklogic.client.util.VirtualThreads} on Java 21 and later.
+     * @param  callContexts the collection of callContexts
+     * @param threadCount the number of threads
+     * @param threadFactory the factory for the worker threads, or null for the default platform threads
+     * @return  the bulk caller for the exec endpoint
+     */
+    BulkExecCaller bulkCaller(CallContext[] callContexts, int threadCount, ThreadFactory threadFactory);
 
     /**
      * Provides an interface for completing a unit of work
@@ -22,6 +22,7 @@ import com.marklogic.client.io.marker.BufferableContentHandle;
 import com.marklogic.client.io.marker.BufferableHandle;
 import com.marklogic.client.io.marker.JSONWriteHandle;
 
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
 
 /**
@@ -115,6 +116,17 @@ public interface InputOutputCaller<I,O> extends IOEndpoint {
      * @return  the bulk caller for the input-output endpoint
      */
     BulkInputOutputCaller<I,O> bulkCaller(CallContext[] callContexts, int threadCount);
+    /**
+     * Constructs an instance of a bulk caller, which completes
+     * a unit of work by repeated calls to the endpoint. The calls occur in worker threads
+     * created by the thread factory, such as one from
+     * {@link com.marklogic.client.util.VirtualThreads} on Java 21 and later.
+     * @param  callContexts the collection of callContexts
+     * @param threadCount the number of threads
+     * @param threadFactory the factory for the worker threads, or null for the default platform threads
+     * @return  the bulk caller for the input-output endpoint
+     */
+    BulkInputOutputCaller<I,O> bulkCaller(CallContext[] callContexts, int threadCount, ThreadFactory threadFactory);
 
     /**
      * Provides an interface for completing a unit of work
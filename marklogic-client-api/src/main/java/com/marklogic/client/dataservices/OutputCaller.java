@@ -21,6 +21,7 @@ import com.marklogic.client.dataservices.impl.OutputEndpointImpl;
 import com.marklogic.client.io.marker.BufferableContentHandle;
 import com.marklogic.client.io.marker.JSONWriteHandle;
 
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
 
 /**
@@ -101,6 +102,17 @@ public interface OutputCaller<O> extends IOEndpoint {
      * @return  the bulk caller for the output endpoint
      */
     BulkOutputCaller<O> bulkCaller(CallContext[] callContexts, int threadCount);
+    /**
+     * Constructs an instance of a bulk caller, which completes
+     * a unit of work by repeated calls to the endpoint. The calls occur in worker threads
+     * created by the thread factory, such as one from
+     * {@link com.marklogic.client.util.VirtualThreads} on Java 21 and later.
+     * @param  callContexts the collection of callContexts
+     * @param threadCount the number of threads
+     * @param threadFactory the factory for the worker threads, or null for the default platform threads
+     * @return  the bulk caller for the output endpoint
+     */
+    BulkOutputCaller<O> bulkCaller(CallContext[] callContexts, int threadCount, ThreadFactory threadFactory);
 
     /**
      * Provides an interface for completing a unit of work
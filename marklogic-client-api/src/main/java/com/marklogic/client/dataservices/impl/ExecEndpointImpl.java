@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ExecEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements ExecCaller {
@@ -78,6 +79,10 @@ public class ExecEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements ExecCa
     }
     @Override
     public BulkExecCaller bulkCaller(CallContext[] callContexts, int threadCount) {
+        return bulkCaller(callContexts, threadCount, null);
+    }
+    @Override
+    public BulkExecCaller bulkCaller(CallContext[] callContexts, int threadCount, ThreadFactory threadFactory) {
         if(callContexts == null)
             throw new IllegalArgumentException("CallContext cannot be null.");
         if(threadCount > callContexts.length)
@@ -86,7 +91,7 @@ public class ExecEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements ExecCa
         switch(callContexts.length) {
             case 0: throw new IllegalArgumentException("CallContext cannot be empty");
             case 1: return new BulkExecCallerImpl<>(this, checkAllowedArgs(callContexts[0]));
-            default: return new BulkExecCallerImpl<>(this, checkAllowedArgs(callContexts), threadCount);
+            default: return new BulkExecCallerImpl<>(this, checkAllowedArgs(callContexts), threadCount, threadFactory);
         }
     }
 
@@ -106,8 +111,8 @@ public class ExecEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements ExecCa
             checkEndpoint(endpoint, "ExecEndpointImpl");
             this.endpoint = endpoint;
         }
-        private BulkExecCallerImpl(ExecEndpointImpl<I,O> endpoint, CallContextImpl<I,O>[] callContexts, int threadCount) {
-            super(endpoint, callContexts, threadCount, threadCount);
+        private BulkExecCallerImpl(ExecEndpointImpl<I,O> endpoint, CallContextImpl<I,O>[] callContexts, int threadCount, ThreadFactory threadFactory) {
+            super(endpoint, callContexts, threadCount, threadCount, threadFactory);
             this.endpoint = endpoint;
             this.aliveCallContextCount = new AtomicInteger(threadCount);
         }
@@ -168,9 +168,11 @@ abstract class IOEndpointImpl<I,O> implements IOEndpoint {
             getSession();
         }
         // constructor for concurrent calling in multiple worker threads
-        BulkIOEndpointCallerImpl(IOEndpointImpl<I,O> endpoint, CallContextImpl<I,O>[] callContexts, int threadCount, int queueSize) {
+        BulkIOEndpointCallerImpl(IOEndpointImpl<I,O> endpoint, CallContextImpl<I,O>[] callContexts, int threadCount, int queueSize,
+                                 ThreadFactory threadFactory) {
             this.endpoint = endpoint;
-            this.callerThreadPoolExecutor = new CallerThreadPoolExecutor<>(threadCount, queueSize, this);
+            this.callerThreadPoolExecutor = new CallerThreadPoolExecutor<>(threadCount, queueSize, this,
+                    (threadFactory != null) ? threadFactory : Executors.defaultThreadFactory());
             this.callContextQueue = new LinkedBlockingQueue<>(Arrays.asList(callContexts));
             this.threadCount = threadCount;
         }
@@ -365,10 +367,11 @@ abstract class IOEndpointImpl<I,O> implements IOEndpoint {
 
             private Boolean awaitingTermination;
             private final BulkIOEndpointCallerImpl<I,O> bulkIOEndpointCaller;
-            CallerThreadPoolExecutor(int threadCount, int queueSize, BulkIOEndpointCallerImpl<I,O> bulkIOEndpointCaller) {
+            CallerThreadPoolExecutor(int threadCount, int queueSize, BulkIOEndpointCallerImpl<I,O> bulkIOEndpointCaller,
+                                     ThreadFactory threadFactory) {
 
                 super(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
-                        new LinkedBlockingQueue<>(queueSize), new CallerRunsPolicy());
+                        new LinkedBlockingQueue<>(queueSize), threadFactory, new CallerRunsPolicy());
                 this.bulkIOEndpointCaller = bulkIOEndpointCaller;
             }
 
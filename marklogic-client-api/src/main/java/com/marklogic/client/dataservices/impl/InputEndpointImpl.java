@@ -18,6 +18,7 @@ package com.marklogic.client.dataservices.impl;
 import java.io.InputStream;
 import java.util.concurrent.Callable;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 
 import com.marklogic.client.dataservices.InputCaller;
 import com.marklogic.client.io.marker.BufferableContentHandle;
@@ -89,6 +90,10 @@ public class InputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements Input
 	}
 	@Override
 	public BulkInputCaller<I> bulkCaller(CallContext[] callContexts, int threadCount) {
+		return bulkCaller(callContexts, threadCount, null);
+	}
+	@Override
+	public BulkInputCaller<I> bulkCaller(CallContext[] callContexts, int threadCount, ThreadFactory threadFactory) {
 		if(callContexts == null)
 			throw new IllegalArgumentException("CallContext cannot be null.");
 		if(threadCount > callContexts.length)
@@ -97,7 +102,7 @@ public class InputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements Input
 		switch(callContexts.length) {
 			case 0: throw new IllegalArgumentException("CallContext cannot be empty");
 			case 1: return new BulkInputCallerImpl<>(this, getBatchSize(), checkAllowedArgs(callContexts[0]));
-			default: return new BulkInputCallerImpl<>(this, getBatchSize(), checkAllowedArgs(callContexts), threadCount);
+			default: return new BulkInputCallerImpl<>(this, getBatchSize(), checkAllowedArgs(callContexts), threadCount, threadFactory);
 		}
 	}
 
@@ -120,9 +125,9 @@ public class InputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements Input
 			this.inputQueue = new LinkedBlockingQueue<>();
 		}
 		private BulkInputCallerImpl(
-				InputEndpointImpl<I,O> endpoint, int batchSize, CallContextImpl<I,O>[] callContexts, int threadCount
+				InputEndpointImpl<I,O> endpoint, int batchSize, CallContextImpl<I,O>[] callContexts, int threadCount, ThreadFactory threadFactory
 		) {
-			super(endpoint, callContexts, threadCount, (2*callContexts.length));
+			super(endpoint, callContexts, threadCount, (2*callContexts.length), threadFactory);
 			this.endpoint = endpoint;
 			this.batchSize = batchSize;
 			this.inputQueue = new LinkedBlockingQueue<>();
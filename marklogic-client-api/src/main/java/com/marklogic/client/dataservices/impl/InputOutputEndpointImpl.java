@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import java.io.InputStream;
 import java.util.concurrent.Callable;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
 
 public class InputOutputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements InputOutputCaller<I,O> {
@@ -86,6 +87,10 @@ public class InputOutputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements
     }
     @Override
     public BulkInputOutputCaller<I,O> bulkCaller(CallContext[] callContexts, int threadCount) {
+        return bulkCaller(callContexts, threadCount, null);
+    }
+    @Override
+    public BulkInputOutputCaller<I,O> bulkCaller(CallContext[] callContexts, int threadCount, ThreadFactory threadFactory) {
         if(callContexts == null)
             throw new IllegalArgumentException("CallContext cannot be null");
         if(threadCount > callContexts.length)
@@ -94,7 +99,7 @@ public class InputOutputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements
         switch(callContexts.length) {
             case 0: throw new IllegalArgumentException("CallContext cannot be empty");
             case 1: return new BulkInputOutputCallerImpl<>(this, getBatchSize(), checkAllowedArgs(callContexts[0]));
-            default: return new BulkInputOutputCallerImpl<>(this, getBatchSize(), checkAllowedArgs(callContexts), threadCount);
+            default: return new BulkInputOutputCallerImpl<>(this, getBatchSize(), checkAllowedArgs(callContexts), threadCount, threadFactory);
         }
     }
 
@@ -124,8 +129,8 @@ public class InputOutputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements
             this.inputQueue = new LinkedBlockingQueue<>();
         }
         private BulkInputOutputCallerImpl(InputOutputEndpointImpl<I,O> endpoint, int batchSize, CallContextImpl<I,O>[] callContexts,
-                                          int threadCount) {
-            super(endpoint, callContexts, threadCount, (2*callContexts.length));
+                                          int threadCount, ThreadFactory threadFactory) {
+            super(endpoint, callContexts, threadCount, (2*callContexts.length), threadFactory);
             this.endpoint = endpoint;
             this.batchSize = batchSize;
             this.inputQueue = new LinkedBlockingQueue<>();
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
@@ -79,6 +80,10 @@ public class OutputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements Outp
     }
     @Override
     public BulkOutputCaller<O> bulkCaller(CallContext[] callContexts, int threadCount) {
+        return bulkCaller(callContexts, threadCount, null);
+    }
+    @Override
+    public BulkOutputCaller<O> bulkCaller(CallContext[] callContexts, int threadCount, ThreadFactory threadFactory) {
         if(callContexts == null)
             throw new IllegalArgumentException("CallContext cannot be null");
         if(threadCount > callContexts.length)
@@ -87,7 +92,7 @@ public class OutputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements Outp
         switch(callContexts.length) {
             case 0: throw new IllegalArgumentException("CallContext cannot be empty");
             case 1: return new BulkOutputCallerImpl<>(this, checkAllowedArgs(callContexts[0]));
-            default: return new BulkOutputCallerImpl<>(this, checkAllowedArgs(callContexts), threadCount);
+            default: return new BulkOutputCallerImpl<>(this, checkAllowedArgs(callContexts), threadCount, threadFactory);
         }
     }
 
@@ -111,8 +116,8 @@ public class OutputEndpointImpl<I,O> extends IOEndpointImpl<I,O> implements Outp
             checkEndpoint(endpoint, "OutputEndpointImpl");
             this.endpoint = endpoint;
         }
-        private BulkOutputCallerImpl(OutputEndpointImpl<I,O> endpoint, CallContextImpl<I,O>[] callContexts, int threadCount) {
-            super(endpoint, callContexts, threadCount, threadCount);
+        private BulkOutputCallerImpl(OutputEndpointImpl<I,O> endpoint, CallContextImpl<I,O>[] callContexts, int threadCount, ThreadFactory threadFactory) {
+            super(endpoint, callContexts, threadCount, threadCount, threadFactory);
             this.endpoint = endpoint;
             this.aliveCallContextCount = new AtomicInteger(threadCount);
         }
@@ -15,6 +15,7 @@
 package com.marklogic.client.document;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.ForbiddenUserException;
@@ -232,6 +233,22 @@ public interface DocumentManager<R extends AbstractReadHandle, W extends Abstrac
    */
   <T extends R> T read(String docId, T contentHandle, ServerTransform transform)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException;
+  /**
+   * Reads the document content from the database without blocking the calling thread.
+   * The request is queued on the HTTP client and any retries are scheduled on a timer,
+   * so no thread waits on the request.  The future completes on a thread of the HTTP
+   * client after the content has been received by the handle, so dependent stages
+   * should hand off long-running work to an executor of the application.
+   *
+   * To call readAsync(), an application must authenticate as rest-reader, rest-writer, or rest-admin.
+   *
+   * @param docId	the URI identifier for the document
+   * @param contentHandle	a handle for reading the content of the document
+   * @param <T> the type of content handle to return
+   * @return	a future for the content handle populated with the content of the document in the database,
+   *   which completes exceptionally with a ResourceNotFoundException if the document is not found
+   */
+  <T extends R> CompletableFuture<T> readAsync(String docId, T contentHandle);
   /**
    * Reads the document content from the database in the representations provided by the handles
    *
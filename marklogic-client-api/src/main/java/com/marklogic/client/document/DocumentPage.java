@@ -35,6 +35,13 @@ import java.io.Closeable;
  *}</pre>
  * <b>NOTICE!</b> When you finish with this instance
  * you must call close() to free the underlying resources.
+ * <p>
+ * The documents are read from the response as the page is iterated. A page read by uri has no
+ * paging headers, so its size(), getPageSize(), and getTotalSize() are counted from the documents
+ * returned, and asking for them before the iteration is complete reads the remaining documents
+ * into memory. hasContent() reads at most the first document. Once the page has been closed,
+ * documents that were never read can't be counted, so those sizes are -1 if the page was closed
+ * before the last document was read.
  */
 public interface DocumentPage extends Page<DocumentRecord>, Closeable {
   /** Convenience method combines the functionality of Page.next() and DocumentRecord.getContent().
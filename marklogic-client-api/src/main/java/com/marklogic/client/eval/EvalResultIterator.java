@@ -19,7 +19,9 @@ import java.io.Closeable;
 import java.util.Iterator;
 
 /** An Iterator to walk through all results returned from calls to
- * {@link ServerEvaluationCall#eval()}.
+ * {@link ServerEvaluationCall#eval()}. The results are read from the response
+ * as they are iterated, and next() throws NoSuchElementException once they
+ * have all been returned.
  */
 public interface EvalResultIterator extends Iterable<EvalResult>, Iterator<EvalResult>, Closeable {
   @Override
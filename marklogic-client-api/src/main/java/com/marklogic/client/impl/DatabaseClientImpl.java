@@ -17,6 +17,7 @@ package com.marklogic.client.impl;
 
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 
 import com.marklogic.client.io.StringHandle;
 import org.slf4j.Logger;
@@ -45,6 +46,7 @@ import com.marklogic.client.pojo.PojoRepository;
 import com.marklogic.client.DatabaseClientFactory.SecurityContext;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.impl.DataMovementManagerImpl;
+import com.marklogic.client.impl.okhttp.HostBalancingInterceptor;
 
 public class DatabaseClientImpl implements DatabaseClient {
   static final private Logger logger = LoggerFactory.getLogger(DatabaseClientImpl.class);
@@ -233,6 +235,34 @@ public class DatabaseClientImpl implements DatabaseClient {
     return services.getClientImplementation();
   }
 
+  /**
+   * Spreads the requests of this client over the hosts of the cluster, which are
+   * discovered from the forest configuration of the database in the same way as
+   * the Data Movement SDK. See {@link com.marklogic.client.impl.okhttp.HostBalancingInterceptor}.
+   */
+  public void balanceHosts() {
+    if (connectionType == ConnectionType.GATEWAY) {
+      throw new IllegalStateException(
+        "Cannot balance requests over the hosts of the cluster when connecting by means of a gateway");
+    }
+    DataMovementManager moveMgr = newDataMovementManager();
+    String[] hosts;
+    try {
+      hosts = moveMgr.readForestConfig().getPreferredHosts();
+    } finally {
+      moveMgr.release();
+    }
+
+    HostBalancingInterceptor balancer = new HostBalancingInterceptor(host, port, Arrays.asList(hosts));
+    if (logger.isInfoEnabled())
+      logger.info("Balancing requests over hosts: {}", balancer.getHostNames());
+
+    OkHttpServices okHttpServices = (OkHttpServices) services;
+    okHttpServices.setClientImplementation(
+      balancer.addTo(okHttpServices.getClientImplementation().newBuilder()).build()
+    );
+  }
+
   // undocumented backdoor access to JerseyServices
   public RESTServices getServices() {
     return services;
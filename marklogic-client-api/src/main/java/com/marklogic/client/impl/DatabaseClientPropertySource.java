@@ -90,6 +90,15 @@ public class DatabaseClientPropertySource {
 				throw new IllegalArgumentException("Connection type must either be a String or an instance of ConnectionType");
 			}
 		});
+		connectionPropertyHandlers.put(PREFIX + "balanceHosts", (bean, value) -> {
+			if (value instanceof Boolean) {
+				bean.setBalanceHosts((Boolean) value);
+			} else if (value instanceof String) {
+				bean.setBalanceHosts(Boolean.parseBoolean((String) value));
+			} else {
+				throw new IllegalArgumentException("Balance hosts must be of type String or Boolean");
+			}
+		});
 		connectionPropertyHandlers.put(PREFIX + "disableGzippedResponses", (bean, value) -> {
 			boolean disableGzippedResponses = false;
 			if (value instanceof Boolean && Boolean.TRUE.equals(value)) {
@@ -117,8 +126,12 @@ public class DatabaseClientPropertySource {
 		// uses the fully-overloaded newClient method. This ensures that later calls to e.g.
 		// DatabaseClientFactory.getHandleRegistry() will still impact the DatabaseClient returned by this method
 		// (and this behavior is expected by some existing tests).
-		return DatabaseClientFactory.newClient(bean.getHost(), bean.getPort(), bean.getBasePath(), bean.getDatabase(),
-			bean.getSecurityContext(), bean.getConnectionType());
+		DatabaseClient client = DatabaseClientFactory.newClient(bean.getHost(), bean.getPort(), bean.getBasePath(),
+			bean.getDatabase(), bean.getSecurityContext(), bean.getConnectionType());
+		if (bean.isBalanceHosts()) {
+			((DatabaseClientImpl) client).balanceHosts();
+		}
+		return client;
 	}
 
 	/**
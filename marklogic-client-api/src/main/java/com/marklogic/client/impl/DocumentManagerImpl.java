@@ -17,6 +17,7 @@ package com.marklogic.client.impl;
 
 import java.nio.charset.CharsetEncoder;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.datatype.Duration;
@@ -271,6 +272,21 @@ abstract class DocumentManagerImpl<R extends AbstractReadHandle, W extends Abstr
       contentHandle, transform, transaction, null, getReadParams());
   }
 
+  @Override
+  public <T extends R> CompletableFuture<T> readAsync(String uri, T contentHandle) {
+    if (contentHandle == null)
+      throw new IllegalArgumentException(
+        "Attempt to call readAsync with null content handle");
+
+    checkContentFormat(contentHandle);
+
+    return services.getDocumentAsync(
+      requestLogger,
+      new DocumentDescriptorImpl(uri, true),
+      mergeTransformParameters(getReadTransform(), getReadParams()), contentHandle
+    ).thenApply(wasModified -> wasModified ? contentHandle : null);
+  }
+
   /*
    * @Override public <T extends R> T read(String docId,
    * DocumentMetadataReadHandle metadataHandle, T contentHandle, ServerTransform
@@ -24,6 +24,8 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.io.BaseHandle;
@@ -110,6 +112,8 @@ public class HandleAccessor {
         stringContent = bytesStream.toString("UTF-8");
       } else if ( content instanceof byte[] ) {
         stringContent = new String((byte[]) content, "UTF-8");
+      } else if ( content instanceof ByteBuffer ) {
+        stringContent = StandardCharsets.UTF_8.decode(((ByteBuffer) content).duplicate()).toString();
       } else if ( content instanceof File ) {
         content = new FileInputStream((File) content);
       }
@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 
 import com.marklogic.client.DatabaseClientFactory.HandleFactoryRegistry;
+import com.marklogic.client.io.ByteBufferHandle;
 import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.DOMHandle;
 import com.marklogic.client.io.FileHandle;
@@ -44,6 +45,7 @@ public class HandleFactoryRegistryImpl implements HandleFactoryRegistry {
   }
   public static HandleFactoryRegistry registerDefaults(HandleFactoryRegistry registry) {
     registry.register(BytesHandle.newFactory());
+    registry.register(ByteBufferHandle.newFactory());
     registry.register(DOMHandle.newFactory());
     registry.register(FileHandle.newFactory());
     registry.register(InputSourceHandle.newFactory());
@@ -57,6 +57,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import okhttp3.*;
 import okhttp3.MultipartBody.Part;
 import okhttp3.logging.HttpLoggingInterceptor;
+import okio.Buffer;
 import okio.BufferedSink;
 import okio.Okio;
 import okio.Source;
@@ -65,7 +66,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.mail.BodyPart;
-import javax.mail.Header;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMultipart;
 import javax.mail.util.ByteArrayDataSource;
@@ -82,6 +82,7 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
@@ -89,8 +90,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -110,6 +114,8 @@ public class OkHttpServices implements RESTServices {
   static final private int DELAY_MULTIPLIER  =     20;
   static final private int DEFAULT_MAX_DELAY = 120000;
   static final private int DEFAULT_MIN_RETRY =      8;
+  // the default of the OkHttp Dispatcher for all hosts, which otherwise allows only 5 calls per host
+  static final private int DEFAULT_MAX_ASYNC_REQUESTS = 64;
 
   private final static MediaType URLENCODED_MIME_TYPE = MediaType.parse("application/x-www-form-urlencoded; charset=UTF-8");
   private final static String UTF8_ID = StandardCharsets.UTF_8.toString();
@@ -126,9 +132,18 @@ public class OkHttpServices implements RESTServices {
   private int minRetry = DEFAULT_MIN_RETRY;
 
   private boolean checkFirstRequest = true;
+  // set once an asynchronous ping has primed the authentication cache, which all threads share
+  private final AtomicBoolean asyncFirstRequestDone = new AtomicBoolean(false);
 
   private final Set<Integer> retryStatus = new HashSet<>();
 
+  // schedules the retries of asynchronous requests without holding a thread during the delay
+  private static final ScheduledExecutorService RETRY_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "marklogic-client-retry");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   static protected class ThreadState {
     boolean isFirstRequest;
     ThreadState(boolean value) {
@@ -218,6 +233,7 @@ public class OkHttpServices implements RESTServices {
 		  configureOkHttpLogging(clientBuilder, props);
 	  }
 	  this.configureDelayAndRetry(props);
+	  this.configureDispatcher(clientBuilder, props);
 
 	  this.client = clientBuilder.build();
   }
@@ -253,6 +269,23 @@ public class OkHttpServices implements RESTServices {
         clientBuilder.addNetworkInterceptor(networkInterceptor);
     }
 
+    // asynchronous calls are queued by the Dispatcher, so its limits bound the
+    // concurrency of async and reactive callers as the caller threads bound blocking calls
+    private void configureDispatcher(OkHttpClient.Builder clientBuilder, Properties props) {
+        int maxRequests = DEFAULT_MAX_ASYNC_REQUESTS;
+        if (props.containsKey(MAX_ASYNC_REQUESTS_PROP)) {
+            int max = Utilities.parseInt(props.getProperty(MAX_ASYNC_REQUESTS_PROP));
+            if (max > 0) {
+                maxRequests = max;
+            }
+        }
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        // every request of a client goes to the same host
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+        clientBuilder.dispatcher(dispatcher);
+    }
+
     private void configureDelayAndRetry(Properties props) {
         if (props.containsKey(MAX_DELAY_PROP)) {
             int max = Utilities.parseInt(props.getProperty(MAX_DELAY_PROP));
@@ -515,10 +548,15 @@ public class OkHttpServices implements RESTServices {
     try {
       return getConnection().newCall(request).execute();
     } catch (IOException e) {
+		throw makeRequestIOException(request, e);
+    }
+  }
+
+  private MarkLogicIOException makeRequestIOException(Request request, IOException e) {
 		if (e instanceof SSLException) {
 			String message = e.getMessage();
 			if (message != null && message.contains("readHandshakeRecord")) {
-				throw new MarkLogicIOException(String.format("SSL error occurred: %s; ensure you are using a valid certificate " +
+				return new MarkLogicIOException(String.format("SSL error occurred: %s; ensure you are using a valid certificate " +
 					"if the MarkLogic app server requires a client certificate for SSL.", message));
 			}
 		}
@@ -528,8 +566,7 @@ public class OkHttpServices implements RESTServices {
 				"or MarkLogic was stopped or restarted during the request; check the MarkLogic server logs for more information.",
 			request.url(), e.getClass().getName(), e.getMessage()
 		);
-		throw new MarkLogicIOException(message, e);
-    }
+		return new MarkLogicIOException(message, e);
   }
 
   private Response sendRequestWithRetry(Request.Builder requestBldr, Function<Request.Builder, Response> doFunction, Consumer<Boolean> resendableConsumer) {
@@ -609,11 +646,160 @@ public class OkHttpServices implements RESTServices {
     return response;
   }
 
+  /*
+   * The non-blocking counterpart of sendRequestWithRetry(): each attempt is enqueued
+   * on the OkHttp dispatcher and the delay before a retry is scheduled on a timer
+   * instead of sleeping, so no thread waits on the request.  The future completes
+   * on an OkHttp dispatcher thread.  The ping that primes digest authentication
+   * before a streaming body is also enqueued rather than sent from the calling thread.
+   */
+  private CompletableFuture<Response> sendRequestWithRetryAsync(
+        Request.Builder requestBldr, boolean isRetryable, Function<Request.Builder, Request> makeRequest,
+        Consumer<Boolean> resendableConsumer
+  ) {
+    CompletableFuture<Response> future = new CompletableFuture<>();
+    new AsyncRetry(requestBldr, isRetryable, makeRequest, resendableConsumer, future).attempt();
+    return future;
+  }
+
+  private class AsyncRetry implements Callback {
+    private final Request.Builder requestBldr;
+    private final boolean isRetryable;
+    private final Function<Request.Builder, Request> makeRequest;
+    private final Consumer<Boolean> resendableConsumer;
+    private final CompletableFuture<Response> future;
+    private final long startTime = System.currentTimeMillis();
+    private int retry = 0;
+
+    AsyncRetry(Request.Builder requestBldr, boolean isRetryable, Function<Request.Builder, Request> makeRequest,
+               Consumer<Boolean> resendableConsumer, CompletableFuture<Response> future) {
+      this.requestBldr = requestBldr;
+      this.isRetryable = isRetryable;
+      this.makeRequest = makeRequest;
+      this.resendableConsumer = resendableConsumer;
+      this.future = future;
+    }
+
+    void attempt() {
+      try {
+        Request request = makeAsyncRequest();
+        if (checkFirstRequest && !asyncFirstRequestDone.get() && isStreaming(request.body())) {
+          ping(request);
+        } else {
+          getConnection().newCall(request).enqueue(this);
+        }
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    }
+
+    // the blocking ping of makePostRequest() is replaced by ping()
+    private Request makeAsyncRequest() {
+      ThreadState state = threadState.get();
+      boolean isFirstRequest = state.isFirstRequest;
+      state.isFirstRequest = false;
+      try {
+        return makeRequest.apply(requestBldr);
+      } finally {
+        state.isFirstRequest = isFirstRequest;
+      }
+    }
+
+    private void ping(Request request) {
+      getConnection().newCall(setupRequest(baseUri, "ping", null).head().build()).enqueue(new Callback() {
+        @Override
+        public void onFailure(Call call, IOException e) {
+          future.completeExceptionally(makeRequestIOException(call.request(), e));
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+          try {
+            int status = response.code();
+            String retryAfterRaw = response.header("Retry-After");
+            closeResponse(response);
+            if (retryStatus.contains(status)) {
+              scheduleRetry(Math.max(Utilities.parseInt(retryAfterRaw), calculateDelay(randRetry, retry)));
+              return;
+            }
+            asyncFirstRequestDone.set(true);
+            getConnection().newCall(request).enqueue(AsyncRetry.this);
+          } catch (Throwable e) {
+            future.completeExceptionally(e);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e) {
+      future.completeExceptionally(makeRequestIOException(call.request(), e));
+    }
+
+    @Override
+    public void onResponse(Call call, Response response) {
+      try {
+        int status = response.code();
+        if (!isRetryable || !retryStatus.contains(status)) {
+          future.complete(response);
+          return;
+        }
+        closeResponse(response);
+        if (resendableConsumer != null) resendableConsumer.accept(null);
+        scheduleRetry(Math.max(getRetryAfterTime(response), calculateDelay(randRetry, retry)));
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    }
+
+    private void scheduleRetry(int nextDelay) {
+      retry++;
+      if (retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay) {
+        RETRY_TIMER.schedule(this::attempt, nextDelay, TimeUnit.MILLISECONDS);
+      } else {
+        throw new FailedRetryException(
+          "Service unavailable and maximum retry period elapsed: "+
+            ((System.currentTimeMillis() - startTime) / 1000)+
+            " seconds after "+retry+" retries");
+      }
+    }
+  }
+
   private boolean getDocumentImpl(RequestLogger reqlog,
                                   DocumentDescriptor desc, Transaction transaction,
                                   Set<Metadata> categories, RequestParameters extraParams,
                                   String mimetype, AbstractReadHandle handle)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException
+  {
+    Request.Builder requestBldr = makeGetDocumentRequest(desc, transaction, categories, extraParams, mimetype, handle);
+
+    Function<Request.Builder, Response> doGetFunction = new Function<Request.Builder, Response>() {
+      public Response apply(Request.Builder funcBuilder) {
+        return sendRequestOnce(funcBuilder.get().build());
+      }
+    };
+    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doGetFunction, null);
+
+    return receiveDocument(reqlog, desc, transaction, categories, mimetype, handle, response);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> getDocumentAsync(RequestLogger reqlog, DocumentDescriptor desc,
+                                                     RequestParameters extraParams, AbstractReadHandle contentHandle)
+  {
+    HandleImplementation contentBase = HandleAccessor.checkHandle(contentHandle, "content");
+    if (contentBase == null) {
+      throw new IllegalArgumentException("Document read without a content handle");
+    }
+    String mimetype = contentBase.getMimetype();
+    Request.Builder requestBldr = makeGetDocumentRequest(desc, null, null, extraParams, mimetype, contentHandle);
+    return sendRequestWithRetryAsync(requestBldr, true, funcBuilder -> funcBuilder.get().build(), null)
+      .thenApply(response -> receiveDocument(reqlog, desc, null, null, mimetype, contentHandle, response));
+  }
+
+  private Request.Builder makeGetDocumentRequest(DocumentDescriptor desc, Transaction transaction,
+                                                 Set<Metadata> categories, RequestParameters extraParams,
+                                                 String mimetype, AbstractReadHandle handle)
   {
     String uri = desc.getUri();
     if (uri == null) {
@@ -637,14 +823,14 @@ public class OkHttpServices implements RESTServices {
       requestBldr = requestBldr.header("range", extraParams.get("range").get(0));
     }
 
-    requestBldr = addVersionHeader(desc, requestBldr, "If-None-Match");
+    return addVersionHeader(desc, requestBldr, "If-None-Match");
+  }
 
-    Function<Request.Builder, Response> doGetFunction = new Function<Request.Builder, Response>() {
-      public Response apply(Request.Builder funcBuilder) {
-        return sendRequestOnce(funcBuilder.get().build());
-      }
-    };
-    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doGetFunction, null);
+  private boolean receiveDocument(RequestLogger reqlog, DocumentDescriptor desc, Transaction transaction,
+                                  Set<Metadata> categories, String mimetype, AbstractReadHandle handle,
+                                  Response response)
+  {
+    String uri = desc.getUri();
 
     int status = response.code();
     if (status == STATUS_NOT_FOUND) {
@@ -743,13 +929,35 @@ public class OkHttpServices implements RESTServices {
       this.iterator = iterator;
       this.hasContent = hasContent;
       this.hasMetadata = hasMetadata;
-      if ( iterator == null ) {
-        setSize(0);
-      } else if ( hasContent && hasMetadata ) {
-        setSize(iterator.getSize() / 2);
-      } else {
-        setSize(iterator.getSize());
-      }
+    }
+
+    // The parts are streamed off the response, so the number of parts is only known once they have all been read.
+    // Asking for the size therefore buffers whatever parts the caller hasn't iterated over yet.
+    @Override
+    public long size() {
+      if ( iterator == null ) return 0;
+      long partCount = iterator.getSize();
+      if ( partCount == -1 ) return -1;
+      return (hasContent && hasMetadata) ? partCount / 2 : partCount;
+    }
+
+    // reads at most the first part, so checking for content doesn't buffer the page
+    @Override
+    public boolean hasContent() {
+      return iterator != null && iterator.hasParts();
+    }
+
+    @Override
+    public long getPageSize() {
+      long pageSize = super.getPageSize();
+      // a read by uri doesn't report paging headers, so the page is the parts that were returned
+      return (pageSize == -1 && iterator != null) ? iterator.getSize() : pageSize;
+    }
+
+    @Override
+    public long getTotalSize() {
+      long totalSize = super.getTotalSize();
+      return (totalSize == -1 && iterator != null) ? iterator.getSize() : totalSize;
     }
 
     @Override
@@ -823,10 +1031,6 @@ public class OkHttpServices implements RESTServices {
       reqlog, path, transaction, params);
     if ( iterator != null ) {
       if ( iterator.getStart() == -1 ) iterator.setStart(1);
-      if ( iterator.getSize() != -1 ) {
-        if ( iterator.getPageSize() == -1 ) iterator.setPageSize(iterator.getSize());
-        if ( iterator.getTotalSize() == -1 )  iterator.setTotalSize(iterator.getSize());
-      }
     }
     return iterator;
   }
@@ -861,27 +1065,23 @@ public class OkHttpServices implements RESTServices {
         generateSearchRequest(reqlog, querydef, MIMETYPE_MULTIPART_MIXED, transaction, responseTransform, params, forestName);
       Response response = request.getResponse();
       if ( response == null ) return null;
-      MimeMultipart entity = null;
       if ( searchHandle != null ) {
         updateServerTimestamp(handleBase, response.headers());
-        ResponseBody body = response.body();
-        if ( body.contentLength() != 0 ) {
-          entity = getEntity(body, MimeMultipart.class);
-          if ( entity != null ) {
-            List<BodyPart> partList = getPartList(entity);
-            if ( entity.getCount() > 0 ) {
-              BodyPart searchResponsePart = entity.getBodyPart(0);
-              handleBase.receiveContent(getEntity(searchResponsePart, handleBase.receiveAs()));
-              partList = partList.subList(1, partList.size());
-            }
-            Closeable closeable = response;
-            return makeResults(OkHttpServiceResultIterator::new, reqlog, "read", "resource", partList, response,
-              closeable);
+        MultipartReader partReader = makePartReader(response.body());
+        if ( partReader != null ) {
+          // the search response is the first part; the documents stream after it
+          MultipartReader.Part searchResponsePart = partReader.nextPart();
+          if ( searchResponsePart != null ) {
+            handleBase.receiveContent(getEntity(searchResponsePart.headers(), bufferPartBody(searchResponsePart),
+              handleBase.receiveAs()));
           }
+          Closeable closeable = response;
+          return makeResults(OkHttpServiceResultIterator::new, reqlog, "read", "resource", partReader, response,
+            closeable);
         }
       }
       return makeResults(OkHttpServiceResultIterator::new, reqlog, "read", "resource", response);
-    } catch (MessagingException e) {
+    } catch (IOException e) {
       throw new MarkLogicIOException(e);
     }
   }
@@ -1742,10 +1942,21 @@ public class OkHttpServices implements RESTServices {
   }
 
   static private Format getHeaderFormat(BodyPart part) {
-    String contentDisposition = getHeader(part, HEADER_CONTENT_DISPOSITION);
+    return getPartFormat(
+      getHeader(part, HEADER_VND_MARKLOGIC_DOCUMENT_FORMAT),
+      getHeader(part, HEADER_CONTENT_DISPOSITION),
+      getHeader(part, HEADER_CONTENT_TYPE));
+  }
+
+  static private Format getPartFormat(Headers partHeaders) {
+    return getPartFormat(
+      partHeaders.get(HEADER_VND_MARKLOGIC_DOCUMENT_FORMAT),
+      partHeaders.get(HEADER_CONTENT_DISPOSITION),
+      partHeaders.get(HEADER_CONTENT_TYPE));
+  }
+
+  static private Format getPartFormat(String format, String contentDisposition, String contentType) {
     String formatRegex = ".* format=(text|binary|xml|json).*";
-    String format = getHeader(part, HEADER_VND_MARKLOGIC_DOCUMENT_FORMAT);
-    String contentType = getHeader(part, HEADER_CONTENT_TYPE);
     if ( format != null && format.length() > 0 ) {
       return Format.valueOf(format.toUpperCase());
     } else if ( contentDisposition != null && contentDisposition.matches(formatRegex) ) {
@@ -1831,16 +2042,50 @@ public class OkHttpServices implements RESTServices {
     return Utilities.parseLong(length, ContentDescriptor.UNKNOWN_LENGTH);
   }
 
-  static private String getHeaderUri(BodyPart part) {
-    try {
-      if ( part != null ) {
-        return part.getFileName();
+  static private String getPartUri(Headers partHeaders) {
+    // same lookup as javax.mail's getFileName(): the disposition filename, else the content type name
+    String contentDisposition = partHeaders.get(HEADER_CONTENT_DISPOSITION);
+    String uri = (contentDisposition != null) ? getHeaderParameter(contentDisposition, "filename") : null;
+    if ( uri == null ) {
+      String contentType = partHeaders.get(HEADER_CONTENT_TYPE);
+      uri = (contentType != null) ? getHeaderParameter(contentType, "name") : null;
+    }
+    return uri;
+  }
+
+  static String getHeaderParameter(String headerValue, String name) {
+    int length = headerValue.length();
+    int pos = headerValue.indexOf(';');
+    while ( pos != -1 && pos < length ) {
+      pos++;
+      int equals = headerValue.indexOf('=', pos);
+      if ( equals == -1 ) return null;
+      String paramName = headerValue.substring(pos, equals).trim();
+      pos = equals + 1;
+      while ( pos < length && Character.isWhitespace(headerValue.charAt(pos)) ) pos++;
+      String value;
+      if ( pos < length && headerValue.charAt(pos) == '"' ) {
+        StringBuilder quoted = new StringBuilder();
+        for ( pos++; pos < length; pos++ ) {
+          char c = headerValue.charAt(pos);
+          if ( c == '\\' && pos + 1 < length ) {
+            quoted.append(headerValue.charAt(++pos));
+          } else if ( c == '"' ) {
+            break;
+          } else {
+            quoted.append(c);
+          }
+        }
+        value = quoted.toString();
+        pos = headerValue.indexOf(';', pos);
+      } else {
+        int end = headerValue.indexOf(';', pos);
+        value = headerValue.substring(pos, (end == -1) ? length : end).trim();
+        pos = end;
       }
-      // if it's not found, just return null
-      return null;
-    } catch(MessagingException e) {
-      throw new MarkLogicIOException(e);
+      if ( name.equalsIgnoreCase(paramName) ) return value;
     }
+    return null;
   }
 
   static private void updateVersion(DocumentDescriptor descriptor, Headers headers) {
@@ -1899,6 +2144,29 @@ public class OkHttpServices implements RESTServices {
                                                SearchQueryDefinition queryDef, long start, long len, QueryView view,
                                                Transaction transaction, String forestName)
     throws ForbiddenUserException, FailedRequestException
+  {
+    OkHttpSearchRequest request = newSearchRequest(reqlog, searchHandle, queryDef, start, len, view, transaction, forestName);
+
+    Response response = request.getResponse();
+    if ( response == null ) return null;
+
+    return receiveSearch(reqlog, searchHandle, request, response, start, len);
+  }
+
+  @Override
+  public <T extends SearchReadHandle> CompletableFuture<T> searchAsync(RequestLogger reqlog, T searchHandle,
+                                               SearchQueryDefinition queryDef, long start, long len, QueryView view,
+                                               String forestName)
+  {
+    OkHttpSearchRequest request = newSearchRequest(reqlog, searchHandle, queryDef, start, len, view, null, forestName);
+    return request.getResponseAsync().thenApply(response ->
+      (response == null) ? null : receiveSearch(reqlog, searchHandle, request, response, start, len)
+    );
+  }
+
+  private OkHttpSearchRequest newSearchRequest(RequestLogger reqlog, SearchReadHandle searchHandle,
+                                               SearchQueryDefinition queryDef, long start, long len, QueryView view,
+                                               Transaction transaction, String forestName)
   {
     RequestParameters params = new RequestParameters();
 
@@ -1941,10 +2209,15 @@ public class OkHttpServices implements RESTServices {
 
     String mimetype = searchFormat.getDefaultMimetype();
 
-    OkHttpSearchRequest request = generateSearchRequest(reqlog, queryDef, mimetype, transaction, null, params, forestName);
+    return generateSearchRequest(reqlog, queryDef, mimetype, transaction, null, params, forestName);
+  }
 
-    Response response = request.getResponse();
-    if ( response == null ) return null;
+  private <T extends SearchReadHandle> T receiveSearch(RequestLogger reqlog, T searchHandle,
+                                                       OkHttpSearchRequest request, Response response,
+                                                       long start, long len)
+  {
+    @SuppressWarnings("rawtypes")
+    HandleImplementation searchBase = HandleAccessor.as(searchHandle);
 
     Class<?> as = searchBase.receiveAs();
 
@@ -1959,7 +2232,7 @@ public class OkHttpServices implements RESTServices {
 
     logRequest( reqlog,
       "searched starting at %s with length %s in %s transaction with %s mime type",
-      start, len, getTransactionId(transaction), mimetype);
+      start, len, getTransactionId(request.transaction), request.mimetype);
 
     return searchHandle;
   }
@@ -2129,24 +2402,8 @@ public class OkHttpServices implements RESTServices {
           }
         }
 
-        if (queryDef instanceof StructuredQueryDefinition && ! (queryDef instanceof RawQueryDefinition)) {
-          response = doPost(reqlog, requestBldr, structure);
-        } else if (queryDef instanceof CombinedQueryDefinition) {
-          response = doPost(reqlog, requestBldr, structure);
-        } else if (queryDef instanceof DeleteQueryDefinition) {
-          response = doGet(requestBldr);
-        } else if (queryDef instanceof RawQueryDefinition) {
-          response = doPost(reqlog, requestBldr, baseHandle.sendContent());
-        } else if (queryDef instanceof RawCtsQueryDefinition) {
-          response = doPost(reqlog, requestBldr, baseHandle.sendContent());
-        } else if (queryDef instanceof StringQueryDefinition) {
-          response = doGet(requestBldr);
-        } else if (queryDef instanceof CtsQueryDefinition) {
-            response = doPost(reqlog, requestBldr, structure);
-        } else {
-          throw new UnsupportedOperationException("Cannot search with "
-            + queryDef.getClass().getName());
-        }
+        response = sendRequestOnce(makeRequest(requestBldr));
+        if (isFirstRequest()) setFirstRequest(false);
 
         status = response.code();
 
@@ -2171,6 +2428,37 @@ public class OkHttpServices implements RESTServices {
             ((System.currentTimeMillis() - startTime) / 1000)+
             " seconds after "+retry+" retries");
       }
+      return checkResponse(response);
+    }
+
+    CompletableFuture<Response> getResponseAsync() {
+      return sendRequestWithRetryAsync(requestBldr, (transaction == null), this::makeRequest, null)
+        .thenApply(this::checkResponse);
+    }
+
+    Request makeRequest(Request.Builder funcBuilder) {
+      if (queryDef instanceof StructuredQueryDefinition && ! (queryDef instanceof RawQueryDefinition)) {
+        return makePostRequest(reqlog, funcBuilder, structure);
+      } else if (queryDef instanceof CombinedQueryDefinition) {
+        return makePostRequest(reqlog, funcBuilder, structure);
+      } else if (queryDef instanceof DeleteQueryDefinition) {
+        return funcBuilder.get().build();
+      } else if (queryDef instanceof RawQueryDefinition) {
+        return makePostRequest(reqlog, funcBuilder, baseHandle.sendContent());
+      } else if (queryDef instanceof RawCtsQueryDefinition) {
+        return makePostRequest(reqlog, funcBuilder, baseHandle.sendContent());
+      } else if (queryDef instanceof StringQueryDefinition) {
+        return funcBuilder.get().build();
+      } else if (queryDef instanceof CtsQueryDefinition) {
+          return makePostRequest(reqlog, funcBuilder, structure);
+      } else {
+        throw new UnsupportedOperationException("Cannot search with "
+          + queryDef.getClass().getName());
+      }
+    }
+
+    Response checkResponse(Response response) {
+      int status = response.code();
       if (status == STATUS_NOT_FOUND) {
         closeResponse(response);
         return null;
@@ -3237,72 +3525,105 @@ public class OkHttpServices implements RESTServices {
                                                        Map<String,List<String>> responseHeaders)
     throws ResourceNotFoundException, ResourceNotResendableException, ForbiddenUserException, FailedRequestException
   {
-    if ( params == null ) params = new RequestParameters();
-    if ( transaction != null ) params.add("txid", transaction.getTransactionId());
+    ResourcePost<R> post = new ResourcePost<>(reqlog, path, transaction, params, input, output, operation, responseHeaders);
+    Response response = sendRequestWithRetry(post.requestBldr, (transaction == null),
+      funcBuilder -> doPost(reqlog, funcBuilder, post.value), post::checkResendable);
+    return post.receive(response);
+  }
 
-    HandleImplementation inputBase = HandleAccessor.checkHandle(input,
-      "write");
-    HandleImplementation outputBase = HandleAccessor.checkHandle(output,
-      "read");
+  @Override
+  public <R extends AbstractReadHandle> CompletableFuture<R> postResourceAsync(RequestLogger reqlog,
+                                                       String path, Transaction transaction, RequestParameters params,
+                                                       AbstractWriteHandle input, R output)
+  {
+    ResourcePost<R> post = new ResourcePost<>(reqlog, path, transaction, params, input, output, "apply", null);
+    return sendRequestWithRetryAsync(post.requestBldr, (transaction == null),
+      funcBuilder -> makePostRequest(reqlog, funcBuilder, post.value), post::checkResendable)
+      .thenApply(post::receive);
+  }
+
+  // the request and response processing of postResource(), shared by the blocking and asynchronous calls
+  private class ResourcePost<R extends AbstractReadHandle> {
+    final RequestLogger reqlog;
+    final String path;
+    final String operation;
+    final Map<String,List<String>> responseHeaders;
+    final R output;
+    final HandleImplementation outputBase;
+    final boolean isResendable;
+    final Object value;
+    final Request.Builder requestBldr;
+
+    ResourcePost(RequestLogger reqlog, String path, Transaction transaction, RequestParameters params,
+                 AbstractWriteHandle input, R output, String operation, Map<String,List<String>> responseHeaders) {
+      this.reqlog = reqlog;
+      this.path = path;
+      this.operation = operation;
+      this.responseHeaders = responseHeaders;
+      this.output = output;
 
-    addPointInTimeQueryParam(params, outputBase);
+      if ( params == null ) params = new RequestParameters();
+      if ( transaction != null ) params.add("txid", transaction.getTransactionId());
 
-    String inputMimetype = null;
-    if(inputBase != null) {
-      inputMimetype = inputBase.getMimetype();
-      if ( inputMimetype == null &&
-           ( Format.JSON == inputBase.getFormat() ||
-             Format.XML == inputBase.getFormat() ) )
-      {
-        inputMimetype = inputBase.getFormat().getDefaultMimetype();
-      }
-    }
-    String outputMimetype = outputBase == null ? null : outputBase.getMimetype();
-    boolean isResendable = inputBase == null ? true : inputBase.isResendable();
-    Class as = outputBase == null ? null : outputBase.receiveAs();
+      HandleImplementation inputBase = HandleAccessor.checkHandle(input,
+        "write");
+      this.outputBase = HandleAccessor.checkHandle(output,
+        "read");
 
-    Request.Builder requestBldr = makePostWebResource(path, params);
-    requestBldr = setupRequest(requestBldr, inputMimetype, outputMimetype);
-    requestBldr = addTransactionScopedCookies(requestBldr, transaction);
-    requestBldr = addTelemetryAgentId(requestBldr);
+      addPointInTimeQueryParam(params, outputBase);
 
-    Consumer<Boolean> resendableConsumer = new Consumer<Boolean>() {
-      public void accept(Boolean resendable) {
-        if (!isResendable) {
-          checkFirstRequest();
-          throw new ResourceNotResendableException("Cannot retry request for " + path);
+      String inputMimetype = null;
+      if(inputBase != null) {
+        inputMimetype = inputBase.getMimetype();
+        if ( inputMimetype == null &&
+             ( Format.JSON == inputBase.getFormat() ||
+               Format.XML == inputBase.getFormat() ) )
+        {
+          inputMimetype = inputBase.getFormat().getDefaultMimetype();
         }
       }
-    };
-    final Object value = inputBase == null ? null :inputBase.sendContent();
-    Function<Request.Builder, Response> doPostFunction = new Function<Request.Builder, Response>() {
-      public Response apply(Request.Builder funcBuilder) {
-        return doPost(reqlog, funcBuilder, value);
-      }
-    };
+      String outputMimetype = outputBase == null ? null : outputBase.getMimetype();
+      this.isResendable = inputBase == null ? true : inputBase.isResendable();
 
-    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doPostFunction, resendableConsumer);
-    int status = response.code();
-    checkStatus(response, status, operation, "resource", path,
-      ResponseStatus.OK_OR_CREATED_OR_NO_CONTENT);
+      Request.Builder requestBldr = makePostWebResource(path, params);
+      requestBldr = setupRequest(requestBldr, inputMimetype, outputMimetype);
+      requestBldr = addTransactionScopedCookies(requestBldr, transaction);
+      this.requestBldr = addTelemetryAgentId(requestBldr);
 
-    Headers headers = response.headers();
-    if ( responseHeaders != null ) {
-      // add all the headers from the OkHttp Headers object to the caller-provided map
-      responseHeaders.putAll(headers.toMultimap());
-    } else if (outputBase != null){
-        updateLength(outputBase, headers);
-        updateServerTimestamp(outputBase, headers);
+      this.value = inputBase == null ? null :inputBase.sendContent();
     }
 
-    if (as != null) {
-      outputBase.receiveContent(makeResult(reqlog, operation, "resource",
-        response, as));
-    } else {
-      closeResponse(response);
+    void checkResendable(Boolean resendable) {
+      if (!isResendable) {
+        checkFirstRequest();
+        throw new ResourceNotResendableException("Cannot retry request for " + path);
+      }
     }
 
-    return output;
+    R receive(Response response) {
+      int status = response.code();
+      checkStatus(response, status, operation, "resource", path,
+        ResponseStatus.OK_OR_CREATED_OR_NO_CONTENT);
+
+      Headers headers = response.headers();
+      if ( responseHeaders != null ) {
+        // add all the headers from the OkHttp Headers object to the caller-provided map
+        responseHeaders.putAll(headers.toMultimap());
+      } else if (outputBase != null){
+          updateLength(outputBase, headers);
+          updateServerTimestamp(outputBase, headers);
+      }
+
+      Class as = outputBase == null ? null : outputBase.receiveAs();
+      if (as != null) {
+        outputBase.receiveContent(makeResult(reqlog, operation, "resource",
+          response, as));
+      } else {
+        closeResponse(response);
+      }
+
+      return output;
+    }
   }
 
   @Override
@@ -3483,7 +3804,7 @@ public class OkHttpServices implements RESTServices {
 
     @Override
     public EvalResult next() {
-      if ( iterator == null ) throw new NoSuchElementException("No results available");
+      if ( iterator == null || !iterator.hasNext() ) throw new NoSuchElementException("No results available");
       OkHttpResult jerseyResult = iterator.next();
       EvalResult result = new OkHttpEvalResult(jerseyResult);
       return result;
@@ -4081,6 +4402,14 @@ public class OkHttpServices implements RESTServices {
   }
 
   private Response doPost(RequestLogger reqlog, Request.Builder requestBldr, Object value) {
+    Response response = sendRequestOnce(makePostRequest(reqlog, requestBldr, value));
+
+    if (isFirstRequest()) setFirstRequest(false);
+
+    return response;
+  }
+
+  private Request makePostRequest(RequestLogger reqlog, Request.Builder requestBldr, Object value) {
     if (isFirstRequest() && isStreaming(value)) {
       makeFirstRequest(0);
     }
@@ -4100,11 +4429,7 @@ public class OkHttpServices implements RESTServices {
         requestBldr = requestBldr.post(new ObjectRequestBody(value, mediaType));
       }
     }
-    Response response = sendRequestOnce(requestBldr);
-
-    if (isFirstRequest()) setFirstRequest(false);
-
-    return response;
+    return requestBldr.build();
   }
 
   private Response doPost(Request.Builder requestBldr,
@@ -4420,53 +4745,52 @@ public class OkHttpServices implements RESTServices {
     ResultIteratorConstructor<U> constructor, RequestLogger reqlog,
     String operation, String entityType, Response response) {
     if ( response == null ) return null;
-    ResponseBody body = response.body();
-    long length = body.contentLength();
-    MimeMultipart entity = length != 0 ?
-      getEntity(body, MimeMultipart.class) : null;
+    MultipartReader partReader = makePartReader(response.body());
 
-    try {
-        if (length == -1 && entity != null) entity.getCount();
-    } catch (MessagingException e) {
-        entity = null;
-    }
-    List<BodyPart> partList = getPartList(entity);
+    Closeable closeable = response;
+    U result = makeResults(constructor, reqlog, operation, entityType, partReader, response, closeable);
 
-    String mlErrorCode = null;
-    String mlErrorMessage = null;
-    try {
-        Headers trailers = response.trailers();
-        mlErrorCode = trailers.get("ml-error-code");
-        mlErrorMessage = trailers.get("ml-error-message");
-    } catch (IOException e) {
-        // This does not seem worthy of causing the entire operation to fail; we also don't expect this to occur, as it
-        // should only occur due to a programming error where the response body has already been consumed
-        logger.warn("Unexpected IO error while getting HTTP response trailers: " + e.getMessage());
-    }
+    // Trailers are only requested for rows and can only be read after the entire body has been consumed, so the
+    // parts of such a response are buffered up front; all other responses are streamed as the caller iterates.
+    if (response.request().header("TE") != null) {
+      result.bufferRemaining();
 
-    if (mlErrorCode != null && !"N/A".equals(mlErrorCode)) {
-      FailedRequest failure = new FailedRequest();
-      failure.setMessageString(mlErrorCode);
-      failure.setStatusString(mlErrorMessage);
-      failure.setStatusCode(500);
-      throw new FailedRequestException("failed to " + operation + " "
-          + entityType + " at rows" + ": " + mlErrorCode + ", " + mlErrorMessage, failure);
+      String mlErrorCode = null;
+      String mlErrorMessage = null;
+      try {
+          Headers trailers = response.trailers();
+          mlErrorCode = trailers.get("ml-error-code");
+          mlErrorMessage = trailers.get("ml-error-message");
+      } catch (IOException e) {
+          // This does not seem worthy of causing the entire operation to fail; we also don't expect this to occur, as it
+          // should only occur due to a programming error where the response body has already been consumed
+          logger.warn("Unexpected IO error while getting HTTP response trailers: " + e.getMessage());
+      }
+
+      if (mlErrorCode != null && !"N/A".equals(mlErrorCode)) {
+        result.close();
+        FailedRequest failure = new FailedRequest();
+        failure.setMessageString(mlErrorCode);
+        failure.setStatusString(mlErrorMessage);
+        failure.setStatusCode(500);
+        throw new FailedRequestException("failed to " + operation + " "
+            + entityType + " at rows" + ": " + mlErrorCode + ", " + mlErrorMessage, failure);
+      }
     }
 
-    Closeable closeable = response;
-    return makeResults(constructor, reqlog, operation, entityType, partList, response, closeable);
+    return result;
   }
 
   private <U extends OkHttpResultIterator> U makeResults(
     ResultIteratorConstructor<U> constructor, RequestLogger reqlog,
-    String operation, String entityType, List<BodyPart> partList, Response response,
+    String operation, String entityType, MultipartReader partReader, Response response,
     Closeable closeable) {
     logRequest(reqlog, "%s for %s", operation, entityType);
 
     if ( response == null ) return null;
 
     try {
-      OkHttpResultIterator result = constructor.construct(reqlog, partList, closeable);
+      OkHttpResultIterator result = constructor.construct(reqlog, partReader, closeable);
       Headers headers = response.headers();
       long pageStart = Utilities.parseLong(headers.get(HEADER_VND_MARKLOGIC_START));
       if (pageStart > -1l) {
@@ -4487,7 +4811,15 @@ public class OkHttpServices implements RESTServices {
   }
 
   private boolean isStreaming(Object value) {
-    return !(value instanceof String || value instanceof byte[] || value instanceof File);
+    return !(value instanceof String || value instanceof byte[] || value instanceof ByteBuffer || value instanceof File);
+  }
+  // the counterpart of isStreaming() for a request that has been built
+  private boolean isStreaming(RequestBody body) {
+    if (body instanceof ObjectRequestBody) {
+      Object value = ((ObjectRequestBody) body).obj;
+      return value != null && isStreaming(value);
+    }
+    return body instanceof StreamingOutputImpl || body instanceof MultipartBody;
   }
 
   private void logRequest(RequestLogger reqlog, String message,
@@ -4538,7 +4870,8 @@ public class OkHttpServices implements RESTServices {
 
   static class OkHttpResult {
     private RequestLogger reqlog;
-    private BodyPart part;
+    private Headers partHeaders;
+    private Buffer partBody;
     private boolean extractedHeaders = false;
     private String uri;
     private RequestParameters headers = new RequestParameters();
@@ -4546,13 +4879,14 @@ public class OkHttpServices implements RESTServices {
     private String mimetype;
     private long length;
 
-    OkHttpResult(RequestLogger reqlog, BodyPart part) {
+    OkHttpResult(RequestLogger reqlog, Headers partHeaders, Buffer partBody) {
       this.reqlog = reqlog;
-      this.part = part;
+      this.partHeaders = partHeaders;
+      this.partBody = partBody;
     }
 
     public <R extends AbstractReadHandle> R getContent(R handle) {
-      if (part == null) throw new IllegalStateException("Content already retrieved");
+      if (partBody == null) throw new IllegalStateException("Content already retrieved");
 
       HandleImplementation handleBase = HandleAccessor.as(handle);
 
@@ -4562,12 +4896,12 @@ public class OkHttpServices implements RESTServices {
       updateLength(handleBase, length);
 
       try {
-        Object contentEntity = getEntity(part, handleBase.receiveAs());
+        Object contentEntity = getEntity(partHeaders, partBody, handleBase.receiveAs());
         handleBase.receiveContent((reqlog != null) ? reqlog.copyContent(contentEntity) : contentEntity);
 
         return handle;
       } finally {
-        part = null;
+        partBody = null;
         reqlog = null;
       }
     }
@@ -4613,45 +4947,45 @@ public class OkHttpServices implements RESTServices {
     }
 
     private void extractHeaders() {
-      if (part == null || extractedHeaders) return;
-      try {
-        for ( Enumeration<Header> e = part.getAllHeaders(); e.hasMoreElements(); ) {
-          Header header = e.nextElement();
-          headers.put(header.getName(), header.getValue());
-        }
-        format = getHeaderFormat(part);
-        mimetype = getHeaderMimetype(OkHttpServices.getHeader(part, HEADER_CONTENT_TYPE));
-        length = getHeaderLength(OkHttpServices.getHeader(part, HEADER_CONTENT_LENGTH));
-        uri = getHeaderUri(part);
-        extractedHeaders = true;
-      } catch (MessagingException e) {
-        throw new MarkLogicIOException(e);
+      if (partHeaders == null || extractedHeaders) return;
+      for ( int i = 0; i < partHeaders.size(); i++ ) {
+        headers.put(partHeaders.name(i), partHeaders.value(i));
       }
+      format = getPartFormat(partHeaders);
+      mimetype = getHeaderMimetype(partHeaders.get(HEADER_CONTENT_TYPE));
+      length = getHeaderLength(partHeaders.get(HEADER_CONTENT_LENGTH));
+      uri = getPartUri(partHeaders);
+      extractedHeaders = true;
     }
   }
 
   static class OkHttpServiceResult extends OkHttpResult implements RESTServices.RESTServiceResult {
-    OkHttpServiceResult(RequestLogger reqlog, BodyPart part) {
-      super(reqlog, part);
+    OkHttpServiceResult(RequestLogger reqlog, Headers partHeaders, Buffer partBody) {
+      super(reqlog, partHeaders, partBody);
     }
   }
 
+  /**
+   * Iterates over the parts of a multipart/mixed response as they arrive off the socket. Only the body of the part
+   * being handed out is held in memory, so a bulk response never has to fit in the heap at once.
+   */
   static abstract class OkHttpResultIterator<T extends OkHttpResult> {
     private RequestLogger reqlog;
-    private Iterator<BodyPart> partQueue;
+    private MultipartReader partReader;
+    private Queue<T> bufferedResults;
+    private T nextResult;
+    private boolean canRemove = false;
+    private long partsRead = 0;
     private long start = -1;
     private long size = -1;
     private long pageSize = -1;
     private long totalSize = -1;
     private Closeable closeable;
 
-    OkHttpResultIterator(RequestLogger reqlog, List<BodyPart> partList, Closeable closeable) {
+    OkHttpResultIterator(RequestLogger reqlog, MultipartReader partReader, Closeable closeable) {
       this.reqlog = reqlog;
-      if (partList != null && partList.size() > 0) {
-        this.size = partList.size();
-        this.partQueue = new ConcurrentLinkedQueue<>(
-          partList).iterator();
-      } else {
+      this.partReader = partReader;
+      if (partReader == null) {
         this.size = 0;
       }
       this.closeable = closeable;
@@ -4666,7 +5000,13 @@ public class OkHttpServices implements RESTServices {
       return this;
     }
 
+    /**
+     * The number of parts in the response. As that isn't known until the last part has been read, calling this
+     * before the iteration is complete buffers the remaining parts. If the iterator was closed before the last
+     * part was read, the remaining parts can no longer be counted and the size is -1.
+     */
     public long getSize() {
+      if (size == -1) bufferRemaining();
       return size;
     }
 
@@ -4694,31 +5034,67 @@ public class OkHttpServices implements RESTServices {
     }
 
     public boolean hasNext() {
-      if (partQueue == null) return false;
-      boolean hasNext = partQueue.hasNext();
-      return hasNext;
+      if (nextResult == null) {
+        nextResult = (bufferedResults != null && !bufferedResults.isEmpty()) ?
+          bufferedResults.poll() : readNextPart();
+      }
+      return nextResult != null;
     }
 
     public T next() {
-      if (partQueue == null) return null;
+      if (!hasNext()) throw new NoSuchElementException("No more parts in the response");
+      T result = nextResult;
+      nextResult = null;
+      canRemove = true;
+      return result;
+    }
 
-      try {
-        return constructNext(reqlog, partQueue.next());
-      } catch (Throwable t) {
-        throw new IllegalStateException("Error instantiating iterated result", t);
+    /**
+     * Whether the response has any parts, which reads at most the first part rather than the whole response.
+     */
+    boolean hasParts() {
+      return partsRead > 0 || hasNext();
+    }
+
+    abstract T constructNext(RequestLogger logger, Headers partHeaders, Buffer partBody);
+
+    void bufferRemaining() {
+      if (partReader == null) return;
+      if (bufferedResults == null) bufferedResults = new ArrayDeque<>();
+      for (T result = readNextPart(); result != null; result = readNextPart()) {
+        bufferedResults.add(result);
       }
     }
 
-    abstract T constructNext(RequestLogger logger, BodyPart part);
+    private T readNextPart() {
+      if (partReader == null) return null;
+      try {
+        MultipartReader.Part part = partReader.nextPart();
+        if (part == null) {
+          partReader = null;
+          if (size == -1) size = partsRead;
+          return null;
+        }
+        partsRead++;
+        return constructNext(reqlog, part.headers(), bufferPartBody(part));
+      } catch (IOException e) {
+        throw new MarkLogicIOException(e);
+      }
+    }
 
+    // the iterator doesn't hold on to a part once next() has returned it, so removing the part only
+    // has to close the response when no parts remain
     public void remove() {
-      if (partQueue == null) return;
-      partQueue.remove();
-      if (!partQueue.hasNext()) close();
+      if (!canRemove) throw new IllegalStateException("next() has not been called since the last remove()");
+      canRemove = false;
+      if (!hasNext()) close();
     }
 
     public void close() {
-      partQueue = null;
+      partReader = null;
+      bufferedResults = null;
+      nextResult = null;
+      canRemove = false;
       reqlog = null;
       if ( closeable != null ) {
         try {
@@ -4735,11 +5111,11 @@ public class OkHttpServices implements RESTServices {
     implements RESTServiceResultIterator
   {
     OkHttpServiceResultIterator(RequestLogger reqlog,
-                                       List<BodyPart> partList, Closeable closeable) {
-      super(reqlog, partList, closeable);
+                                       MultipartReader partReader, Closeable closeable) {
+      super(reqlog, partReader, closeable);
     }
-    OkHttpServiceResult constructNext(RequestLogger logger, BodyPart part) {
-      return new OkHttpServiceResult(logger, part);
+    OkHttpServiceResult constructNext(RequestLogger logger, Headers partHeaders, Buffer partBody) {
+      return new OkHttpServiceResult(logger, partHeaders, partBody);
     }
   }
 
@@ -4748,11 +5124,11 @@ public class OkHttpServices implements RESTServices {
     implements Iterator<OkHttpResult>
   {
     DefaultOkHttpResultIterator(RequestLogger reqlog,
-                                       List<BodyPart> partList, Closeable closeable) {
-      super(reqlog, partList, closeable);
+                                       MultipartReader partReader, Closeable closeable) {
+      super(reqlog, partReader, closeable);
     }
-    OkHttpResult constructNext(RequestLogger logger, BodyPart part) {
-      return new OkHttpResult(logger, part);
+    OkHttpResult constructNext(RequestLogger logger, Headers partHeaders, Buffer partBody) {
+      return new OkHttpResult(logger, partHeaders, partBody);
     }
   }
 
@@ -5411,6 +5787,37 @@ public class OkHttpServices implements RESTServices {
     }
   }
 
+  static private <T> T getEntity(Headers partHeaders, Buffer partBody, Class<T> as) {
+    String contentType = partHeaders.get(HEADER_CONTENT_TYPE);
+    MediaType mediaType = (contentType != null) ? MediaType.parse(contentType) : null;
+    return getEntity(ResponseBody.create(partBody, mediaType, partBody.size()), as);
+  }
+
+  /**
+   * Returns a reader that parses the multipart/mixed body incrementally, or null if the body has no parts.
+   */
+  static MultipartReader makePartReader(ResponseBody body) {
+    if ( body == null || body.contentLength() == 0 ) return null;
+    MediaType mediaType = body.contentType();
+    if ( mediaType == null || mediaType.parameter("boundary") == null ) return null;
+    try {
+      // a chunked response may still turn out to be empty
+      if ( body.source().exhausted() ) return null;
+      return new MultipartReader(body);
+    } catch (IOException e) {
+      throw new MarkLogicIOException(e);
+    }
+  }
+
+  /**
+   * Reads the body of the current part so that the reader can move on to the next part.
+   */
+  static private Buffer bufferPartBody(MultipartReader.Part part) throws IOException {
+    Buffer partBody = new Buffer();
+    part.body().readAll(partBody);
+    return partBody;
+  }
+
   static private MediaType makeType(String mimetype) {
     if ( mimetype == null ) return null;
     MediaType type = MediaType.parse(mimetype);
@@ -5521,6 +5928,11 @@ public class OkHttpServices implements RESTServices {
       return contentType;
     }
 
+    @Override
+    public long contentLength() {
+      return (obj instanceof ByteBuffer) ? ((ByteBuffer) obj).remaining() : -1;
+    }
+
     @Override
     public void writeTo(BufferedSink sink) throws IOException {
       if ( obj instanceof InputStream ) {
@@ -5531,6 +5943,9 @@ public class OkHttpServices implements RESTServices {
         }
       } else if ( obj instanceof byte[] ) {
         sink.write((byte[]) obj);
+      } else if ( obj instanceof ByteBuffer ) {
+        // a duplicate leaves the position of the buffer unchanged for a resend
+        sink.write(((ByteBuffer) obj).duplicate());
       } else if ( obj instanceof String) {
         sink.write(((String) obj).getBytes(StandardCharsets.UTF_8));
       } else if ( obj == null ) {
@@ -6630,6 +7045,6 @@ public class OkHttpServices implements RESTServices {
 
   @FunctionalInterface
   private interface ResultIteratorConstructor<T> {
-    T construct(RequestLogger logger, List list, Closeable closeable);
+    T construct(RequestLogger logger, MultipartReader partReader, Closeable closeable);
   }
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.row.RowManager.ParallelOrdering;
+import com.marklogic.client.row.RowRecord;
+import com.marklogic.client.row.RowSet;
+
+/**
+ * Merges the rows of the row id partitions of a plan, read concurrently, into one RowSet for a
+ * parallel RowManager.resultRows call.
+ *
+ * Design
+ *   - the first partition is requested on the calling thread, which supplies the column names and the
+ *     server timestamp that every other partition reads at, so the partitions form a consistent snapshot
+ *   - a fixed pool reads the partitions in order, each into a bounded queue, so a slow consumer holds back
+ *     the reads instead of buffering the whole result
+ *   - with UNORDERED, all partitions share one queue; with PARTITION, each partition has its own queue and
+ *     the iterator drains them in turn; because the pool starts the partitions in order, the partition being
+ *     drained always has a thread, so the partitions waiting on a full queue can't starve it
+ *   - a failed partition puts its exception in its queue, and the iterator rethrows it after closing the set
+ *   - closing the set stops the pool and closes the partitions that are still being read
+ */
+class ParallelRowSet implements RowSet<RowRecord>, Iterator<RowRecord> {
+  private static final Logger logger = LoggerFactory.getLogger(ParallelRowSet.class);
+
+  private static final int    QUEUE_CAPACITY = 1000;
+  private static final Object PARTITION_END  = new Object();
+
+  private static final AtomicInteger poolCount = new AtomicInteger(0);
+
+  interface PartitionReader {
+    RowSet<RowRecord> read(int partition, InputStreamHandle bodyHandle);
+  }
+
+  private final ParallelOrdering               ordering;
+  private final int                            partitionCount;
+  private final List<BlockingQueue<Object>>    queues;
+  private final List<RowSet<RowRecord>>        openSets = new ArrayList<>();
+  private final ExecutorService                executor;
+  private final String[]                       columnNames;
+  private final String[]                       columnTypes;
+
+  private volatile boolean closed = false;
+  private int              currentPartition = 0;
+  private int              endedPartitions  = 0;
+  private RowRecord        nextRow          = null;
+
+  ParallelRowSet(int partitionCount, int threadCount, ParallelOrdering ordering, PartitionReader reader) {
+    this.ordering       = (ordering == null) ? ParallelOrdering.UNORDERED : ordering;
+    this.partitionCount = partitionCount;
+
+    InputStreamHandle firstHandle = new InputStreamHandle();
+    RowSet<RowRecord> first = reader.read(1, firstHandle);
+    this.columnNames = first.getColumnNames();
+    this.columnTypes = first.getColumnTypes();
+    long timestamp = firstHandle.getServerTimestamp();
+
+    this.queues = new ArrayList<>();
+    if (this.ordering == ParallelOrdering.PARTITION) {
+      for (int i=0; i < partitionCount; i++) {
+        queues.add(new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+      }
+    } else {
+      queues.add(new ArrayBlockingQueue<>(QUEUE_CAPACITY * threadCount));
+    }
+
+    int poolNum = poolCount.incrementAndGet();
+    AtomicInteger threadNum = new AtomicInteger(0);
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "parallel-rows-"+poolNum+"-"+threadNum.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    this.executor = Executors.newFixedThreadPool(Math.min(threadCount, partitionCount), threadFactory);
+
+    register(first);
+    executor.execute(() -> drain(first, queueFor(1)));
+    for (int partition=2; partition <= partitionCount; partition++) {
+      final int partitionNum = partition;
+      final BlockingQueue<Object> queue = queueFor(partition);
+      executor.execute(() -> {
+        if (closed) {
+          return;
+        }
+        RowSet<RowRecord> rows;
+        try {
+          InputStreamHandle bodyHandle = new InputStreamHandle();
+          if (timestamp > 0) {
+            bodyHandle.setPointInTimeQueryTimestamp(timestamp);
+          }
+          rows = reader.read(partitionNum, bodyHandle);
+        } catch (Throwable e) {
+          put(queue, new PartitionFailure(e));
+          return;
+        }
+        register(rows);
+        drain(rows, queue);
+      });
+    }
+    executor.shutdown();
+  }
+
+  private BlockingQueue<Object> queueFor(int partition) {
+    return (ordering == ParallelOrdering.PARTITION) ? queues.get(partition - 1) : queues.get(0);
+  }
+
+  private void register(RowSet<RowRecord> rows) {
+    synchronized (openSets) {
+      openSets.add(rows);
+    }
+    if (closed) {
+      closeQuietly(rows);
+    }
+  }
+
+  private void drain(RowSet<RowRecord> rows, BlockingQueue<Object> queue) {
+    try {
+      for (RowRecord row: rows) {
+        if (closed || !put(queue, row)) {
+          return;
+        }
+      }
+      put(queue, PARTITION_END);
+    } catch (Throwable e) {
+      put(queue, new PartitionFailure(e));
+    } finally {
+      synchronized (openSets) {
+        openSets.remove(rows);
+      }
+      closeQuietly(rows);
+    }
+  }
+
+  private boolean put(BlockingQueue<Object> queue, Object item) {
+    try {
+      queue.put(item);
+      return true;
+    } catch (InterruptedException e) {
+      // interrupted by close()
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  @Override
+  public String[] getColumnNames() {
+    return columnNames;
+  }
+  @Override
+  public String[] getColumnTypes() {
+    return columnTypes;
+  }
+
+  @Override
+  public Iterator<RowRecord> iterator() {
+    return this;
+  }
+  @Override
+  public Stream<RowRecord> stream() {
+    return StreamSupport.stream(this.spliterator(), false);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextRow != null) {
+      return true;
+    }
+    while (!closed) {
+      if (isDone()) {
+        close();
+        return false;
+      }
+      Object item;
+      try {
+        item = queueFor(currentPartition + 1).take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new MarkLogicIOException("interrupted while waiting for rows", e);
+      }
+      if (item == PARTITION_END) {
+        if (ordering == ParallelOrdering.PARTITION) {
+          currentPartition++;
+        } else {
+          endedPartitions++;
+        }
+      } else if (item instanceof PartitionFailure) {
+        close();
+        Throwable cause = ((PartitionFailure) item).cause;
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new MarkLogicIOException("could not read rows for partition", cause);
+      } else {
+        nextRow = (RowRecord) item;
+        return true;
+      }
+    }
+    return false;
+  }
+  private boolean isDone() {
+    return (ordering == ParallelOrdering.PARTITION) ?
+      (currentPartition >= partitionCount) : (endedPartitions >= partitionCount);
+  }
+
+  @Override
+  public RowRecord next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException("no next row");
+    }
+    RowRecord row = nextRow;
+    nextRow = null;
+    return row;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    executor.shutdownNow();
+    List<RowSet<RowRecord>> remaining;
+    synchronized (openSets) {
+      remaining = new ArrayList<>(openSets);
+      openSets.clear();
+    }
+    for (RowSet<RowRecord> rows: remaining) {
+      closeQuietly(rows);
+    }
+    for (BlockingQueue<Object> queue: queues) {
+      queue.clear();
+    }
+  }
+
+  private void closeQuietly(RowSet<RowRecord> rows) {
+    try {
+      rows.close();
+    } catch (IOException | RuntimeException e) {
+      logger.debug("could not close partition rows: {}", e.toString());
+    }
+  }
+
+  private static class PartitionFailure {
+    private final Throwable cause;
+    PartitionFailure(Throwable cause) {
+      this.cause = cause;
+    }
+  }
+}
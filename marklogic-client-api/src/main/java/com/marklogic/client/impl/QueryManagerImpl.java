@@ -17,6 +17,7 @@ package com.marklogic.client.impl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.xml.namespace.QName;
 
@@ -27,6 +28,8 @@ import org.w3c.dom.NodeList;
 
 import com.marklogic.client.DatabaseClientFactory.HandleFactoryRegistry;
 import com.marklogic.client.Transaction;
+import com.marklogic.client.document.ServerTransform;
+import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.DOMHandle;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.SearchHandle;
@@ -42,6 +45,7 @@ import com.marklogic.client.io.marker.TuplesReadHandle;
 import com.marklogic.client.io.marker.ValuesListReadHandle;
 import com.marklogic.client.io.marker.ValuesReadHandle;
 import com.marklogic.client.util.RequestParameters;
+import com.marklogic.client.util.ResponseCache;
 
 public class QueryManagerImpl
   extends AbstractLoggingManager
@@ -51,6 +55,7 @@ public class QueryManagerImpl
   private HandleFactoryRegistry handleRegistry;
   private long pageLen = -1;
   private QueryView view = QueryView.DEFAULT;
+  private ResponseCache responseCache = null;
 
   public QueryManagerImpl(RESTServices services) {
     super();
@@ -73,6 +78,15 @@ public class QueryManagerImpl
     pageLen = length;
   }
 
+  @Override
+  public void setResponseCache(ResponseCache cache) {
+    this.responseCache = cache;
+  }
+  @Override
+  public ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
   @Override
   public QueryView getView() {
     return view;
@@ -161,7 +175,124 @@ public class QueryManagerImpl
       responseHandle.setHandleRegistry(getHandleRegistry());
       responseHandle.setQueryCriteria(querydef);
     }
-    return services.search(requestLogger, searchHandle, querydef, start, pageLen, view, transaction, forestName);
+
+    String cacheKey = (transaction == null) ? searchCacheKey(querydef, searchHandle, start, forestName) : null;
+    if (cacheKey == null) {
+      return services.search(requestLogger, searchHandle, querydef, start, pageLen, view, transaction, forestName);
+    }
+    ResponseCache.Entry cached = responseCache.get(cacheKey);
+    if (cached == null) {
+      BytesHandle bytesHandle = ResponseCaching.newResponseHandle(searchHandle);
+      if (services.search(requestLogger, bytesHandle, querydef, start, pageLen, view, null, forestName) == null) {
+        return null;
+      }
+      cached = ResponseCaching.newEntry(bytesHandle);
+      responseCache.put(cacheKey, cached);
+    }
+    return ResponseCaching.receive(searchHandle, cached);
+  }
+
+  @Override
+  public <T extends SearchReadHandle> CompletableFuture<T> searchAsync(SearchQueryDefinition querydef, T searchHandle) {
+    return searchAsync(querydef, searchHandle, 1);
+  }
+  @Override
+  public <T extends SearchReadHandle> CompletableFuture<T> searchAsync(SearchQueryDefinition querydef, T searchHandle, long start) {
+    if (searchHandle instanceof SearchHandle) {
+      SearchHandle responseHandle = (SearchHandle) searchHandle;
+      responseHandle.setHandleRegistry(getHandleRegistry());
+      responseHandle.setQueryCriteria(querydef);
+    }
+
+    String cacheKey = searchCacheKey(querydef, searchHandle, start, null);
+    if (cacheKey == null) {
+      return services.searchAsync(requestLogger, searchHandle, querydef, start, pageLen, view, null);
+    }
+    ResponseCache.Entry cached = responseCache.get(cacheKey);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(ResponseCaching.receive(searchHandle, cached));
+    }
+    BytesHandle bytesHandle = ResponseCaching.newResponseHandle(searchHandle);
+    return services.searchAsync(requestLogger, bytesHandle, querydef, start, pageLen, view, null)
+      .thenApply(response -> {
+        if (response == null) {
+          return null;
+        }
+        ResponseCache.Entry entry = ResponseCaching.newEntry(bytesHandle);
+        responseCache.put(cacheKey, entry);
+        return ResponseCaching.receive(searchHandle, entry);
+      });
+  }
+
+  // the same parameters and body as OkHttpServices.OkHttpSearchRequest; null if the search can't be cached
+  private String searchCacheKey(SearchQueryDefinition querydef, SearchReadHandle searchHandle, long start, String forestName) {
+    if (responseCache == null || querydef == null || !ResponseCaching.canReceive(searchHandle)) {
+      return null;
+    }
+    String client = ResponseCaching.clientKey(services.getDatabaseClient());
+    if (client == null) {
+      return null;
+    }
+
+    RequestParameters params = new RequestParameters();
+    if (querydef instanceof QueryDefinition) {
+      String directory = ((QueryDefinition) querydef).getDirectory();
+      if (directory != null) {
+        params.add("directory", directory);
+      }
+      params.add("collection", ((QueryDefinition) querydef).getCollections());
+    }
+    String optionsName = querydef.getOptionsName();
+    if (optionsName != null && optionsName.length() > 0) {
+      params.add("options", optionsName);
+    }
+    ServerTransform transform = querydef.getResponseTransform();
+    if (transform != null) {
+      transform.merge(params);
+    }
+    if (start > 1) {
+      params.add("start", Long.toString(start));
+    }
+    if (pageLen > 0) {
+      params.add("pageLength", Long.toString(pageLen));
+    }
+    params.add("view", view.name());
+    if (forestName != null) {
+      params.add("forest-name", forestName);
+    }
+
+    String text = null;
+    String body;
+    if (querydef instanceof StringQueryDefinition) {
+      text = ((StringQueryDefinition) querydef).getCriteria();
+      body = "";
+    } else if (querydef instanceof StructuredQueryDefinition) {
+      text = ((StructuredQueryDefinition) querydef).getCriteria();
+      body = ((StructuredQueryDefinition) querydef).serialize();
+    } else if (querydef instanceof RawStructuredQueryDefinition) {
+      text = ((RawStructuredQueryDefinition) querydef).getCriteria();
+      body = ResponseCaching.bodyKey(((RawStructuredQueryDefinition) querydef).getHandle());
+    } else if (querydef instanceof RawCtsQueryDefinition) {
+      text = ((RawCtsQueryDefinition) querydef).getCriteria();
+      body = ResponseCaching.bodyKey(((RawCtsQueryDefinition) querydef).getHandle());
+    } else if (querydef instanceof RawQueryDefinition) {
+      body = ResponseCaching.bodyKey(((RawQueryDefinition) querydef).getHandle());
+    } else if (querydef instanceof CombinedQueryDefinition) {
+      body = ((CombinedQueryDefinition) querydef).serialize();
+    } else if (querydef instanceof CtsQueryDefinition) {
+      body = ((CtsQueryDefinition) querydef).serialize();
+    } else {
+      return null;
+    }
+    if (text != null) {
+      params.add("q", text);
+    }
+    if (body == null) {
+      return null;
+    }
+
+    String path = (querydef instanceof RawQueryByExampleDefinition) ? "qbe" : "search";
+    return ResponseCaching.newKey(client, path, params, searchHandle, querydef.getClass().getName()+"\n"+body);
   }
 
   public <T extends UrisReadHandle> T uris(String method, SearchQueryDefinition querydef, Boolean filtered, T urisHandle,
@@ -21,6 +21,7 @@ import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import com.marklogic.client.DatabaseClient;
@@ -109,6 +110,7 @@ public interface RESTServices {
 
   String MAX_DELAY_PROP = "com.marklogic.client.maximumRetrySeconds";
   String MIN_RETRY_PROP = "com.marklogic.client.minimumRetries";
+  String MAX_ASYNC_REQUESTS_PROP = "com.marklogic.client.maximumAsyncRequests";
 
   Set<Integer> getRetryStatus();
   int getMaxDelay();
@@ -127,6 +129,9 @@ public interface RESTServices {
                              Set<Metadata> categories, RequestParameters extraParams,
                              DocumentMetadataReadHandle metadataHandle, AbstractReadHandle contentHandle)
     throws ResourceNotFoundException, ForbiddenUserException,  FailedRequestException;
+  // completes with false if the document wasn't modified since the version of the descriptor
+  CompletableFuture<Boolean> getDocumentAsync(RequestLogger logger, DocumentDescriptor desc,
+                             RequestParameters extraParams, AbstractReadHandle contentHandle);
 
   DocumentDescriptor head(RequestLogger logger, String uri, Transaction transaction)
     throws ForbiddenUserException, FailedRequestException;
@@ -166,6 +171,9 @@ public interface RESTServices {
   <T extends SearchReadHandle> T search(RequestLogger logger, T searchHandle, SearchQueryDefinition queryDef,
                                                long start, long len, QueryView view, Transaction transaction, String forestName)
     throws ForbiddenUserException, FailedRequestException;
+  <T extends SearchReadHandle> CompletableFuture<T> searchAsync(RequestLogger logger, T searchHandle,
+                                               SearchQueryDefinition queryDef, long start, long len, QueryView view,
+                                               String forestName);
 
   void deleteSearch(RequestLogger logger, DeleteQueryDefinition queryDef, Transaction transaction)
     throws ForbiddenUserException, FailedRequestException;
@@ -417,6 +425,9 @@ public interface RESTServices {
     AbstractWriteHandle input, R output, String operation, Map<String,List<String>> responseHeaders)
     throws ResourceNotFoundException, ResourceNotResendableException,
     ForbiddenUserException, FailedRequestException;
+  <R extends AbstractReadHandle> CompletableFuture<R> postResourceAsync(
+    RequestLogger reqlog, String path, Transaction transaction, RequestParameters params,
+    AbstractWriteHandle input, R output);
   void patchDocument(RequestLogger reqlog, DocumentDescriptor desc, Transaction transaction, Set<Metadata> categories, boolean isOnContent,
                      RequestParameters extraParams, String sourceDocumentURI, DocumentPatchHandle patchHandle)
     throws ResourceNotFoundException, ResourceNotResendableException, ForbiddenUserException,
@@ -20,6 +20,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -87,6 +88,14 @@ class RequestLoggerImpl implements RequestLogger {
       return content;
     }
 
+    if (content instanceof ByteBuffer) {
+      ByteBuffer b = ((ByteBuffer) content).duplicate();
+      byte[] bytes = new byte[(int) Math.min(b.remaining(), max)];
+      b.get(bytes);
+      out.write(bytes, 0, bytes.length);
+      return content;
+    }
+
     if (content instanceof File) {
       out.println("info: cannot copy content from "+
         ((File) content).getAbsolutePath());
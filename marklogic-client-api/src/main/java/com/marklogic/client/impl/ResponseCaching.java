@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.marker.AbstractReadHandle;
+import com.marklogic.client.io.marker.AbstractWriteHandle;
+import com.marklogic.client.util.RequestParameters;
+import com.marklogic.client.util.ResponseCache;
+
+/**
+ * Builds the keys for a ResponseCache and replays cached responses into read handles.
+ *
+ * Design
+ *   - a key is the client, the endpoint, the request parameters in sorted order, the format, mimetype, and
+ *     point-in-time query timestamp of the response handle, and the serialized request body, one per line
+ *   - the client is the host, port, base path, database, and user, so a cache shared by several clients never
+ *     answers a request with a response that another user or database was allowed to read; a security context
+ *     without a user name identifies itself by a number that is unique within the JVM
+ *   - a response is only cached if the handle receives one of the content classes that bytes can be
+ *     replayed as, so a cache hit produces the same handle state as a request
+ */
+class ResponseCaching {
+  private static final Map<DatabaseClientFactory.SecurityContext, String> contextIds =
+    Collections.synchronizedMap(new WeakHashMap<>());
+  private static final AtomicLong nextContextId = new AtomicLong();
+
+  private ResponseCaching() {
+  }
+
+  // null if the client is unknown, in which case the response can't be cached
+  static String clientKey(DatabaseClient client) {
+    if (client == null) {
+      return null;
+    }
+    return client.getHost() + ':' + client.getPort() + '/' + client.getBasePath() +
+      " database=" + client.getDatabase() + " user=" + userKey(client.getSecurityContext());
+  }
+
+  private static String userKey(DatabaseClientFactory.SecurityContext securityContext) {
+    if (securityContext instanceof DatabaseClientFactory.DigestAuthContext) {
+      return "digest:" + ((DatabaseClientFactory.DigestAuthContext) securityContext).getUser();
+    } else if (securityContext instanceof DatabaseClientFactory.BasicAuthContext) {
+      return "basic:" + ((DatabaseClientFactory.BasicAuthContext) securityContext).getUser();
+    } else if (securityContext == null) {
+      return "none";
+    }
+    return contextIds.computeIfAbsent(securityContext,
+      context -> context.getClass().getSimpleName() + '#' + nextContextId.incrementAndGet());
+  }
+
+  static boolean canReceive(AbstractReadHandle handle) {
+    if (!(handle instanceof HandleImplementation)) {
+      return false;
+    }
+    Class<?> as = ((HandleImplementation<?,?>) handle).receiveAs();
+    return as == byte[].class || as == String.class || as == InputStream.class || as == Reader.class;
+  }
+
+  // null if the body can't be read without consuming it
+  static String bodyKey(AbstractWriteHandle body) {
+    if (body == null) {
+      return "";
+    }
+    if (!HandleAccessor.isResendable(body)) {
+      return null;
+    }
+    return HandleAccessor.contentAsString(body);
+  }
+
+  static String newKey(
+    String client, String path, RequestParameters params, AbstractReadHandle responseHandle, String body
+  ) {
+    HandleImplementation<?,?> responseBase = (HandleImplementation<?,?>) responseHandle;
+    StringBuilder key = new StringBuilder(client).append('\n').append(path).append('\n');
+    if (params != null) {
+      for (Map.Entry<String, List<String>> param: new TreeMap<>(params).entrySet()) {
+        for (String value: param.getValue()) {
+          key.append(param.getKey()).append('=').append(value).append('&');
+        }
+      }
+    }
+    key.append('\n')
+      .append(responseBase.getFormat()).append(' ').append(responseBase.getMimetype())
+      .append(' ').append(responseBase.getPointInTimeQueryTimestamp())
+      .append('\n')
+      .append(body);
+    return key.toString();
+  }
+
+  static BytesHandle newResponseHandle(AbstractReadHandle responseHandle) {
+    HandleImplementation<?,?> responseBase = (HandleImplementation<?,?>) responseHandle;
+    BytesHandle bytesHandle = new BytesHandle();
+    bytesHandle.setFormat(responseBase.getFormat());
+    bytesHandle.setMimetype(responseBase.getMimetype());
+    if (responseBase.getPointInTimeQueryTimestamp() != -1) {
+      bytesHandle.setPointInTimeQueryTimestamp(responseBase.getPointInTimeQueryTimestamp());
+    }
+    return bytesHandle;
+  }
+
+  static ResponseCache.Entry newEntry(BytesHandle bytesHandle) {
+    byte[] content = bytesHandle.get();
+    return new ResponseCache.Entry(
+      (content == null) ? new byte[0] : content,
+      bytesHandle.getFormat(), bytesHandle.getMimetype(), bytesHandle.getServerTimestamp()
+    );
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static <R extends AbstractReadHandle> R receive(R handle, ResponseCache.Entry entry) {
+    HandleImplementation handleBase = (HandleImplementation) handle;
+    byte[] content = entry.getContent();
+    Class<?> as = handleBase.receiveAs();
+    if (as == byte[].class) {
+      handleBase.receiveContent(content);
+    } else if (as == String.class) {
+      handleBase.receiveContent(new String(content, StandardCharsets.UTF_8));
+    } else if (as == InputStream.class) {
+      handleBase.receiveContent(new ByteArrayInputStream(content));
+    } else if (as == Reader.class) {
+      handleBase.receiveContent(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+    } else {
+      throw new IllegalArgumentException("Cannot replay cached response into handle receiving "+as.getName());
+    }
+    if (entry.getMimetype() != null) {
+      handleBase.setMimetype(entry.getMimetype());
+    }
+    if (entry.getFormat() != null && entry.getFormat() != Format.UNKNOWN) {
+      handleBase.setFormat(entry.getFormat());
+    }
+    handleBase.setResponseServerTimestamp(entry.getServerTimestamp());
+    return handle;
+  }
+}
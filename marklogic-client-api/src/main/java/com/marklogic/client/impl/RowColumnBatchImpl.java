@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.MarkLogicInternalException;
+import com.marklogic.client.row.RowColumnBatch;
+
+/**
+ * Holds a batch of rows in columnar form for RowManager.resultColumnBatches.
+ *
+ * Design
+ *   - the Builder fills the primitive array for each column straight from the tokens of the JsonParser
+ *     that reads the row stream, so a numeric or boolean value is never boxed or held as a JsonNode
+ *   - the rows are requested with datatypes in the header and values keyed by column name, so the column
+ *     type is fixed for the row set and the builder only has to look up the column position for each field
+ *   - every column of a row starts as null and a value clears the null bit, so columns missing from a row
+ *     are null without a separate pass
+ *   - string columns keep a dictionary per batch, which makes repeated values cost an int per row; the
+ *     dictionaries aren't shared across batches so each batch stays usable on its own
+ *   - the arrays of a full batch are handed to the batch as is; only the last, partial batch is trimmed
+ */
+class RowColumnBatchImpl implements RowColumnBatch {
+  private final String[]             columnNames;
+  private final String[]             datatypes;
+  private final ColumnType[]         columnTypes;
+  private final Map<String, Integer> columnIndex;
+  private final int                  rowCount;
+  private final Object[]             values;
+  private final String[][]           dictionaries;
+  private final long[][]             nullBits;
+
+  private RowColumnBatchImpl(Builder builder, int rowCount, Object[] values, String[][] dictionaries,
+                             long[][] nullBits) {
+    this.columnNames  = builder.columnNames;
+    this.datatypes    = builder.datatypes;
+    this.columnTypes  = builder.columnTypes;
+    this.columnIndex  = builder.columnIndex;
+    this.rowCount     = rowCount;
+    this.values       = values;
+    this.dictionaries = dictionaries;
+    this.nullBits     = nullBits;
+  }
+
+  static ColumnType getColumnType(String datatype) {
+    if (datatype == null) {
+      return ColumnType.STRING;
+    }
+    switch (datatype) {
+      case "xs:long":
+      case "xs:int":
+      case "xs:short":
+      case "xs:byte":
+      case "xs:integer":
+      case "xs:negativeInteger":
+      case "xs:nonNegativeInteger":
+      case "xs:nonPositiveInteger":
+      case "xs:positiveInteger":
+      case "xs:unsignedInt":
+      case "xs:unsignedShort":
+      case "xs:unsignedByte":
+        return ColumnType.LONG;
+      case "xs:double":
+      case "xs:float":
+      case "xs:decimal":
+        return ColumnType.DOUBLE;
+      case "xs:boolean":
+        return ColumnType.BOOLEAN;
+      default:
+        return ColumnType.STRING;
+    }
+  }
+
+  @Override
+  public int getRowCount() {
+    return rowCount;
+  }
+  @Override
+  public String[] getColumnNames() {
+    return columnNames;
+  }
+  @Override
+  public int getColumnIndex(String columnName) {
+    Integer column = columnIndex.get(columnName);
+    return (column == null) ? -1 : column;
+  }
+  @Override
+  public ColumnType getColumnType(int column) {
+    return columnTypes[column];
+  }
+  @Override
+  public String getDatatype(int column) {
+    return datatypes[column];
+  }
+
+  @Override
+  public long[] getLongs(int column) {
+    return (long[]) valuesOf(column, ColumnType.LONG);
+  }
+  @Override
+  public double[] getDoubles(int column) {
+    return (double[]) valuesOf(column, ColumnType.DOUBLE);
+  }
+  @Override
+  public boolean[] getBooleans(int column) {
+    return (boolean[]) valuesOf(column, ColumnType.BOOLEAN);
+  }
+  @Override
+  public int[] getStringCodes(int column) {
+    return (int[]) valuesOf(column, ColumnType.STRING);
+  }
+  @Override
+  public String[] getStringDictionary(int column) {
+    valuesOf(column, ColumnType.STRING);
+    return dictionaries[column];
+  }
+  @Override
+  public String getString(int column, int row) {
+    int code = getStringCodes(column)[row];
+    return (code < 0) ? null : dictionaries[column][code];
+  }
+  private Object valuesOf(int column, ColumnType type) {
+    if (columnTypes[column] != type) {
+      throw new IllegalStateException(
+        "column "+columnNames[column]+" has type "+columnTypes[column]+" instead of "+type
+      );
+    }
+    return values[column];
+  }
+
+  @Override
+  public long[] getNullBits(int column) {
+    return nullBits[column];
+  }
+  @Override
+  public boolean isNull(int column, int row) {
+    if (row < 0 || row >= rowCount) {
+      throw new IndexOutOfBoundsException("no row "+row+" in batch of "+rowCount+" rows");
+    }
+    return (nullBits[column][row >>> 6] & (1L << row)) != 0;
+  }
+
+  /**
+   * Fills the columns of one batch at a time from the rows of a stream.  Not thread-safe.
+   */
+  static class Builder implements RowStreamReader.JsonRowReader {
+    private final String[]             columnNames;
+    private final String[]             datatypes;
+    private final ColumnType[]         columnTypes;
+    private final Map<String, Integer> columnIndex;
+
+    private int        capacity;
+    private int        rowCount;
+    private Object[]   values;
+    private long[][]   nullBits;
+    private List<Map<String, Integer>> dictionaryCodes;
+    private List<List<String>>         dictionaries;
+
+    Builder(String[] columnNames, String[] datatypes) {
+      this.columnNames = (columnNames == null) ? new String[0] : columnNames;
+      this.datatypes   = new String[this.columnNames.length];
+      this.columnTypes = new ColumnType[this.columnNames.length];
+      this.columnIndex = new HashMap<>();
+      for (int i=0; i < this.columnNames.length; i++) {
+        this.datatypes[i]   = (datatypes != null && i < datatypes.length) ? datatypes[i] : null;
+        this.columnTypes[i] = getColumnType(this.datatypes[i]);
+        this.columnIndex.put(this.columnNames[i], i);
+      }
+    }
+
+    void start(int capacity) {
+      if (capacity <= 0) {
+        throw new IllegalArgumentException("rows per batch must be 1 or greater");
+      }
+      int columnCount = columnNames.length;
+      this.capacity        = capacity;
+      this.rowCount        = 0;
+      this.values          = new Object[columnCount];
+      this.nullBits        = new long[columnCount][(capacity + 63) >>> 6];
+      this.dictionaryCodes = new ArrayList<>(columnCount);
+      this.dictionaries    = new ArrayList<>(columnCount);
+      for (int i=0; i < columnCount; i++) {
+        boolean isString = false;
+        switch (columnTypes[i]) {
+          case LONG:    values[i] = new long[capacity];    break;
+          case DOUBLE:  values[i] = new double[capacity];  break;
+          case BOOLEAN: values[i] = new boolean[capacity]; break;
+          case STRING:
+            values[i] = new int[capacity];
+            isString  = true;
+            break;
+          default:
+            throw new MarkLogicInternalException("unknown column type: "+columnTypes[i]);
+        }
+        dictionaryCodes.add(isString ? new HashMap<>() : null);
+        dictionaries.add(isString ? new ArrayList<>() : null);
+      }
+    }
+
+    boolean isFull() {
+      return rowCount >= capacity;
+    }
+    int getRowCount() {
+      return rowCount;
+    }
+
+    @Override
+    public void read(JsonParser parser) throws IOException {
+      if (parser.currentToken() != JsonToken.START_OBJECT) {
+        throw new MarkLogicIOException("row is not a JSON object: "+parser.currentToken());
+      }
+      int row = rowCount;
+      int  word = row >>> 6;
+      long bit  = 1L << row;
+      for (int i=0; i < columnNames.length; i++) {
+        nullBits[i][word] |= bit;
+        if (columnTypes[i] == ColumnType.STRING) {
+          ((int[]) values[i])[row] = -1;
+        }
+      }
+
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+        Integer column = columnIndex.get(parser.getCurrentName());
+        token = parser.nextToken();
+        if (column == null) {
+          parser.skipChildren();
+        } else if (token != JsonToken.VALUE_NULL) {
+          try {
+            readValue(parser, token, column, row);
+          } catch (NumberFormatException e) {
+            throw new MarkLogicIOException(
+              "could not read value of column "+columnNames[column]+" with type "+datatypes[column], e
+            );
+          }
+          nullBits[column][word] &= ~bit;
+        }
+      }
+      rowCount++;
+    }
+
+    private void readValue(JsonParser parser, JsonToken token, int column, int row) throws IOException {
+      switch (columnTypes[column]) {
+        case LONG:
+          ((long[]) values[column])[row] = (token == JsonToken.VALUE_STRING) ?
+            Long.parseLong(parser.getText()) : scalar(parser, token, column).getLongValue();
+          break;
+        case DOUBLE:
+          ((double[]) values[column])[row] = (token == JsonToken.VALUE_STRING) ?
+            parseDouble(parser.getText()) : scalar(parser, token, column).getDoubleValue();
+          break;
+        case BOOLEAN:
+          boolean value;
+          if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+            value = (token == JsonToken.VALUE_TRUE);
+          } else {
+            String text = scalar(parser, token, column).getText();
+            value = "true".equals(text) || "1".equals(text);
+          }
+          ((boolean[]) values[column])[row] = value;
+          break;
+        case STRING:
+          String text = token.isScalarValue() ?
+            parser.getText() : RowDecoder.mapper.readTree(parser).toString();
+          ((int[]) values[column])[row] = codeFor(column, text);
+          break;
+        default:
+          throw new MarkLogicInternalException("unknown column type: "+columnTypes[column]);
+      }
+    }
+    private JsonParser scalar(JsonParser parser, JsonToken token, int column) {
+      if (!token.isScalarValue()) {
+        throw new MarkLogicIOException(
+          "column "+columnNames[column]+" with type "+datatypes[column]+" has a structured value"
+        );
+      }
+      return parser;
+    }
+    private double parseDouble(String text) {
+      switch (text) {
+        case "INF":  return Double.POSITIVE_INFINITY;
+        case "-INF": return Double.NEGATIVE_INFINITY;
+        default:     return Double.parseDouble(text);
+      }
+    }
+    private int codeFor(int column, String text) {
+      Map<String, Integer> codes = dictionaryCodes.get(column);
+      Integer code = codes.get(text);
+      if (code == null) {
+        List<String> dictionary = dictionaries.get(column);
+        code = dictionary.size();
+        dictionary.add(text);
+        codes.put(text, code);
+      }
+      return code;
+    }
+
+    RowColumnBatchImpl build() {
+      int columnCount = columnNames.length;
+      String[][] dictionaryArrays = new String[columnCount][];
+      for (int i=0; i < columnCount; i++) {
+        List<String> dictionary = dictionaries.get(i);
+        dictionaryArrays[i] = (dictionary == null) ? null : dictionary.toArray(new String[dictionary.size()]);
+        if (rowCount < capacity) {
+          values[i]   = trim(values[i], columnTypes[i]);
+          nullBits[i] = Arrays.copyOf(nullBits[i], (rowCount + 63) >>> 6);
+        }
+      }
+      RowColumnBatchImpl batch = new RowColumnBatchImpl(this, rowCount, values, dictionaryArrays, nullBits);
+      values          = null;
+      nullBits        = null;
+      dictionaryCodes = null;
+      dictionaries    = null;
+      return batch;
+    }
+    private Object trim(Object columnValues, ColumnType type) {
+      switch (type) {
+        case LONG:    return Arrays.copyOf((long[])    columnValues, rowCount);
+        case DOUBLE:  return Arrays.copyOf((double[])  columnValues, rowCount);
+        case BOOLEAN: return Arrays.copyOf((boolean[]) columnValues, rowCount);
+        case STRING:  return Arrays.copyOf((int[])     columnValues, rowCount);
+        default:
+          throw new MarkLogicInternalException("unknown column type: "+type);
+      }
+    }
+  }
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.MarkLogicInternalException;
+import com.marklogic.client.row.RowManager.RowSetPart;
+import com.marklogic.client.row.RowManager.RowStructure;
+import com.marklogic.client.row.RowRecord;
+
+/**
+ * Decodes the JSON row parts of a RowSet&lt;RowRecord&gt; into the values, kinds, and datatypes of a RowRecord.
+ *
+ * Design
+ *   - each row is read with a streaming JsonParser from the ObjectMapper shared by all row sets, rather than
+ *     building a JsonNode tree with a new ObjectMapper per row; only array and object values are read as trees
+ *   - values are stored in a ColumnMap, an array addressed by the column's position in the header, with the
+ *     header's name-to-position index shared by every row of the set, instead of a HashMap per row
+ *   - with datatypes in the header, every row shares the header's kinds and datatypes maps, and only a row with
+ *     null values gets its own copy of the kinds
+ *   - with datatypes in the rows, the datatype strings of the previous row are reused when the parser's text
+ *     matches them, and the previous row's kinds and datatypes maps are reused when every column has the same
+ *     datatype, which is the usual case
+ *   - the row values themselves can't be reused because a RowRecord can be held after the set moves on
+ *   - the values are the same JsonNode instances the tree-based decoding produced, so RowRecordImpl and its
+ *     conversions are unchanged
+ */
+class RowDecoder {
+  static final ObjectMapper mapper = new ObjectMapper();
+
+  private static final Object ABSENT = new Object();
+
+  private final RowSetPart   datatypeStyle;
+  private final RowStructure rowStructureStyle;
+  private final String[]     columnNames;
+  private final Map<String, Integer> columnIndex;
+
+  private final ColumnMap<RowRecord.ColumnKind> headerKinds;
+  private final ColumnMap<String>               headerDatatypes;
+
+  private final String[]               rowDatatypes;
+  private final RowRecord.ColumnKind[] rowKinds;
+  private String[]                        lastDatatypes;
+  private RowRecord.ColumnKind[]          lastKinds;
+  private ColumnMap<String>               lastDatatypeMap;
+  private ColumnMap<RowRecord.ColumnKind> lastKindMap;
+
+  RowDecoder(RowSetPart datatypeStyle, RowStructure rowStructureStyle, String[] columnNames, String[] columnTypes) {
+    this.datatypeStyle     = datatypeStyle;
+    this.rowStructureStyle = rowStructureStyle;
+    this.columnNames       = (columnNames == null) ? new String[0] : columnNames;
+    this.columnIndex       = new HashMap<>();
+    for (int i=0; i < this.columnNames.length; i++) {
+      this.columnIndex.put(this.columnNames[i], i);
+    }
+
+    if (datatypeStyle == RowSetPart.HEADER) {
+      headerKinds     = new ColumnMap<>(this);
+      headerDatatypes = new ColumnMap<>(this);
+      for (int i=0; i < this.columnNames.length; i++) {
+        headerDatatypes.set(i, columnTypes[i]);
+        headerKinds.set(i, getColumnKind(columnTypes[i], RowRecord.ColumnKind.CONTENT));
+      }
+      rowDatatypes = null;
+      rowKinds     = null;
+    } else {
+      headerKinds     = null;
+      headerDatatypes = null;
+      rowDatatypes    = new String[this.columnNames.length];
+      rowKinds        = new RowRecord.ColumnKind[this.columnNames.length];
+    }
+  }
+
+  String[] getColumnNames() {
+    return columnNames;
+  }
+
+  /**
+   * Decodes one row.  Not thread-safe; a row set reads its rows one at a time.
+   * @param rowStream the content of the row part, which is closed after the row is read
+   * @return the row
+   */
+  DecodedRow decode(InputStream rowStream) throws IOException {
+    try (JsonParser parser = mapper.getFactory().createParser(rowStream)) {
+      parser.nextToken();
+      return decode(parser);
+    }
+  }
+
+  /**
+   * Decodes the row at the current token of a parser that reads a sequence of rows, leaving the parser
+   * on the last token of the row.
+   * @param parser the parser positioned on the first token of the row
+   * @return the row
+   */
+  DecodedRow decode(JsonParser parser) throws IOException {
+    ColumnMap<Object> values = new ColumnMap<>(this);
+    List<Object[]> extraColumns = null;
+    boolean typed = (datatypeStyle == RowSetPart.ROWS);
+    if (typed) {
+      Arrays.fill(rowDatatypes, null);
+      Arrays.fill(rowKinds, null);
+    }
+
+    JsonToken token = parser.currentToken();
+    switch(rowStructureStyle) {
+      case ARRAY:
+        if (token != JsonToken.START_ARRAY) {
+          throw new MarkLogicIOException("row is not a JSON array: "+token);
+        }
+        int i=0;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+          if (token == null) {
+            throw new MarkLogicIOException("row ended before the end of the array");
+          }
+          if (i >= columnNames.length) {
+            parser.skipChildren();
+          } else if (typed) {
+            values.set(i, readBinding(parser, token, columnNames[i], i));
+          } else {
+            values.set(i, readValue(parser, token, columnNames[i]));
+          }
+          i++;
+        }
+        // columns missing from the end of the array are null
+        for (; i < columnNames.length; i++) {
+          values.set(i, null);
+          if (typed) {
+            rowKinds[i] = RowRecord.ColumnKind.NULL;
+          }
+        }
+        break;
+      case OBJECT:
+        if (token != JsonToken.START_OBJECT) {
+          throw new MarkLogicIOException("row is not a JSON object: "+token);
+        }
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+          String  columnName = parser.getCurrentName();
+          Integer column     = columnIndex.get(columnName);
+          token = parser.nextToken();
+          if (column != null) {
+            values.set(column, typed ?
+              readBinding(parser, token, columnName, column) : readValue(parser, token, columnName));
+          } else if (typed) {
+            // a column that isn't in the header can't use the shared position of a column
+            if (extraColumns == null) {
+              extraColumns = new ArrayList<>();
+            }
+            Object[] extra = readExtraBinding(parser, token, columnName);
+            extraColumns.add(extra);
+            values.put(columnName, extra[3]);
+          } else {
+            values.put(columnName, readValue(parser, token, columnName));
+          }
+        }
+        break;
+      default:
+        throw new MarkLogicInternalException(
+          "Row record set with unknown row structure style: "+rowStructureStyle
+        );
+    }
+
+    switch(datatypeStyle) {
+      case HEADER:
+        return new DecodedRow(headerKindsFor(values), headerDatatypes, values);
+      case ROWS:
+        return rowTypesFor(values, extraColumns);
+      default:
+        throw new MarkLogicInternalException("Row record set with unknown datatype style: "+datatypeStyle);
+    }
+  }
+
+  /**
+   * Decodes a row of text fields such as a CSV record, which requires datatypes in the header.  An empty
+   * field is a null value because delimited text doesn't distinguish an empty string from a null.
+   * @param fields the fields of the row in the order of the header
+   * @return the row
+   */
+  DecodedRow decodeText(String[] fields) {
+    if (datatypeStyle != RowSetPart.HEADER) {
+      throw new MarkLogicInternalException("Text rows require datatypes in the header");
+    }
+    ColumnMap<Object> values = new ColumnMap<>(this);
+    for (int i=0; i < columnNames.length; i++) {
+      String field = (fields != null && i < fields.length) ? fields[i] : null;
+      values.set(i, (field == null || field.length() == 0) ? null : TextNode.valueOf(field));
+    }
+    return new DecodedRow(headerKindsFor(values), headerDatatypes, values);
+  }
+
+  private ColumnMap<RowRecord.ColumnKind> headerKindsFor(ColumnMap<Object> values) {
+    ColumnMap<RowRecord.ColumnKind> kinds = headerKinds;
+    for (int i=0; i < columnNames.length; i++) {
+      if (values.getAt(i) != null) {
+        continue;
+      }
+      if (headerKinds.getAt(i) == RowRecord.ColumnKind.NULL) {
+        continue;
+      }
+      if (kinds == headerKinds) {
+        kinds = headerKinds.copy();
+      }
+      kinds.set(i, RowRecord.ColumnKind.NULL);
+    }
+    return kinds;
+  }
+
+  private DecodedRow rowTypesFor(ColumnMap<Object> values, List<Object[]> extraColumns) {
+    ColumnMap<String>               datatypes;
+    ColumnMap<RowRecord.ColumnKind> kinds;
+    if (lastDatatypeMap != null && extraColumns == null &&
+        Arrays.equals(rowDatatypes, lastDatatypes) && Arrays.equals(rowKinds, lastKinds)) {
+      datatypes = lastDatatypeMap;
+      kinds     = lastKindMap;
+    } else {
+      datatypes = new ColumnMap<>(this);
+      kinds     = new ColumnMap<>(this);
+      for (int i=0; i < columnNames.length; i++) {
+        if (rowDatatypes[i] != null) {
+          datatypes.set(i, rowDatatypes[i]);
+        }
+        if (rowKinds[i] != null) {
+          kinds.set(i, rowKinds[i]);
+        }
+      }
+      if (extraColumns != null) {
+        for (Object[] extra: extraColumns) {
+          datatypes.put((String) extra[0], (String) extra[1]);
+          kinds.put((String) extra[0], (RowRecord.ColumnKind) extra[2]);
+        }
+      } else {
+        lastDatatypes   = rowDatatypes.clone();
+        lastKinds       = rowKinds.clone();
+        lastDatatypeMap = datatypes;
+        lastKindMap     = kinds;
+      }
+    }
+    return new DecodedRow(kinds, datatypes, values);
+  }
+
+  private Object readBinding(JsonParser parser, JsonToken token, String columnName, int column)
+    throws IOException {
+    if (token != JsonToken.START_OBJECT) {
+      throw new MarkLogicIOException(columnName+" column binding is not an object: "+token);
+    }
+    String datatype = null;
+    Object value    = null;
+    while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      token = parser.nextToken();
+      if ("type".equals(field)) {
+        datatype = readDatatype(parser, column);
+      } else if ("value".equals(field)) {
+        value = readValue(parser, token, columnName);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    RowRecord.ColumnKind columnKind = getColumnKind(datatype, null);
+    rowDatatypes[column] = datatype;
+    rowKinds[column]     = columnKind;
+    return (columnKind == RowRecord.ColumnKind.NULL || "cid".equals(datatype)) ? null : value;
+  }
+
+  // returns the column name, datatype, kind, and value
+  private Object[] readExtraBinding(JsonParser parser, JsonToken token, String columnName) throws IOException {
+    if (token != JsonToken.START_OBJECT) {
+      throw new MarkLogicIOException(columnName+" column binding is not an object: "+token);
+    }
+    String datatype = null;
+    Object value    = null;
+    while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      token = parser.nextToken();
+      if ("type".equals(field)) {
+        datatype = parser.getValueAsString();
+      } else if ("value".equals(field)) {
+        value = readValue(parser, token, columnName);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    RowRecord.ColumnKind columnKind = getColumnKind(datatype, null);
+    if (columnKind == RowRecord.ColumnKind.NULL || "cid".equals(datatype)) {
+      value = null;
+    }
+    return new Object[]{columnName, datatype, columnKind, value};
+  }
+
+  // reuses the previous row's string for the column when the text is the same
+  private String readDatatype(JsonParser parser, int column) throws IOException {
+    if (parser.currentToken() != JsonToken.VALUE_STRING) {
+      return parser.getValueAsString();
+    }
+    String previous = (lastDatatypes == null) ? null : lastDatatypes[column];
+    if (previous != null) {
+      int length = parser.getTextLength();
+      if (length == previous.length()) {
+        char[] text   = parser.getTextCharacters();
+        int    offset = parser.getTextOffset();
+        boolean same = true;
+        for (int i=0; i < length; i++) {
+          if (text[offset + i] != previous.charAt(i)) {
+            same = false;
+            break;
+          }
+        }
+        if (same) {
+          return previous;
+        }
+      }
+    }
+    return parser.getText();
+  }
+
+  private Object readValue(JsonParser parser, JsonToken token, String columnName) throws IOException {
+    switch(token) {
+      case VALUE_NULL:
+        return null;
+      case VALUE_STRING:
+        return TextNode.valueOf(parser.getText());
+      case VALUE_NUMBER_INT:
+        switch(parser.getNumberType()) {
+          case INT:
+            return IntNode.valueOf(parser.getIntValue());
+          case LONG:
+            return LongNode.valueOf(parser.getLongValue());
+          default:
+            return BigIntegerNode.valueOf(parser.getBigIntegerValue());
+        }
+      case VALUE_NUMBER_FLOAT:
+        return DoubleNode.valueOf(parser.getDoubleValue());
+      case VALUE_TRUE:
+        return BooleanNode.TRUE;
+      case VALUE_FALSE:
+        return BooleanNode.FALSE;
+      case START_ARRAY:
+      case START_OBJECT:
+        return mapper.readTree(parser);
+      default:
+        throw new MarkLogicIOException(columnName+" column with invalid token: "+token);
+    }
+  }
+
+  static RowRecord.ColumnKind getColumnKind(String datatype, RowRecord.ColumnKind defaultKind) {
+    if (datatype == null) {
+      throw new MarkLogicInternalException("Column value with null datatype");
+    }
+    switch(datatype) {
+      case "array":
+        return RowRecord.ColumnKind.CONTAINER_VALUE;
+      case "cid":
+        return RowRecord.ColumnKind.CONTENT;
+      case "null":
+        return RowRecord.ColumnKind.NULL;
+      case "object":
+        return RowRecord.ColumnKind.CONTAINER_VALUE;
+      default:
+        if (datatype.contains(":")) {
+          return RowRecord.ColumnKind.ATOMIC_VALUE;
+        } else if (defaultKind != null) {
+          return defaultKind;
+        }
+    }
+    throw new MarkLogicInternalException("Column value with unsupported datatype: "+datatype);
+  }
+
+  static class DecodedRow {
+    private final Map<String, RowRecord.ColumnKind> kinds;
+    private final Map<String, String>               datatypes;
+    private final ColumnMap<Object>                 values;
+
+    DecodedRow(Map<String, RowRecord.ColumnKind> kinds, Map<String, String> datatypes, ColumnMap<Object> values) {
+      this.kinds     = kinds;
+      this.datatypes = datatypes;
+      this.values    = values;
+    }
+
+    Map<String, RowRecord.ColumnKind> getKinds() {
+      return kinds;
+    }
+    Map<String, String> getDatatypes() {
+      return datatypes;
+    }
+    Map<String, Object> getValues() {
+      return values;
+    }
+  }
+
+  /**
+   * A map from the column names of the header to values held in an array by column position, with any
+   * other key in an overflow map.  Keys iterate in header order.
+   */
+  static class ColumnMap<V> extends AbstractMap<String, V> {
+    private final RowDecoder     decoder;
+    private final Object[]       values;
+    private       Map<String, V> extra;
+
+    ColumnMap(RowDecoder decoder) {
+      this.decoder = decoder;
+      this.values  = new Object[decoder.columnNames.length];
+      Arrays.fill(this.values, ABSENT);
+    }
+    private ColumnMap(ColumnMap<V> other) {
+      this.decoder = other.decoder;
+      this.values  = other.values.clone();
+      this.extra   = (other.extra == null) ? null : new LinkedHashMap<>(other.extra);
+    }
+
+    ColumnMap<V> copy() {
+      return new ColumnMap<>(this);
+    }
+
+    void set(int column, V value) {
+      values[column] = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    V getAt(int column) {
+      Object value = values[column];
+      return (value == ABSENT) ? null : (V) value;
+    }
+
+    @Override
+    public V get(Object key) {
+      Integer column = decoder.columnIndex.get(key);
+      if (column != null) {
+        return getAt(column);
+      }
+      return (extra == null) ? null : extra.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      Integer column = decoder.columnIndex.get(key);
+      if (column != null) {
+        return values[column] != ABSENT;
+      }
+      return extra != null && extra.containsKey(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(String key, V value) {
+      Integer column = decoder.columnIndex.get(key);
+      if (column != null) {
+        Object previous = values[column];
+        values[column] = value;
+        return (previous == ABSENT) ? null : (V) previous;
+      }
+      if (extra == null) {
+        extra = new LinkedHashMap<>();
+      }
+      return extra.put(key, value);
+    }
+
+    @Override
+    public int size() {
+      int size = (extra == null) ? 0 : extra.size();
+      for (Object value: values) {
+        if (value != ABSENT) {
+          size++;
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+      return new AbstractSet<Entry<String, V>>() {
+        @Override
+        public Iterator<Entry<String, V>> iterator() {
+          return new Iterator<Entry<String, V>>() {
+            private int column = nextColumn(0);
+            private final Iterator<Entry<String, V>> extraIterator =
+              (extra == null) ? null : extra.entrySet().iterator();
+
+            private int nextColumn(int from) {
+              while (from < values.length && values[from] == ABSENT) {
+                from++;
+              }
+              return from;
+            }
+            @Override
+            public boolean hasNext() {
+              return column < values.length || (extraIterator != null && extraIterator.hasNext());
+            }
+            @Override
+            public Entry<String, V> next() {
+              if (column < values.length) {
+                Entry<String, V> entry = new SimpleImmutableEntry<>(decoder.columnNames[column], getAt(column));
+                column = nextColumn(column + 1);
+                return entry;
+              }
+              if (extraIterator == null) {
+                throw new NoSuchElementException();
+              }
+              return extraIterator.next();
+            }
+          };
+        }
+        @Override
+        public int size() {
+          return ColumnMap.this.size();
+        }
+      };
+    }
+  }
+}
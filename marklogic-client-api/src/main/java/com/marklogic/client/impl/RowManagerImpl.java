@@ -15,11 +15,16 @@
  */
 package com.marklogic.client.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -32,7 +37,6 @@ import com.fasterxml.jackson.core.*;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.marklogic.client.*;
 import com.marklogic.client.DatabaseClientFactory.HandleFactoryRegistry;
 import com.marklogic.client.document.DocumentWriteSet;
@@ -48,11 +52,15 @@ import com.marklogic.client.type.PlanParamBindingVal;
 import com.marklogic.client.type.PlanParamExpr;
 import com.marklogic.client.type.XsAnyAtomicTypeVal;
 import com.marklogic.client.util.RequestParameters;
+import com.marklogic.client.util.ResponseCache;
 
 public class RowManagerImpl
   extends AbstractLoggingManager
   implements RowManager
 {
+  private final static int  PARTITIONS_PER_THREAD  = 4;
+  private final static long MIN_ROWS_PER_PARTITION = 1000;
+
   private RESTServices services;
   private HandleFactoryRegistry handleRegistry;
   private RowSetPart   datatypeStyle     = null;
@@ -60,6 +68,9 @@ public class RowManagerImpl
   private Integer optimize;
   private String traceLabel;
   private boolean update;
+  private int     parallelism = 1;
+  private ParallelOrdering parallelOrdering = null;
+  private ResponseCache responseCache = null;
 
   public RowManagerImpl(RESTServices services) {
     super();
@@ -129,6 +140,58 @@ public class RowManagerImpl
 	}
 
 	@Override
+  public RowManager withParallelism(int threadCount) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("threadCount must be 1 or more: "+threadCount);
+    }
+    this.parallelism = threadCount;
+    return this;
+  }
+  @Override
+  public int getParallelism() {
+    return this.parallelism;
+  }
+  @Override
+  public RowManager withParallelOrdering(ParallelOrdering ordering) {
+    if (ordering == null) {
+      throw new IllegalArgumentException("ordering must not be null");
+    }
+    this.parallelOrdering = ordering;
+    return this;
+  }
+  @Override
+  public ParallelOrdering getParallelOrdering() {
+    return (this.parallelOrdering == null) ? ParallelOrdering.UNORDERED : this.parallelOrdering;
+  }
+
+  @Override
+  public void setResponseCache(ResponseCache cache) {
+    this.responseCache = cache;
+  }
+  @Override
+  public ResponseCache getResponseCache() {
+    return this.responseCache;
+  }
+
+  @Override
+  public Plan newPreparedPlan(Plan plan) {
+    PlanBuilderBaseImpl.RequestPlan requestPlan = checkPlan(plan);
+    String ast;
+    if (requestPlan instanceof PlanBuilderBaseImpl.PlanBaseImpl) {
+      ast = ((PlanBuilderBaseImpl.PlanBaseImpl) requestPlan).getAst();
+    } else if (requestPlan instanceof RawPlanDefinitionImpl || requestPlan instanceof PreparedPlanImpl) {
+      ast = HandleAccessor.contentAsString(requestPlan.getHandle());
+    } else {
+      throw new IllegalArgumentException(
+        "Cannot prepare plan that is not a plan AST having class "+plan.getClass().getName()
+      );
+    }
+    return new PreparedPlanImpl(
+      ast.getBytes(StandardCharsets.UTF_8), requestPlan.getParams(), requestPlan.getContentParams()
+    );
+  }
+
+  @Override
   public RawPlanDefinition newRawPlanDefinition(JSONWriteHandle handle) {
     return new RawPlanDefinitionImpl(handle);
   }
@@ -180,7 +243,72 @@ public class RowManagerImpl
         .withColumnTypes(getDatatypeStyle())
         .withOutput(getRowStructureStyle())
         .getRequestParameters();
-    return services.postResource(requestLogger, determinePath(), transaction, params, astHandle, resultsHandle);
+
+    String cacheKey = ResponseCaching.canReceive(resultsHandle) ?
+        rowsCacheKey(requestPlan, params, resultsHandle, transaction) : null;
+    if (cacheKey == null) {
+      return services.postResource(requestLogger, determinePath(), transaction, params, astHandle, resultsHandle);
+    }
+    ResponseCache.Entry cached = responseCache.get(cacheKey);
+    if (cached == null) {
+      BytesHandle bytesHandle = ResponseCaching.newResponseHandle(resultsHandle);
+      if (services.postResource(requestLogger, determinePath(), null, params, astHandle, bytesHandle) == null) {
+        return null;
+      }
+      cached = ResponseCaching.newEntry(bytesHandle);
+      responseCache.put(cacheKey, cached);
+    }
+    return ResponseCaching.receive(resultsHandle, cached);
+  }
+
+  @Override
+  public <T extends StructureReadHandle> CompletableFuture<T> resultDocAsync(Plan plan, T resultsHandle) {
+    if (resultsHandle == null) {
+      throw new IllegalArgumentException("Must specify a handle to read the row result document");
+    }
+    PlanBuilderBaseImpl.RequestPlan requestPlan = checkPlan(plan);
+    AbstractWriteHandle astHandle = requestPlan.getHandle();
+    RequestParameters params = newRowsParamsBuilder(requestPlan)
+        .withColumnTypes(getDatatypeStyle())
+        .withOutput(getRowStructureStyle())
+        .getRequestParameters();
+
+    String cacheKey = ResponseCaching.canReceive(resultsHandle) ?
+        rowsCacheKey(requestPlan, params, resultsHandle, null) : null;
+    if (cacheKey == null) {
+      return improveUpdateMessage(
+        services.postResourceAsync(requestLogger, determinePath(), null, params, astHandle, resultsHandle));
+    }
+    ResponseCache.Entry cached = responseCache.get(cacheKey);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(ResponseCaching.receive(resultsHandle, cached));
+    }
+    BytesHandle bytesHandle = ResponseCaching.newResponseHandle(resultsHandle);
+    return improveUpdateMessage(
+      services.postResourceAsync(requestLogger, determinePath(), null, params, astHandle, bytesHandle)
+    ).thenApply(response -> {
+        ResponseCache.Entry entry = ResponseCaching.newEntry(bytesHandle);
+        responseCache.put(cacheKey, entry);
+        return ResponseCaching.receive(resultsHandle, entry);
+      });
+  }
+
+  // null if the request can't be cached
+  private String rowsCacheKey(
+    PlanBuilderBaseImpl.RequestPlan requestPlan, RequestParameters params, AbstractReadHandle responseHandle,
+    Transaction transaction
+  ) {
+    if (responseCache == null || transaction != null || this.update) {
+      return null;
+    }
+    List<ContentParam> contentParams = requestPlan.getContentParams();
+    if (contentParams != null && !contentParams.isEmpty()) {
+      return null;
+    }
+    String client = ResponseCaching.clientKey(services.getDatabaseClient());
+    String body = ResponseCaching.bodyKey(requestPlan.getHandle());
+    return (client == null || body == null) ? null :
+      ResponseCaching.newKey(client, determinePath(), params, responseHandle, body);
   }
 
   private String determinePath() {
@@ -198,6 +326,16 @@ public class RowManagerImpl
     RowStructure rowStructureStyle = getRowStructureStyle();
 
     PlanBuilderBaseImpl.RequestPlan requestPlan = checkPlan(plan);
+    if (responseCache != null) {
+      RowSet<RowRecord> cachedRows = resultRowsCached(requestPlan, datatypeStyle, rowStructureStyle, transaction);
+      if (cachedRows != null) {
+        return cachedRows;
+      }
+    }
+    if (isParallel(requestPlan, transaction)) {
+      return resultRowsParallel(requestPlan);
+    }
+
     RequestParameters params = newRowsParamsBuilder(requestPlan)
         .withRowFormat("json")
         .withNodeColumns("reference")
@@ -215,6 +353,103 @@ public class RowManagerImpl
     return rowset;
   }
 
+  // null if the request can't be cached
+  private RowSet<RowRecord> resultRowsCached(
+    PlanBuilderBaseImpl.RequestPlan requestPlan, RowSetPart datatypeStyle, RowStructure rowStructureStyle,
+    Transaction transaction
+  ) {
+    // the cached stream would inline the node columns that resultRows reads by reference
+    if (mayHaveNodeColumns(requestPlan)) {
+      return null;
+    }
+    RowStreamFormat format = RowStreamFormat.JSON_SEQ;
+    InputStreamHandle bodyHandle = new InputStreamHandle();
+    bodyHandle.setMimetype(RowStreamReader.getMimetype(format));
+    RequestParameters params = newRowsParamsBuilder(requestPlan)
+        .withNodeColumns("inline")
+        .withColumnTypes(datatypeStyle)
+        .withOutput(rowStructureStyle)
+        .getRequestParameters();
+    String cacheKey = rowsCacheKey(requestPlan, params, bodyHandle, transaction);
+    if (cacheKey == null) {
+      return null;
+    }
+
+    ResponseCache.Entry cached = responseCache.get(cacheKey);
+    if (cached == null) {
+      InputStream body = submitStreamPlan(requestPlan, format, datatypeStyle, rowStructureStyle, bodyHandle, null);
+      try (InputStream in = body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int count = in.read(buffer); count != -1; count = in.read(buffer)) {
+          out.write(buffer, 0, count);
+        }
+        cached = new ResponseCache.Entry(
+          out.toByteArray(), Format.UNKNOWN, bodyHandle.getMimetype(), bodyHandle.getServerTimestamp()
+        );
+      } catch (IOException e) {
+        throw new MarkLogicIOException("Could not read rows for the response cache", e);
+      }
+      responseCache.put(cacheKey, cached);
+    }
+
+    RowStreamRecord rowset = new RowStreamRecord(
+      new RowStreamReader(format, datatypeStyle, rowStructureStyle, new ByteArrayInputStream(cached.getContent())),
+      handleRegistry
+    );
+    rowset.init();
+    return rowset;
+  }
+
+  private boolean isParallel(PlanBuilderBaseImpl.RequestPlan requestPlan, Transaction transaction) {
+    if (this.parallelism < 2 || transaction != null || this.update) {
+      return false;
+    }
+    Map<PlanBuilderBaseImpl.PlanParamBase,BaseTypeImpl.ParamBinder> planParams = requestPlan.getParams();
+    List<ContentParam> contentParams = requestPlan.getContentParams();
+    if ((planParams != null && !planParams.isEmpty()) || (contentParams != null && !contentParams.isEmpty())) {
+      return false;
+    }
+    // a query DSL, SQL, or SPARQL plan can't be checked for grouping, sorting, or limits
+    String ast = getAst(requestPlan);
+    if (ast == null) {
+      return false;
+    }
+    // the partitions are streamed, which would inline the node columns that resultRows reads by reference
+    return RowPartitionPlan.isPartitionable(ast) && !RowPartitionPlan.hasNodeColumns(ast);
+  }
+  // null unless the plan is an exported plan that can be read without consuming it
+  private static String getAst(PlanBuilderBaseImpl.RequestPlan requestPlan) {
+    if (requestPlan instanceof PlanBuilderBaseImpl.PlanBaseImpl) {
+      return ((PlanBuilderBaseImpl.PlanBaseImpl) requestPlan).getAst();
+    } else if ((requestPlan instanceof RawPlanDefinitionImpl || requestPlan instanceof PreparedPlanImpl) &&
+        HandleAccessor.isResendable(requestPlan.getHandle())) {
+      return HandleAccessor.contentAsString(requestPlan.getHandle());
+    }
+    return null;
+  }
+  // SQL and SPARQL rows only have atomic values, while any other plan that can't be checked might have nodes
+  static boolean mayHaveNodeColumns(PlanBuilderBaseImpl.RequestPlan requestPlan) {
+    if (requestPlan instanceof RawSQLPlanImpl || requestPlan instanceof RawSPARQLSelectPlanImpl) {
+      return false;
+    }
+    return RowPartitionPlan.hasNodeColumns(getAst(requestPlan));
+  }
+  private RowSet<RowRecord> resultRowsParallel(PlanBuilderBaseImpl.RequestPlan requestPlan) {
+    RowPartitionPlan partitionPlan = RowPartitionPlan.analyze(services, this, requestPlan.getHandle());
+    long partitionCount = Math.max(1, Math.min(
+        this.parallelism * PARTITIONS_PER_THREAD, partitionPlan.getRowCount() / MIN_ROWS_PER_PARTITION + 1
+    ));
+    if (partitionCount == 1) {
+      return resultRowsStream(partitionPlan.bindRange(1, 1), RowStreamFormat.JSON_SEQ, null);
+    }
+    return new ParallelRowSet((int) partitionCount, this.parallelism, getParallelOrdering(),
+        (partition, bodyHandle) -> resultRowsStream(
+            partitionPlan.bindRange(partition, partitionCount), RowStreamFormat.JSON_SEQ, bodyHandle, null
+        )
+    );
+  }
+
   @Override
   public void execute(Plan plan) {
     execute(plan, null);
@@ -286,6 +521,118 @@ public class RowManagerImpl
     return rowset;
   }
 
+  @Override
+  public RowSet<RowRecord> resultRowsStream(Plan plan) {
+    return resultRowsStream(plan, RowStreamFormat.JSON_SEQ, (Transaction) null);
+  }
+  @Override
+  public RowSet<RowRecord> resultRowsStream(Plan plan, RowStreamFormat format) {
+    return resultRowsStream(plan, format, (Transaction) null);
+  }
+  @Override
+  public RowSet<RowRecord> resultRowsStream(Plan plan, RowStreamFormat format, Transaction transaction) {
+    return resultRowsStream(plan, format, new InputStreamHandle(), transaction);
+  }
+  /**
+   * Streams the rows for a plan with a handle for the body, which carries the point-in-time
+   * query timestamp of the request and receives the server timestamp of the response.
+   * @param plan	the definition of a plan for the database rows
+   * @param format	the format for transporting the rows
+   * @param bodyHandle	the handle for the body of the response
+   * @param transaction	a open transaction or null
+   * @return	an iterable over the results with a map interface for each row
+   */
+  public RowSet<RowRecord> resultRowsStream(
+    Plan plan, RowStreamFormat format, InputStreamHandle bodyHandle, Transaction transaction
+  ) {
+    RowSetPart datatypeStyle = getDatatypeStyle();
+    RowStructure rowStructureStyle = getRowStructureStyle();
+
+    InputStream body = submitStreamPlan(checkPlan(plan), format, datatypeStyle, rowStructureStyle, bodyHandle, transaction);
+    RowStreamRecord rowset = new RowStreamRecord(
+      new RowStreamReader(format, datatypeStyle, rowStructureStyle, body), handleRegistry
+    );
+    rowset.init();
+    return rowset;
+  }
+
+  @Override
+  public <T> RowSet<T> resultRowsStreamAs(Plan plan, Class<T> as) {
+    return resultRowsStreamAs(plan, as, RowStreamFormat.JSON_SEQ, null);
+  }
+  @Override
+  public <T> RowSet<T> resultRowsStreamAs(Plan plan, Class<T> as, RowStreamFormat format, Transaction transaction) {
+    if (as == null) {
+      throw new IllegalArgumentException("Must specify a class for binding the rows");
+    }
+    // bare values in objects keyed by column name can bind to the properties of the class
+    InputStream body = submitStreamPlan(
+      checkPlan(plan), format, RowSetPart.HEADER, RowStructure.OBJECT, new InputStreamHandle(), transaction
+    );
+    return new RowStreamObject<>(
+      new RowStreamReader(format, RowSetPart.HEADER, RowStructure.OBJECT, body), as
+    );
+  }
+
+  @Override
+  public RowSet<RowColumnBatch> resultColumnBatches(Plan plan, int rowsPerBatch) {
+    return resultColumnBatches(plan, rowsPerBatch, null);
+  }
+  @Override
+  public RowSet<RowColumnBatch> resultColumnBatches(Plan plan, int rowsPerBatch, Transaction transaction) {
+    return resultColumnBatches(plan, rowsPerBatch, new InputStreamHandle(), transaction);
+  }
+  /**
+   * Retrieves the rows for a plan as column batches with a handle for the body, which carries the
+   * point-in-time query timestamp of the request and receives the server timestamp of the response.
+   * @param plan	the definition of a plan for the database rows
+   * @param rowsPerBatch	the maximum number of rows in each batch
+   * @param bodyHandle	the handle for the body of the response
+   * @param transaction	a open transaction or null
+   * @return	an iterable over the batches of rows
+   */
+  public RowSet<RowColumnBatch> resultColumnBatches(
+    Plan plan, int rowsPerBatch, InputStreamHandle bodyHandle, Transaction transaction
+  ) {
+    if (rowsPerBatch <= 0) {
+      throw new IllegalArgumentException("rows per batch must be 1 or greater");
+    }
+    // the column types have to be known before the first row to allocate the primitive arrays
+    InputStream body = submitStreamPlan(
+      checkPlan(plan), RowStreamFormat.JSON_SEQ, RowSetPart.HEADER, RowStructure.OBJECT, bodyHandle, transaction
+    );
+    return new RowColumnBatchSet(
+      new RowStreamReader(RowStreamFormat.JSON_SEQ, RowSetPart.HEADER, RowStructure.OBJECT, body), rowsPerBatch
+    );
+  }
+
+  private InputStream submitStreamPlan(
+    PlanBuilderBaseImpl.RequestPlan requestPlan, RowStreamFormat format,
+    RowSetPart datatypeStyle, RowStructure rowStructureStyle, InputStreamHandle bodyHandle, Transaction transaction
+  ) {
+    if (format == null) {
+      throw new IllegalArgumentException("Must specify a format for streaming rows");
+    }
+    List<ContentParam> contentParams = requestPlan.getContentParams();
+    if (contentParams != null && !contentParams.isEmpty()) {
+      throw new IllegalArgumentException(
+        "Cannot stream rows for a plan with content parameters; use resultRows() instead"
+      );
+    }
+    RequestParameters params = newRowsParamsBuilder(requestPlan)
+        .withNodeColumns("inline")
+        .withColumnTypes(datatypeStyle)
+        .withOutput(rowStructureStyle)
+        .getRequestParameters();
+    bodyHandle.setMimetype(RowStreamReader.getMimetype(format));
+    try {
+      services.postResource(requestLogger, determinePath(), transaction, params, requestPlan.getHandle(), bodyHandle);
+    } catch (FailedRequestException ex) {
+      throw improveUpdateMessage(ex);
+    }
+    return bodyHandle.get();
+  }
+
   @Override
   public <T extends StructureReadHandle> T explain(Plan plan, T resultsHandle) {
     PlanBuilderBaseImpl.RequestPlan requestPlan = checkPlan(plan);
@@ -426,17 +773,36 @@ public class RowManagerImpl
 		}
 		return services.postIteratedResource(requestLogger, path, transaction, params, astHandle);
 	} catch (FailedRequestException ex) {
-		String message = ex.getMessage();
-		if (message != null && message.contains("RESTAPI-UPDATEFROMQUERY")) {
-			String betterMessage = "The Optic plan is attempting an update but was sent to the wrong REST API endpoint. " +
-				"You must invoke `withUpdate(true)` on the instance of com.marklogic.client.row.RowManager that you " +
-				"are using to submit the plan";
-			throw new FailedRequestException(betterMessage, ex.getFailedRequest());
-		}
-		throw ex;
+		throw improveUpdateMessage(ex);
 	}
   }
 
+  private FailedRequestException improveUpdateMessage(FailedRequestException ex) {
+	String message = ex.getMessage();
+	if (message != null && message.contains("RESTAPI-UPDATEFROMQUERY")) {
+		String betterMessage = "The Optic plan is attempting an update but was sent to the wrong REST API endpoint. " +
+			"You must invoke `withUpdate(true)` on the instance of com.marklogic.client.row.RowManager that you " +
+			"are using to submit the plan";
+		return new FailedRequestException(betterMessage, ex.getFailedRequest());
+	}
+	return ex;
+  }
+
+  private <T> CompletableFuture<T> improveUpdateMessage(CompletableFuture<T> future) {
+    CompletableFuture<T> improved = new CompletableFuture<>();
+    future.whenComplete((value, failure) -> {
+      if (failure == null) {
+        improved.complete(value);
+        return;
+      }
+      Throwable cause = (failure instanceof CompletionException && failure.getCause() != null) ?
+          failure.getCause() : failure;
+      improved.completeExceptionally((cause instanceof FailedRequestException) ?
+          improveUpdateMessage((FailedRequestException) cause) : cause);
+    });
+    return improved;
+  }
+
   private PlanBuilderBaseImpl.RequestPlan checkPlan(Plan plan) {
     if (plan == null) {
       throw new IllegalArgumentException("Must specify a plan to produce row results");
@@ -618,8 +984,7 @@ public class RowManagerImpl
   }
   static class RowSetRecord extends RowSetBase<RowRecord> {
     private HandleFactoryRegistry             handleRegistry  = null;
-    private Map<String, RowRecord.ColumnKind> headerKinds     = null;
-    private Map<String, String>               headerDatatypes = null;
+    private RowDecoder                        decoder         = null;
     private Map<String, String>               aliases         = null;
     RowSetRecord(
       String rowFormat, RowSetPart datatypeStyle, RowStructure rowStructureStyle,
@@ -631,19 +996,7 @@ public class RowManagerImpl
 
     void init() {
       super.init();
-      if (datatypeStyle == RowSetPart.HEADER) {
-        headerKinds     = new HashMap<>();
-        headerDatatypes = new HashMap<>();
-        for (int i=0; i < columnNames.length; i++) {
-          String columnName = columnNames[i];
-          String columnType = columnTypes[i];
-          headerDatatypes.put(columnName, columnType);
-          RowRecord.ColumnKind columnKind = getColumnKind(
-            columnType,RowRecord.ColumnKind.CONTENT
-          );
-          headerKinds.put(columnName, columnKind);
-        }
-      }
+      decoder = new RowDecoder(datatypeStyle, rowStructureStyle, columnNames, columnTypes);
     }
 
     HandleFactoryRegistry getHandleRegistry() {
@@ -709,133 +1062,9 @@ public class RowManagerImpl
       boolean hasMoreRows = results.hasNext();
 
       try {
-        Map<String, String>               datatypes = null;
-        Map<String, RowRecord.ColumnKind> kinds     = null;
-        Map<String, Object>               row       = new HashMap<>();
-
         InputStream rowStream = currentRow.getContent(new InputStreamHandle()).get();
-
-        ObjectMapper rowMapper = new ObjectMapper();
-        JsonNode rowNode = rowMapper.readTree(rowStream);
-
-        switch(rowStructureStyle) {
-          case ARRAY:
-            int i=0;
-
-            switch(datatypeStyle) {
-              case HEADER:
-                datatypes = headerDatatypes;
-
-                for (JsonNode columnNode: rowNode) {
-                  String columnName = columnNames[i];
-                  i++;
-
-                  Object value = getColumnValue(columnName, columnNode);
-                  row.put(columnName, value);
-                  if (value != null) {
-                    continue;
-                  }
-
-                  RowRecord.ColumnKind columnKind = headerKinds.get(columnName);
-                  if (columnKind == RowRecord.ColumnKind.NULL) {
-                    continue;
-                  }
-
-                  if (kinds == null) {
-                    kinds = new HashMap<>();
-                    kinds.putAll(headerKinds);
-                  }
-
-                  kinds.put(columnName, RowRecord.ColumnKind.NULL);
-                }
-
-                if (kinds == null) {
-                  kinds = headerKinds;
-                }
-                break;
-              case ROWS:
-                datatypes = new HashMap<>();
-                kinds     = new HashMap<>();
-
-                for (JsonNode columnBinding: rowNode) {
-                  String columnName = columnNames[i];
-                  Object value = getTypedRowValue(datatypes, kinds, columnName, columnBinding);
-                  row.put(columnName, value);
-                  i++;
-                }
-                break;
-              default:
-                throw new MarkLogicInternalException("Row record set with unknown datatype style: "+datatypeStyle);
-            }
-
-            for (; i < columnNames.length; i++) {
-              String columnName = columnNames[i];
-              kinds.put(columnName, RowRecord.ColumnKind.NULL);
-              row.put(columnName, null);
-            }
-
-            break;
-          case OBJECT:
-            Iterator<Map.Entry<String,JsonNode>> fields = rowNode.fields();
-
-            switch(datatypeStyle) {
-              case HEADER:
-                datatypes = headerDatatypes;
-
-                while (fields.hasNext()) {
-                  Map.Entry<String,JsonNode> field = fields.next();
-                  String   columnName = field.getKey();
-                  JsonNode columnNode = field.getValue();
-                  Object value = getColumnValue(columnName, columnNode);
-                  row.put(columnName, value);
-                }
-
-                for (Map.Entry<String, RowRecord.ColumnKind> entry: headerKinds.entrySet()) {
-                  String columnName = entry.getKey();
-
-                  Object value = row.get(columnName);
-                  if (value != null) {
-                    continue;
-                  }
-
-                  RowRecord.ColumnKind columnKind = entry.getValue();
-                  if (columnKind == RowRecord.ColumnKind.NULL) {
-                    continue;
-                  }
-
-                  if (kinds == null) {
-                    kinds = new HashMap<>();
-                    kinds.putAll(headerKinds);
-                  }
-
-                  kinds.put(columnName, RowRecord.ColumnKind.NULL);
-                }
-
-                if (kinds == null) {
-                  kinds = headerKinds;
-                }
-                break;
-              case ROWS:
-                datatypes = new HashMap<>();
-                kinds     = new HashMap<>();
-
-                while (fields.hasNext()) {
-                  Map.Entry<String,JsonNode> field = fields.next();
-                  String   columnName    = field.getKey();
-                  JsonNode columnBinding = field.getValue();
-                  Object value = getTypedRowValue(datatypes, kinds, columnName, columnBinding);
-                  row.put(columnName, value);
-                }
-                break;
-              default:
-                throw new MarkLogicInternalException("Row record set with unknown datatype style: "+datatypeStyle);
-            }
-            break;
-          default:
-            throw new MarkLogicInternalException(
-              "Row record set with unknown row structure style: "+rowStructureStyle
-            );
-        }
+        RowDecoder.DecodedRow decoded = decoder.decode(rowStream);
+        Map<String, Object> row = decoded.getValues();
 
         while (hasMoreRows) {
           currentRow = results.next();
@@ -872,7 +1101,7 @@ public class RowManagerImpl
 
         RowRecordImpl rowRecord = new RowRecordImpl(this);
 
-        rowRecord.init(kinds, datatypes, row);
+        rowRecord.init(decoded.getKinds(), decoded.getDatatypes(), row);
 
         if (hasMoreRows) {
           nextRow = currentRow;
@@ -889,68 +1118,6 @@ public class RowManagerImpl
         throw new MarkLogicIOException("could not read row record", e);
       }
     }
-
-    private Object getColumnValue(String columnName, JsonNode columnNode) {
-      JsonNodeType nodeType = columnNode.getNodeType();
-      switch(nodeType) {
-        case NULL:
-          return null;
-        case ARRAY:
-        case BOOLEAN:
-        case NUMBER:
-        case OBJECT:
-        case STRING:
-          return columnNode;
-        case BINARY:
-        case MISSING:
-        case POJO:
-          throw new MarkLogicIOException(columnName+" column with invalid node type: "+nodeType);
-        default:
-          throw new MarkLogicIOException(columnName+" column with unknown node type: "+nodeType);
-      }
-    }
-    private Object getTypedRowValue(
-      Map<String, String>               datatypes,
-      Map<String, RowRecord.ColumnKind> kinds,
-      String                            columnName,
-      JsonNode                          binding
-    ) {
-      RowRecord.ColumnKind columnKind = null;
-      Object value = null;
-      String datatype = binding.get("type").asText();
-      if (datatype != null) {
-        datatypes.put(columnName, datatype);
-      }
-      columnKind = getColumnKind(datatype, null);
-      kinds.put(columnName, columnKind);
-      value = (columnKind == RowRecord.ColumnKind.NULL || datatype == null || "cid".equals(datatype)) ?
-          null : getColumnValue(columnName, binding.get("value"));
-
-// TODO: for RowRecord.ColumnKind.CONTENT, increment the count of expected nodes and list the column names expecting values?
-      return value;
-    }
-    private RowRecord.ColumnKind getColumnKind(String datatype, RowRecord.ColumnKind defaultKind) {
-      if (datatype == null) {
-        throw new MarkLogicInternalException("Column value with null datatype");
-      }
-      switch(datatype) {
-        case "array":
-          return RowRecord.ColumnKind.CONTAINER_VALUE;
-        case "cid":
-          return RowRecord.ColumnKind.CONTENT;
-        case "null":
-          return RowRecord.ColumnKind.NULL;
-        case "object":
-          return RowRecord.ColumnKind.CONTAINER_VALUE;
-        default:
-          if (datatype.contains(":")) {
-            return RowRecord.ColumnKind.ATOMIC_VALUE;
-          } else if (datatype != null && defaultKind != null) {
-            return defaultKind;
-          }
-      }
-      throw new MarkLogicInternalException("Column value with unsupported datatype: "+datatype);
-    }
   }
   abstract static class RowSetHandleBase<T, R extends AbstractReadHandle> extends RowSetBase<T> {
     private R rowHandle = null;
@@ -1008,6 +1175,134 @@ public class RowManagerImpl
     }
   }
 
+  static class RowStreamRecord extends RowSetRecord {
+    private RowStreamReader reader = null;
+    RowStreamRecord(RowStreamReader reader, HandleFactoryRegistry handleRegistry) {
+      super("json", null, null, null, handleRegistry);
+      this.reader = reader;
+    }
+
+    @Override
+    void init() {
+      columnNames = reader.getColumnNames();
+      columnTypes = reader.getColumnTypes();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return reader.hasNext();
+    }
+
+    @Override
+    public RowRecord next() {
+      if (!reader.hasNext()) {
+        throw new NoSuchElementException("no next row");
+      }
+      RowDecoder.DecodedRow decoded = reader.next();
+      RowRecordImpl rowRecord = new RowRecordImpl(this);
+      rowRecord.init(decoded.getKinds(), decoded.getDatatypes(), decoded.getValues());
+      return rowRecord;
+    }
+
+    @Override
+    public void close() {
+      reader.close();
+    }
+  }
+  static class RowStreamObject<T> implements RowSet<T>, Iterator<T> {
+    private RowStreamReader reader = null;
+    private Class<T>        as     = null;
+    RowStreamObject(RowStreamReader reader, Class<T> as) {
+      this.reader = reader;
+      this.as     = as;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+      return reader.getColumnNames();
+    }
+    @Override
+    public String[] getColumnTypes() {
+      return reader.getColumnTypes();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return this;
+    }
+    @Override
+    public Stream<T> stream() {
+      return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return reader.hasNext();
+    }
+    @Override
+    public T next() {
+      if (!reader.hasNext()) {
+        throw new NoSuchElementException("no next row");
+      }
+      return reader.nextAs(as);
+    }
+
+    @Override
+    public void close() {
+      reader.close();
+    }
+  }
+
+  static class RowColumnBatchSet implements RowSet<RowColumnBatch>, Iterator<RowColumnBatch> {
+    private RowStreamReader            reader       = null;
+    private RowColumnBatchImpl.Builder builder      = null;
+    private int                        rowsPerBatch = 0;
+    RowColumnBatchSet(RowStreamReader reader, int rowsPerBatch) {
+      this.reader       = reader;
+      this.builder      = new RowColumnBatchImpl.Builder(reader.getColumnNames(), reader.getColumnTypes());
+      this.rowsPerBatch = rowsPerBatch;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+      return reader.getColumnNames();
+    }
+    @Override
+    public String[] getColumnTypes() {
+      return reader.getColumnTypes();
+    }
+
+    @Override
+    public Iterator<RowColumnBatch> iterator() {
+      return this;
+    }
+    @Override
+    public Stream<RowColumnBatch> stream() {
+      return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return reader.hasNext();
+    }
+    @Override
+    public RowColumnBatch next() {
+      if (!reader.hasNext()) {
+        throw new NoSuchElementException("no next batch");
+      }
+      builder.start(rowsPerBatch);
+      while (reader.hasNext() && !builder.isFull()) {
+        reader.nextJson(builder);
+      }
+      return builder.build();
+    }
+
+    @Override
+    public void close() {
+      reader.close();
+    }
+  }
+
   static class RowRecordImpl implements RowRecord {
     private static final Map<Class<? extends XsAnyAtomicTypeVal>, Function<String,? extends XsAnyAtomicTypeVal>>
       factories = new HashMap<>();
@@ -1891,6 +2186,44 @@ public class RowManagerImpl
       return this;
     }
   }
+  /**
+   * A plan with an AST exported once to bytes.
+   *
+   * Design
+   *   - the bytes are never modified after the export, so plans made by bindParam() share them
+   *   - each request gets a new lightweight handle over the shared bytes, so concurrent requests don't
+   *     share the mutable state of a handle
+   */
+  static class PreparedPlanImpl extends RawPlanImpl<JSONWriteHandle> {
+    private final byte[] ast;
+    PreparedPlanImpl(
+      byte[] ast, Map<PlanBuilderBaseImpl.PlanParamBase,BaseTypeImpl.ParamBinder> params,
+      List<ContentParam> contentParams
+    ) {
+      super(new BytesHandle(ast), params, contentParams);
+      this.ast = ast;
+    }
+
+    @Override
+    PreparedPlanImpl parameterize(
+      JSONWriteHandle handle, Map<PlanBuilderBaseImpl.PlanParamBase,BaseTypeImpl.ParamBinder> params,
+      List<ContentParam> contentParams
+    ) {
+      return new PreparedPlanImpl(this.ast, params, contentParams);
+    }
+    @Override
+    void configHandle(BaseHandle handle) {
+      handle.setFormat(Format.JSON);
+      handle.setMimetype("application/json");
+    }
+
+    @Override
+    public JSONWriteHandle getHandle() {
+      BytesHandle handle = new BytesHandle(ast);
+      configHandle(handle);
+      return handle;
+    }
+  }
   static class RawPlanDefinitionImpl extends RawPlanImpl<JSONWriteHandle> implements RawPlanDefinition {
     RawPlanDefinitionImpl(JSONWriteHandle handle) {
       super(handle);
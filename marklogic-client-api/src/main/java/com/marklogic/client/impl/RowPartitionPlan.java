@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.io.JacksonHandle;
+import com.marklogic.client.io.marker.AbstractWriteHandle;
+import com.marklogic.client.row.RawPlanDefinition;
+import com.marklogic.client.row.RowManager;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Splits a view-based plan into ranges of row ids that can be read in parallel, as
+ * RowBatcher does for each batch and RowManager does for a parallel resultRows call.
+ *
+ * Design
+ *   - the internal/viewinfo endpoint estimates the rows that match the plan and returns a modified plan
+ *     that filters the row ids by the ML_LOWER_BOUND and ML_UPPER_BOUND parameters
+ *   - the unsigned 64-bit row id space is divided into equal ranges, with the last range running to the
+ *     maximum row id, so every row falls in exactly one range whatever the actual row ids are
+ *   - the same partition count always produces the same ranges, which a checkpoint relies on
+ */
+public class RowPartitionPlan {
+  final static public String LOWER_BOUND = "ML_LOWER_BOUND";
+  final static public String UPPER_BOUND = "ML_UPPER_BOUND";
+
+  final static private long MAX_UNSIGNED_LONG = -1;
+
+  // operators whose result depends on rows in other ranges, so applying them to each range gives wrong rows
+  final static private Set<String> CROSS_RANGE_OPERATORS = opFunctions(
+    "except", "exists-join", "facet-by", "group-by", "group-by-union", "group-to-arrays", "intersect",
+    "join-cross-product", "join-full-outer", "join-inner", "join-left-outer", "limit", "not-exists-join",
+    "offset", "offset-limit", "order-by", "reduce", "sample-by", "union", "where-distinct"
+  );
+  // functions that produce document or constructed node columns, as qualified ns:fn names
+  final static private Set<String> NODE_COLUMN_FUNCTIONS = new HashSet<>(Arrays.asList("cts:doc", "fn:doc"));
+  static {
+    NODE_COLUMN_FUNCTIONS.addAll(opFunctions(
+      "doc-cols", "from-search-docs", "join-doc", "join-doc-and-uri", "join-doc-cols", "json-array",
+      "json-boolean", "json-document", "json-null", "json-number", "json-object", "json-string",
+      "xml-attribute", "xml-comment", "xml-document", "xml-element", "xml-pi", "xml-text", "xpath"
+    ));
+  }
+
+  private final RawPlanDefinition pagedPlan;
+  private final long              rowCount;
+  private final String            schemaName;
+  private final String            viewName;
+
+  private RowPartitionPlan(RawPlanDefinition pagedPlan, long rowCount, String schemaName, String viewName) {
+    this.pagedPlan  = pagedPlan;
+    this.rowCount   = rowCount;
+    this.schemaName = schemaName;
+    this.viewName   = viewName;
+  }
+
+  /**
+   * Calls the internal/viewinfo endpoint for the row estimate and the plan with row id bounds.
+   * @param services the services of the client
+   * @param rowMgr the row manager that makes the modified plan
+   * @param userPlan the exported plan, which must read from a view
+   * @return the analysis of the plan
+   */
+  public static RowPartitionPlan analyze(RESTServices services, RowManager rowMgr, AbstractWriteHandle userPlan) {
+    if (userPlan == null) {
+      throw new IllegalArgumentException("plan must not be null");
+    }
+    JsonNode viewInfo = services.postResource(
+      null, "internal/viewinfo", null, null, userPlan, new JacksonHandle()
+    ).get();
+
+    JsonNode schemaNode = viewInfo.get("schemaName");
+    JsonNode viewNode   = viewInfo.get("viewName");
+    return new RowPartitionPlan(
+      rowMgr.newRawPlanDefinition(new JacksonHandle(viewInfo.get("modifiedPlan"))),
+      viewInfo.get("rowCount").asLong(0),
+      (schemaNode != null) ? schemaNode.asText(null) : null,
+      (viewNode != null) ? viewNode.asText(null) : null
+    );
+  }
+
+  /**
+   * Whether the rows of a plan are the concatenation of the rows of the plan for each range of row ids.
+   * That isn't the case when the plan groups, sorts, limits, offsets, samples, removes duplicates, or
+   * combines rows with another plan, so such a plan has to be read in one request.
+   * @param ast the exported plan
+   * @return whether the plan can be read by ranges of row ids
+   */
+  public static boolean isPartitionable(String ast) {
+    return ast != null && !hasFunction(ast, CROSS_RANGE_OPERATORS);
+  }
+  /**
+   * Whether a plan may return document or constructed node columns. A stream of rows carries
+   * such columns inline, so a plan that may have them is read as multipart with node references
+   * to keep the content of the node columns available from a RowRecord.
+   * @param ast the exported plan
+   * @return whether the plan may have node columns, which is true if the plan can't be read
+   */
+  public static boolean hasNodeColumns(String ast) {
+    return ast == null || hasFunction(ast, NODE_COLUMN_FUNCTIONS);
+  }
+  // an unreadable plan is treated as having the functions
+  private static boolean hasFunction(String ast, Set<String> functions) {
+    try {
+      return hasFunction(new ObjectMapper().readTree(ast), functions);
+    } catch (JsonProcessingException e) {
+      return true;
+    }
+  }
+  private static boolean hasFunction(JsonNode node, Set<String> functions) {
+    if (node == null) {
+      return false;
+    }
+    if (node.isObject()) {
+      JsonNode ns = node.get("ns");
+      JsonNode fn = node.get("fn");
+      if (ns != null && fn != null && functions.contains(ns.asText() + ":" + fn.asText())) {
+        return true;
+      }
+    }
+    for (JsonNode child : node) {
+      if (hasFunction(child, functions)) {
+        return true;
+      }
+    }
+    return false;
+  }
+  private static Set<String> opFunctions(String... names) {
+    Set<String> functions = new HashSet<>();
+    for (String name : names) {
+      functions.add("op:" + name);
+    }
+    return functions;
+  }
+
+  public long getRowCount() {
+    return rowCount;
+  }
+  public String getSchemaName() {
+    return schemaName;
+  }
+  public String getViewName() {
+    return viewName;
+  }
+
+  /**
+   * Returns the number of row ids in each range as an unsigned long.
+   * @param partitionCount the number of ranges
+   * @return the size of a range
+   */
+  public static long getRangeSize(long partitionCount) {
+    if (partitionCount <= 0) {
+      throw new IllegalArgumentException("partition count must be 1 or greater");
+    }
+    return Long.divideUnsigned(MAX_UNSIGNED_LONG, partitionCount);
+  }
+  /**
+   * Returns the first row id of a range.
+   * @param partition the position of the range, starting at 1
+   * @param partitionCount the number of ranges
+   * @return the lower bound as an unsigned long string
+   */
+  public static String getLowerBound(long partition, long partitionCount) {
+    return Long.toUnsignedString((partition - 1) * getRangeSize(partitionCount));
+  }
+  /**
+   * Returns the last row id of a range.
+   * @param partition the position of the range, starting at 1
+   * @param partitionCount the number of ranges
+   * @return the upper bound as an unsigned long string
+   */
+  public static String getUpperBound(long partition, long partitionCount) {
+    long rangeSize = getRangeSize(partitionCount);
+    return Long.toUnsignedString(
+      (partition == partitionCount) ? MAX_UNSIGNED_LONG : ((partition - 1) * rangeSize) + (rangeSize - 1)
+    );
+  }
+
+  /**
+   * Binds the row id bounds to the modified plan.
+   * @param lowerBound the first row id as an unsigned long string
+   * @param upperBound the last row id as an unsigned long string
+   * @return the plan for the rows in the range
+   */
+  public PlanBuilder.Plan bindRange(String lowerBound, String upperBound) {
+    return pagedPlan
+      .bindParam(LOWER_BOUND, lowerBound)
+      .bindParam(UPPER_BOUND, upperBound);
+  }
+  /**
+   * Binds the row id bounds of a range to the modified plan.
+   * @param partition the position of the range, starting at 1
+   * @param partitionCount the number of ranges
+   * @return the plan for the rows in the range
+   */
+  public PlanBuilder.Plan bindRange(long partition, long partitionCount) {
+    return bindRange(getLowerBound(partition, partitionCount), getUpperBound(partition, partitionCount));
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.MarkLogicInternalException;
+import com.marklogic.client.row.RowManager.RowSetPart;
+import com.marklogic.client.row.RowManager.RowStreamFormat;
+import com.marklogic.client.row.RowManager.RowStructure;
+
+/**
+ * Reads the header and rows of a row set transported as a single body, as for RowManager.resultRowsStream.
+ *
+ * Design
+ *   - with JSON_SEQ, one JsonParser reads the whole body, with the record separators of the sequence read as
+ *     whitespace, so the parser steps from one row to the next without buffering a row
+ *   - the first JSON text is the header, in the same structure as the header part of a multipart row set
+ *   - each row is decoded by the same RowDecoder as a multipart row part
+ *   - with CSV, the first record names the columns, every column has the xs:string data type, and an empty
+ *     field is a null
+ *   - the reader stays one token ahead so hasNext() doesn't consume a row; the body is closed when the last
+ *     row has been read or the reader is closed
+ */
+class RowStreamReader implements Closeable {
+  static final String JSON_SEQ_MIMETYPE = "application/json-seq";
+  static final String CSV_MIMETYPE      = "text/csv";
+
+  private static final char RECORD_SEPARATOR = 0x1E;
+
+  private final RowStreamFormat format;
+  private final RowSetPart      datatypeStyle;
+  private final RowStructure    rowStructureStyle;
+
+  private InputStream               body;
+  private JsonParser                jsonRows;
+  private MappingIterator<String[]> csvRows;
+  private RowDecoder                decoder;
+  private String[]                  columnNames = new String[0];
+  private String[]                  columnTypes = new String[0];
+  private boolean                   hasNext     = false;
+
+  RowStreamReader(RowStreamFormat format, RowSetPart datatypeStyle, RowStructure rowStructureStyle, InputStream body) {
+    if (format == null) {
+      throw new IllegalArgumentException("Must specify a format for streaming rows");
+    }
+    this.format            = format;
+    this.datatypeStyle     = (format == RowStreamFormat.CSV) ? RowSetPart.HEADER : datatypeStyle;
+    this.rowStructureStyle = rowStructureStyle;
+    this.body              = body;
+    if (body == null) {
+      return;
+    }
+    try {
+      switch (format) {
+        case JSON_SEQ:
+          jsonRows = RowDecoder.mapper.getFactory().createParser(new RecordSeparatorInputStream(body));
+          if (jsonRows.nextToken() != null) {
+            readJsonHeader();
+            hasNext = (jsonRows.nextToken() != null);
+          }
+          break;
+        case CSV:
+          csvRows = new CsvMapper()
+            .enable(CsvParser.Feature.WRAP_AS_ARRAY)
+            .readerFor(String[].class)
+            .readValues(body);
+          if (csvRows.hasNextValue()) {
+            readCsvHeader(csvRows.nextValue());
+            hasNext = csvRows.hasNextValue();
+          }
+          break;
+        default:
+          throw new MarkLogicInternalException("Row stream with unknown format: "+format);
+      }
+    } catch (IOException e) {
+      close();
+      throw new MarkLogicIOException("could not read row stream header", e);
+    }
+    if (!hasNext) {
+      close();
+    }
+  }
+
+  static String getMimetype(RowStreamFormat format) {
+    switch (format) {
+      case JSON_SEQ: return JSON_SEQ_MIMETYPE;
+      case CSV:      return CSV_MIMETYPE;
+      default:
+        throw new MarkLogicInternalException("Row stream with unknown format: "+format);
+    }
+  }
+
+  private void readJsonHeader() throws IOException {
+    JsonNode header = RowDecoder.mapper.readTree(jsonRows);
+    JsonNode cols   = (rowStructureStyle == RowStructure.OBJECT && header != null) ? header.get("columns") : header;
+    int colSize = (cols == null || !cols.isArray()) ? 0 : cols.size();
+    columnNames = new String[colSize];
+    columnTypes = (datatypeStyle == RowSetPart.HEADER) ? new String[colSize] : new String[0];
+    for (int i=0; i < colSize; i++) {
+      JsonNode col = cols.get(i);
+      columnNames[i] = col.path("name").asText();
+      if (datatypeStyle == RowSetPart.HEADER) {
+        JsonNode type = col.get("type");
+        columnTypes[i] = (type == null) ? null : type.asText();
+      }
+    }
+    decoder = new RowDecoder(datatypeStyle, rowStructureStyle, columnNames, columnTypes);
+  }
+
+  private void readCsvHeader(String[] names) {
+    columnNames = names;
+    columnTypes = new String[names.length];
+    for (int i=0; i < names.length; i++) {
+      columnTypes[i] = "xs:string";
+    }
+    decoder = new RowDecoder(RowSetPart.HEADER, RowStructure.OBJECT, columnNames, columnTypes);
+  }
+
+  String[] getColumnNames() {
+    return columnNames;
+  }
+  String[] getColumnTypes() {
+    return (format == RowStreamFormat.CSV) ? new String[0] : columnTypes;
+  }
+
+  boolean hasNext() {
+    return hasNext;
+  }
+
+  RowDecoder.DecodedRow next() {
+    try {
+      RowDecoder.DecodedRow row = (format == RowStreamFormat.JSON_SEQ) ?
+        decoder.decode(jsonRows) : decoder.decodeText(csvRows.nextValue());
+      advance();
+      return row;
+    } catch (IOException e) {
+      close();
+      throw new MarkLogicIOException("could not read row from stream", e);
+    }
+  }
+
+  /**
+   * Reads the next row of a JSON sequence with the parser positioned on the first token of the row.
+   */
+  interface JsonRowReader {
+    void read(JsonParser parser) throws IOException;
+  }
+  void nextJson(JsonRowReader rowReader) {
+    if (format != RowStreamFormat.JSON_SEQ) {
+      throw new MarkLogicInternalException("Row stream in "+format+" format doesn't have JSON rows");
+    }
+    try {
+      rowReader.read(jsonRows);
+      advance();
+    } catch (IOException e) {
+      close();
+      throw new MarkLogicIOException("could not read row from stream", e);
+    }
+  }
+
+  <T> T nextAs(Class<T> as) {
+    try {
+      T row;
+      if (format == RowStreamFormat.JSON_SEQ) {
+        row = jsonRows.readValueAs(as);
+      } else {
+        String[] fields = csvRows.nextValue();
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i=0; i < columnNames.length; i++) {
+          String field = (i < fields.length) ? fields[i] : null;
+          values.put(columnNames[i], (field == null || field.length() == 0) ? null : field);
+        }
+        row = RowDecoder.mapper.convertValue(values, as);
+      }
+      advance();
+      return row;
+    } catch (IOException e) {
+      close();
+      throw new MarkLogicIOException("could not read row from stream", e);
+    }
+  }
+
+  private void advance() throws IOException {
+    hasNext = (format == RowStreamFormat.JSON_SEQ) ?
+      (jsonRows.nextToken() != null) : csvRows.hasNextValue();
+    if (!hasNext) {
+      close();
+    }
+  }
+
+  @Override
+  public void close() {
+    hasNext = false;
+    try {
+      if (jsonRows != null) {
+        jsonRows.close();
+      }
+      if (csvRows != null) {
+        csvRows.close();
+      }
+      if (body != null) {
+        body.close();
+      }
+    } catch (IOException e) {
+      throw new MarkLogicIOException("could not close row stream", e);
+    } finally {
+      jsonRows = null;
+      csvRows  = null;
+      body     = null;
+    }
+  }
+
+  // a JSON text sequence prefixes each text with a record separator, which JSON can't contain unescaped
+  private static class RecordSeparatorInputStream extends FilterInputStream {
+    RecordSeparatorInputStream(InputStream in) {
+      super(in);
+    }
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      return (b == RECORD_SEPARATOR) ? ' ' : b;
+    }
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int count = super.read(b, off, len);
+      for (int i=off; i < off + count; i++) {
+        if (b[i] == RECORD_SEPARATOR) {
+          b[i] = ' ';
+        }
+      }
+      return count;
+    }
+  }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl.okhttp;
+
+import com.burgstaller.okhttp.AuthenticationCacheInterceptor;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Spreads the requests addressed to the primary host of a client over every host of the cluster. Each request goes
+ * to the less busy of two randomly chosen healthy hosts, where a host is busy while it has a response that hasn't
+ * been closed. A host that can't be reached is marked unhealthy and skipped for a period that doubles with each
+ * consecutive failure; a request that fails to connect is tried on another host, as it was never sent.
+ *
+ * Requests that depend on state held by one host - multi-statement transactions and anything carrying a cookie,
+ * such as a data service session - are not balanced and go to the primary host.
+ */
+public class HostBalancingInterceptor implements Interceptor {
+
+	private final static Logger logger = LoggerFactory.getLogger(HostBalancingInterceptor.class);
+
+	final static long MIN_UNHEALTHY_NANOS = TimeUnit.SECONDS.toNanos(1);
+	final static long MAX_UNHEALTHY_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+	private final String primaryHost;
+	private final int port;
+	private final List<Host> hosts;
+	private final LongSupplier nanoClock;
+	private final Random random;
+
+	/**
+	 * @param primaryHost the host to which the client addresses its requests
+	 * @param port        the port of the REST server, which is the same on every host
+	 * @param hosts       the hosts of the cluster; the primary host is always included
+	 */
+	public HostBalancingInterceptor(String primaryHost, int port, Collection<String> hosts) {
+		this(primaryHost, port, hosts, System::nanoTime, new Random());
+	}
+
+	HostBalancingInterceptor(String primaryHost, int port, Collection<String> hosts, LongSupplier nanoClock,
+							 Random random) {
+		if (primaryHost == null) throw new IllegalArgumentException("primaryHost must not be null");
+		if (hosts == null) throw new IllegalArgumentException("hosts must not be null");
+		this.primaryHost = primaryHost;
+		this.port = port;
+		this.nanoClock = nanoClock;
+		this.random = random;
+
+		Set<String> hostNames = new LinkedHashSet<>();
+		hostNames.add(primaryHost);
+		hostNames.addAll(hosts);
+		List<Host> hostList = new ArrayList<>(hostNames.size());
+		for (String hostName : hostNames) {
+			hostList.add(new Host(hostName));
+		}
+		this.hosts = Collections.unmodifiableList(hostList);
+	}
+
+	/**
+	 * @return the names of the hosts over which requests are spread
+	 */
+	public List<String> getHostNames() {
+		List<String> hostNames = new ArrayList<>(hosts.size());
+		for (Host host : hosts) {
+			hostNames.add(host.name);
+		}
+		return hostNames;
+	}
+
+	/**
+	 * Adds this interceptor to a client builder ahead of the digest authentication cache, so the cache
+	 * keys the credentials of each request by the host the request actually goes to.
+	 *
+	 * @param clientBuilder the builder of the client whose requests are balanced
+	 * @return the client builder
+	 */
+	public OkHttpClient.Builder addTo(OkHttpClient.Builder clientBuilder) {
+		List<Interceptor> interceptors = clientBuilder.interceptors();
+		for (int i = 0; i < interceptors.size(); i++) {
+			if (interceptors.get(i) instanceof AuthenticationCacheInterceptor) {
+				interceptors.add(i, this);
+				return clientBuilder;
+			}
+		}
+		interceptors.add(this);
+		return clientBuilder;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		if (!isBalanced(request)) {
+			return chain.proceed(request);
+		}
+
+		Set<Host> tried = new LinkedHashSet<>();
+		while (true) {
+			Host host = choose(tried);
+			tried.add(host);
+			host.outstanding.incrementAndGet();
+			Response response;
+			try {
+				response = chain.proceed(
+					request.newBuilder().url(request.url().newBuilder().host(host.name).build()).build()
+				);
+			} catch (IOException e) {
+				host.release();
+				if (isConnectFailure(e)) {
+					markUnhealthy(host, e);
+					if (tried.size() < hosts.size()) {
+						continue;
+					}
+				}
+				throw e;
+			} catch (RuntimeException e) {
+				host.release();
+				throw e;
+			}
+			markHealthy(host);
+			return releaseOnClose(response, host);
+		}
+	}
+
+	boolean isBalanced(Request request) {
+		HttpUrl url = request.url();
+		if (!primaryHost.equalsIgnoreCase(url.host()) || url.port() != port) {
+			return false;
+		}
+		if (url.queryParameter("txid") != null || url.pathSegments().contains("transactions")) {
+			return false;
+		}
+		// a session carries its SessionID cookie from the first call, before the server has set the HostId
+		// cookie, so every call of the session goes to the primary host
+		return request.header("Cookie") == null;
+	}
+
+	// power of two choices among the healthy hosts not tried yet; when none is healthy, probe the host
+	// that is due to recover first
+	Host choose(Set<Host> tried) {
+		long now = nanoClock.getAsLong();
+		List<Host> candidates = new ArrayList<>(hosts.size());
+		Host soonestRecovery = null;
+		for (Host host : hosts) {
+			if (tried.contains(host)) continue;
+			if (host.isHealthy(now)) {
+				candidates.add(host);
+			} else if (soonestRecovery == null || host.unhealthyUntil < soonestRecovery.unhealthyUntil) {
+				soonestRecovery = host;
+			}
+		}
+		switch (candidates.size()) {
+			case 0:
+				return soonestRecovery;
+			case 1:
+				return candidates.get(0);
+			default:
+				int first = random.nextInt(candidates.size());
+				int second = random.nextInt(candidates.size() - 1);
+				if (second >= first) second++;
+				Host firstHost = candidates.get(first);
+				Host secondHost = candidates.get(second);
+				return (secondHost.outstanding.get() < firstHost.outstanding.get()) ? secondHost : firstHost;
+		}
+	}
+
+	private void markUnhealthy(Host host, IOException cause) {
+		synchronized (host) {
+			int failures = ++host.failures;
+			long period = MIN_UNHEALTHY_NANOS << Math.min(failures - 1, 6);
+			host.unhealthyUntil = nanoClock.getAsLong() + Math.min(period, MAX_UNHEALTHY_NANOS);
+			host.unhealthy = true;
+		}
+		if (logger.isWarnEnabled()) {
+			logger.warn("Unable to connect to host {}; will skip it for subsequent requests: {}", host.name, cause.getMessage());
+		}
+	}
+
+	private void markHealthy(Host host) {
+		if (!host.unhealthy) return;
+		synchronized (host) {
+			host.failures = 0;
+			host.unhealthy = false;
+		}
+	}
+
+	private boolean isConnectFailure(IOException e) {
+		return e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof UnknownHostException;
+	}
+
+	private Response releaseOnClose(Response response, Host host) {
+		ResponseBody body = response.body();
+		if (body == null) {
+			host.release();
+			return response;
+		}
+		return response.newBuilder().body(new ReleasingResponseBody(body, host)).build();
+	}
+
+	static class Host {
+		final String name;
+		final AtomicInteger outstanding = new AtomicInteger();
+		volatile boolean unhealthy = false;
+		volatile long unhealthyUntil = 0;
+		int failures = 0;
+
+		Host(String name) {
+			this.name = name;
+		}
+
+		boolean isHealthy(long now) {
+			return !unhealthy || now - unhealthyUntil >= 0;
+		}
+
+		void release() {
+			outstanding.decrementAndGet();
+		}
+	}
+
+	// releases the host when the response or its body is closed
+	private static class ReleasingResponseBody extends ResponseBody {
+		private final ResponseBody delegate;
+		private final Host host;
+		private final AtomicBoolean released = new AtomicBoolean(false);
+		private BufferedSource source;
+
+		ReleasingResponseBody(ResponseBody delegate, Host host) {
+			this.delegate = delegate;
+			this.host = host;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return delegate.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return delegate.contentLength();
+		}
+
+		@Override
+		public synchronized BufferedSource source() {
+			if (source == null) {
+				source = Okio.buffer(new ForwardingSource(delegate.source()) {
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						} finally {
+							release();
+						}
+					}
+				});
+			}
+			return source;
+		}
+
+		@Override
+		public void close() {
+			try {
+				delegate.close();
+			} finally {
+				release();
+			}
+		}
+
+		private void release() {
+			if (released.compareAndSet(false, true)) {
+				host.release();
+			}
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.marklogic.client.io.marker.*;
+
+/**
+ * A ByteBuffer Handle represents document content as the remaining bytes of a
+ * ByteBuffer for reading or writing. The buffer can be a slice of a larger
+ * shared buffer, such as a memory-mapped region of a file, so that many
+ * documents can refer to one buffer without copying their bytes. When writing,
+ * the bytes go straight from the buffer to the request body; the position and
+ * limit of the buffer are not changed, so the content can be sent again.
+ *
+ * As with a BytesHandle, the bytes of JSON, text, or XML content should be
+ * encoded in UTF-8.
+ */
+public class ByteBufferHandle
+  extends BaseHandle<byte[], ByteBuffer>
+  implements ResendableContentHandle<ByteBuffer, byte[]>,
+    BinaryReadHandle, BinaryWriteHandle,
+    GenericReadHandle, GenericWriteHandle,
+    JSONReadHandle, JSONWriteHandle,
+    TextReadHandle, TextWriteHandle,
+    XMLReadHandle, XMLWriteHandle,
+    StructureReadHandle, StructureWriteHandle, CtsQueryWriteHandle,
+    QuadsWriteHandle,
+    TriplesReadHandle, TriplesWriteHandle
+{
+  private ByteBuffer content;
+
+  /**
+   * Creates a factory to create a ByteBufferHandle instance for a ByteBuffer.
+   * @return	the factory
+   */
+  static public ContentHandleFactory newFactory() {
+    return new ContentHandleFactory() {
+      @Override
+      public Class<?>[] getHandledClasses() {
+        return new Class<?>[]{ ByteBuffer.class };
+      }
+      @Override
+      public boolean isHandled(Class<?> type) {
+        return ByteBuffer.class.isAssignableFrom(type);
+      }
+      @Override
+      public <C> ContentHandle<C> newHandle(Class<C> type) {
+        @SuppressWarnings("unchecked")
+        ContentHandle<C> handle = isHandled(type) ?
+                                  (ContentHandle<C>) new ByteBufferHandle() : null;
+        return handle;
+      }
+    };
+  }
+
+  /**
+   * Zero-argument constructor.
+   */
+  public ByteBufferHandle() {
+    super();
+    setResendable(true);
+  }
+  /**
+   * Initializes the handle with a buffer for the content.
+   * @param content	the buffer, whose remaining bytes are the content
+   */
+  public ByteBufferHandle(ByteBuffer content) {
+    this();
+    set(content);
+  }
+
+  /**
+   * Returns the buffer for the handle content.
+   * @return	the buffer
+   */
+  @Override
+  public ByteBuffer get() {
+    return content;
+  }
+  /**
+   * Assigns a buffer as the content. The content is the bytes between the
+   * position and the limit of the buffer.
+   * @param content	the buffer
+   */
+  @Override
+  public void set(ByteBuffer content) {
+    this.content = content;
+  }
+  /**
+   * Assigns a buffer as the content and returns the handle
+   * as a fluent convenience.
+   * @param content	the buffer
+   * @return	this handle
+   */
+  public ByteBufferHandle with(ByteBuffer content) {
+    set(content);
+    return this;
+  }
+
+  /**
+   * Returns the number of remaining bytes in the buffer, which is the length
+   * of the content, so that a slice of a shared buffer reports its own size.
+   * @return	the length of the content or the length set for the handle if there is no buffer
+   */
+  @Override
+  public long getByteLength() {
+    return (content == null) ? super.getByteLength() : content.remaining();
+  }
+
+  @Override
+  public Class<ByteBuffer> getContentClass() {
+    return ByteBuffer.class;
+  }
+  @Override
+  public ByteBufferHandle newHandle() {
+    return new ByteBufferHandle().withFormat(getFormat()).withMimetype(getMimetype());
+  }
+  @Override
+  public ByteBufferHandle[] newHandleArray(int length) {
+    if (length < 0) throw new IllegalArgumentException("array length less than zero: "+length);
+    return new ByteBufferHandle[length];
+  }
+  @Override
+  public ByteBuffer[] newArray(int length) {
+    if (length < 0) throw new IllegalArgumentException("array length less than zero: "+length);
+    return new ByteBuffer[length];
+  }
+
+  /**
+   * Specifies the format of the content and returns the handle
+   * as a fluent convenience.
+   * @param format	the format of the content
+   * @return	this handle
+   */
+  public ByteBufferHandle withFormat(Format format) {
+    setFormat(format);
+    return this;
+  }
+  /**
+   * Specifies the mime type of the content and returns the handle
+   * as a fluent convenience.
+   * @param mimetype	the mime type of the content
+   * @return	this handle
+   */
+  public ByteBufferHandle withMimetype(String mimetype) {
+    setMimetype(mimetype);
+    return this;
+  }
+
+  @Override
+  public void fromBuffer(byte[] buffer) {
+    content = bytesToContent(buffer);
+  }
+  @Override
+  public byte[] toBuffer() {
+    return contentToBytes(content);
+  }
+  @Override
+  public ByteBuffer toContent(byte[] serialization) {
+    return bytesToContent(serialization);
+  }
+  @Override
+  public ByteBuffer bytesToContent(byte[] buffer) {
+    return (buffer == null) ? null : ByteBuffer.wrap(buffer);
+  }
+  @Override
+  public byte[] contentToBytes(ByteBuffer content) {
+    if (content == null) return null;
+    ByteBuffer source = content.duplicate();
+    byte[] bytes = new byte[source.remaining()];
+    source.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Returns the remaining bytes of the buffer as a string with the
+   * assumption that the bytes are encoded in UTF-8.
+   */
+  @Override
+  public String toString() {
+    return (content == null) ? null : StandardCharsets.UTF_8.decode(content.duplicate()).toString();
+  }
+
+  @Override
+  protected Class<byte[]> receiveAs() {
+    return byte[].class;
+  }
+  @Override
+  protected void receiveContent(byte[] content) {
+    set(bytesToContent(content));
+  }
+
+  @Override
+  protected ByteBuffer sendContent() {
+    if (content == null) {
+      throw new IllegalStateException("No buffer to write");
+    }
+    return content.asReadOnlyBuffer();
+  }
+}
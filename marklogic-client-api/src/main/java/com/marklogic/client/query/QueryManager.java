@@ -15,6 +15,8 @@
  */
 package com.marklogic.client.query;
 
+import java.util.concurrent.CompletableFuture;
+
 import javax.xml.namespace.QName;
 
 import com.marklogic.client.Transaction;
@@ -29,6 +31,7 @@ import com.marklogic.client.io.marker.TuplesReadHandle;
 import com.marklogic.client.io.marker.ValuesListReadHandle;
 import com.marklogic.client.io.marker.ValuesReadHandle;
 import com.marklogic.client.util.RequestLogger;
+import com.marklogic.client.util.ResponseCache;
 
 /**
  * A Query Manager supports searching documents and retrieving values and
@@ -88,6 +91,23 @@ public interface QueryManager {
    */
   void setPageLength(long length);
 
+  /**
+   * Specifies a cache for the responses of the search() methods. A search is
+   * answered from the cache when the cache has a response for the same client
+   * (host, port, base path, database, and user), query definition, options,
+   * collections, directory, transform, start, page length, view, forest,
+   * response format, and point-in-time query timestamp. Searches
+   * with a transaction, with a raw query definition whose handle can't be
+   * resent, or with a handle that can't be replayed are always sent to the server.
+   * @param cache	the cache or null to stop caching, which is the default
+   */
+  void setResponseCache(ResponseCache cache);
+  /**
+   * Returns the cache for the responses of the search() methods.
+   * @return	the cache or null if responses aren't cached
+   */
+  ResponseCache getResponseCache();
+
   /**
    * Returns the type of view results produced by queries.
    * @return	the view type for the queries
@@ -202,6 +222,33 @@ public interface QueryManager {
    * @return	the handle populated with the results from the search
    */
   <T extends SearchReadHandle> T search(SearchQueryDefinition querydef, T searchHandle);
+
+  /**
+   * Searches documents based on query criteria and, potentially, previously
+   * saved query options without blocking the calling thread. The request is
+   * queued on the HTTP client and any retries are scheduled on a timer. The
+   * future completes on a thread of the HTTP client after the handle has
+   * received the results, so dependent stages should hand off long-running work
+   * to an executor of the application. A response cache, if any, is consulted
+   * as for search().
+   * @param querydef	the definition of query criteria and query options
+   * @param searchHandle	a handle for reading the results from the search
+   * @param <T> the type of SearchReadHandle to return
+   * @return	a future for the handle populated with the results from the search
+   */
+  <T extends SearchReadHandle> CompletableFuture<T> searchAsync(SearchQueryDefinition querydef, T searchHandle);
+  /**
+   * Searches documents based on query criteria and, potentially, previously
+   * saved query options starting with the specified page listing
+   * without blocking the calling thread.
+   * @param querydef	the definition of query criteria and query options
+   * @param searchHandle	a handle for reading the results from the search
+   * @param start	the offset of the first document in the page (where 1 is the first result)
+   * @param <T> the type of SearchReadHandle to return
+   * @return	a future for the handle populated with the results from the search
+   * @see #searchAsync(SearchQueryDefinition, SearchReadHandle)
+   */
+  <T extends SearchReadHandle> CompletableFuture<T> searchAsync(SearchQueryDefinition querydef, T searchHandle, long start);
   /**
    * Searches documents based on query criteria and, potentially, previously
    * saved query options.
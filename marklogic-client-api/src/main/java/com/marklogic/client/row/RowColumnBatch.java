@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.row;
+
+/**
+ * A Row Column Batch holds a page of consecutive rows from a plan
+ * in columnar form, with the values of each column in a primitive array,
+ * so analytics can consume numeric and boolean columns without boxing
+ * each value.
+ *
+ * The type of each column comes from the data type in the header of the
+ * row set.  Integer types other than xs:unsignedLong are LONG columns,
+ * floating point and decimal types are DOUBLE columns (so xs:decimal
+ * values can lose precision), xs:boolean is a BOOLEAN column, and every
+ * other data type is a STRING column holding the lexical form of the value.
+ *
+ * STRING columns are dictionary-encoded: each row has a code that indexes
+ * the distinct values of the column in the batch.
+ *
+ * Each column has a null bitmap in which bit i of word (i / 64) is set if
+ * the value of the column is null for row i, which is the layout of
+ * {@link java.util.BitSet#valueOf(long[])}.  The primitive value of a null
+ * is 0, 0.0, false, or a code of -1.
+ *
+ * The arrays belong to the batch and are not copied, so callers should not
+ * modify them.
+ */
+public interface RowColumnBatch {
+    /**
+     * Identifies the type of the primitive array for a column.
+     */
+    enum ColumnType {LONG, DOUBLE, BOOLEAN, STRING}
+
+    /**
+     * Returns the number of rows in the batch, which is the length of
+     * the value arrays of every column.
+     * @return	the number of rows
+     */
+    int getRowCount();
+    /**
+     * Identifies the columns in the batch.
+     * @return	the column names
+     */
+    String[] getColumnNames();
+    /**
+     * Returns the position of a column in the batch.
+     * @param columnName	the name of the column
+     * @return	the position of the column or -1 if the batch doesn't have the column
+     */
+    int getColumnIndex(String columnName);
+    /**
+     * Returns the type of the values array for the column.
+     * @param column	the position of the column
+     * @return	the column type
+     */
+    ColumnType getColumnType(int column);
+    /**
+     * Returns the data type of the column in the header of the row set
+     * such as xs:int.
+     * @param column	the position of the column
+     * @return	the data type
+     */
+    String getDatatype(int column);
+
+    /**
+     * Returns the values of a LONG column.
+     * @param column	the position of the column
+     * @return	the values for the rows of the batch
+     */
+    long[] getLongs(int column);
+    /**
+     * Returns the values of a DOUBLE column.
+     * @param column	the position of the column
+     * @return	the values for the rows of the batch
+     */
+    double[] getDoubles(int column);
+    /**
+     * Returns the values of a BOOLEAN column.
+     * @param column	the position of the column
+     * @return	the values for the rows of the batch
+     */
+    boolean[] getBooleans(int column);
+    /**
+     * Returns the dictionary codes of a STRING column.
+     * @param column	the position of the column
+     * @return	the index in the dictionary of the value for each row of the batch
+     */
+    int[] getStringCodes(int column);
+    /**
+     * Returns the distinct values of a STRING column in the batch
+     * in the order of their first appearance.
+     * @param column	the position of the column
+     * @return	the dictionary for the column
+     */
+    String[] getStringDictionary(int column);
+    /**
+     * Returns the value of a STRING column for a row by
+     * looking up its code in the dictionary.
+     * @param column	the position of the column
+     * @param row	the position of the row in the batch
+     * @return	the value or null
+     */
+    String getString(int column, int row);
+
+    /**
+     * Returns the null bitmap of a column.
+     * @param column	the position of the column
+     * @return	the bitmap with a set bit for each row with a null value
+     */
+    long[] getNullBits(int column);
+    /**
+     * Identifies whether the value of a column is null for a row.
+     * @param column	the position of the column
+     * @param row	the position of the row in the batch
+     * @return	whether the value is null
+     */
+    boolean isNull(int column, int row);
+}
@@ -15,6 +15,8 @@
  */
 package com.marklogic.client.row;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.marklogic.client.Transaction;
 import com.marklogic.client.expression.PlanBuilder;
 import com.marklogic.client.expression.PlanBuilder.Plan;
@@ -23,6 +25,7 @@ import com.marklogic.client.io.marker.StructureReadHandle;
 import com.marklogic.client.io.marker.TextWriteHandle;
 import com.marklogic.client.io.marker.XMLReadHandle;
 import com.marklogic.client.io.marker.JSONReadHandle;
+import com.marklogic.client.util.ResponseCache;
 
 /**
  * A Row Manager provides database operations on rows projected from documents.
@@ -44,6 +47,15 @@ public interface RowManager {
      */
     public enum RowStructure{ARRAY, OBJECT}
 
+    /**
+     * Identifies the single-body format in which a streamed row set is transported.
+     * JSON_SEQ sends the header and each row as a JSON text in a sequence
+     * (application/json-seq), preserving the data types of the values.
+     * CSV sends the column names and each row as a line of comma-separated
+     * text (text/csv), which is more compact but transports every value as a string.
+     */
+    public enum RowStreamFormat{JSON_SEQ, CSV}
+
     /**
      * Returns whether data types should be emitted in each row (the default) or in the header
      * in the response for requests made with the row manager.
@@ -99,6 +111,74 @@ public interface RowManager {
 	 */
 	RowManager withUpdate(boolean update);
 
+    /**
+     * Identifies the order of the rows from a parallel resultRows() call.
+     * UNORDERED returns each row as soon as a partition has read it, which
+     * keeps every thread busy.  PARTITION returns all of the rows of the first
+     * row id partition before the rows of the next, which gives the same order
+     * for the same data on every call but can wait on a slow partition.
+     */
+    public enum ParallelOrdering{UNORDERED, PARTITION}
+
+    /**
+     * Enables parallel retrieval for the resultRows(Plan) methods that return
+     * RowRecords.  The plan is split into ranges of row ids in the same way as
+     * a RowBatcher, and the ranges are read concurrently by the specified number
+     * of threads and merged into one RowSet.  The partitions are read at the
+     * same point in time, so the rows are consistent with each other.
+     *
+     * As with a RowBatcher, the plan must read from a single view.  A plan that
+     * groups, sorts, limits, offsets, samples, removes duplicates, joins, or
+     * combines rows with another plan is retrieved serially, because each of
+     * those operations would only apply within a partition.  A plan that
+     * joins documents or constructs nodes is also retrieved serially, so the
+     * content of its node columns stays available from each RowRecord.  A call
+     * with a transaction, with an update plan, with a plan that has bound
+     * parameters, or with a query DSL, SQL, or SPARQL plan is also retrieved
+     * serially.
+     * @param threadCount	the number of concurrent requests, or 1 (the default) to retrieve serially
+     * @return	the row manager
+     */
+    RowManager withParallelism(int threadCount);
+    /**
+     * Returns the number of concurrent requests for the resultRows(Plan) methods.
+     * @return	the thread count, which is 1 for serial retrieval
+     */
+    int getParallelism();
+    /**
+     * Specifies the order of the rows for parallel retrieval.
+     * @param ordering	the ordering, which is UNORDERED by default
+     * @return	the row manager
+     */
+    RowManager withParallelOrdering(ParallelOrdering ordering);
+    /**
+     * Returns the order of the rows for parallel retrieval.
+     * @return	the ordering
+     */
+    ParallelOrdering getParallelOrdering();
+
+    /**
+     * Specifies a cache for the responses of the resultDoc() methods and of
+     * the resultRows(Plan) methods that return RowRecords.  A request is answered
+     * from the cache when the cache has a response for the same client (host,
+     * port, base path, database, and user), plan, bound parameters, datatype and
+     * row structure styles, response format, and point-in-time query timestamp.
+     * Requests with a transaction, for update
+     * plans, for plans with content parameters, or with handles that can't be
+     * replayed are always sent to the server.  Cached resultRows() calls take
+     * precedence over parallel retrieval and read the rows in the streamed
+     * JSON sequence format.  That format would put node columns inline rather
+     * than as references, so a resultRows() call for a plan that joins
+     * documents or constructs nodes, or for a query DSL plan, isn't cached.
+     * @param cache	the cache or null to stop caching, which is the default
+     */
+    void setResponseCache(ResponseCache cache);
+    /**
+     * Returns the cache for the responses of the row manager.
+     * @return	the cache or null if responses aren't cached
+     */
+    ResponseCache getResponseCache();
+
     /**
      * @return the label that will be used for all log messages associated with the "optic" trace event
      */
@@ -115,6 +195,18 @@ public interface RowManager {
      */
     Integer getOptimize();
 
+    /**
+     * Exports the AST (Abstract Syntax Tree) of a plan once and returns a plan that sends
+     * the exported bytes with each request instead of exporting the plan again.  The prepared
+     * plan is immutable and can be shared across threads; calling bindParam() on it returns
+     * a plan with different parameter values that still sends the same bytes, because the
+     * values of bound parameters travel as request parameters rather than in the AST.
+     * Parameters already bound on the plan carry over to the prepared plan.
+     * @param plan	the plan to prepare, which must have been built by a PlanBuilder or be a raw plan definition
+     * @return	a plan for constructing and retrieving database rows
+     */
+    Plan newPreparedPlan(Plan plan);
+
     /**
      * Defines a plan from a JSON serialization of the plan AST (Abstract Syntax Tree).
      * @param	handle a handle for a JSON serialization of a plan AST
@@ -228,6 +320,91 @@ public interface RowManager {
      */
     <T> RowSet<T> resultRowsAs(Plan plan, Class<T> as, Transaction transaction);
 
+    /**
+     * Constructs and retrieves a set of database rows based on a plan, transporting the
+     * rows as a single JSON sequence body instead of a multipart part for each row,
+     * and decoding each row as the iterator advances.
+     *
+     * Streaming avoids the per-row part headers, which matters most for rows with
+     * few and narrow columns.  Node columns are inlined in the row rather than sent
+     * as separate attachments.
+     * @param plan	the definition of a plan for the database rows
+     * @return	an iterable over the results with a map interface for each row
+     */
+    RowSet<RowRecord> resultRowsStream(Plan plan);
+    /**
+     * Constructs and retrieves a set of database rows based on a plan, transporting the
+     * rows as a single body in the specified format and decoding each row as the
+     * iterator advances.
+     *
+     * With the CSV format, each value has the xs:string data type and an empty
+     * value is a null.
+     * @param plan	the definition of a plan for the database rows
+     * @param format	the format for transporting the rows
+     * @return	an iterable over the results with a map interface for each row
+     */
+    RowSet<RowRecord> resultRowsStream(Plan plan, RowStreamFormat format);
+    /**
+     * Constructs and retrieves a set of database rows based on a plan, transporting the
+     * rows as a single body in the specified format and reflecting documents written or
+     * deleted by an uncommitted transaction.
+     * @param plan	the definition of a plan for the database rows
+     * @param format	the format for transporting the rows
+     * @param transaction	a open transaction for documents from which rows have been projected
+     * @return	an iterable over the results with a map interface for each row
+     */
+    RowSet<RowRecord> resultRowsStream(Plan plan, RowStreamFormat format, Transaction transaction);
+    /**
+     * Constructs and retrieves a set of database rows based on a plan, transporting the
+     * rows as a single JSON sequence body and binding each row to an instance of a class
+     * as the iterator advances.
+     *
+     * Each row is bound with Jackson databind as a JSON object whose properties are the
+     * column names, so the plan should select columns with names that match the
+     * properties of the class.  The data types go in the header regardless of the
+     * datatype style of the row manager.
+     * @param plan	the definition of a plan for the database rows
+     * @param as	the class to bind each row to
+     * @param <T> the type of the objects bound from the rows
+     * @return	an iterable over the result rows
+     */
+    <T> RowSet<T> resultRowsStreamAs(Plan plan, Class<T> as);
+    /**
+     * Constructs and retrieves a set of database rows based on a plan, transporting the
+     * rows as a single body in the specified format and binding each row to an instance
+     * of a class as the iterator advances.
+     *
+     * With the CSV format, each column is bound as a string.
+     * @param plan	the definition of a plan for the database rows
+     * @param as	the class to bind each row to
+     * @param format	the format for transporting the rows
+     * @param transaction	a open transaction for documents from which rows have been projected
+     * @param <T> the type of the objects bound from the rows
+     * @return	an iterable over the result rows
+     */
+    <T> RowSet<T> resultRowsStreamAs(Plan plan, Class<T> as, RowStreamFormat format, Transaction transaction);
+
+    /**
+     * Constructs and retrieves the database rows for a plan as a set of
+     * batches in columnar form, with the values of each column in a primitive
+     * array.  The rows are streamed as a single JSON sequence body and each
+     * batch is filled directly from the parser as the iterator advances.
+     * @param plan	the definition of a plan for the database rows
+     * @param rowsPerBatch	the maximum number of rows in each batch
+     * @return	an iterable over the batches of rows
+     */
+    RowSet<RowColumnBatch> resultColumnBatches(Plan plan, int rowsPerBatch);
+    /**
+     * Constructs and retrieves the database rows for a plan as a set of
+     * batches in columnar form, reflecting documents written or deleted by
+     * an uncommitted transaction.
+     * @param plan	the definition of a plan for the database rows
+     * @param rowsPerBatch	the maximum number of rows in each batch
+     * @param transaction	a open transaction for documents from which rows have been projected
+     * @return	an iterable over the batches of rows
+     */
+    RowSet<RowColumnBatch> resultColumnBatches(Plan plan, int rowsPerBatch, Transaction transaction);
+
     /**
      * Constructs and retrieves a set of database rows based on a plan using
      * a handle to get the set of rows as a single JSON or XML structure.
@@ -248,6 +425,20 @@ public interface RowManager {
      * @return	the JSON or XML handle populated with the set of rows
      */
     <T extends StructureReadHandle> T resultDoc(Plan plan, T handle, Transaction transaction);
+    /**
+     * Constructs and retrieves a set of database rows based on a plan using
+     * a handle to get the set of rows as a single JSON or XML structure
+     * without blocking the calling thread.  The request is queued on the HTTP
+     * client and any retries are scheduled on a timer.  The future completes on
+     * a thread of the HTTP client after the handle has received the rows, so
+     * dependent stages should hand off long-running work to an executor of the
+     * application.  A response cache, if any, is consulted as for resultDoc().
+     * @param plan	the definition of a plan for the database rows
+     * @param handle	the JSON or XML handle for the set of rows
+     * @param <T> the type of the row handle
+     * @return	a future for the JSON or XML handle populated with the set of rows
+     */
+    <T extends StructureReadHandle> CompletableFuture<T> resultDocAsync(Plan plan, T handle);
 
     /**
      * Constructs and retrieves a set of database rows based on a plan
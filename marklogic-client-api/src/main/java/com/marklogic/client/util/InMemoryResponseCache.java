@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link ResponseCache} in the heap of the client that evicts the least
+ * recently used responses once their total size passes a limit and expires
+ * responses a fixed time after they were cached. Applications that know when
+ * the database changed can also drop the responses read before a server
+ * timestamp with {@link #invalidateBefore(long)}.
+ */
+public class InMemoryResponseCache implements ResponseCache {
+  private final long maxBytes;
+  private final long ttlNanos;
+  private final LongSupplier clock;
+
+  private final LinkedHashMap<String, CachedEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes = 0;
+
+  /**
+   * Creates a cache.
+   * @param maxBytes	the maximum total size of the cached response bodies
+   * @param timeToLive	how long a response stays in the cache
+   * @param unit	the unit for the time to live
+   */
+  public InMemoryResponseCache(long maxBytes, long timeToLive, TimeUnit unit) {
+    this(maxBytes, timeToLive, unit, System::nanoTime);
+  }
+  InMemoryResponseCache(long maxBytes, long timeToLive, TimeUnit unit, LongSupplier clock) {
+    if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be greater than 0: " + maxBytes);
+    if (timeToLive <= 0) throw new IllegalArgumentException("timeToLive must be greater than 0: " + timeToLive);
+    if (unit == null) throw new IllegalArgumentException("unit must not be null");
+    this.maxBytes = maxBytes;
+    this.ttlNanos = unit.toNanos(timeToLive);
+    this.clock = clock;
+  }
+
+  @Override
+  public synchronized Entry get(String key) {
+    CachedEntry cached = entries.get(key);
+    if (cached == null) {
+      return null;
+    }
+    if (clock.getAsLong() - cached.cachedAt >= ttlNanos) {
+      remove(key);
+      return null;
+    }
+    return cached.entry;
+  }
+
+  @Override
+  public synchronized void put(String key, Entry entry) {
+    if (key == null) throw new IllegalArgumentException("key must not be null");
+    if (entry == null) throw new IllegalArgumentException("entry must not be null");
+    remove(key);
+    long size = entry.getContent().length;
+    if (size > maxBytes) {
+      return;
+    }
+    entries.put(key, new CachedEntry(entry, clock.getAsLong()));
+    totalBytes += size;
+    Iterator<CachedEntry> eldest = entries.values().iterator();
+    while (totalBytes > maxBytes && eldest.hasNext()) {
+      totalBytes -= eldest.next().entry.getContent().length;
+      eldest.remove();
+    }
+  }
+
+  @Override
+  public synchronized void invalidate(String key) {
+    remove(key);
+  }
+
+  @Override
+  public synchronized void invalidateAll() {
+    entries.clear();
+    totalBytes = 0;
+  }
+
+  /**
+   * Removes the responses that the server produced before a timestamp,
+   * such as the timestamp of a write that changed the data. Responses
+   * without a server timestamp are also removed.
+   * @param serverTimestamp	the server timestamp of the change
+   */
+  public synchronized void invalidateBefore(long serverTimestamp) {
+    Iterator<CachedEntry> cached = entries.values().iterator();
+    while (cached.hasNext()) {
+      Entry entry = cached.next().entry;
+      if (entry.getServerTimestamp() < serverTimestamp) {
+        totalBytes -= entry.getContent().length;
+        cached.remove();
+      }
+    }
+  }
+
+  /**
+   * @return the number of cached responses, including expired responses that haven't been evicted yet
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the total size of the cached response bodies
+   */
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  private void remove(String key) {
+    CachedEntry removed = entries.remove(key);
+    if (removed != null) {
+      totalBytes -= removed.entry.getContent().length;
+    }
+  }
+
+  private static class CachedEntry {
+    private final Entry entry;
+    private final long cachedAt;
+    CachedEntry(Entry entry, long cachedAt) {
+      this.entry = entry;
+      this.cachedAt = cachedAt;
+    }
+  }
+}
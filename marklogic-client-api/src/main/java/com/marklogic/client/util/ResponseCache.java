@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.util;
+
+import com.marklogic.client.io.Format;
+
+/**
+ * A store for the response bodies of repeated reads, consulted by
+ * {@link com.marklogic.client.row.RowManager#setResponseCache RowManager} and
+ * {@link com.marklogic.client.query.QueryManager#setResponseCache QueryManager}
+ * before sending a request. The key of an entry identifies the client that
+ * sends the request (the host, port, base path, database, and user), the
+ * endpoint, the serialized plan or query, the request parameters (including
+ * bound parameter values and options), the format of the response, and any
+ * point-in-time query timestamp. Because the key includes the client, one
+ * cache can be shared by clients for different users or databases without
+ * answering one user's request with another user's response.
+ *
+ * <p>The key does not identify server-side state outside the request, such
+ * as the content of persisted query options, a transform, or the documents
+ * themselves, so a cached response can outlive changes to that state.</p>
+ *
+ * <p>Implementations must be safe for use by multiple threads. Because the
+ * key includes the point-in-time query timestamp, responses for reads at a
+ * fixed timestamp never go stale; other entries are only as fresh as the
+ * eviction policy of the implementation allows.</p>
+ *
+ * @see InMemoryResponseCache
+ */
+public interface ResponseCache {
+  /**
+   * Returns the cached response for a key.
+   * @param key	the key for the request
+   * @return	the cached response or null if the response isn't cached
+   */
+  Entry get(String key);
+
+  /**
+   * Caches the response for a key, replacing any earlier response.
+   * @param key	the key for the request
+   * @param entry	the response
+   */
+  void put(String key, Entry entry);
+
+  /**
+   * Removes the cached response for a key, if any.
+   * @param key	the key for the request
+   */
+  void invalidate(String key);
+
+  /**
+   * Removes every cached response.
+   */
+  void invalidateAll();
+
+  /**
+   * An immutable cached response body with the metadata needed to replay it
+   * into a handle.
+   */
+  final class Entry {
+    private final byte[] content;
+    private final Format format;
+    private final String mimetype;
+    private final long   serverTimestamp;
+
+    /**
+     * Creates a cached response. The entry takes ownership of the content,
+     * which must not be modified afterwards.
+     * @param content	the bytes of the response body
+     * @param format	the format of the response body
+     * @param mimetype	the mimetype of the response body
+     * @param serverTimestamp	the server timestamp of the response or -1 if unknown
+     */
+    public Entry(byte[] content, Format format, String mimetype, long serverTimestamp) {
+      if (content == null) throw new IllegalArgumentException("content must not be null");
+      this.content = content;
+      this.format = format;
+      this.mimetype = mimetype;
+      this.serverTimestamp = serverTimestamp;
+    }
+
+    /**
+     * @return the bytes of the response body, which must not be modified
+     */
+    public byte[] getContent() {
+      return content;
+    }
+    /**
+     * @return the format of the response body
+     */
+    public Format getFormat() {
+      return format;
+    }
+    /**
+     * @return the mimetype of the response body
+     */
+    public String getMimetype() {
+      return mimetype;
+    }
+    /**
+     * @return the server timestamp of the response or -1 if unknown
+     */
+    public long getServerTimestamp() {
+      return serverTimestamp;
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.util;
+
+import com.marklogic.client.document.DocumentPage;
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.eval.EvalResult;
+import com.marklogic.client.eval.EvalResultIterator;
+import com.marklogic.client.row.RowSet;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Adapts a streamed result to a Reactive Streams
+ * {@link org.reactivestreams.Publisher Publisher} with demand-driven
+ * backpressure. The publisher reads the next item from the result only
+ * when the subscriber has requested it, so request(n) controls how far
+ * the client reads ahead on the HTTP response. No thread is held while
+ * the subscriber has no outstanding demand. Cancelling the subscription,
+ * as well as completion or failure, closes the result and releases the
+ * connection.
+ *
+ * A ResultPublisher can be subscribed only once, because the result can
+ * be read only once. The items are read and delivered on the executor,
+ * which defaults to a shared pool of daemon threads, or of virtual threads
+ * when the JVM supports them.
+ *
+ * Results such as the streams from a data service
+ * {@link com.marklogic.client.dataservices.OutputCaller OutputCaller} that are
+ * buffered in full by the client still honor the requested demand but do not
+ * limit reading from the response.
+ *
+ * @param <T> the type of the published items
+ */
+public final class ResultPublisher<T> implements Publisher<T> {
+  private static final Executor DEFAULT_EXECUTOR = makeDefaultExecutor();
+
+  private final Iterator<T> iterator;
+  private final AutoCloseable closer;
+  private final Executor executor;
+  private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+  private ResultPublisher(Iterator<T> iterator, AutoCloseable closer, Executor executor) {
+    if (executor == null) throw new IllegalArgumentException("executor must not be null");
+    this.iterator = iterator;
+    this.closer = closer;
+    this.executor = executor;
+  }
+
+  /**
+   * Publishes the rows of a row set.
+   * @param rows the row set from {@link com.marklogic.client.row.RowManager#resultRows RowManager.resultRows()}
+   * @param <T> the type of the rows
+   * @return the publisher for the rows
+   */
+  public static <T> ResultPublisher<T> fromRowSet(RowSet<T> rows) {
+    return fromRowSet(rows, DEFAULT_EXECUTOR);
+  }
+  /**
+   * Publishes the rows of a row set, reading and delivering them on the executor.
+   * @param rows the row set from {@link com.marklogic.client.row.RowManager#resultRows RowManager.resultRows()}
+   * @param executor the executor for reading and delivering the rows
+   * @param <T> the type of the rows
+   * @return the publisher for the rows
+   */
+  public static <T> ResultPublisher<T> fromRowSet(RowSet<T> rows, Executor executor) {
+    if (rows == null) throw new IllegalArgumentException("rows must not be null");
+    return new ResultPublisher<>(rows.iterator(), rows, executor);
+  }
+
+  /**
+   * Publishes the documents of a page.
+   * @param page the page of documents from a multi-document read or search
+   * @return the publisher for the documents
+   */
+  public static ResultPublisher<DocumentRecord> fromDocumentPage(DocumentPage page) {
+    return fromDocumentPage(page, DEFAULT_EXECUTOR);
+  }
+  /**
+   * Publishes the documents of a page, reading and delivering them on the executor.
+   * @param page the page of documents from a multi-document read or search
+   * @param executor the executor for reading and delivering the documents
+   * @return the publisher for the documents
+   */
+  public static ResultPublisher<DocumentRecord> fromDocumentPage(DocumentPage page, Executor executor) {
+    if (page == null) throw new IllegalArgumentException("page must not be null");
+    return new ResultPublisher<>(page.iterator(), page, executor);
+  }
+
+  /**
+   * Publishes the results of a server-side eval or invoke.
+   * @param results the results of the call
+   * @return the publisher for the results
+   */
+  public static ResultPublisher<EvalResult> fromEvalResults(EvalResultIterator results) {
+    return fromEvalResults(results, DEFAULT_EXECUTOR);
+  }
+  /**
+   * Publishes the results of a server-side eval or invoke, reading and
+   * delivering them on the executor.
+   * @param results the results of the call
+   * @param executor the executor for reading and delivering the results
+   * @return the publisher for the results
+   */
+  public static ResultPublisher<EvalResult> fromEvalResults(EvalResultIterator results, Executor executor) {
+    if (results == null) throw new IllegalArgumentException("results must not be null");
+    return new ResultPublisher<>(results, results, executor);
+  }
+
+  /**
+   * Publishes the items of a stream such as the output of a data service endpoint.
+   * @param items the stream of items
+   * @param <T> the type of the items
+   * @return the publisher for the items
+   */
+  public static <T> ResultPublisher<T> fromStream(Stream<T> items) {
+    return fromStream(items, DEFAULT_EXECUTOR);
+  }
+  /**
+   * Publishes the items of a stream such as the output of a data service
+   * endpoint, reading and delivering them on the executor.
+   * @param items the stream of items
+   * @param executor the executor for reading and delivering the items
+   * @param <T> the type of the items
+   * @return the publisher for the items
+   */
+  public static <T> ResultPublisher<T> fromStream(Stream<T> items, Executor executor) {
+    if (items == null) throw new IllegalArgumentException("items must not be null");
+    return new ResultPublisher<>(items.iterator(), items, executor);
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super T> subscriber) {
+    if (subscriber == null) throw new NullPointerException("subscriber must not be null");
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(EmptySubscription.INSTANCE);
+      subscriber.onError(new IllegalStateException("A result can be published to only one subscriber"));
+      return;
+    }
+    ResultSubscription<T> subscription = new ResultSubscription<>(iterator, closer, executor, subscriber);
+    subscriber.onSubscribe(subscription);
+  }
+
+  private static Executor makeDefaultExecutor() {
+    ThreadFactory threadFactory = VirtualThreads.newThreadFactoryIfAvailable("marklogic-result-publisher-");
+    if (threadFactory != null) {
+      return Executors.newCachedThreadPool(threadFactory);
+    }
+    AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "marklogic-result-publisher-" + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // The drain loop runs on the executor only while there is demand or a
+  // pending signal; the work-in-progress counter keeps at most one drain
+  // running so the subscriber is signaled serially.
+  static class ResultSubscription<T> implements Subscription, Runnable {
+    private final Iterator<T> iterator;
+    private final AutoCloseable closer;
+    private final Executor executor;
+    private final Subscriber<? super T> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger workInProgress = new AtomicInteger();
+    private volatile boolean cancelled = false;
+    private volatile Throwable invalidRequest;
+    private boolean done = false;
+
+    ResultSubscription(Iterator<T> iterator, AutoCloseable closer, Executor executor,
+                       Subscriber<? super T> subscriber) {
+      this.iterator = iterator;
+      this.closer = closer;
+      this.executor = executor;
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException(
+          "A subscriber must request a positive number of items instead of "+n);
+      } else {
+        long current;
+        long next;
+        do {
+          current = demand.get();
+          if (current == Long.MAX_VALUE) break;
+          next = current + n;
+          if (next < 0) next = Long.MAX_VALUE;
+        } while (!demand.compareAndSet(current, next));
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      schedule();
+    }
+
+    private void schedule() {
+      if (workInProgress.getAndIncrement() != 0) return;
+      try {
+        executor.execute(this);
+      } catch (RuntimeException e) {
+        cancelled = true;
+        close();
+        subscriber.onError(e);
+      }
+    }
+
+    @Override
+    public void run() {
+      int missed = 1;
+      while (true) {
+        if (done) return;
+        if (cancelled) {
+          finish();
+          return;
+        }
+        if (invalidRequest != null) {
+          finish();
+          subscriber.onError(invalidRequest);
+          return;
+        }
+
+        long requested = demand.get();
+        long emitted = 0;
+        while (emitted != requested) {
+          if (cancelled) {
+            finish();
+            return;
+          }
+          T next;
+          try {
+            if (!iterator.hasNext()) {
+              finish();
+              subscriber.onComplete();
+              return;
+            }
+            next = iterator.next();
+          } catch (Throwable e) {
+            finish();
+            subscriber.onError(e);
+            return;
+          }
+          try {
+            subscriber.onNext(next);
+          } catch (Throwable e) {
+            // a subscriber must not throw, so stop publishing without a further signal
+            cancelled = true;
+            finish();
+            return;
+          }
+          emitted++;
+        }
+        if (emitted != 0 && requested != Long.MAX_VALUE) {
+          demand.addAndGet(-emitted);
+        }
+
+        missed = workInProgress.addAndGet(-missed);
+        if (missed == 0) return;
+      }
+    }
+
+    private void finish() {
+      done = true;
+      close();
+    }
+
+    private void close() {
+      if (closer == null) return;
+      try {
+        closer.close();
+      } catch (Exception e) {
+        // the result has been read or abandoned, so a failure to close is not actionable
+      }
+    }
+  }
+
+  enum EmptySubscription implements Subscription {
+    INSTANCE;
+
+    @Override
+    public void request(long n) {
+    }
+    @Override
+    public void cancel() {
+    }
+  }
+}
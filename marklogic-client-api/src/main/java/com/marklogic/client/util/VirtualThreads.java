@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates thread factories for virtual threads when the JVM supports them
+ * (Java 21 and later), for use with
+ * {@link com.marklogic.client.datamovement.DataMovementManager#withThreadFactory DataMovementManager.withThreadFactory}
+ * and the bulk callers of the data service endpoints. Batches spend nearly
+ * all their time waiting on the network, so virtual threads let a job keep
+ * thousands of requests in flight without an operating system thread for
+ * each. The client is built for Java 8, so the virtual thread API is looked
+ * up reflectively.
+ */
+public final class VirtualThreads {
+  private static final Method OF_VIRTUAL = findOfVirtual();
+  private static final Method BUILDER_NAME = findBuilderMethod("name", String.class, long.class);
+  private static final Method BUILDER_FACTORY = findBuilderMethod("factory");
+  private static final boolean AVAILABLE = checkAvailable();
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return whether the JVM can create virtual threads
+   */
+  public static boolean isAvailable() {
+    return AVAILABLE;
+  }
+
+  /**
+   * Creates a factory for virtual threads named with the prefix and a
+   * sequence number.
+   *
+   * @param namePrefix the prefix for the names of the threads
+   * @return the thread factory
+   * @throws UnsupportedOperationException if the JVM can't create virtual threads
+   */
+  public static ThreadFactory newThreadFactory(String namePrefix) {
+    if (namePrefix == null) throw new IllegalArgumentException("namePrefix must not be null");
+    if (!AVAILABLE) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+    try {
+      return makeThreadFactory(namePrefix);
+    } catch (ReflectiveOperationException e) {
+      throw new UnsupportedOperationException("Unable to create a virtual thread factory", e);
+    }
+  }
+
+  /**
+   * Creates a factory for virtual threads if the JVM supports them, and
+   * otherwise returns null, which leaves the default platform threads in use.
+   *
+   * @param namePrefix the prefix for the names of the threads
+   * @return the thread factory, or null if the JVM can't create virtual threads
+   */
+  public static ThreadFactory newThreadFactoryIfAvailable(String namePrefix) {
+    return AVAILABLE ? newThreadFactory(namePrefix) : null;
+  }
+
+  private static ThreadFactory makeThreadFactory(String namePrefix) throws ReflectiveOperationException {
+    Object builder = OF_VIRTUAL.invoke(null);
+    builder = BUILDER_NAME.invoke(builder, namePrefix, 0L);
+    return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+  }
+
+  private static Method findOfVirtual() {
+    try {
+      return Thread.class.getMethod("ofVirtual");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static Method findBuilderMethod(String name, Class<?>... parameterTypes) {
+    try {
+      return Class.forName("java.lang.Thread$Builder").getMethod(name, parameterTypes);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  // Java 19 and 20 have the methods as a preview feature that throws unless previews are enabled
+  private static boolean checkAvailable() {
+    if (OF_VIRTUAL == null || BUILDER_NAME == null || BUILDER_FACTORY == null) return false;
+    try {
+      makeThreadFactory("probe");
+      return true;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.marklogic.client.datamovement;
+
+import com.marklogic.client.FailedRequestException;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.impl.FailedRequest;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AimdConcurrencyControllerTest {
+
+	@Test
+	public void increasesByOnePerWindow() {
+		AimdConcurrencyController controller = new AimdConcurrencyController();
+		controller.initialize(4);
+		assertEquals(4, controller.getLimit());
+
+		complete(controller, 3, 100);
+		assertEquals(4, controller.getLimit(), "The limit only changes once a full window of requests completes");
+		complete(controller, 1, 100);
+		assertEquals(5, controller.getLimit());
+		complete(controller, 5, 100);
+		assertEquals(6, controller.getLimit());
+	}
+
+	@Test
+	public void stopsAtMaxLimit() {
+		AimdConcurrencyController controller = new AimdConcurrencyController();
+		controller.initialize(2);
+		complete(controller, 1000, 100);
+		assertEquals(8, controller.getLimit(), "The default max is four times the initial thread count");
+
+		controller = new AimdConcurrencyController().withMaxLimit(3);
+		controller.initialize(2);
+		complete(controller, 1000, 100);
+		assertEquals(3, controller.getLimit());
+	}
+
+	@Test
+	public void overloadHalvesLimit() {
+		AimdConcurrencyController controller = new AimdConcurrencyController();
+		controller.initialize(8);
+		controller.onRequestComplete("host", 100, overloaded(503));
+		complete(controller, 6, 100);
+		assertEquals(8, controller.getLimit());
+		controller.onRequestComplete("host", 100, overloaded(503));
+		assertEquals(4, controller.getLimit(), "Several overload errors in one window only back off once");
+
+		controller.onRequestComplete("host", 100, new MarkLogicIOException(new SocketTimeoutException()));
+		complete(controller, 3, 100);
+		assertEquals(2, controller.getLimit(), "A socket timeout counts as overload");
+
+		complete(controller, 2, 100);
+		assertEquals(3, controller.getLimit());
+	}
+
+	@Test
+	public void otherFailuresAreIgnored() {
+		AimdConcurrencyController controller = new AimdConcurrencyController();
+		controller.initialize(2);
+		controller.onRequestComplete("host", 100, overloaded(400));
+		controller.onRequestComplete("host", 100, new IllegalStateException());
+		assertEquals(2, controller.getLimit());
+		assertFalse(AimdConcurrencyController.isOverloaded(new FailedRequestException("no status")));
+	}
+
+	@Test
+	public void risingLatencyLowersLimit() {
+		AimdConcurrencyController controller = new AimdConcurrencyController().withMinLimit(5);
+		controller.initialize(10);
+		complete(controller, 10, 100);
+		assertEquals(11, controller.getLimit());
+
+		complete(controller, 11, 1000);
+		assertEquals(9, controller.getLimit(), "Latency over twice the baseline lowers the limit by 10%");
+		complete(controller, 40, 1000);
+		assertEquals(5, controller.getLimit(), "The limit doesn't go below the min");
+	}
+
+	private void complete(ConcurrencyController controller, int count, long latencyMillis) {
+		for (int i = 0; i < count; i++) {
+			controller.onRequestComplete("host", latencyMillis, null);
+		}
+	}
+
+	private FailedRequestException overloaded(int status) {
+		FailedRequest failedRequest = new FailedRequest();
+		failedRequest.setStatusCode(status);
+		return new FailedRequestException("failed", failedRequest);
+	}
+}
@@ -0,0 +1,114 @@
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.datamovement.FileCheckpointStore;
+import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.datamovement.QueryCheckpoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryCheckpointTrackerTest {
+
+	@Test
+	public void cursorOnlyAdvancesOverContiguousBatches() {
+		QueryCheckpointTracker tracker = new QueryCheckpointTracker(null);
+		tracker.batchRetrieved("f1", "/b", 2);
+		tracker.batchRetrieved("f1", "/d", 2);
+		tracker.batchRetrieved("f1", "/f", 2);
+
+		tracker.batchProcessed("f1", "/d");
+		assertNull(tracker.toCheckpoint(null).getForest("f1"), "The first batch is still running");
+
+		tracker.batchProcessed("f1", "/b");
+		QueryCheckpoint.ForestCursor cursor = tracker.toCheckpoint(null).getForest("f1");
+		assertEquals("/d", cursor.getAfterUri(), "Both finished batches are covered once the first one finishes");
+		assertEquals(4, cursor.getUrisProcessed());
+		assertFalse(cursor.isDone());
+
+		tracker.forestExhausted("f1");
+		assertFalse(tracker.toCheckpoint(null).getForest("f1").isDone(), "The last batch is still running");
+		tracker.batchProcessed("f1", "/f");
+		cursor = tracker.toCheckpoint(null).getForest("f1");
+		assertEquals("/f", cursor.getAfterUri());
+		assertEquals(6, cursor.getUrisProcessed());
+		assertTrue(cursor.isDone());
+	}
+
+	@Test
+	public void retrievedAgainBeforeCursorIsIgnored() {
+		QueryCheckpointTracker tracker = new QueryCheckpointTracker(null);
+		tracker.batchRetrieved("f1", "/b", 2);
+		tracker.batchProcessed("f1", "/b");
+		tracker.batchRetrieved("f1", "/b", 2);
+		tracker.batchRetrieved("f1", "/d", 2);
+		tracker.batchProcessed("f1", "/b");
+		QueryCheckpoint.ForestCursor cursor = tracker.toCheckpoint(null).getForest("f1");
+		assertEquals("/b", cursor.getAfterUri());
+		assertEquals(2, cursor.getUrisProcessed(), "A batch is only counted once");
+	}
+
+	@Test
+	public void resumedCursorIsKept() {
+		QueryCheckpoint resumeFrom = new QueryCheckpoint(42L, Arrays.asList(
+			new QueryCheckpoint.ForestCursor("f1", "/m", 100, false),
+			new QueryCheckpoint.ForestCursor("f2", "/z", 7, true)));
+		QueryCheckpointTracker tracker = new QueryCheckpointTracker(resumeFrom);
+		tracker.batchRetrieved("f1", "/p", 3);
+		tracker.batchProcessed("f1", "/p");
+
+		QueryCheckpoint checkpoint = tracker.toCheckpoint(42L);
+		assertEquals("/p", checkpoint.getForest("f1").getAfterUri());
+		assertEquals(103, checkpoint.getForest("f1").getUrisProcessed());
+		assertTrue(checkpoint.getForest("f2").isDone());
+	}
+
+	@Test
+	public void fileStoreRoundTrip(@TempDir Path tempDir) {
+		FileCheckpointStore store = new FileCheckpointStore(tempDir.resolve("job.checkpoint"));
+		assertNull(store.load());
+
+		QueryCheckpoint checkpoint = new QueryCheckpoint(12345L, Arrays.asList(
+			new QueryCheckpoint.ForestCursor("f1", "/a \"quoted\" uri.json", 10, false),
+			new QueryCheckpoint.ForestCursor("f2", null, 0, true)));
+		store.save(checkpoint.toJson());
+		store.save(checkpoint.toJson());
+
+		QueryCheckpoint loaded = QueryCheckpoint.fromJson(store.load());
+		assertEquals(Long.valueOf(12345L), loaded.getServerTimestamp());
+		assertEquals("/a \"quoted\" uri.json", loaded.getForest("f1").getAfterUri());
+		assertEquals(10, loaded.getForest("f1").getUrisProcessed());
+		assertFalse(loaded.getForest("f1").isDone());
+		assertNull(loaded.getForest("f2").getAfterUri());
+		assertTrue(loaded.getForest("f2").isDone());
+
+		store.clear();
+		assertNull(store.load());
+		store.clear();
+
+		assertNull(QueryCheckpoint.fromJson("{\"forests\":[]}").getServerTimestamp());
+		assertThrows(IllegalArgumentException.class, () -> QueryCheckpoint.fromJson("not json"));
+	}
+
+	@Test
+	public void completeOnlyWhenEveryForestIsDone() {
+		Forest[] forests = {newForest("f1"), newForest("f2")};
+		QueryCheckpointTracker tracker = new QueryCheckpointTracker(null);
+		tracker.batchRetrieved("f1", "/b", 2);
+		tracker.batchProcessed("f1", "/b");
+		tracker.forestExhausted("f1");
+		assertFalse(QueryBatcherImpl.isComplete(tracker.toCheckpoint(null), forests), "f2 hasn't been read");
+
+		tracker.forestExhausted("f2");
+		assertTrue(QueryBatcherImpl.isComplete(tracker.toCheckpoint(null), forests));
+		assertFalse(QueryBatcherImpl.isComplete(tracker.toCheckpoint(null),
+			new Forest[]{newForest("f1"), newForest("f3")}), "A forest the checkpoint doesn't know isn't done");
+	}
+
+	private Forest newForest(String name) {
+		return new ForestImpl("localhost", null, null, null, "Documents", name, name, true, false);
+	}
+}
@@ -0,0 +1,70 @@
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.datamovement.RowBatcherCheckpoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowBatchCheckpointTrackerTest {
+
+	@Test
+	public void outOfOrderCompletion() {
+		RowBatchCheckpointTracker tracker = new RowBatchCheckpointTracker(10, null);
+		tracker.completed(2);
+		tracker.completed(3);
+		tracker.completed(5);
+
+		RowBatcherCheckpoint checkpoint = tracker.toCheckpoint(null);
+		assertEquals(0, checkpoint.getCompletedThrough(), "Batch 1 hasn't completed");
+		List<long[]> ranges = checkpoint.getCompletedRanges();
+		assertEquals(2, ranges.size());
+		assertArrayEquals(new long[]{2, 3}, ranges.get(0));
+		assertArrayEquals(new long[]{5, 5}, ranges.get(1));
+		assertTrue(checkpoint.isCompleted(3));
+		assertFalse(checkpoint.isCompleted(4));
+
+		tracker.completed(1);
+		checkpoint = tracker.toCheckpoint(null);
+		assertEquals(3, checkpoint.getCompletedThrough(), "Completing batch 1 closes the gap up to batch 3");
+		assertEquals(1, checkpoint.getCompletedRanges().size());
+		assertFalse(checkpoint.isDone());
+	}
+
+	@Test
+	public void resumeSkipsCompletedBatches() {
+		RowBatchCheckpointTracker first = new RowBatchCheckpointTracker(6, null);
+		first.completed(1);
+		first.completed(2);
+		first.completed(4);
+		first.completed(6);
+		String json = first.toCheckpoint(987L).toJson();
+
+		RowBatcherCheckpoint loaded = RowBatcherCheckpoint.fromJson(json);
+		assertEquals(6, loaded.getBatchCount());
+		assertEquals(Long.valueOf(987L), loaded.getServerTimestamp());
+		assertEquals(2, loaded.getCompletedThrough());
+
+		RowBatchCheckpointTracker resumed = new RowBatchCheckpointTracker(loaded.getBatchCount(), loaded);
+		assertTrue(resumed.isCompleted(1));
+		assertTrue(resumed.isCompleted(4));
+		assertTrue(resumed.isCompleted(6));
+		assertFalse(resumed.isCompleted(3));
+		assertFalse(resumed.isCompleted(5));
+
+		resumed.completed(5);
+		resumed.completed(3);
+		RowBatcherCheckpoint done = resumed.toCheckpoint(987L);
+		assertEquals(6, done.getCompletedThrough());
+		assertTrue(done.getCompletedRanges().isEmpty());
+		assertTrue(done.isDone());
+	}
+
+	@Test
+	public void invalidCheckpoint() {
+		assertThrows(IllegalArgumentException.class, () -> RowBatcherCheckpoint.fromJson("{}"));
+		assertThrows(IllegalArgumentException.class,
+			() -> RowBatcherCheckpoint.fromJson("{\"batchCount\":3,\"completedThrough\":4}"));
+	}
+}
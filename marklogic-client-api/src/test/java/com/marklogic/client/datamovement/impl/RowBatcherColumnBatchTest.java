@@ -0,0 +1,64 @@
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.impl.RESTServices;
+import com.marklogic.client.impl.RowManagerImpl;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.row.RowColumnBatch;
+import com.marklogic.client.row.RowSet;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowBatcherColumnBatchTest {
+
+	private static final char RS = 0x1E;
+
+	@Test
+	public void batchesHaveBatchSizeRows() throws Exception {
+		String body = RS + "{\"columns\":[{\"name\":\"id\",\"type\":\"xs:long\"}]}\n" +
+			RS + "{\"id\":1}\n" + RS + "{\"id\":2}\n" + RS + "{\"id\":3}\n";
+		RowManagerImpl rowMgr = new RowManagerImpl(newServices(body));
+
+		DatabaseClient client = DatabaseClientFactory.newClient("localhost", 8000,
+			new DatabaseClientFactory.DigestAuthContext("user", "password"), DatabaseClient.ConnectionType.GATEWAY);
+		try {
+			RowBatcherImpl<RowSet<RowColumnBatch>> rowBatcher = new RowBatcherImpl<>(new DataMovementManagerImpl(client));
+			rowBatcher.withBatchSize(2);
+
+			PlanBuilder.Plan plan = rowMgr.newPlanBuilder().fromView("opticUnitTest", "musician");
+			RowSet<RowColumnBatch> batches = rowBatcher.readRowStream(rowMgr, plan, new InputStreamHandle());
+			assertNotNull(batches);
+			Iterator<RowColumnBatch> iterator = batches.iterator();
+
+			RowColumnBatch first = iterator.next();
+			assertEquals(2, first.getRowCount(),
+				"Each column batch is bounded by the batch size rather than the size of the rowid range");
+			assertArrayEquals(new long[]{1, 2}, first.getLongs(0));
+			assertEquals(1, iterator.next().getRowCount());
+			assertFalse(iterator.hasNext());
+			batches.close();
+		} finally {
+			client.release();
+		}
+	}
+
+	private RESTServices newServices(String body) {
+		return (RESTServices) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RESTServices.class},
+			(proxy, method, args) -> {
+				if (!"postResource".equals(method.getName())) {
+					throw new UnsupportedOperationException(method.getName());
+				}
+				InputStreamHandle output = (InputStreamHandle) args[args.length - 1];
+				output.set(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+				return output;
+			});
+	}
+}
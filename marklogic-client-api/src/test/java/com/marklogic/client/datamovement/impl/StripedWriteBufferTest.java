@@ -0,0 +1,130 @@
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.document.DocumentWriteOperation;
+import com.marklogic.client.impl.DocumentWriteOperationImpl;
+import com.marklogic.client.io.StringHandle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripedWriteBufferTest {
+
+	private final List<List<DocumentWriteOperation>> batches = new ArrayList<>();
+
+	@Test
+	public void singleThreadKeepsOrder() {
+		StripedWriteBuffer buffer = new StripedWriteBuffer(3, -1, 4);
+		assertEquals(4, buffer.getStripeCount());
+
+		buffer.add(doc("/1"), 0, batches::add);
+		buffer.add(doc("/2"), 0, batches::add);
+		assertEquals(0, batches.size());
+		buffer.add(doc("/3"), 0, batches::add);
+		assertEquals(1, batches.size(), "The third doc fills the batch");
+		List<DocumentWriteOperation> batch = batches.get(0);
+		assertEquals("/1", batch.get(0).getUri());
+		assertEquals("/2", batch.get(1).getUri());
+		assertEquals("/3", batch.get(2).getUri());
+
+		buffer.add(doc("/4"), 0, batches::add);
+		assertEquals(1, batches.size());
+		List<DocumentWriteOperation> remaining = buffer.drain();
+		assertEquals(1, remaining.size());
+		assertEquals("/4", remaining.get(0).getUri());
+		assertTrue(buffer.drain().isEmpty(), "drain empties the buffer");
+	}
+
+	@Test
+	public void stripeCountIsPowerOfTwo() {
+		assertEquals(1, new StripedWriteBuffer(10, -1, 1).getStripeCount());
+		assertEquals(8, new StripedWriteBuffer(10, -1, 5).getStripeCount());
+	}
+
+	@Test
+	public void byteLimitClosesBatch() {
+		StripedWriteBuffer buffer = new StripedWriteBuffer(100, 1000, 1);
+
+		buffer.add(doc("/1"), 400, batches::add);
+		buffer.add(doc("/2"), 400, batches::add);
+		assertEquals(0, batches.size());
+		buffer.add(doc("/3"), 200, batches::add);
+		assertEquals(1, batches.size(), "Reaching the byte limit closes the batch before batchSize is reached");
+		assertEquals(3, batches.get(0).size());
+
+		buffer.add(doc("/4"), 900, batches::add);
+		buffer.add(doc("/5"), 300, batches::add);
+		assertEquals(2, batches.size(), "A doc that doesn't fit closes the current batch first");
+		assertEquals("/4", batches.get(1).get(0).getUri());
+		assertEquals(1, batches.get(1).size());
+
+		buffer.add(doc("/6"), 5000, batches::add);
+		assertEquals(4, batches.size(), "A doc larger than the limit closes the pending batch and then its own");
+		assertEquals("/5", batches.get(2).get(0).getUri());
+		assertEquals("/6", batches.get(3).get(0).getUri());
+		assertTrue(buffer.drain().isEmpty());
+	}
+
+	@Test
+	public void batchesKeepTheAddedByteLengths() {
+		StripedWriteBuffer buffer = new StripedWriteBuffer(2, -1, 1);
+		List<StripedWriteBuffer.Batch> fullBatches = new ArrayList<>();
+		buffer.add(doc("/1"), 40, fullBatches::add);
+		buffer.add(doc("/2"), 60, fullBatches::add);
+		buffer.add(doc("/3"), 25, fullBatches::add);
+
+		assertEquals(1, fullBatches.size());
+		StripedWriteBuffer.Batch batch = fullBatches.get(0);
+		assertEquals(40, batch.getByteLength(0));
+		assertEquals(60, batch.getByteLength(1));
+		assertEquals(100, batch.getBytes());
+		assertThrows(IndexOutOfBoundsException.class, () -> batch.get(2));
+
+		StripedWriteBuffer.Batch remaining = buffer.drain();
+		assertEquals(1, remaining.size());
+		assertEquals(25, remaining.getByteLength(0));
+		assertEquals(25, remaining.getBytes());
+		assertEquals(0, buffer.drain().getBytes());
+	}
+
+	@Test
+	public void concurrentProducersLoseNothing() throws InterruptedException {
+		final int threadCount = 16;
+		final int docsPerThread = 10_000;
+		final int batchSize = 7;
+		StripedWriteBuffer buffer = new StripedWriteBuffer(batchSize, -1, 4);
+		ConcurrentLinkedQueue<List<DocumentWriteOperation>> concurrentBatches = new ConcurrentLinkedQueue<>();
+		CountDownLatch done = new CountDownLatch(threadCount);
+
+		for (int t = 0; t < threadCount; t++) {
+			final int threadNum = t;
+			new Thread(() -> {
+				for (int i = 0; i < docsPerThread; i++) {
+					buffer.add(doc("/" + threadNum + "/" + i), 0, concurrentBatches::add);
+				}
+				done.countDown();
+			}).start();
+		}
+		done.await();
+
+		Set<String> uris = new HashSet<>();
+		for (List<DocumentWriteOperation> batch : concurrentBatches) {
+			assertEquals(batchSize, batch.size());
+			batch.forEach(doc -> assertTrue(uris.add(doc.getUri()), "Duplicate uri: " + doc.getUri()));
+		}
+		List<DocumentWriteOperation> remaining = new ArrayList<>(buffer.drain());
+		remaining.forEach(doc -> assertTrue(uris.add(doc.getUri()), "Duplicate uri: " + doc.getUri()));
+		assertEquals(threadCount * docsPerThread, uris.size());
+	}
+
+	private DocumentWriteOperation doc(String uri) {
+		return new DocumentWriteOperationImpl(DocumentWriteOperation.OperationType.DOCUMENT_WRITE, uri, null,
+			new StringHandle("{}"));
+	}
+}
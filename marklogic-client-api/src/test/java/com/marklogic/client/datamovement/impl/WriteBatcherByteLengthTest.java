@@ -0,0 +1,86 @@
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.document.ContentDescriptor;
+import com.marklogic.client.document.DocumentWriteOperation;
+import com.marklogic.client.impl.DocumentWriteOperationImpl;
+import com.marklogic.client.io.ByteBufferHandle;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.marker.AbstractWriteHandle;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBatcherByteLengthTest {
+
+	@Test
+	public void byteBufferSlicesReportTheirLength() {
+		ByteBuffer shared = ByteBuffer.wrap("first,second-record,third".getBytes(StandardCharsets.UTF_8));
+		ByteBuffer slice = shared.duplicate();
+		slice.position(6).limit(19);
+
+		ByteBufferHandle handle = new ByteBufferHandle(slice.slice());
+		assertEquals(13, handle.getByteLength());
+		assertEquals(25, new ByteBufferHandle(shared).getByteLength());
+		assertEquals(ContentDescriptor.UNKNOWN_LENGTH, new ByteBufferHandle().getByteLength());
+	}
+
+	@Test
+	public void byteLimitUsesTheLengthOfEachSlice() {
+		DatabaseClient client = DatabaseClientFactory.newClient("localhost", 8000,
+			new DatabaseClientFactory.DigestAuthContext("user", "password"), DatabaseClient.ConnectionType.GATEWAY);
+		try {
+			Forest forest = new ForestImpl("localhost", null, null, null, "Documents", "forest1", "1", true, false);
+			WriteBatcherImpl batcher = new WriteBatcherImpl(
+				new DataMovementManagerImpl(client), new ForestConfigurationImpl(new Forest[]{forest}));
+			batcher.withBatchSize(10).withBatchByteLimit(1000);
+
+			ByteBuffer shared = ByteBuffer.allocate(600);
+			ByteBuffer small = shared.duplicate();
+			small.limit(50);
+			ByteBuffer large = shared.duplicate();
+			large.position(50);
+
+			assertEquals(50, batcher.estimateByteLength(newWrite("/small.bin", new ByteBufferHandle(small.slice()))));
+			assertEquals(550, batcher.estimateByteLength(newWrite("/large.bin", new ByteBufferHandle(large.slice()))),
+				"A slice is counted at its own size rather than an equal share of the byte limit");
+		} finally {
+			client.release();
+		}
+	}
+
+	@Test
+	public void failedAddReleasesItsReservation() {
+		DatabaseClient client = DatabaseClientFactory.newClient("localhost", 8000,
+			new DatabaseClientFactory.DigestAuthContext("user", "password"), DatabaseClient.ConnectionType.GATEWAY);
+		try {
+			Forest forest = new ForestImpl("localhost", null, null, null, "Documents", "forest1", "1", true, false);
+			WriteBatcherImpl batcher = new WriteBatcherImpl(
+				new DataMovementManagerImpl(client), new ForestConfigurationImpl(new Forest[]{forest}));
+			batcher.withBatchSize(10).withMaxBufferedDocuments(1).withMaxBufferedBytes(1000)
+				.withBufferFullTimeout(10, TimeUnit.MILLISECONDS)
+				.withForestAssignment((uri, forests) -> {
+					throw new IllegalStateException("no forest for " + uri);
+				});
+
+			for (int i = 0; i < 2; i++) {
+				assertThrows(IllegalStateException.class,
+					() -> batcher.add(newWrite("/doc.bin", new BytesHandle(new byte[100]))),
+					"Each add fails in the policy rather than waiting for the space the previous add reserved");
+			}
+			assertEquals(0, batcher.getBufferedDocumentCount());
+		} finally {
+			client.release();
+		}
+	}
+
+	private DocumentWriteOperation newWrite(String uri, AbstractWriteHandle content) {
+		return new DocumentWriteOperationImpl(DocumentWriteOperation.OperationType.DOCUMENT_WRITE, uri, null, content);
+	}
+}
@@ -0,0 +1,62 @@
+package com.marklogic.client.datamovement.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBufferLimitTest {
+
+	@Test
+	public void documentLimit() {
+		WriteBufferLimit limit = new WriteBufferLimit(2, -1);
+		assertTrue(limit.tryAcquire(10));
+		assertTrue(limit.tryAcquire(10));
+		assertFalse(limit.tryAcquire(10));
+		assertEquals(2, limit.getDocuments(), "A refused document isn't counted");
+		assertEquals(20, limit.getBytes());
+
+		limit.release(1, 10);
+		assertTrue(limit.tryAcquire(10));
+	}
+
+	@Test
+	public void byteLimit() {
+		WriteBufferLimit limit = new WriteBufferLimit(-1, 100);
+		assertTrue(limit.tryAcquire(60));
+		assertFalse(limit.tryAcquire(60));
+		assertTrue(limit.tryAcquire(40));
+		limit.release(2, 100);
+
+		assertTrue(limit.tryAcquire(500), "A document over the limit is accepted when nothing else is buffered");
+		assertFalse(limit.tryAcquire(1));
+		limit.release(1, 500);
+		assertEquals(0, limit.getDocuments());
+		assertEquals(0, limit.getBytes());
+	}
+
+	@Test
+	public void releaseWakesWaiter() throws InterruptedException {
+		WriteBufferLimit limit = new WriteBufferLimit(1, -1);
+		assertTrue(limit.tryAcquire(0));
+		CountDownLatch acquired = new CountDownLatch(1);
+		Thread waiter = new Thread(() -> {
+			try {
+				while (!limit.tryAcquire(0)) {
+					limit.awaitRelease(100, TimeUnit.MILLISECONDS);
+				}
+				acquired.countDown();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		waiter.start();
+		// give the waiter time to find the buffer full
+		Thread.sleep(100);
+		limit.release(1, 0);
+		assertTrue(acquired.await(5, TimeUnit.SECONDS));
+		waiter.join();
+	}
+}
@@ -10,6 +10,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -66,6 +67,20 @@ public class DatabaseClientPropertySourceTest {
 		assertEquals(DatabaseClient.ConnectionType.GATEWAY, bean.getConnectionType());
 	}
 
+	@Test
+	void balanceHosts() {
+		bean = buildBean();
+		assertFalse(bean.isBalanceHosts());
+
+		props.put(PREFIX + "balanceHosts", "true");
+		bean = buildBean();
+		assertTrue(bean.isBalanceHosts());
+
+		props.put(PREFIX + "balanceHosts", false);
+		bean = buildBean();
+		assertFalse(bean.isBalanceHosts());
+	}
+
 	@Test
 	void stringPort() {
 		props.put(PREFIX + "port", "8000");
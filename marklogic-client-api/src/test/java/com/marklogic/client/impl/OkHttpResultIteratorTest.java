@@ -0,0 +1,177 @@
+package com.marklogic.client.impl;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.document.DocumentPage;
+import com.marklogic.client.eval.EvalResultIterator;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OkHttpResultIteratorTest {
+
+	private static final String BOUNDARY = "ML_BOUNDARY_1234";
+
+	@Test
+	public void partsAreStreamedInOrder() {
+		OkHttpServices.DefaultOkHttpResultIterator iterator = newIterator(
+			part("/doc1.json", "application/json", "json", "{\"hello\":\"world\"}") +
+				part("/doc;2.xml", "application/xml", "xml", "<hello>world</hello>") +
+				"--" + BOUNDARY + "--\r\n");
+
+		assertTrue(iterator.hasNext());
+		OkHttpServices.OkHttpResult first = iterator.next();
+		assertEquals("/doc1.json", first.getUri());
+		assertEquals(Format.JSON, first.getFormat());
+		assertEquals("application/json", first.getMimetype());
+		assertEquals("{\"hello\":\"world\"}", first.getContent(new StringHandle()).get());
+
+		OkHttpServices.OkHttpResult second = iterator.next();
+		assertEquals("/doc;2.xml", second.getUri(), "A quoted filename may contain a semicolon");
+		assertEquals(Format.XML, second.getFormat());
+		assertEquals("<hello>world</hello>", second.getContentAs(String.class));
+
+		assertFalse(iterator.hasNext());
+		assertThrows(NoSuchElementException.class, iterator::next);
+		assertEquals(2, iterator.getSize());
+		iterator.close();
+	}
+
+	@Test
+	public void sizeBuffersRemainingParts() {
+		OkHttpServices.DefaultOkHttpResultIterator iterator = newIterator(
+			part("/a.txt", "text/plain", "text", "a") +
+				part("/b.txt", "text/plain", "text", "b") +
+				part("/c.txt", "text/plain", "text", "c") +
+				"--" + BOUNDARY + "--\r\n");
+
+		assertEquals("a", iterator.next().getContentAs(String.class));
+		assertEquals(3, iterator.getSize(), "Asking for the size requires reading the rest of the response");
+		assertEquals("b", iterator.next().getContentAs(String.class));
+		assertEquals("c", iterator.next().getContentAs(String.class));
+		assertFalse(iterator.hasNext());
+		iterator.close();
+	}
+
+	@Test
+	public void removeClosesAfterLastPart() {
+		AtomicBoolean closed = new AtomicBoolean();
+		OkHttpServices.DefaultOkHttpResultIterator iterator = newIterator(
+			part("/a.txt", "text/plain", "text", "a") +
+				part("/b.txt", "text/plain", "text", "b") +
+				"--" + BOUNDARY + "--\r\n",
+			() -> closed.set(true));
+
+		assertThrows(IllegalStateException.class, iterator::remove, "remove() must follow next()");
+		iterator.next();
+		iterator.remove();
+		assertThrows(IllegalStateException.class, iterator::remove);
+		assertFalse(closed.get());
+		iterator.next();
+		iterator.remove();
+		assertTrue(closed.get(), "Removing the last part should close the response");
+	}
+
+	@Test
+	public void sizeIsUnknownAfterEarlyClose() {
+		OkHttpServices.DefaultOkHttpResultIterator iterator = newIterator(
+			part("/a.txt", "text/plain", "text", "a") +
+				part("/b.txt", "text/plain", "text", "b") +
+				"--" + BOUNDARY + "--\r\n");
+
+		assertEquals("a", iterator.next().getContentAs(String.class));
+		iterator.close();
+		assertFalse(iterator.hasNext());
+		assertEquals(-1, iterator.getSize(), "The parts that were never read can't be counted");
+	}
+
+	@Test
+	public void evalResultsThrowWhenExhausted() {
+		OkHttpServices.DefaultOkHttpResultIterator iterator = newIterator(
+			part("/a.txt", "text/plain", "text", "a") + "--" + BOUNDARY + "--\r\n");
+		EvalResultIterator results = new OkHttpServices().new OkHttpEvalResultIterator(iterator);
+
+		assertTrue(results.hasNext());
+		assertEquals("a", results.next().getString());
+		assertFalse(results.hasNext());
+		assertThrows(NoSuchElementException.class, results::next);
+		assertThrows(UnsupportedOperationException.class, results::remove);
+		results.close();
+	}
+
+	@Test
+	public void pageHasContentWithoutReadingTheWholePage() throws Exception {
+		MockWebServer mockWebServer = new MockWebServer();
+		mockWebServer.start();
+		DatabaseClient client = DatabaseClientFactory.newClient(mockWebServer.getHostName(), mockWebServer.getPort(),
+			new DatabaseClientFactory.BasicAuthContext("user", "password"));
+		try {
+			// the second part is cut off, so reading past the first part fails
+			mockWebServer.enqueue(new MockResponse().setResponseCode(200)
+				.setHeader("Content-Type", "multipart/mixed; boundary=" + BOUNDARY)
+				.setBody(part("/a.txt", "text/plain", "text", "a") +
+					"--" + BOUNDARY + "\r\nContent-Type: text/plain\r\n\r\ntrunc"));
+
+			DocumentPage page = client.newTextDocumentManager().read("/a.txt", "/b.txt");
+			try {
+				assertTrue(page.hasContent());
+				assertEquals("a", page.nextContent(new StringHandle()).get());
+				assertThrows(MarkLogicIOException.class, page::getPageSize,
+					"The page size of a read by uri requires reading the rest of the response");
+			} finally {
+				page.close();
+			}
+		} finally {
+			client.release();
+			mockWebServer.shutdown();
+		}
+	}
+
+	@Test
+	public void emptyBody() {
+		OkHttpServices.DefaultOkHttpResultIterator iterator = newIterator("");
+		assertFalse(iterator.hasNext());
+		assertEquals(0, iterator.getSize());
+	}
+
+	@Test
+	public void headerParameter() {
+		String disposition = "attachment; filename=\"/a \\\"quoted\\\" uri.json\"; category=content; format=json";
+		assertEquals("/a \"quoted\" uri.json", OkHttpServices.getHeaderParameter(disposition, "filename"));
+		assertEquals("content", OkHttpServices.getHeaderParameter(disposition, "category"));
+		assertEquals("json", OkHttpServices.getHeaderParameter(disposition, "format"));
+		assertNull(OkHttpServices.getHeaderParameter(disposition, "missing"));
+		assertNull(OkHttpServices.getHeaderParameter("attachment", "filename"));
+	}
+
+	private OkHttpServices.DefaultOkHttpResultIterator newIterator(String content) {
+		return newIterator(content, null);
+	}
+
+	private OkHttpServices.DefaultOkHttpResultIterator newIterator(String content, Closeable closeable) {
+		ResponseBody body = ResponseBody.create(content,
+			MediaType.parse("multipart/mixed; boundary=" + BOUNDARY));
+		return new OkHttpServices.DefaultOkHttpResultIterator(null, OkHttpServices.makePartReader(body),
+			(closeable != null) ? closeable : body);
+	}
+
+	private String part(String uri, String mimetype, String format, String content) {
+		return "--" + BOUNDARY + "\r\n" +
+			"Content-Type: " + mimetype + "\r\n" +
+			"Content-Disposition: attachment; filename=\"" + uri + "\"; category=content; format=" + format + "\r\n" +
+			"Content-Length: " + content.length() + "\r\n" +
+			"\r\n" +
+			content + "\r\n";
+	}
+}
@@ -0,0 +1,124 @@
+package com.marklogic.client.impl;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.FailedRetryException;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.row.RowManager;
+import okhttp3.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uses OkHttp's MockWebServer to mock a MarkLogic instance so that the retries of asynchronous requests can be
+ * verified without a server that returns 503 responses on demand.
+ */
+public class OkHttpServicesAsyncRetryTest {
+
+	private MockWebServer mockWebServer;
+	private DatabaseClient client;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		mockWebServer = new MockWebServer();
+		mockWebServer.start();
+	}
+
+	@AfterEach
+	void afterEach() throws IOException {
+		if (client != null) {
+			client.release();
+		}
+		mockWebServer.shutdown();
+	}
+
+	@Test
+	void retryServiceUnavailable() throws Exception {
+		client = newClient(new DatabaseClientFactory.BasicAuthContext("user", "password"));
+		mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+		mockWebServer.enqueue(new MockResponse().setResponseCode(200)
+			.setHeader("Content-Type", "text/plain").setBody("hello"));
+
+		StringHandle handle = client.newTextDocumentManager()
+			.readAsync("/retry.txt", new StringHandle())
+			.get(10, TimeUnit.SECONDS);
+
+		assertEquals("hello", handle.get(), "The 503 should have been retried by the timer");
+		assertEquals(2, mockWebServer.getRequestCount());
+	}
+
+	@Test
+	void retriesExhausted() throws Exception {
+		System.setProperty(RESTServices.MIN_RETRY_PROP, "2");
+		try {
+			client = newClient(new DatabaseClientFactory.BasicAuthContext("user", "password"));
+		} finally {
+			System.clearProperty(RESTServices.MIN_RETRY_PROP);
+		}
+		((DatabaseClientImpl) client).getServices().setMaxDelay(0);
+		for (int i = 0; i < 3; i++) {
+			mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+		}
+
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> client.newTextDocumentManager()
+			.readAsync("/unavailable.txt", new StringHandle())
+			.get(10, TimeUnit.SECONDS));
+
+		assertTrue(ex.getCause() instanceof FailedRetryException, "Unexpected cause: " + ex.getCause());
+		assertEquals(2, mockWebServer.getRequestCount(),
+			"The request should be sent the minimum number of times once the maximum delay has elapsed");
+	}
+
+	@Test
+	void pingBeforeStreamingBody() throws Exception {
+		client = newClient(new DatabaseClientFactory.DigestAuthContext("user", "password"));
+		mockWebServer.enqueue(new MockResponse().setResponseCode(200).setHeadersDelay(2, TimeUnit.SECONDS));
+		mockWebServer.enqueue(new MockResponse().setResponseCode(200)
+			.setHeader("Content-Type", "application/json").setBody("{\"rows\":[]}"));
+
+		RowManager rowMgr = client.newRowManager();
+		InputStreamHandle plan = new InputStreamHandle(
+			new ByteArrayInputStream("{\"$optic\":{}}".getBytes(StandardCharsets.UTF_8)));
+		long start = System.nanoTime();
+		CompletableFuture<StringHandle> future =
+			rowMgr.resultDocAsync(rowMgr.newRawPlanDefinition(plan), new StringHandle());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000,
+			"The calling thread should not wait for the ping");
+
+		assertEquals("{\"rows\":[]}", future.get(10, TimeUnit.SECONDS).get());
+		RecordedRequest ping = mockWebServer.takeRequest();
+		assertEquals("HEAD", ping.getMethod());
+		assertTrue(ping.getPath().startsWith("/v1/ping"), ping.getPath());
+		RecordedRequest post = mockWebServer.takeRequest();
+		assertEquals("POST", post.getMethod());
+		assertTrue(post.getPath().startsWith("/v1/rows"), post.getPath());
+	}
+
+	@Test
+	void dispatcherIsNotLimitedToFiveRequestsPerHost() {
+		client = newClient(new DatabaseClientFactory.BasicAuthContext("user", "password"));
+		Dispatcher dispatcher = ((OkHttpServices) ((DatabaseClientImpl) client).getServices())
+			.getClientImplementation().dispatcher();
+		assertEquals(64, dispatcher.getMaxRequests());
+		assertEquals(64, dispatcher.getMaxRequestsPerHost(),
+			"Asynchronous requests all go to the same host, so the per-host limit should match the overall limit");
+	}
+
+	private DatabaseClient newClient(DatabaseClientFactory.SecurityContext securityContext) {
+		return DatabaseClientFactory.newClient(mockWebServer.getHostName(), mockWebServer.getPort(), securityContext);
+	}
+}
@@ -0,0 +1,92 @@
+package com.marklogic.client.impl;
+
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.row.RowManager.ParallelOrdering;
+import com.marklogic.client.row.RowManager.RowSetPart;
+import com.marklogic.client.row.RowManager.RowStreamFormat;
+import com.marklogic.client.row.RowManager.RowStructure;
+import com.marklogic.client.row.RowRecord;
+import com.marklogic.client.row.RowSet;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelRowSetTest {
+
+	private static final char RS = 0x1E;
+	private static final int ROWS_PER_PARTITION = 2500;
+
+	@Test
+	public void unorderedReturnsEveryRow() throws Exception {
+		try (ParallelRowSet rowSet = new ParallelRowSet(5, 3, ParallelOrdering.UNORDERED, ParallelRowSetTest::partition)) {
+			assertArrayEquals(new String[]{"partition", "pos"}, rowSet.getColumnNames());
+			List<String> ids = rowSet.stream()
+				.map(row -> row.getInt("partition") + ":" + row.getInt("pos"))
+				.sorted()
+				.collect(Collectors.toList());
+			assertEquals(5 * ROWS_PER_PARTITION, ids.size());
+			assertEquals(5 * ROWS_PER_PARTITION, ids.stream().distinct().count());
+		}
+	}
+
+	@Test
+	public void partitionOrderingKeepsPartitionsInSequence() throws Exception {
+		try (ParallelRowSet rowSet = new ParallelRowSet(6, 4, ParallelOrdering.PARTITION, ParallelRowSetTest::partition)) {
+			List<Integer> partitions = new ArrayList<>();
+			int count = 0;
+			int lastPartition = 0;
+			int lastPos = -1;
+			for (RowRecord row : rowSet) {
+				int partition = row.getInt("partition");
+				int pos = row.getInt("pos");
+				if (partition != lastPartition) {
+					partitions.add(partition);
+					lastPartition = partition;
+				} else {
+					assertEquals(lastPos + 1, pos);
+				}
+				lastPos = pos;
+				count++;
+			}
+			assertEquals(6 * ROWS_PER_PARTITION, count);
+			assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), partitions);
+		}
+	}
+
+	@Test
+	public void partitionFailureIsRethrown() {
+		ParallelRowSet rowSet = new ParallelRowSet(3, 2, ParallelOrdering.PARTITION, (partition, bodyHandle) -> {
+			if (partition == 2) {
+				throw new MarkLogicIOException("partition failed");
+			}
+			return partition(partition, bodyHandle);
+		});
+		MarkLogicIOException ex = assertThrows(MarkLogicIOException.class, () -> rowSet.forEach(row -> {}));
+		assertEquals("partition failed", ex.getMessage());
+		assertFalse(rowSet.hasNext());
+	}
+
+	private static RowSet<RowRecord> partition(int partition, InputStreamHandle bodyHandle) {
+		StringBuilder body = new StringBuilder();
+		body.append(RS).append("{\"columns\":[{\"name\":\"partition\"},{\"name\":\"pos\"}]}\n");
+		for (int pos = 0; pos < ROWS_PER_PARTITION; pos++) {
+			body.append(RS)
+				.append("{\"partition\":{\"type\":\"xs:int\",\"value\":").append(partition)
+				.append("},\"pos\":{\"type\":\"xs:int\",\"value\":").append(pos).append("}}\n");
+		}
+		RowManagerImpl.RowStreamRecord rowSet = new RowManagerImpl.RowStreamRecord(
+			new RowStreamReader(RowStreamFormat.JSON_SEQ, RowSetPart.ROWS, RowStructure.OBJECT,
+				new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8))),
+			null);
+		rowSet.init();
+		return rowSet;
+	}
+}
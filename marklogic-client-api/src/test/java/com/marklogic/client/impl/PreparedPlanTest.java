@@ -0,0 +1,61 @@
+package com.marklogic.client.impl;
+
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.expression.PlanBuilder.Plan;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.row.RowManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreparedPlanTest {
+
+	private final RowManager rowMgr = new RowManagerImpl(null);
+
+	@Test
+	public void sendsTheExportedAst() {
+		PlanBuilder op = rowMgr.newPlanBuilder();
+		PlanBuilder.ModifyPlan plan = op.fromView("opticUnitTest", "musician")
+			.where(op.eq(op.col("lastName"), op.param("lastName")));
+
+		Plan prepared = rowMgr.newPreparedPlan(plan);
+		String expected = ((PlanBuilderBaseImpl.PlanBaseImpl) plan).getAst();
+		assertEquals(expected, astOf(prepared));
+
+		Plan bound = prepared.bindParam("lastName", "Armstrong");
+		assertEquals(expected, astOf(bound));
+		assertNotSame(((PlanBuilderBaseImpl.RequestPlan) bound).getHandle(), ((PlanBuilderBaseImpl.RequestPlan) prepared).getHandle());
+
+		Map<PlanBuilderBaseImpl.PlanParamBase, BaseTypeImpl.ParamBinder> params = ((PlanBuilderBaseImpl.RequestPlan) bound).getParams();
+		assertEquals(1, params.size());
+		assertEquals("Armstrong", params.values().iterator().next().getParamValue());
+		assertNull(((PlanBuilderBaseImpl.RequestPlan) prepared).getParams());
+	}
+
+	@Test
+	public void keepsParametersBoundBeforePreparing() {
+		PlanBuilder op = rowMgr.newPlanBuilder();
+		Plan plan = op.fromView("opticUnitTest", "musician")
+			.where(op.eq(op.col("lastName"), op.param("lastName")))
+			.bindParam("lastName", "Byron");
+
+		Plan prepared = rowMgr.newPreparedPlan(plan);
+		assertEquals("Byron",
+			((PlanBuilderBaseImpl.RequestPlan) prepared).getParams().values().iterator().next().getParamValue());
+
+		Plan reprepared = rowMgr.newPreparedPlan(prepared);
+		assertEquals(astOf(prepared), astOf(reprepared));
+	}
+
+	@Test
+	public void rejectsNonAstPlans() {
+		Plan sql = rowMgr.newRawSQLPlan(new StringHandle("select * from musician"));
+		assertThrows(IllegalArgumentException.class, () -> rowMgr.newPreparedPlan(sql));
+	}
+
+	private static String astOf(Plan plan) {
+		return HandleAccessor.contentAsString(((PlanBuilderBaseImpl.RequestPlan) plan).getHandle());
+	}
+}
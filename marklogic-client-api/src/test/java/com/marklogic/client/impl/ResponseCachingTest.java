@@ -0,0 +1,124 @@
+package com.marklogic.client.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.io.JacksonHandle;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.util.RequestParameters;
+import com.marklogic.client.util.ResponseCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCachingTest {
+
+	private static final String CLIENT = "localhost:8000/null database=null user=digest:admin";
+
+	@Test
+	public void keyIgnoresParameterOrder() {
+		RequestParameters first = new RequestParameters();
+		first.add("bind:lastName", "Armstrong");
+		first.add("column-types", "header");
+		RequestParameters second = new RequestParameters();
+		second.add("column-types", "header");
+		second.add("bind:lastName", "Armstrong");
+
+		JacksonHandle handle = new JacksonHandle();
+		assertEquals(
+			ResponseCaching.newKey(CLIENT, "rows", first, handle, "{}"),
+			ResponseCaching.newKey(CLIENT, "rows", second, handle, "{}"));
+
+		second.put("bind:lastName", "Byron");
+		assertNotEquals(
+			ResponseCaching.newKey(CLIENT, "rows", first, handle, "{}"),
+			ResponseCaching.newKey(CLIENT, "rows", second, handle, "{}"));
+
+		JacksonHandle pinned = new JacksonHandle();
+		pinned.setPointInTimeQueryTimestamp(1234);
+		assertNotEquals(
+			ResponseCaching.newKey(CLIENT, "rows", first, handle, "{}"),
+			ResponseCaching.newKey(CLIENT, "rows", first, pinned, "{}"));
+	}
+
+	@Test
+	public void replaysIntoHandles() {
+		byte[] content = "{\"rows\":[1,2]}".getBytes(StandardCharsets.UTF_8);
+		ResponseCache.Entry entry = new ResponseCache.Entry(content, Format.JSON, "application/json", 42);
+
+		JacksonHandle jackson = ResponseCaching.receive(new JacksonHandle(), entry);
+		JsonNode rows = jackson.get().get("rows");
+		assertEquals(2, rows.size());
+		assertEquals(42, jackson.getServerTimestamp());
+
+		StringHandle string = ResponseCaching.receive(new StringHandle(), entry);
+		assertEquals("{\"rows\":[1,2]}", string.get());
+		assertEquals(Format.JSON, string.getFormat());
+	}
+
+	@Test
+	public void onlyResendableBodiesHaveKeys() {
+		assertEquals("{}", ResponseCaching.bodyKey(new StringHandle("{}")));
+		assertEquals("{}", ResponseCaching.bodyKey(new BytesHandle("{}".getBytes(StandardCharsets.UTF_8))));
+		assertNull(ResponseCaching.bodyKey(new InputStreamHandle(new ByteArrayInputStream(new byte[0]))));
+		assertTrue(ResponseCaching.canReceive(new JacksonHandle()));
+	}
+
+	@Test
+	public void plansWithNodeColumnsAreNotCachedAsStreams() {
+		RowManagerImpl rowMgr = new RowManagerImpl(null);
+		PlanBuilder op = rowMgr.newPlanBuilder();
+		PlanBuilder.ModifyPlan view = op.fromView("opticUnitTest", "musician");
+
+		assertFalse(RowManagerImpl.mayHaveNodeColumns((PlanBuilderBaseImpl.RequestPlan) view));
+		assertTrue(RowManagerImpl.mayHaveNodeColumns(
+			(PlanBuilderBaseImpl.RequestPlan) view.joinDoc(op.col("doc"), op.col("uri"))));
+		assertFalse(RowManagerImpl.mayHaveNodeColumns(
+			(PlanBuilderBaseImpl.RequestPlan) rowMgr.newRawSQLPlan(new StringHandle("select * from musician"))));
+		assertTrue(RowManagerImpl.mayHaveNodeColumns(
+			(PlanBuilderBaseImpl.RequestPlan) rowMgr.newRawQueryDSLPlan(new StringHandle("op.fromView('a', 'b')"))),
+			"A query DSL plan can't be checked, so it might join documents");
+	}
+
+	@Test
+	public void keyIdentifiesTheClient() {
+		DatabaseClientFactory.DigestAuthContext reader = new DatabaseClientFactory.DigestAuthContext("reader", "x");
+		DatabaseClient[] clients = {
+			DatabaseClientFactory.newClient("localhost", 8000, reader),
+			DatabaseClientFactory.newClient("localhost", 8000, new DatabaseClientFactory.DigestAuthContext("reader", "y")),
+			DatabaseClientFactory.newClient("localhost", 8000, new DatabaseClientFactory.DigestAuthContext("writer", "x")),
+			DatabaseClientFactory.newClient("localhost", 8000, "Documents", reader),
+			DatabaseClientFactory.newClient("localhost", 8001, reader),
+			DatabaseClientFactory.newClient("otherhost", 8000, reader),
+			DatabaseClientFactory.newClient("localhost", 8000, new DatabaseClientFactory.OAuthContext("token")),
+			DatabaseClientFactory.newClient("localhost", 8000, new DatabaseClientFactory.OAuthContext("token"))
+		};
+		try {
+			String[] keys = new String[clients.length];
+			for (int i = 0; i < clients.length; i++) {
+				keys[i] = ResponseCaching.clientKey(clients[i]);
+				assertNotNull(keys[i]);
+			}
+			assertEquals(keys[0], keys[1], "Clients for the same user share responses");
+			assertEquals(keys[0], ResponseCaching.clientKey(clients[0]));
+			for (int i = 2; i < keys.length; i++) {
+				for (int j = 0; j < i; j++) {
+					assertNotEquals(keys[j], keys[i], "Clients " + j + " and " + i + " must not share responses");
+				}
+			}
+			assertEquals(keys[6], ResponseCaching.clientKey(clients[6]), "A security context keeps its identity");
+		} finally {
+			for (DatabaseClient client : clients) {
+				client.release();
+			}
+		}
+		assertNull(ResponseCaching.clientKey(null));
+	}
+}
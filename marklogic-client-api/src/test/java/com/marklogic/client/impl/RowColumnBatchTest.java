@@ -0,0 +1,96 @@
+package com.marklogic.client.impl;
+
+import com.marklogic.client.row.RowColumnBatch;
+import com.marklogic.client.row.RowColumnBatch.ColumnType;
+import com.marklogic.client.row.RowManager.RowSetPart;
+import com.marklogic.client.row.RowManager.RowStreamFormat;
+import com.marklogic.client.row.RowManager.RowStructure;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowColumnBatchTest {
+
+	private static final char RS = 0x1E;
+
+	@Test
+	public void fillsPrimitiveColumns() {
+		String body = RS + "{\"columns\":[" +
+			"{\"name\":\"id\",\"type\":\"xs:long\"}," +
+			"{\"name\":\"price\",\"type\":\"xs:double\"}," +
+			"{\"name\":\"inStock\",\"type\":\"xs:boolean\"}," +
+			"{\"name\":\"color\",\"type\":\"xs:string\"}," +
+			"{\"name\":\"added\",\"type\":\"xs:date\"}]}\n" +
+			RS + "{\"id\":1,\"price\":9.5,\"inStock\":true,\"color\":\"red\",\"added\":\"2023-01-02\"}\n" +
+			RS + "{\"id\":2,\"price\":null,\"inStock\":false,\"color\":\"blue\",\"added\":\"2023-01-03\"}\n" +
+			RS + "{\"id\":3,\"price\":\"INF\",\"color\":\"red\",\"added\":null,\"extra\":{\"a\":1}}\n";
+
+		RowManagerImpl.RowColumnBatchSet batches = newBatchSet(body, 2);
+		Iterator<RowColumnBatch> iterator = batches.iterator();
+
+		RowColumnBatch first = iterator.next();
+		assertEquals(2, first.getRowCount());
+		assertEquals(ColumnType.LONG, first.getColumnType(0));
+		assertEquals(ColumnType.DOUBLE, first.getColumnType(1));
+		assertEquals(ColumnType.BOOLEAN, first.getColumnType(2));
+		assertEquals(ColumnType.STRING, first.getColumnType(3));
+		assertEquals(ColumnType.STRING, first.getColumnType(4), "Other data types are strings");
+		assertEquals("xs:date", first.getDatatype(4));
+
+		assertArrayEquals(new long[]{1, 2}, first.getLongs(0));
+		assertEquals(9.5, first.getDoubles(1)[0]);
+		assertFalse(first.isNull(1, 0));
+		assertTrue(first.isNull(1, 1));
+		assertEquals(0.0, first.getDoubles(1)[1], "A null is a zero value");
+		assertArrayEquals(new boolean[]{true, false}, first.getBooleans(first.getColumnIndex("inStock")));
+		assertArrayEquals(new String[]{"red", "blue"}, first.getStringDictionary(3));
+		assertArrayEquals(new int[]{0, 1}, first.getStringCodes(3));
+		assertEquals("2023-01-03", first.getString(4, 1));
+		assertEquals(-1, first.getColumnIndex("extra"), "Columns not in the header are skipped");
+
+		assertTrue(iterator.hasNext());
+		RowColumnBatch second = iterator.next();
+		assertEquals(1, second.getRowCount(), "The last batch is partial");
+		assertEquals(1, second.getLongs(0).length, "The arrays of a partial batch are trimmed");
+		assertEquals(Double.POSITIVE_INFINITY, second.getDoubles(1)[0]);
+		assertTrue(second.isNull(2, 0), "A column missing from the row is null");
+		assertFalse(second.getBooleans(2)[0]);
+		assertArrayEquals(new String[]{"red"}, second.getStringDictionary(3), "Each batch has its own dictionary");
+		assertTrue(second.isNull(4, 0));
+		assertNull(second.getString(4, 0));
+		assertEquals(1L, second.getNullBits(4)[0]);
+
+		assertFalse(iterator.hasNext());
+		assertThrows(IllegalStateException.class, () -> second.getDoubles(0), "The column is a LONG column");
+	}
+
+	@Test
+	public void nullBitsSpanWords() {
+		StringBuilder body = new StringBuilder(RS + "{\"columns\":[{\"name\":\"n\",\"type\":\"xs:int\"}]}\n");
+		for (int i = 0; i < 130; i++) {
+			body.append(RS).append("{\"n\":").append(i % 3 == 0 ? "null" : Integer.toString(i)).append("}\n");
+		}
+
+		RowColumnBatch batch = newBatchSet(body.toString(), 1000).iterator().next();
+		assertEquals(130, batch.getRowCount());
+		assertEquals(3, batch.getNullBits(0).length);
+		for (int i = 0; i < 130; i++) {
+			assertEquals(i % 3 == 0, batch.isNull(0, i), "row " + i);
+			assertEquals(i % 3 == 0 ? 0 : i, batch.getLongs(0)[i]);
+		}
+	}
+
+	@Test
+	public void emptyResult() {
+		assertFalse(newBatchSet("", 10).hasNext());
+	}
+
+	private RowManagerImpl.RowColumnBatchSet newBatchSet(String body, int rowsPerBatch) {
+		return new RowManagerImpl.RowColumnBatchSet(new RowStreamReader(RowStreamFormat.JSON_SEQ, RowSetPart.HEADER,
+			RowStructure.OBJECT, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))), rowsPerBatch);
+	}
+}
@@ -0,0 +1,121 @@
+package com.marklogic.client.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.client.row.RowManager.RowSetPart;
+import com.marklogic.client.row.RowManager.RowStructure;
+import com.marklogic.client.row.RowRecord.ColumnKind;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowDecoderTest {
+
+	private static final String[] COLUMNS = {"opticUnitTest.musician.lastName", "opticUnitTest.musician.dob", "count", "tags"};
+
+	@Test
+	public void rowsStyleObject() throws IOException {
+		RowDecoder decoder = new RowDecoder(RowSetPart.ROWS, RowStructure.OBJECT, COLUMNS, null);
+		RowDecoder.DecodedRow first = decoder.decode(json("{" +
+			"\"opticUnitTest.musician.lastName\":{\"type\":\"xs:string\",\"value\":\"Armstrong\"}," +
+			"\"opticUnitTest.musician.dob\":{\"type\":\"null\",\"value\":null}," +
+			"\"count\":{\"type\":\"xs:long\",\"value\":12345678901}," +
+			"\"tags\":{\"type\":\"array\",\"value\":[\"jazz\",1.5]}}"));
+
+		Map<String, Object> row = first.getValues();
+		assertEquals("Armstrong", ((JsonNode) row.get("opticUnitTest.musician.lastName")).asText());
+		assertTrue(row.containsKey("opticUnitTest.musician.dob"));
+		assertNull(row.get("opticUnitTest.musician.dob"));
+		assertEquals(12345678901L, ((JsonNode) row.get("count")).asLong());
+		assertTrue(((JsonNode) row.get("tags")).isArray());
+		assertEquals(Arrays.asList(COLUMNS), new ArrayList<>(row.keySet()), "Keys are in header order");
+		assertEquals(4, row.size());
+
+		assertEquals("xs:string", first.getDatatypes().get("opticUnitTest.musician.lastName"));
+		assertEquals(ColumnKind.ATOMIC_VALUE, first.getKinds().get("count"));
+		assertEquals(ColumnKind.NULL, first.getKinds().get("opticUnitTest.musician.dob"));
+		assertEquals(ColumnKind.CONTAINER_VALUE, first.getKinds().get("tags"));
+
+		RowDecoder.DecodedRow second = decoder.decode(json("{" +
+			"\"opticUnitTest.musician.lastName\":{\"type\":\"xs:string\",\"value\":\"Byron\"}," +
+			"\"opticUnitTest.musician.dob\":{\"type\":\"null\",\"value\":null}," +
+			"\"count\":{\"type\":\"xs:long\",\"value\":2}," +
+			"\"tags\":{\"type\":\"array\",\"value\":[]}}"));
+		assertSame(first.getKinds(), second.getKinds(), "Rows with the same datatypes share the type maps");
+		assertSame(first.getDatatypes(), second.getDatatypes());
+		assertEquals("Byron", ((JsonNode) second.getValues().get("opticUnitTest.musician.lastName")).asText());
+		assertEquals("Armstrong", ((JsonNode) row.get("opticUnitTest.musician.lastName")).asText(),
+			"An earlier row keeps its values");
+
+		RowDecoder.DecodedRow third = decoder.decode(json("{" +
+			"\"opticUnitTest.musician.lastName\":{\"type\":\"xs:string\",\"value\":\"Coltrane\"}," +
+			"\"opticUnitTest.musician.dob\":{\"type\":\"xs:date\",\"value\":\"1926-09-23\"}}"));
+		assertNotSame(first.getKinds(), third.getKinds());
+		assertEquals("xs:date", third.getDatatypes().get("opticUnitTest.musician.dob"));
+		assertFalse(third.getValues().containsKey("count"), "An absent column isn't in the row");
+		assertFalse(third.getKinds().containsKey("count"));
+	}
+
+	@Test
+	public void rowsStyleArray() throws IOException {
+		RowDecoder decoder = new RowDecoder(RowSetPart.ROWS, RowStructure.ARRAY, COLUMNS, null);
+		RowDecoder.DecodedRow decoded = decoder.decode(json("[" +
+			"{\"type\":\"xs:string\",\"value\":\"Armstrong\"}," +
+			"{\"type\":\"cid\",\"value\":\"ignored\"}]"));
+		Map<String, Object> row = decoded.getValues();
+		assertEquals("Armstrong", ((JsonNode) row.get("opticUnitTest.musician.lastName")).asText());
+		assertNull(row.get("opticUnitTest.musician.dob"), "A content column's value comes from an attachment");
+		assertEquals(ColumnKind.CONTENT, decoded.getKinds().get("opticUnitTest.musician.dob"));
+		assertTrue(row.containsKey("tags"), "Columns missing from the end of the array are null");
+		assertEquals(ColumnKind.NULL, decoded.getKinds().get("tags"));
+	}
+
+	@Test
+	public void headerStyle() throws IOException {
+		String[] types = {"xs:string", "xs:date", "xs:integer", "array"};
+		RowDecoder decoder = new RowDecoder(RowSetPart.HEADER, RowStructure.ARRAY, COLUMNS, types);
+
+		RowDecoder.DecodedRow full = decoder.decode(json("[\"Armstrong\",\"1901-08-04\",123456789012345678901234567890,[1]]"));
+		assertEquals(new BigInteger("123456789012345678901234567890"), ((JsonNode) full.getValues().get("count")).bigIntegerValue());
+		assertEquals(ColumnKind.ATOMIC_VALUE, full.getKinds().get("opticUnitTest.musician.dob"));
+		assertEquals("xs:date", full.getDatatypes().get("opticUnitTest.musician.dob"));
+
+		RowDecoder.DecodedRow withNull = decoder.decode(json("[\"Byron\",null,1,[]]"));
+		assertEquals(ColumnKind.NULL, withNull.getKinds().get("opticUnitTest.musician.dob"));
+		assertEquals(ColumnKind.ATOMIC_VALUE, full.getKinds().get("opticUnitTest.musician.dob"),
+			"A null value doesn't change the kinds shared by other rows");
+		assertSame(full.getDatatypes(), withNull.getDatatypes());
+
+		decoder = new RowDecoder(RowSetPart.HEADER, RowStructure.OBJECT, COLUMNS, types);
+		RowDecoder.DecodedRow object = decoder.decode(json("{\"count\":true,\"extra\":\"value\"}"));
+		assertTrue(((JsonNode) object.getValues().get("count")).booleanValue());
+		assertEquals("value", ((JsonNode) object.getValues().get("extra")).asText(), "A column not in the header is kept");
+		assertEquals(ColumnKind.NULL, object.getKinds().get("tags"));
+	}
+
+	@Test
+	public void columnMapMatchesHashMap() throws IOException {
+		RowDecoder decoder = new RowDecoder(RowSetPart.ROWS, RowStructure.OBJECT, COLUMNS, null);
+		Map<String, Object> row = decoder.decode(json("{" +
+			"\"count\":{\"type\":\"xs:int\",\"value\":3}," +
+			"\"tags\":{\"type\":\"object\",\"value\":{\"a\":1}}}")).getValues();
+		row.put("attachment", "content");
+		Map<String, Object> copy = new HashMap<>(row);
+		assertEquals(copy, row);
+		assertEquals(copy.hashCode(), row.hashCode());
+		assertEquals(3, row.size());
+		assertEquals("content", row.get("attachment"));
+	}
+
+	private ByteArrayInputStream json(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
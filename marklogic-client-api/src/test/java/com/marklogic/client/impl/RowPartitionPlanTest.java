@@ -0,0 +1,84 @@
+package com.marklogic.client.impl;
+
+import com.marklogic.client.expression.PlanBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowPartitionPlanTest {
+
+	@Test
+	public void boundsCoverTheRowIdRange() {
+		for (long partitionCount : new long[]{1, 2, 3, 7, 64}) {
+			assertEquals("0", RowPartitionPlan.getLowerBound(1, partitionCount));
+			assertEquals(Long.toUnsignedString(-1), RowPartitionPlan.getUpperBound(partitionCount, partitionCount));
+			for (long partition = 2; partition <= partitionCount; partition++) {
+				long previousUpper = Long.parseUnsignedLong(RowPartitionPlan.getUpperBound(partition - 1, partitionCount));
+				long lower = Long.parseUnsignedLong(RowPartitionPlan.getLowerBound(partition, partitionCount));
+				assertEquals(previousUpper + 1, lower);
+			}
+		}
+	}
+
+	@Test
+	public void rejectsEmptyPartitionCount() {
+		assertThrows(IllegalArgumentException.class, () -> RowPartitionPlan.getRangeSize(0));
+	}
+
+	@Test
+	public void crossRangeOperatorsAreNotPartitionable() {
+		PlanBuilder op = new RowManagerImpl(null).newPlanBuilder();
+		PlanBuilder.ModifyPlan view = op.fromView("opticUnitTest", "musician");
+
+		assertTrue(isPartitionable(view));
+		assertTrue(isPartitionable(view.where(op.gt(op.col("dob"), op.xs.date("1900-01-01")))));
+		assertTrue(isPartitionable(view.select(op.col("lastName"), op.col("firstName"))));
+
+		assertFalse(isPartitionable(view.groupBy(op.col("lastName"), op.count("count", "firstName"))));
+		assertFalse(isPartitionable(view.orderBy(op.col("lastName"))));
+		assertFalse(isPartitionable(view.limit(10)));
+		assertFalse(isPartitionable(view.offset(10)));
+		assertFalse(isPartitionable(view.offsetLimit(10, 10)));
+		assertFalse(isPartitionable(view.whereDistinct()));
+		assertFalse(isPartitionable(view.joinInner(op.fromView("opticUnitTest", "album"))));
+		assertFalse(isPartitionable(view.joinLeftOuter(op.fromView("opticUnitTest", "album"))));
+		assertFalse(isPartitionable(view.union(op.fromView("opticUnitTest", "album"))));
+		assertFalse(isPartitionable(
+			view.where(op.gt(op.col("dob"), op.xs.date("1900-01-01"))).limit(5).select(op.col("lastName"))
+		), "An operator anywhere in the chain applies within each range");
+	}
+
+	@Test
+	public void unreadablePlansAreNotPartitionable() {
+		assertFalse(RowPartitionPlan.isPartitionable(null));
+		assertFalse(RowPartitionPlan.isPartitionable("select * from musician"));
+	}
+
+	@Test
+	public void nodeColumns() {
+		PlanBuilder op = new RowManagerImpl(null).newPlanBuilder();
+		PlanBuilder.ModifyPlan view = op.fromView("opticUnitTest", "musician");
+
+		assertFalse(hasNodeColumns(view));
+		assertFalse(hasNodeColumns(view.select(op.col("lastName"), op.col("firstName"))));
+
+		assertTrue(hasNodeColumns(view.joinDoc(op.col("doc"), op.col("uri"))));
+		assertTrue(hasNodeColumns(view.select(op.as("node", op.jsonDocument(op.jsonString(op.col("lastName")))))));
+		assertTrue(hasNodeColumns(view.select(op.as("name", op.xpath("doc", "/name")))));
+		assertTrue(RowPartitionPlan.isPartitionable(getAst(view.joinDoc(op.col("doc"), op.col("uri")))),
+			"Joining documents gives the same rows by range, but the stream inlines the document column");
+
+		assertTrue(RowPartitionPlan.hasNodeColumns(null));
+		assertTrue(RowPartitionPlan.hasNodeColumns("select * from musician"));
+	}
+
+	private static boolean isPartitionable(PlanBuilder.Plan plan) {
+		return RowPartitionPlan.isPartitionable(getAst(plan));
+	}
+	private static boolean hasNodeColumns(PlanBuilder.Plan plan) {
+		return RowPartitionPlan.hasNodeColumns(getAst(plan));
+	}
+	private static String getAst(PlanBuilder.Plan plan) {
+		return ((PlanBuilderBaseImpl.PlanBaseImpl) plan).getAst();
+	}
+}
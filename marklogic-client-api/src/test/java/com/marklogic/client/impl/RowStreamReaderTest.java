@@ -0,0 +1,99 @@
+package com.marklogic.client.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.client.row.RowManager.RowSetPart;
+import com.marklogic.client.row.RowManager.RowStreamFormat;
+import com.marklogic.client.row.RowManager.RowStructure;
+import com.marklogic.client.row.RowRecord;
+import com.marklogic.client.row.RowRecord.ColumnKind;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowStreamReaderTest {
+
+	private static final char RS = 0x1E;
+
+	@Test
+	public void jsonSeqRowsStyle() {
+		String body = RS + "{\"columns\":[{\"name\":\"lastName\"},{\"name\":\"year\"}]}\n" +
+			RS + "{\"lastName\":{\"type\":\"xs:string\",\"value\":\"Armstrong\"},\"year\":{\"type\":\"xs:int\",\"value\":1901}}\n" +
+			RS + "{\"lastName\":{\"type\":\"xs:string\",\"value\":\"Byron\"},\"year\":{\"type\":\"null\",\"value\":null}}\n";
+
+		RowManagerImpl.RowStreamRecord rowSet = new RowManagerImpl.RowStreamRecord(
+			new RowStreamReader(RowStreamFormat.JSON_SEQ, RowSetPart.ROWS, RowStructure.OBJECT, stream(body)), null);
+		rowSet.init();
+		assertArrayEquals(new String[]{"lastName", "year"}, rowSet.getColumnNames());
+
+		Iterator<RowRecord> rows = rowSet.iterator();
+		assertTrue(rows.hasNext());
+		RowRecord first = rows.next();
+		assertEquals("Armstrong", first.getString("lastName"));
+		assertEquals(1901, first.getInt("year"));
+		assertEquals("xs:int", first.getDatatype("year"));
+
+		assertTrue(rows.hasNext());
+		RowRecord second = rows.next();
+		assertEquals("Byron", second.getString("lastName"));
+		assertEquals(ColumnKind.NULL, second.getKind("year"));
+		assertFalse(rows.hasNext(), "The stream is exhausted after the last row");
+	}
+
+	@Test
+	public void jsonSeqHeaderStyleAsObject() {
+		String body = RS + "{\"columns\":[{\"name\":\"name\",\"type\":\"xs:string\"},{\"name\":\"year\",\"type\":\"xs:int\"}]}\n" +
+			RS + "{\"name\":\"Kind of Blue\",\"year\":1959}\n";
+
+		RowStreamReader reader = new RowStreamReader(
+			RowStreamFormat.JSON_SEQ, RowSetPart.HEADER, RowStructure.OBJECT, stream(body));
+		assertArrayEquals(new String[]{"xs:string", "xs:int"}, reader.getColumnTypes());
+		assertTrue(reader.hasNext());
+		Album album = reader.nextAs(Album.class);
+		assertEquals("Kind of Blue", album.name);
+		assertEquals(1959, album.year);
+		assertFalse(reader.hasNext());
+	}
+
+	@Test
+	public void csv() {
+		String body = "lastName,year\r\nArmstrong,1901\r\nByron,\r\n";
+
+		RowStreamReader reader = new RowStreamReader(RowStreamFormat.CSV, RowSetPart.ROWS, RowStructure.OBJECT, stream(body));
+		assertArrayEquals(new String[]{"lastName", "year"}, reader.getColumnNames());
+		assertEquals(0, reader.getColumnTypes().length, "CSV doesn't transport data types");
+
+		RowDecoder.DecodedRow first = reader.next();
+		assertEquals("Armstrong", ((JsonNode) first.getValues().get("lastName")).asText());
+		assertEquals("xs:string", first.getDatatypes().get("year"));
+		assertEquals(ColumnKind.ATOMIC_VALUE, first.getKinds().get("year"));
+
+		RowDecoder.DecodedRow second = reader.next();
+		assertNull(second.getValues().get("year"), "An empty field is a null");
+		assertEquals(ColumnKind.NULL, second.getKinds().get("year"));
+		assertFalse(reader.hasNext());
+	}
+
+	@Test
+	public void emptyBody() {
+		RowStreamReader reader = new RowStreamReader(RowStreamFormat.JSON_SEQ, RowSetPart.ROWS, RowStructure.OBJECT, stream(""));
+		assertFalse(reader.hasNext());
+		assertEquals(0, reader.getColumnNames().length);
+
+		reader = new RowStreamReader(RowStreamFormat.CSV, RowSetPart.ROWS, RowStructure.OBJECT, null);
+		assertFalse(reader.hasNext());
+	}
+
+	public static class Album {
+		public String name;
+		public int year;
+	}
+
+	private InputStream stream(String body) {
+		return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,209 @@
+package com.marklogic.client.impl.okhttp;
+
+import com.burgstaller.okhttp.AuthenticationCacheInterceptor;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HostBalancingInterceptorTest {
+
+	private final AtomicLong now = new AtomicLong(0);
+	private final HostBalancingInterceptor balancer = new HostBalancingInterceptor(
+		"primary", 8000, Arrays.asList("host2", "host3", "primary"), now::get, new Random(42));
+
+	@Test
+	public void primaryHostIsIncludedOnce() {
+		assertEquals(Arrays.asList("primary", "host2", "host3"), balancer.getHostNames());
+	}
+
+	@Test
+	public void spreadsRequests() throws IOException {
+		FakeChain chain = new FakeChain(request("http://primary:8000/v1/rows"));
+		for (int i = 0; i < 30; i++) {
+			balancer.intercept(chain).close();
+		}
+		assertEquals(new HashSet<>(Arrays.asList("primary", "host2", "host3")), new HashSet<>(chain.hosts),
+			"Every host should get some of the requests");
+	}
+
+	@Test
+	public void prefersHostWithFewerOpenResponses() throws IOException {
+		FakeChain chain = new FakeChain(request("http://primary:8000/v1/search"));
+		List<Response> open = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			open.add(balancer.intercept(chain));
+		}
+		Map<String, Integer> counts = new HashMap<>();
+		chain.hosts.forEach(host -> counts.merge(host, 1, Integer::sum));
+		for (int count : counts.values()) {
+			assertTrue(count >= 8 && count <= 12, "Open responses should keep the hosts close to even: " + counts);
+		}
+		open.forEach(Response::close);
+	}
+
+	@Test
+	public void failsOverAndSkipsUnreachableHost() throws IOException {
+		FakeChain chain = new FakeChain(request("http://primary:8000/v1/documents?uri=/a.json"));
+		chain.unreachable.add("host2");
+		for (int i = 0; i < 20; i++) {
+			balancer.intercept(chain).close();
+		}
+		assertEquals(1, chain.attemptsOn("host2"), "After failing to connect, the host should be skipped");
+		assertEquals(20, chain.hosts.size() - 1, "Each request should succeed on another host");
+
+		chain.unreachable.clear();
+		now.set(HostBalancingInterceptor.MIN_UNHEALTHY_NANOS);
+		for (int i = 0; i < 20; i++) {
+			balancer.intercept(chain).close();
+		}
+		assertTrue(chain.attemptsOn("host2") > 1, "The host should be used again once its unhealthy period ends");
+	}
+
+	@Test
+	public void failsWhenNoHostIsReachable() {
+		FakeChain chain = new FakeChain(request("http://primary:8000/v1/rows"));
+		chain.unreachable.addAll(Arrays.asList("primary", "host2", "host3"));
+		assertThrows(ConnectException.class, () -> balancer.intercept(chain));
+		assertEquals(3, chain.hosts.size(), "Each host should be tried once");
+	}
+
+	@Test
+	public void transactionalRequestsStayOnPrimaryHost() throws IOException {
+		assertFalse(balancer.isBalanced(request("http://primary:8000/v1/documents?uri=/a.json&txid=123")));
+		assertFalse(balancer.isBalanced(request("http://primary:8000/v1/transactions")));
+		assertFalse(balancer.isBalanced(new Request.Builder().url("http://primary:8000/v1/rows")
+			.header("Cookie", "HostId=123").build()));
+		assertFalse(balancer.isBalanced(new Request.Builder().url("http://primary:8000/ds/endpoint.sjs")
+			.addHeader("Cookie", "SessionID=456").build()), "The first call of a session has no HostId cookie yet");
+		assertFalse(balancer.isBalanced(request("http://other:8000/v1/rows")));
+		assertFalse(balancer.isBalanced(request("http://primary:8002/v1/rows")));
+		assertTrue(balancer.isBalanced(request("http://primary:8000/v1/rows")));
+
+		FakeChain chain = new FakeChain(request("http://primary:8000/v1/documents?uri=/a.json&txid=123"));
+		for (int i = 0; i < 5; i++) {
+			balancer.intercept(chain).close();
+		}
+		assertEquals(Arrays.asList("primary", "primary", "primary", "primary", "primary"), chain.hosts);
+
+		FakeChain sessionChain = new FakeChain(new Request.Builder().url("http://primary:8000/ds/endpoint.sjs")
+			.addHeader("Cookie", "SessionID=456").build());
+		for (int i = 0; i < 5; i++) {
+			balancer.intercept(sessionChain).close();
+		}
+		assertEquals(Arrays.asList("primary", "primary", "primary", "primary", "primary"), sessionChain.hosts);
+	}
+
+	@Test
+	public void addedAheadOfDigestAuthenticationCache() {
+		Interceptor first = chain -> chain.proceed(chain.request());
+		AuthenticationCacheInterceptor authCache = new AuthenticationCacheInterceptor(new ConcurrentHashMap<>());
+		OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder().addInterceptor(first).addInterceptor(authCache);
+		assertEquals(Arrays.asList(first, balancer, authCache), balancer.addTo(clientBuilder).interceptors());
+
+		Interceptor other = chain -> chain.proceed(chain.request());
+		assertEquals(Arrays.asList(other, balancer),
+			balancer.addTo(new OkHttpClient.Builder().addInterceptor(other)).interceptors());
+	}
+
+	private static Request request(String url) {
+		return new Request.Builder().url(url).build();
+	}
+
+	private static class FakeChain implements Interceptor.Chain {
+		private final Request request;
+		final List<String> hosts = new ArrayList<>();
+		final Set<String> unreachable = new HashSet<>();
+
+		FakeChain(Request request) {
+			this.request = request;
+		}
+
+		int attemptsOn(String host) {
+			return (int) hosts.stream().filter(host::equals).count();
+		}
+
+		@Override
+		public Request request() {
+			return request;
+		}
+
+		@Override
+		public Response proceed(Request request) throws IOException {
+			String host = request.url().host();
+			hosts.add(host);
+			if (unreachable.contains(host)) {
+				throw new ConnectException("Failed to connect to " + host);
+			}
+			return new Response.Builder()
+				.request(request)
+				.protocol(Protocol.HTTP_1_1)
+				.code(200)
+				.message("OK")
+				.body(ResponseBody.create("{}", MediaType.get("application/json")))
+				.build();
+		}
+
+		@Override
+		public Connection connection() {
+			return null;
+		}
+
+		@Override
+		public Call call() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int connectTimeoutMillis() {
+			return 0;
+		}
+
+		@Override
+		public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+			return this;
+		}
+
+		@Override
+		public int readTimeoutMillis() {
+			return 0;
+		}
+
+		@Override
+		public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+			return this;
+		}
+
+		@Override
+		public int writeTimeoutMillis() {
+			return 0;
+		}
+
+		@Override
+		public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+			return this;
+		}
+	}
+}
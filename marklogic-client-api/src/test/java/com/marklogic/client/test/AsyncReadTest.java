@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.client.document.TextDocumentManager;
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.io.JacksonHandle;
+import com.marklogic.client.io.SearchHandle;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.StringQueryDefinition;
+import com.marklogic.client.row.RowManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncReadTest {
+
+  @BeforeAll
+  public static void beforeClass() {
+    Common.connect();
+  }
+
+  @Test
+  public void readAsync() throws Exception {
+    String docId = "/test/asyncRead1.txt";
+    String text  = "A document read without blocking";
+
+    TextDocumentManager docMgr = Common.client.newTextDocumentManager();
+    docMgr.write(docId, new StringHandle().with(text));
+
+    StringHandle handle = new StringHandle();
+    CompletableFuture<StringHandle> future = docMgr.readAsync(docId, handle);
+    assertSame(handle, future.get(30, TimeUnit.SECONDS));
+    assertEquals(text, handle.get());
+  }
+
+  @Test
+  public void searchAsync() throws Exception {
+    QueryManager queryMgr = Common.client.newQueryManager();
+    StringQueryDefinition qdef = queryMgr.newStringDefinition();
+    qdef.setCriteria("leaf3");
+
+    SearchHandle results = queryMgr.searchAsync(qdef, new SearchHandle()).get(30, TimeUnit.SECONDS);
+    assertNotNull(results);
+    assertSame(qdef, results.getQueryCriteria());
+  }
+
+  @Test
+  public void resultDocAsync() throws Exception {
+    RowManager rowMgr = Common.client.newRowManager();
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    PlanBuilder.Plan plan = p.fromView("opticUnitTest", "musician_ml10")
+      .orderBy(p.col("lastName"));
+
+    JsonNode expected = rowMgr.resultDoc(plan, new JacksonHandle()).get();
+    JsonNode actual = rowMgr.resultDocAsync(plan, new JacksonHandle()).get(30, TimeUnit.SECONDS).get();
+    assertEquals(expected, actual);
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.marklogic.client.test.datamovement;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.JacksonCSVSplitter;
@@ -33,13 +34,19 @@ import com.opencsv.CSVReader;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -82,6 +89,69 @@ public class JacksonCSVSplitterTest {
         csvReader.close();
     }
 
+    @Test
+    public void testSplitterPath() throws Exception {
+        JacksonCSVSplitter splitter = new JacksonCSVSplitter().withChunkSize(200);
+        List<JsonNode> expected = new JacksonCSVSplitter().split(new FileInputStream(csvFile))
+                .map(JacksonHandle::get)
+                .collect(Collectors.toList());
+
+        try (Stream<JacksonHandle> contentStream = splitter.split(Paths.get(csvFile))) {
+            assertTrue(contentStream.isParallel());
+            assertEquals(expected, contentStream.map(JacksonHandle::get).collect(Collectors.toList()));
+        }
+        assertEquals(expected.size(), splitter.getCount());
+        assertEquals(expected.get(0).size(), splitter.getHeaders().size());
+    }
+
+    @Test
+    public void testSplitterPathQuotedNewlines(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("quoted.csv");
+        StringBuilder content = new StringBuilder("id,note,amount\n");
+        for (int i = 0; i < 2000; i++) {
+            content.append(i).append(",\"line one\nline \"\"two\"\", with comma\n\",").append(i * 2).append("\n");
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<JsonNode> expected = new JacksonCSVSplitter().split(Files.newInputStream(file))
+                .map(JacksonHandle::get)
+                .collect(Collectors.toList());
+        assertEquals(2000, expected.size());
+
+        JacksonCSVSplitter splitter = new JacksonCSVSplitter().withChunkSize(500);
+        try (Stream<JacksonHandle> contentStream = splitter.split(file)) {
+            assertEquals(expected, contentStream.map(JacksonHandle::get).collect(Collectors.toList()),
+                    "A newline inside quotes should never split a record");
+        }
+        assertEquals(2000, splitter.getCount());
+    }
+
+    @Test
+    public void testSplitterPathWriteOperationNumbers(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("numbered.csv");
+        StringBuilder content = new StringBuilder("id,note\n");
+        for (int i = 0; i < 3000; i++) {
+            content.append(i).append(",\"note\n").append(i).append("\"\n");
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        Map<String, String> parallel = splitWriteOperationsByUri(file, false);
+        assertEquals(3000, parallel.size(), "Every record should have its own URI");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(parallel, splitWriteOperationsByUri(file, i % 2 == 0),
+                    "Each record should get the same URI however the ranges are scheduled");
+        }
+    }
+
+    private Map<String, String> splitWriteOperationsByUri(Path file, boolean sequential) throws Exception {
+        JacksonCSVSplitter splitter = new JacksonCSVSplitter().withChunkSize(500);
+        splitter.setUriMaker(new TestUriMaker());
+        try (Stream<DocumentWriteOperation> operations = splitter.splitWriteOperations(file, "numbered")) {
+            return (sequential ? operations.sequential() : operations)
+                    .collect(Collectors.toMap(DocumentWriteOperation::getUri, op -> op.getContent().toString()));
+        }
+    }
+
     @Test
     public void testCSVSplitterWriteOperation() throws Exception {
 
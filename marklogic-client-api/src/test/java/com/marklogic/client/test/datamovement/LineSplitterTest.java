@@ -2,17 +2,25 @@ package com.marklogic.client.test.datamovement;
 
 import com.marklogic.client.datamovement.LineSplitter;
 import com.marklogic.client.document.DocumentWriteOperation;
+import com.marklogic.client.io.ByteBufferHandle;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.StringHandle;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 
@@ -63,6 +71,109 @@ public class LineSplitterTest {
         checkContent(contentStream, splitter.getFormat(), originalResult);
     }
 
+    @Test
+    public void testSplitterPath() throws Exception {
+        LineSplitter splitter = new LineSplitter();
+        splitter.setChunkSize(100);
+        String[] originalResult = Files.lines(Paths.get(jsonlFile))
+                                    .toArray(size -> new String[size]);
+
+        try (Stream<StringHandle> contentStream = splitter.split(Paths.get(jsonlFile))) {
+            assertTrue(contentStream.isParallel());
+            checkContent(contentStream, splitter.getFormat(), originalResult);
+        }
+        assertEquals(originalResult.length, splitter.getCount());
+    }
+
+    @Test
+    public void testSplitterPathManyChunks(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("many.jsonl");
+        List<String> lines = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            String line = "{\"id\":" + i + ", \"text\":\"caf\u00e9 " + i + "\"}";
+            lines.add(line);
+            content.append(line).append(i % 7 == 0 ? "\r\n" : "\n");
+            if (i % 100 == 0) {
+                content.append("\n");
+            }
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        LineSplitter splitter = new LineSplitter();
+        splitter.setChunkSize(1000);
+        try (Stream<StringHandle> contentStream = splitter.split(file, StandardCharsets.UTF_8)) {
+            List<String> result = contentStream.map(StringHandle::get).collect(Collectors.toList());
+            assertEquals(lines, result, "Lines should keep their order and empty lines should be skipped");
+        }
+        assertEquals(lines.size(), splitter.getCount());
+
+        assertThrows(IllegalArgumentException.class, () -> splitter.split(file, StandardCharsets.UTF_16));
+    }
+
+    @Test
+    public void testSplitterPathBuffers(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("buffers.jsonl");
+        List<String> lines = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            String line = "{\"id\":" + i + ", \"text\":\"caf\u00e9 " + i + "\"}";
+            lines.add(line);
+            content.append(line).append(i % 5 == 0 ? "\r\n" : "\n");
+            if (i % 50 == 0) {
+                content.append("\r\n");
+            }
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        LineSplitter splitter = new LineSplitter();
+        splitter.setChunkSize(500);
+        try (Stream<ByteBufferHandle> contentStream = splitter.splitBuffers(file)) {
+            assertTrue(contentStream.isParallel());
+            List<ByteBufferHandle> result = contentStream.collect(Collectors.toList());
+            assertEquals(lines.size(), result.size());
+            for (int i = 0; i < result.size(); i++) {
+                ByteBufferHandle handle = result.get(i);
+                assertEquals(Format.JSON, handle.getFormat());
+                assertFalse(handle.get().hasArray(), "Lines should be slices of the mapped file rather than copies");
+                assertEquals(lines.get(i), handle.toString());
+                assertArrayEquals(lines.get(i).getBytes(StandardCharsets.UTF_8), handle.toBuffer());
+            }
+        }
+        assertEquals(lines.size(), splitter.getCount());
+    }
+
+    @Test
+    public void testSplitterPathWriteOperationNumbers(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("numbered.jsonl");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("{\"id\":").append(i).append("}\n");
+            if (i % 100 == 0) {
+                content.append("\n");
+            }
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        Map<String, String> parallel = splitWriteOperationsByUri(file, false);
+        assertEquals(5000, parallel.size(), "Every line should have its own URI");
+        assertEquals("{\"id\":0}", parallel.get("numbered1_abcd.xml"));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(parallel, splitWriteOperationsByUri(file, i % 2 == 0),
+                    "Each line should get the same URI however the ranges are scheduled");
+        }
+    }
+
+    private Map<String, String> splitWriteOperationsByUri(Path file, boolean sequential) throws Exception {
+        LineSplitter splitter = new LineSplitter();
+        splitter.setChunkSize(1000);
+        splitter.setUriMaker(new UriMakerTest());
+        try (Stream<DocumentWriteOperation> operations = splitter.splitWriteOperations(file, "numbered")) {
+            return (sequential ? operations.sequential() : operations)
+                    .collect(Collectors.toMap(DocumentWriteOperation::getUri, op -> op.getContent().toString()));
+        }
+    }
+
     private void checkContent(Stream<StringHandle> contentStream,
                                  Format format,
                                  String[] originalResult) {
@@ -19,19 +19,32 @@ package com.marklogic.client.test.datamovement;
 import com.marklogic.client.datamovement.JSONSplitter;
 import com.marklogic.client.datamovement.LineSplitter;
 import com.marklogic.client.datamovement.PathSplitter;
+import com.marklogic.client.datamovement.WriteBatcher;
 import com.marklogic.client.datamovement.XMLSplitter;
 import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.io.Format;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PathSplitterTest {
 
@@ -166,4 +179,97 @@ public class PathSplitterTest {
 
         assertEquals(23, i);
     }
+
+    @Test
+    public void ingestDirectory(@TempDir Path tempDir) throws Exception {
+        Path nested = Files.createDirectories(tempDir.resolve("a").resolve("b"));
+        for (int i = 0; i < 20; i++) {
+            Files.write((i % 2 == 0 ? tempDir : nested).resolve("doc" + i + ".json"),
+                ("{\"id\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            lines.append("{\"line\":").append(i).append("}\n");
+        }
+        Files.write(tempDir.resolve("a").resolve("big.jsonl"), lines.toString().getBytes(StandardCharsets.UTF_8));
+        Files.copy(Paths.get(baseDirectory, dataDiretory, "test.csv"), nested.resolve("test.csv"));
+        Files.copy(Paths.get(baseDirectory, dataDiretory, "files.zip"), nested.resolve("files.zip"));
+
+        PathSplitter pathSplitter = new PathSplitter().withDocumentUriAfter(tempDir).withParallelism(4);
+        pathSplitter.withSplitterSupplier("jsonl", () -> {
+            LineSplitter splitter = new LineSplitter();
+            splitter.setChunkSize(1000);
+            return splitter;
+        });
+        AtomicInteger progressUpdates = new AtomicInteger();
+        pathSplitter.onIngestionProgress(progress -> progressUpdates.incrementAndGet());
+
+        Queue<DocumentWriteOperation> added = new ConcurrentLinkedQueue<>();
+        AtomicBoolean flushed = new AtomicBoolean();
+        PathSplitter.IngestionProgress progress = pathSplitter.ingest(tempDir, newWriteBatcher(added, flushed));
+
+        assertTrue(flushed.get());
+        assertEquals(23, progress.getFileCount());
+        assertEquals(23, progressUpdates.get());
+        assertTrue(progress.getFailedPaths().isEmpty());
+        assertEquals(20 + 3000 + 11 + 3, progress.getDocumentCount());
+        assertEquals(progress.getDocumentCount(), added.size());
+        Set<String> uris = added.stream().map(DocumentWriteOperation::getUri).collect(Collectors.toSet());
+        assertEquals(added.size(), uris.size(), "Each document should have its own URI");
+        List<String> bigUris = uris.stream().filter(uri -> uri.startsWith("/a/big")).collect(Collectors.toList());
+        assertEquals(3000, bigUris.size());
+    }
+
+    @Test
+    public void ingestSharedSplitter(@TempDir Path tempDir) throws Exception {
+        for (int i = 0; i < 10; i++) {
+            Files.write(tempDir.resolve("lines" + i + ".txt"), "a\nb\nc\n".getBytes(StandardCharsets.UTF_8));
+        }
+        PathSplitter pathSplitter = new PathSplitter().withDocumentUriAfter(tempDir);
+        LineSplitter splitter = new LineSplitter();
+        splitter.setFormat(Format.TEXT);
+        pathSplitter.getSplitters().put("txt", splitter);
+
+        Queue<DocumentWriteOperation> added = new ConcurrentLinkedQueue<>();
+        PathSplitter.IngestionProgress progress = pathSplitter.ingest(tempDir, newWriteBatcher(added, new AtomicBoolean()));
+
+        assertEquals(30, added.size());
+        assertEquals(30, progress.getDocumentCount());
+        assertEquals(10, progress.getFileCount());
+        assertTrue(progress.getFailedPaths().isEmpty());
+    }
+
+    @Test
+    public void ingestRecordsFailedPaths(@TempDir Path tempDir) throws Exception {
+        Files.write(tempDir.resolve("lines.txt"), "a\nb\nc\n".getBytes(StandardCharsets.UTF_8));
+        Path broken = tempDir.resolve("broken.zip");
+        Files.write(broken, "not a zip".getBytes(StandardCharsets.UTF_8));
+        PathSplitter pathSplitter = new PathSplitter().withDocumentUriAfter(tempDir);
+        LineSplitter splitter = new LineSplitter();
+        splitter.setFormat(Format.TEXT);
+        pathSplitter.getSplitters().put("txt", splitter);
+
+        Queue<DocumentWriteOperation> added = new ConcurrentLinkedQueue<>();
+        PathSplitter.IngestionProgress progress = pathSplitter.ingest(tempDir, newWriteBatcher(added, new AtomicBoolean()));
+
+        assertEquals(3, progress.getDocumentCount());
+        assertEquals(1, progress.getFileCount());
+        assertEquals(Collections.singletonList(broken), progress.getFailedPaths());
+    }
+
+    private WriteBatcher newWriteBatcher(Queue<DocumentWriteOperation> added, AtomicBoolean flushed) {
+        return (WriteBatcher) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{WriteBatcher.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "add":
+                        added.add((DocumentWriteOperation) args[0]);
+                        return proxy;
+                    case "flushAndWait":
+                        flushed.set(true);
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
 }
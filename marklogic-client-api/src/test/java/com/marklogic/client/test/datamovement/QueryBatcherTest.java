@@ -54,6 +54,7 @@ import java.io.InputStream;
 import java.io.StringWriter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -156,6 +157,98 @@ public class QueryBatcherTest {
     runQueryBatcher(moveMgr.newQueryBatcher(query), query, matchesByForest, 3, 2);
   }
 
+  @Test
+  public void testPrefetch() throws Exception {
+    String prefetchCollection = "QueryBatcherTest_prefetch";
+    int docCount = 30;
+    int prefetch = 2;
+    Set<String> expectedUris = new HashSet<>();
+    WriteBatcher writeBatcher = moveMgr.newWriteBatcher();
+    moveMgr.startJob(writeBatcher);
+    DocumentMetadataHandle meta = new DocumentMetadataHandle().withCollections(collection, prefetchCollection);
+    for (int i = 0; i < docCount; i++) {
+      String uri = "/QueryBatcherTest/prefetch_" + i + ".json";
+      expectedUris.add(uri);
+      writeBatcher.addAs(uri, meta, new StringHandle("{\"n\":" + i + "}").withFormat(JSON));
+    }
+    writeBatcher.flushAndWait();
+    moveMgr.stopJob(writeBatcher);
+
+    // every listener blocks on the gate, so a forest can only get ahead of its listeners by prefetching
+    CountDownLatch gate = new CountDownLatch(1);
+    AtomicInteger startedBatches = new AtomicInteger();
+    Map<String, AtomicInteger> inFlightByForest = new ConcurrentHashMap<>();
+    Map<String, AtomicInteger> maxInFlightByForest = new ConcurrentHashMap<>();
+    Map<String, AtomicInteger> urisByForest = new ConcurrentHashMap<>();
+    Map<String, AtomicInteger> deliveries = new ConcurrentHashMap<>();
+    AtomicInteger failures = new AtomicInteger();
+
+    StructuredQueryDefinition query = new StructuredQueryBuilder().collection(prefetchCollection);
+    QueryBatcher queryBatcher = moveMgr.newQueryBatcher(query)
+      .withPrefetch(prefetch)
+      .withListenerThreadCount(docCount)
+      .withBatchSize(1)
+      .withThreadCount(3)
+      .onUrisReady(batch -> {
+        String forestName = batch.getForest().getForestName();
+        int inFlight = inFlightByForest.computeIfAbsent(forestName, k -> new AtomicInteger()).incrementAndGet();
+        maxInFlightByForest.computeIfAbsent(forestName, k -> new AtomicInteger())
+          .accumulateAndGet(inFlight, Math::max);
+        startedBatches.incrementAndGet();
+        try {
+          gate.await(60, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        for (String uri : batch.getItems()) {
+          deliveries.computeIfAbsent(uri, k -> new AtomicInteger()).incrementAndGet();
+        }
+        urisByForest.computeIfAbsent(forestName, k -> new AtomicInteger()).addAndGet(batch.getItems().length);
+        inFlightByForest.get(forestName).decrementAndGet();
+      })
+      .onQueryFailure(throwable -> {
+        failures.incrementAndGet();
+        throwable.printStackTrace();
+      });
+    assertEquals(prefetch, queryBatcher.getPrefetch());
+    assertEquals(docCount, queryBatcher.getListenerThreadCount());
+
+    try {
+      moveMgr.startJob(queryBatcher);
+      // wait for the retrieval to stall on the prefetch window of every forest
+      int started = 0;
+      for (int i = 0; i < 20 && (started == 0 || started != startedBatches.get()); i++) {
+        started = startedBatches.get();
+        Thread.sleep(500);
+      }
+      Map<String, Integer> blockedInFlight = new HashMap<>();
+      inFlightByForest.forEach((forestName, inFlight) -> blockedInFlight.put(forestName, inFlight.get()));
+      gate.countDown();
+      assertTrue(queryBatcher.awaitCompletion(2, TimeUnit.MINUTES));
+      moveMgr.stopJob(queryBatcher);
+
+      assertEquals(0, failures.get());
+      assertEquals(expectedUris, deliveries.keySet());
+      deliveries.forEach((uri, count) -> assertEquals(1, count.get(), uri + " should be delivered exactly once"));
+      for (Map.Entry<String, AtomicInteger> forestUris : urisByForest.entrySet()) {
+        String forestName = forestUris.getKey();
+        int forestPages = forestUris.getValue().get();
+        int maxInFlight = maxInFlightByForest.get(forestName).get();
+        assertTrue(maxInFlight <= prefetch + 1, forestName + " retrieved " + (maxInFlight - 1) +
+          " pages ahead of its listeners, more than the prefetch of " + prefetch);
+        int expectedInFlight = Math.min(forestPages, prefetch + 1);
+        assertEquals(expectedInFlight, blockedInFlight.get(forestName).intValue(), forestName +
+          " should retrieve the following pages while the listener for its first page is still running");
+      }
+    } finally {
+      gate.countDown();
+      QueryManager queryMgr = client.newQueryManager();
+      DeleteQueryDefinition deleteQuery = queryMgr.newDeleteDefinition();
+      deleteQuery.setCollections(prefetchCollection);
+      queryMgr.delete(deleteQuery);
+    }
+  }
+
   @Test
   public void testRawCtsQuery() throws Exception {
     RawCtsQueryDefinition query = null;
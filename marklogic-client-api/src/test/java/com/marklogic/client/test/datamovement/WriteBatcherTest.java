@@ -1134,6 +1134,44 @@ public class WriteBatcherTest {
     ihb2.flushAndWait();
   }
 
+  @Test
+  public void testForestAssignment() {
+    String collection = whbTestCollection + ".testForestAssignment";
+    Map<String,String> uriHosts = new HashMap<>();
+    List<String> mismatches = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger written = new AtomicInteger();
+    WriteBatcher batcher = moveMgr.newWriteBatcher()
+      .withBatchSize(5)
+      .withForestAssignment((uri, forests) -> {
+        Forest forest = forests[Math.floorMod(uri.hashCode(), forests.length)];
+        synchronized (uriHosts) {
+          uriHosts.put(uri, forest.getPreferredHost());
+        }
+        return forest;
+      })
+      .onBatchSuccess(batch -> {
+        written.addAndGet(batch.getItems().length);
+        for ( WriteEvent doc : batch.getItems() ) {
+          String host;
+          synchronized (uriHosts) {
+            host = uriHosts.get(doc.getTargetUri());
+          }
+          if ( !batch.getClient().getHost().equals(host) ) mismatches.add(doc.getTargetUri());
+        }
+      });
+    moveMgr.startJob(batcher);
+
+    DocumentMetadataHandle meta = new DocumentMetadataHandle().withCollections(collection, whbTestCollection);
+    for ( int i = 0; i < 23; i++ ) {
+      batcher.add("/WriteBatcherTest/forestAssignment/" + i + ".txt", meta, new StringHandle("test"));
+    }
+    batcher.flushAndWait();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(23, written.get());
+    assertTrue(mismatches.isEmpty(), "Each batch should go to the host of its documents' forests: " + mismatches);
+  }
+
   @Test
   public void testIssue793() {
     WriteBatcher batcher =  moveMgr.newWriteBatcher();
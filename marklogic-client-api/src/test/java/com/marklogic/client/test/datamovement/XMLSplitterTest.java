@@ -19,15 +19,24 @@ package com.marklogic.client.test.datamovement;
 import com.marklogic.client.datamovement.NodeOperation;
 import com.marklogic.client.datamovement.XMLSplitter;
 import com.marklogic.client.document.DocumentWriteOperation;
+import com.marklogic.client.io.ByteBufferHandle;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.io.marker.XMLWriteHandle;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import javax.xml.stream.XMLStreamReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -223,6 +232,96 @@ public class XMLSplitterTest {
 
     }
 
+    @Test
+    public void testSplitBuffers() throws Exception {
+        XMLSplitter<StringHandle> splitter = XMLSplitter.makeSplitter("http://www.marklogic.com/people/", "person");
+        List<String> result = splitter.splitBuffers(Paths.get(xmlFile))
+            .map(ByteBufferHandle::toString)
+            .collect(Collectors.toList());
+        assertEquals(3, splitter.getCount());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(expected[i].substring(expected[i].indexOf("?>") + 2), result.get(i));
+        }
+    }
+
+    @Test
+    public void testSplitBuffersAttr() throws Exception {
+        AttributeVisitor visitor = new AttributeVisitor("http://www.marklogic.com/people/",
+                "person",
+                "president",
+                "yes");
+        XMLSplitter<StringHandle> splitter = new XMLSplitter<>(visitor);
+        ByteBufferHandle[] result = splitter.splitBuffers(Paths.get(xmlFile))
+            .toArray(size -> new ByteBufferHandle[size]);
+        assertEquals(1, result.length);
+        assertEquals(Format.XML, result[0].getFormat());
+        assertEquals(expected[0].substring(expected[0].indexOf("?>") + 2), result[0].toString());
+    }
+
+    @Test
+    public void testSplitBuffersNamespaces() throws Exception {
+        String xml = "\uFEFF<?xml version='1.0' encoding='utf-8'?>\n" +
+            "<!DOCTYPE root [<!ELEMENT root ANY>]>\n" +
+            "<r:root xmlns:r='urn:root' xmlns:a=\"urn:a&amp;b\" xmlns='urn:default'>\n" +
+            "  <!-- <r:item>commented out</r:item> -->\n" +
+            "  <r:item id=\"1\" note='a &gt; b'><a:name>caf\u00e9</a:name><![CDATA[</r:item>]]><?pi x?></r:item>\n" +
+            "  <r:item id=\"2\" xmlns:a='urn:other'><plain/></r:item>\n" +
+            "  <r:item id=\"3\"/>\n" +
+            "  <wrapper xmlns=''><r:item xmlns:r='urn:root'>bare</r:item></wrapper>\n" +
+            "</r:root>";
+        ByteBuffer input = ByteBuffer.wrap(xml.getBytes(StandardCharsets.UTF_8));
+
+        XMLSplitter<StringHandle> splitter = XMLSplitter.makeSplitter("urn:root", "item");
+        List<ByteBufferHandle> result = splitter.splitBuffers(input).collect(Collectors.toList());
+        assertEquals(4, result.size());
+        assertEquals("<r:item xmlns:r='urn:root' xmlns:a=\"urn:a&amp;b\" xmlns='urn:default' id=\"1\" note='a &gt; b'>" +
+            "<a:name>caf\u00e9</a:name><![CDATA[</r:item>]]><?pi x?></r:item>", result.get(0).toString());
+        assertEquals("<r:item xmlns:r='urn:root' xmlns='urn:default' id=\"2\" xmlns:a='urn:other'><plain/></r:item>",
+            result.get(1).toString());
+        assertEquals("<r:item xmlns:r='urn:root' xmlns:a=\"urn:a&amp;b\" xmlns='urn:default' id=\"3\"/>",
+            result.get(2).toString());
+        assertEquals("<r:item xmlns:a=\"urn:a&amp;b\" xmlns:r='urn:root'>bare</r:item>", result.get(3).toString());
+
+        ByteBuffer plain = ByteBuffer.wrap("<items><item>1</item><item>2</item></items>".getBytes(StandardCharsets.UTF_8));
+        List<ByteBufferHandle> slices = XMLSplitter.makeSplitter("", "item").splitBuffers(plain).collect(Collectors.toList());
+        assertEquals(2, slices.size());
+        assertEquals("<item>2</item>", slices.get(1).toString());
+        assertSame(plain.array(), slices.get(1).get().array(),
+            "A record without declarations to inject should be a slice of the input");
+
+        XMLSplitter<StringHandle> attributeSplitter = new XMLSplitter<>(
+            new AttributeVisitor("urn:root", "item", "note", "a > b"));
+        String namespacedXml = xml.replaceAll("  <wrapper.*</wrapper>\n", "");
+        assertEquals(1, attributeSplitter.splitBuffers(ByteBuffer.wrap(namespacedXml.getBytes(StandardCharsets.UTF_8))).count());
+    }
+
+    @Test
+    public void testSplitBuffersEncoding() {
+        XMLSplitter<StringHandle> splitter = XMLSplitter.makeSplitter("", "item");
+        ByteBuffer input = ByteBuffer.wrap("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><items/>"
+            .getBytes(StandardCharsets.ISO_8859_1));
+        assertThrows(IllegalArgumentException.class, () -> splitter.splitBuffers(input));
+    }
+
+    @Test
+    public void testSplitBufferWriteOperations(@TempDir Path tempDir) throws Exception {
+        AttributeVisitor visitor = new AttributeVisitor("http://www.marklogic.com/people/",
+                "person",
+                "president",
+                "no");
+        XMLSplitter<StringHandle> splitter = new XMLSplitter<>(visitor);
+        Path copy = tempDir.resolve("people.xml");
+        Files.copy(Paths.get(xmlFile), copy);
+
+        List<DocumentWriteOperation> result = splitter.splitBufferWriteOperations(copy, "TestSplitter.xml")
+            .collect(Collectors.toList());
+        assertEquals(1, result.size());
+        assertTrue(result.get(0).getUri().startsWith("TestSplitter1"));
+        assertTrue(result.get(0).getUri().endsWith(".xml"));
+        assertEquals(expected[1].substring(expected[1].indexOf("?>") + 2), result.get(0).getContent().toString());
+        assertEquals(1, splitter.getCount());
+    }
+
     static public class AttributeVisitor extends XMLSplitter.Visitor<StringHandle> {
         private String nsUri, localName, attrName, attrValue;
 
@@ -3,17 +3,29 @@ package com.marklogic.client.test.datamovement;
 import com.marklogic.client.datamovement.ZipSplitter;
 import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.OutputStreamHandle;
+import com.marklogic.client.io.marker.AbstractWriteHandle;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -231,6 +243,91 @@ public class ZipSplitterTest {
         assertEquals(i, 3);
     }
 
+    @Test
+    public void testSplitterPath() throws Exception {
+        ZipSplitter splitter = new ZipSplitter();
+        splitter.setEntryFilter(x -> x.getSize() > 50);
+        List<AbstractWriteHandle> result;
+        try (Stream<AbstractWriteHandle> contentStream = splitter.split(Paths.get(zipFile))) {
+            assertTrue(contentStream.isParallel());
+            result = contentStream.collect(Collectors.toList());
+        }
+        assertEquals(2, result.size());
+        assertEquals(2, splitter.getCount());
+
+        ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(zipFile));
+        for (AbstractWriteHandle handle : result) {
+            checkContent(zipInputStream, zipInputStream.getNextEntry(), new String(((BytesHandle) handle).get()));
+        }
+    }
+
+    @Test
+    public void testSplitterPathWriteWithUriTransformer() throws Exception {
+        String[] expected = {"/Test/file1.xml", "/Test/file2.json", "/Test/file3.txt"};
+        ZipSplitter splitter = new ZipSplitter();
+        splitter.setUriTransformer(uri -> "/Test/" + uri);
+        List<DocumentWriteOperation> result;
+        try (Stream<DocumentWriteOperation> contentStream = splitter.splitWriteOperations(Paths.get(zipFile), "ZipFile.zip")) {
+            result = contentStream.collect(Collectors.toList());
+        }
+        assertEquals(3, result.size());
+
+        ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(zipFile));
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(expected[i], result.get(i).getUri());
+            checkContent(zipInputStream, zipInputStream.getNextEntry(), result.get(i).getContent().toString());
+        }
+    }
+
+    @Test
+    public void testSplitterPathManyEntries(@TempDir Path tempDir) throws Exception {
+        Path archive = tempDir.resolve("many.zip");
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            large.append("line ").append(i).append('\n');
+        }
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zipOutputStream.putNextEntry(new ZipEntry("dir/"));
+            for (int i = 0; i < 200; i++) {
+                zipOutputStream.putNextEntry(new ZipEntry("dir/doc" + i + ".json"));
+                zipOutputStream.write(("{\"id\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+            }
+            zipOutputStream.putNextEntry(new ZipEntry("large.txt"));
+            zipOutputStream.write(large.toString().getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.putNextEntry(new ZipEntry("ignored.bin"));
+            zipOutputStream.write(new byte[]{1, 2, 3});
+            zipOutputStream.putNextEntry(new ZipEntry("noextension"));
+            zipOutputStream.write(new byte[]{1, 2, 3});
+        }
+
+        ZipSplitter splitter = new ZipSplitter();
+        splitter.setEntryStreamingThreshold(1000);
+        List<DocumentWriteOperation> result;
+        try (Stream<DocumentWriteOperation> contentStream = splitter.splitWriteOperations(archive, "many.zip")) {
+            result = contentStream.collect(Collectors.toList());
+        }
+        assertEquals(201, result.size());
+        assertEquals(201, splitter.getCount());
+        for (int i = 0; i < 200; i++) {
+            DocumentWriteOperation operation = result.get(i);
+            assertTrue(operation.getUri().startsWith("many/dir/doc" + i + (i + 1) + "_"), operation.getUri());
+            assertEquals("{\"id\":" + i + "}", operation.getContent().toString());
+            assertEquals(Format.JSON, ((BytesHandle) operation.getContent()).getFormat());
+        }
+
+        OutputStreamHandle largeHandle = (OutputStreamHandle) result.get(200).getContent();
+        assertEquals(Format.TEXT, largeHandle.getFormat());
+        assertTrue(largeHandle.isResendable());
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            largeHandle.get().write(out);
+            assertEquals(large.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8),
+                "A streamed entry should be read again each time it is written");
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> splitter.setEntryStreamingThreshold(-1));
+    }
+
     private void checkContent(ZipInputStream zipInputStream,
                               ZipEntry zipEntry,
                               String unzippedContent) throws Exception {
@@ -0,0 +1,68 @@
+package com.marklogic.client.util;
+
+import com.marklogic.client.io.Format;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryResponseCacheTest {
+
+	private final AtomicLong now = new AtomicLong(0);
+
+	@Test
+	public void expiresAfterTimeToLive() {
+		InMemoryResponseCache cache = new InMemoryResponseCache(1000, 10, TimeUnit.SECONDS, now::get);
+		cache.put("a", entry(10, 5));
+		now.set(TimeUnit.SECONDS.toNanos(9));
+		assertNotNull(cache.get("a"));
+		now.set(TimeUnit.SECONDS.toNanos(10));
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getTotalBytes());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedPastMaxBytes() {
+		InMemoryResponseCache cache = new InMemoryResponseCache(30, 1, TimeUnit.HOURS, now::get);
+		cache.put("a", entry(10, 1));
+		cache.put("b", entry(10, 1));
+		cache.put("c", entry(10, 1));
+		assertNotNull(cache.get("a"));
+		cache.put("d", entry(10, 1));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("a"));
+		assertNotNull(cache.get("c"));
+		assertNotNull(cache.get("d"));
+		assertEquals(30, cache.getTotalBytes());
+
+		cache.put("huge", entry(31, 1));
+		assertNull(cache.get("huge"));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void invalidatesByTimestamp() {
+		InMemoryResponseCache cache = new InMemoryResponseCache(1000, 1, TimeUnit.HOURS, now::get);
+		cache.put("old", entry(10, 100));
+		cache.put("new", entry(10, 200));
+		cache.put("unknown", entry(10, -1));
+		cache.invalidateBefore(150);
+		assertNull(cache.get("old"));
+		assertNull(cache.get("unknown"));
+		assertNotNull(cache.get("new"));
+		assertEquals(10, cache.getTotalBytes());
+
+		cache.put("new", entry(20, 300));
+		assertEquals(20, cache.getTotalBytes());
+		cache.invalidate("new");
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getTotalBytes());
+	}
+
+	private static ResponseCache.Entry entry(int size, long serverTimestamp) {
+		return new ResponseCache.Entry(new byte[size], Format.JSON, "application/json", serverTimestamp);
+	}
+}
@@ -0,0 +1,157 @@
+package com.marklogic.client.util;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterators;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultPublisherTest {
+
+	private final AtomicInteger readCount = new AtomicInteger();
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+	@Test
+	public void readsOnlyWhatIsRequested() {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		ResultPublisher.fromStream(items("a", "b", "c", "d"), Runnable::run).subscribe(subscriber);
+
+		assertEquals(0, readCount.get(), "Nothing should be read before the subscriber requests items");
+		subscriber.subscription.request(2);
+		assertEquals(Arrays.asList("a", "b"), subscriber.items);
+		assertEquals(2, readCount.get());
+		assertFalse(subscriber.completed);
+		assertFalse(closed.get());
+
+		subscriber.subscription.request(5);
+		assertEquals(Arrays.asList("a", "b", "c", "d"), subscriber.items);
+		assertTrue(subscriber.completed);
+		assertTrue(closed.get(), "Completion should close the result");
+	}
+
+	@Test
+	public void cancelClosesResult() {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		ResultPublisher.fromStream(items("a", "b", "c"), Runnable::run).subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+		subscriber.subscription.cancel();
+		subscriber.subscription.request(1);
+		assertEquals(Arrays.asList("a"), subscriber.items);
+		assertTrue(closed.get());
+		assertFalse(subscriber.completed);
+		assertNull(subscriber.error);
+	}
+
+	@Test
+	public void invalidRequestSignalsError() {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		ResultPublisher.fromStream(items("a"), Runnable::run).subscribe(subscriber);
+
+		subscriber.subscription.request(0);
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+		assertTrue(closed.get());
+	}
+
+	@Test
+	public void readFailureSignalsError() {
+		Iterator<String> failing = new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+			@Override
+			public String next() {
+				throw new IllegalStateException("connection reset");
+			}
+		};
+		Stream<String> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(failing, 0), false)
+			.onClose(() -> closed.set(true));
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		ResultPublisher.fromStream(stream, Runnable::run).subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+		assertEquals("connection reset", subscriber.error.getMessage());
+		assertTrue(closed.get());
+	}
+
+	@Test
+	public void onlyOneSubscriber() {
+		ResultPublisher<String> publisher = ResultPublisher.fromStream(items("a"), Runnable::run);
+		publisher.subscribe(new RecordingSubscriber());
+		RecordingSubscriber second = new RecordingSubscriber();
+		publisher.subscribe(second);
+		assertNotNull(second.subscription);
+		assertTrue(second.error instanceof IllegalStateException);
+	}
+
+	@Test
+	public void defaultExecutor() throws InterruptedException {
+		CountDownLatch finished = new CountDownLatch(1);
+		RecordingSubscriber subscriber = new RecordingSubscriber() {
+			@Override
+			public void onComplete() {
+				super.onComplete();
+				finished.countDown();
+			}
+		};
+		ResultPublisher.fromStream(items("a", "b", "c")).subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("a", "b", "c"), subscriber.items);
+		assertTrue(closed.get());
+	}
+
+	private Stream<String> items(String... values) {
+		Iterator<String> iterator = Arrays.asList(values).iterator();
+		Iterator<String> counting = new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+			@Override
+			public String next() {
+				readCount.incrementAndGet();
+				return iterator.next();
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(counting, 0), false)
+			.onClose(() -> closed.set(true));
+	}
+
+	private static class RecordingSubscriber implements Subscriber<String> {
+		final List<String> items = new ArrayList<>();
+		volatile Subscription subscription;
+		volatile Throwable error;
+		volatile boolean completed;
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+		}
+		@Override
+		public void onNext(String item) {
+			items.add(item);
+		}
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+		}
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.marklogic.client.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadsTest {
+
+	@Test
+	public void matchesJavaVersion() throws Exception {
+		String specVersion = System.getProperty("java.specification.version");
+		boolean hasVirtualThreads = !specVersion.startsWith("1.") && Integer.parseInt(specVersion) >= 21;
+		assertEquals(hasVirtualThreads, VirtualThreads.isAvailable());
+
+		if (!hasVirtualThreads) {
+			assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.newThreadFactory("test-"));
+			assertNull(VirtualThreads.newThreadFactoryIfAvailable("test-"));
+			return;
+		}
+
+		ThreadFactory factory = VirtualThreads.newThreadFactory("test-");
+		Thread[] ran = new Thread[1];
+		Thread thread = factory.newThread(() -> ran[0] = Thread.currentThread());
+		thread.start();
+		thread.join();
+		assertSame(thread, ran[0]);
+		assertEquals("test-0", thread.getName());
+		assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+	}
+}
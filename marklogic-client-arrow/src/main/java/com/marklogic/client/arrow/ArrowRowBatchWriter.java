@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.arrow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.datamovement.RowBatchSuccessListener;
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.row.RowColumnBatch;
+import com.marklogic.client.row.RowManager;
+import com.marklogic.client.row.RowSet;
+
+/**
+ * Writes the batches of a RowBatcher as Arrow record batches in the Arrow IPC
+ * streaming format to an OutputStream or in the Arrow IPC file format to a file,
+ * for loading into Arrow-based tools such as Spark, DuckDB, or pandas without
+ * parsing the rows as JSON or CSV.
+ *
+ * The writer is a success listener for the RowBatcher created by
+ * DataMovementManager.newRowColumnBatcher(), which fills primitive arrays
+ * for each column that the writer copies into the Arrow vectors:
+ * <pre>{@code
+ * ArrowRowBatchWriter writer = ArrowRowBatchWriter.toFile(rowMgr, plan, Paths.get("musicians.arrow"));
+ * RowBatcher<RowSet<RowColumnBatch>> rowBatcher = moveMgr.newRowColumnBatcher()
+ *     .withBatchView(plan)
+ *     .onSuccess(writer);
+ * moveMgr.startJob(rowBatcher);
+ * rowBatcher.awaitCompletion();
+ * moveMgr.stopJob(rowBatcher);
+ * writer.close();
+ * }</pre>
+ *
+ * The Arrow schema comes from RowManager.columnInfo() for the plan: integer
+ * columns other than xs:unsignedLong are 64-bit integers, floating point and
+ * decimal columns are doubles, boolean columns are booleans, and all other
+ * columns are UTF-8 strings with the lexical form of the value.  Every field
+ * is nullable.
+ *
+ * Batches are written in the order the RowBatcher completes them, which isn't
+ * the order of the rows in the view.  The writer serializes the batches from
+ * the threads of the RowBatcher, so a single writer can receive all of them.
+ * Closing the writer ends the Arrow stream or file and closes the output.
+ */
+public class ArrowRowBatchWriter implements RowBatchSuccessListener<RowSet<RowColumnBatch>>, Closeable {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final BufferAllocator  allocator;
+  private final VectorSchemaRoot root;
+  private final ArrowWriter      writer;
+  private final Closeable        output;
+  private final String[]         fieldNames;
+  private boolean                closed = false;
+  private long                   rowCount = 0;
+
+  /**
+   * Creates a writer for the Arrow IPC streaming format.
+   * @param rowMgr the row manager for requesting the column information of the plan
+   * @param plan the plan for the batch view of the RowBatcher
+   * @param out the stream that receives the Arrow stream, which is closed when the writer is closed
+   * @return the writer
+   */
+  public static ArrowRowBatchWriter toStream(RowManager rowMgr, PlanBuilder.Plan plan, OutputStream out) {
+    return toStream(schemaFor(rowMgr, plan), out);
+  }
+  /**
+   * Creates a writer for the Arrow IPC streaming format with a schema
+   * whose field names match the column names of the rows.
+   * @param schema the Arrow schema for the rows
+   * @param out the stream that receives the Arrow stream, which is closed when the writer is closed
+   * @return the writer
+   */
+  public static ArrowRowBatchWriter toStream(Schema schema, OutputStream out) {
+    if (out == null) {
+      throw new IllegalArgumentException("out must not be null");
+    }
+    return new ArrowRowBatchWriter(schema, root -> new ArrowStreamWriter(root, null, out), out);
+  }
+  /**
+   * Creates a writer for the Arrow IPC file format.
+   * @param rowMgr the row manager for requesting the column information of the plan
+   * @param plan the plan for the batch view of the RowBatcher
+   * @param file the file to create or replace
+   * @return the writer
+   */
+  public static ArrowRowBatchWriter toFile(RowManager rowMgr, PlanBuilder.Plan plan, Path file) {
+    return toFile(schemaFor(rowMgr, plan), file);
+  }
+  /**
+   * Creates a writer for the Arrow IPC file format with a schema
+   * whose field names match the column names of the rows.
+   * @param schema the Arrow schema for the rows
+   * @param file the file to create or replace
+   * @return the writer
+   */
+  public static ArrowRowBatchWriter toFile(Schema schema, Path file) {
+    if (file == null) {
+      throw new IllegalArgumentException("file must not be null");
+    }
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(file,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      throw new MarkLogicIOException("Unable to open Arrow file: " + file, e);
+    }
+    return new ArrowRowBatchWriter(schema, root -> new ArrowFileWriter(root, null, channel), channel);
+  }
+
+  /**
+   * Converts the column information for a plan to an Arrow schema.  Each field is named
+   * by the schema, view, and column names of the column, joined with periods, as for the
+   * column names of the rows, and the internal rowid columns are skipped.
+   * @param rowMgr the row manager for requesting the column information
+   * @param plan the plan
+   * @return the schema
+   */
+  public static Schema schemaFor(RowManager rowMgr, PlanBuilder.Plan plan) {
+    if (rowMgr == null) {
+      throw new IllegalArgumentException("rowMgr must not be null");
+    }
+    if (plan == null) {
+      throw new IllegalArgumentException("plan must not be null");
+    }
+    return schemaFor(rowMgr.columnInfo(plan, new StringHandle()).get());
+  }
+  static Schema schemaFor(String columnInfo) {
+    List<Field> fields = new ArrayList<>();
+    try (MappingIterator<JsonNode> infos = mapper.readerFor(JsonNode.class).readValues(columnInfo)) {
+      while (infos.hasNext()) {
+        JsonNode info = infos.next();
+        if (info.isArray()) {
+          for (JsonNode column : info) {
+            addField(fields, column);
+          }
+        } else {
+          addField(fields, info);
+        }
+      }
+    } catch (IOException e) {
+      throw new MarkLogicIOException("Unable to read the column information for the plan", e);
+    }
+    return new Schema(fields);
+  }
+  private static void addField(List<Field> fields, JsonNode column) {
+    String type = column.path("type").asText();
+    if ("rowid".equals(type)) {
+      return;
+    }
+    StringBuilder name = new StringBuilder();
+    for (String part : new String[]{"schema", "view", "column"}) {
+      String value = column.path(part).asText();
+      if (value.length() > 0) {
+        if (name.length() > 0) name.append('.');
+        name.append(value);
+      }
+    }
+    fields.add(new Field(name.toString(), FieldType.nullable(arrowTypeFor(type)), null));
+  }
+  static ArrowType arrowTypeFor(String datatype) {
+    String type = (datatype != null && datatype.startsWith("xs:")) ? datatype.substring(3) : datatype;
+    if (type == null) {
+      return ArrowType.Utf8.INSTANCE;
+    }
+    switch (type) {
+      case "long":
+      case "int":
+      case "short":
+      case "byte":
+      case "integer":
+      case "negativeInteger":
+      case "nonNegativeInteger":
+      case "nonPositiveInteger":
+      case "positiveInteger":
+      case "unsignedInt":
+      case "unsignedShort":
+      case "unsignedByte":
+        return new ArrowType.Int(64, true);
+      case "double":
+      case "float":
+      case "decimal":
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+      case "boolean":
+        return ArrowType.Bool.INSTANCE;
+      default:
+        return ArrowType.Utf8.INSTANCE;
+    }
+  }
+
+  private interface WriterFactory {
+    ArrowWriter newWriter(VectorSchemaRoot root) throws IOException;
+  }
+
+  private ArrowRowBatchWriter(Schema schema, WriterFactory writerFactory, Closeable output) {
+    if (schema == null) {
+      throw new IllegalArgumentException("schema must not be null");
+    }
+    this.output     = output;
+    this.allocator  = new RootAllocator();
+    this.root       = VectorSchemaRoot.create(schema, allocator);
+    this.fieldNames = new String[schema.getFields().size()];
+    for (int i = 0; i < fieldNames.length; i++) {
+      fieldNames[i] = schema.getFields().get(i).getName();
+    }
+    try {
+      this.writer = writerFactory.newWriter(root);
+      this.writer.start();
+    } catch (IOException e) {
+      root.close();
+      allocator.close();
+      throw new MarkLogicIOException("Unable to start writing Arrow record batches", e);
+    }
+  }
+
+  /**
+   * Returns the Arrow schema of the record batches.
+   * @return the schema
+   */
+  public Schema getSchema() {
+    return root.getSchema();
+  }
+
+  /**
+   * Returns the number of rows written so far.
+   * @return the row count
+   */
+  public synchronized long getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public void processEvent(RowBatchResponseEvent<RowSet<RowColumnBatch>> batch) {
+    for (RowColumnBatch columnBatch : batch.getRowsDoc()) {
+      write(columnBatch);
+    }
+  }
+
+  /**
+   * Writes the rows of a column batch as an Arrow record batch.
+   * @param columnBatch the rows
+   */
+  public synchronized void write(RowColumnBatch columnBatch) {
+    if (closed) {
+      throw new IllegalStateException("Cannot write rows after the Arrow writer is closed");
+    }
+    int batchRows = columnBatch.getRowCount();
+    root.allocateNew();
+    for (int i = 0; i < fieldNames.length; i++) {
+      fill(root.getVector(i), columnBatch, columnBatch.getColumnIndex(fieldNames[i]), batchRows);
+    }
+    root.setRowCount(batchRows);
+    try {
+      writer.writeBatch();
+    } catch (IOException e) {
+      throw new MarkLogicIOException("Unable to write Arrow record batch", e);
+    }
+    rowCount += batchRows;
+  }
+
+  private void fill(FieldVector vector, RowColumnBatch batch, int column, int batchRows) {
+    if (column < 0) {
+      // a column missing from the rows is null, which is the state of a newly allocated vector
+      return;
+    }
+    long[] nulls = batch.getNullBits(column);
+    if (vector instanceof BigIntVector && batch.getColumnType(column) == RowColumnBatch.ColumnType.LONG) {
+      BigIntVector target = (BigIntVector) vector;
+      long[] values = batch.getLongs(column);
+      for (int row = 0; row < batchRows; row++) {
+        if (!isNull(nulls, row)) target.setSafe(row, values[row]);
+      }
+    } else if (vector instanceof Float8Vector && batch.getColumnType(column) == RowColumnBatch.ColumnType.DOUBLE) {
+      Float8Vector target = (Float8Vector) vector;
+      double[] values = batch.getDoubles(column);
+      for (int row = 0; row < batchRows; row++) {
+        if (!isNull(nulls, row)) target.setSafe(row, values[row]);
+      }
+    } else if (vector instanceof BitVector && batch.getColumnType(column) == RowColumnBatch.ColumnType.BOOLEAN) {
+      BitVector target = (BitVector) vector;
+      boolean[] values = batch.getBooleans(column);
+      for (int row = 0; row < batchRows; row++) {
+        if (!isNull(nulls, row)) target.setSafe(row, values[row] ? 1 : 0);
+      }
+    } else if (vector instanceof VarCharVector && batch.getColumnType(column) == RowColumnBatch.ColumnType.STRING) {
+      VarCharVector target = (VarCharVector) vector;
+      String[] dictionary = batch.getStringDictionary(column);
+      // each distinct value is encoded once per batch
+      byte[][] encoded = new byte[dictionary.length][];
+      int[] codes = batch.getStringCodes(column);
+      for (int row = 0; row < batchRows; row++) {
+        int code = codes[row];
+        if (code < 0) continue;
+        if (encoded[code] == null) {
+          encoded[code] = dictionary[code].getBytes(StandardCharsets.UTF_8);
+        }
+        target.setSafe(row, encoded[code]);
+      }
+    } else {
+      fillConverted(vector, batch, column, batchRows);
+    }
+  }
+
+  // the data type in the header of the rows differs from the column information
+  private void fillConverted(FieldVector vector, RowColumnBatch batch, int column, int batchRows) {
+    for (int row = 0; row < batchRows; row++) {
+      if (batch.isNull(column, row)) continue;
+      String value = valueAsString(batch, column, row);
+      try {
+        if (vector instanceof BigIntVector) {
+          ((BigIntVector) vector).setSafe(row, Long.parseLong(value));
+        } else if (vector instanceof Float8Vector) {
+          ((Float8Vector) vector).setSafe(row, Double.parseDouble(value));
+        } else if (vector instanceof BitVector) {
+          ((BitVector) vector).setSafe(row, ("true".equals(value) || "1".equals(value)) ? 1 : 0);
+        } else if (vector instanceof VarCharVector) {
+          ((VarCharVector) vector).setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+        } else {
+          throw new IllegalStateException("Unsupported Arrow vector: " + vector.getClass().getName());
+        }
+      } catch (NumberFormatException e) {
+        throw new MarkLogicIOException("Unable to convert value of column " +
+          batch.getColumnNames()[column] + " to " + vector.getField().getType(), e);
+      }
+    }
+  }
+  private String valueAsString(RowColumnBatch batch, int column, int row) {
+    switch (batch.getColumnType(column)) {
+      case LONG:    return Long.toString(batch.getLongs(column)[row]);
+      case DOUBLE:  return Double.toString(batch.getDoubles(column)[row]);
+      case BOOLEAN: return Boolean.toString(batch.getBooleans(column)[row]);
+      default:      return batch.getString(column, row);
+    }
+  }
+  private static boolean isNull(long[] nullBits, int row) {
+    return (nullBits[row >>> 6] & (1L << row)) != 0;
+  }
+
+  /**
+   * Ends the Arrow stream or file and closes the output.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      writer.end();
+      writer.close();
+    } finally {
+      try {
+        root.close();
+        allocator.close();
+      } finally {
+        output.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.marklogic.client.arrow;
+
+import com.marklogic.client.row.RowColumnBatch;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArrowRowBatchWriterTest {
+
+	private static final String COLUMN_INFO =
+		"{\"schema\":\"test\", \"view\":\"album\", \"column\":\"id\", \"type\":\"long\"}\n" +
+		"{\"schema\":\"test\", \"view\":\"album\", \"column\":\"rating\", \"type\":\"double\"}\n" +
+		"{\"schema\":\"test\", \"view\":\"album\", \"column\":\"live\", \"type\":\"boolean\"}\n" +
+		"{\"schema\":\"test\", \"view\":\"album\", \"column\":\"name\", \"type\":\"string\"}\n" +
+		"{\"schema\":\"test\", \"view\":\"album\", \"column\":\"rowid\", \"type\":\"rowid\"}\n";
+
+	@Test
+	public void schemaFromColumnInfo() {
+		Schema schema = ArrowRowBatchWriter.schemaFor(COLUMN_INFO);
+		assertEquals(4, schema.getFields().size(), "The rowid column is skipped");
+		assertEquals("test.album.id", schema.getFields().get(0).getName());
+		assertEquals(new ArrowType.Int(64, true), schema.getFields().get(0).getType());
+		assertEquals(ArrowType.Utf8.INSTANCE, ArrowRowBatchWriter.arrowTypeFor("xs:date"));
+		assertEquals(ArrowType.Bool.INSTANCE, ArrowRowBatchWriter.arrowTypeFor("xs:boolean"));
+	}
+
+	@Test
+	public void writesRecordBatches() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ArrowRowBatchWriter writer = ArrowRowBatchWriter.toStream(ArrowRowBatchWriter.schemaFor(COLUMN_INFO), out);
+		writer.write(new TestBatch(new long[]{1, 2, 3}, 0b010L));
+		writer.write(new TestBatch(new long[]{4}, 0L));
+		assertEquals(4, writer.getRowCount());
+		writer.close();
+
+		try (RootAllocator allocator = new RootAllocator();
+			 ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), allocator)) {
+			VectorSchemaRoot root = reader.getVectorSchemaRoot();
+
+			assertTrue(reader.loadNextBatch());
+			assertEquals(3, root.getRowCount());
+			BigIntVector ids = (BigIntVector) root.getVector("test.album.id");
+			assertEquals(1, ids.get(0));
+			assertTrue(ids.isNull(1));
+			assertEquals(3, ids.get(2));
+			assertEquals(0.5, ((Float8Vector) root.getVector("test.album.rating")).get(2));
+			assertEquals(1, ((BitVector) root.getVector("test.album.live")).get(0));
+			VarCharVector names = (VarCharVector) root.getVector("test.album.name");
+			assertEquals("odd", names.getObject(0).toString());
+			assertEquals("odd", names.getObject(2).toString());
+
+			assertTrue(reader.loadNextBatch());
+			assertEquals(1, root.getRowCount());
+			assertEquals(4, ((BigIntVector) root.getVector("test.album.id")).get(0));
+			assertFalse(reader.loadNextBatch());
+		}
+	}
+
+	// a batch whose null bitmap applies to every column
+	private static class TestBatch implements RowColumnBatch {
+		private final String[] columns = {"test.album.id", "test.album.rating", "test.album.live", "test.album.name"};
+		private final long[] ids;
+		private final long[] nulls;
+
+		TestBatch(long[] ids, long nullBits) {
+			this.ids = ids;
+			this.nulls = new long[]{nullBits};
+		}
+
+		public int getRowCount() { return ids.length; }
+		public String[] getColumnNames() { return columns; }
+		public int getColumnIndex(String columnName) { return Arrays.asList(columns).indexOf(columnName); }
+		public ColumnType getColumnType(int column) {
+			return new ColumnType[]{ColumnType.LONG, ColumnType.DOUBLE, ColumnType.BOOLEAN, ColumnType.STRING}[column];
+		}
+		public String getDatatype(int column) { return null; }
+		public long[] getLongs(int column) { return ids; }
+		public double[] getDoubles(int column) { return Arrays.stream(ids).mapToDouble(id -> id / 6.0).toArray(); }
+		public boolean[] getBooleans(int column) {
+			boolean[] values = new boolean[ids.length];
+			for (int i = 0; i < ids.length; i++) values[i] = ids[i] % 2 == 1;
+			return values;
+		}
+		public int[] getStringCodes(int column) { return Arrays.stream(ids).mapToInt(id -> (int) (id % 2 == 1 ? 0 : 1)).toArray(); }
+		public String[] getStringDictionary(int column) { return new String[]{"odd", "even"}; }
+		public String getString(int column, int row) { return getStringDictionary(column)[getStringCodes(column)[row]]; }
+		public long[] getNullBits(int column) { return nulls; }
+		public boolean isNull(int column, int row) { return (nulls[0] & (1L << row)) != 0; }
+	}
+}